@@ -16,7 +16,6 @@
 package com.android.tools.adtui.model;
 
 
-import com.intellij.util.containers.ContainerUtil;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -76,7 +75,8 @@ public final class DefaultDataSeries<E> implements DataSeries<E> {
   }
 
   public int getNearestXIndex(long x) {
-    int index = Collections.binarySearch(ContainerUtil.map(mSeriesList, data -> data.x), x);
+    // Search the points directly rather than a list of their x values, which would cost a copy of the whole series per request.
+    int index = Collections.binarySearch(mSeriesList, new SeriesData<>(x, null), (first, second) -> Long.compare(first.x, second.x));
 
     if (index < 0) {
       // No exact match, returns position to the left of the insertion point.
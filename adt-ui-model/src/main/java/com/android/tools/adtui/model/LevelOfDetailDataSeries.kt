@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+/**
+ * A [MultiResolutionDataSeries] over a series whose data only ever grows at its end, such as samples streamed from a device.
+ *
+ * The data is summarized by a pyramid of buckets of [FANOUT]^2 consecutive points, then [FANOUT] consecutive buckets, and so on, each
+ * keeping only its first, minimum, maximum and last points. The first reduced request summarizes the requested data, and later ones only
+ * fetch the data past the last bucket, which is rebuilt along with them in case points were added to it since. A request at a given
+ * resolution is answered from the coarsest level whose buckets still span less than a pixel on average, which returns at most four points
+ * per bucket: a line through them looks the same as one through all the data, like
+ * [com.android.tools.adtui.chart.linechart.LineChart] already reduces its paths to four points per pixel.
+ *
+ * Requests without a resolution, or for which even the finest buckets are wider than a pixel, are passed through to the underlying series.
+ */
+class LevelOfDetailDataSeries(private val source: DataSeries<Long>) : MultiResolutionDataSeries<Long> {
+  private val pyramid = MinMaxPyramid()
+  private var coveredMin = Double.MAX_VALUE
+
+  override fun getDataForRange(range: Range): List<SeriesData<Long>> = source.getDataForRange(range)
+
+  override fun getDataForRange(range: Range, resolution: Double): List<SeriesData<Long>> {
+    if (range.isEmpty || resolution <= 0) {
+      return source.getDataForRange(range)
+    }
+    val reduced = synchronized(this) {
+      catchUp(range)
+      pyramid.query(range.min, range.max, resolution)
+    }
+    return reduced ?: source.getDataForRange(range)
+  }
+
+  private fun catchUp(range: Range) {
+    if (range.min < coveredMin) {
+      // Data can't be prepended to the pyramid, summarize it again from the new start.
+      pyramid.clear()
+      coveredMin = range.min
+    }
+    if (pyramid.size > 0 && pyramid.lastX > range.max) {
+      return
+    }
+    // Points may have been added with the same x as, or before, the last summarized one, so the last bucket is fetched again.
+    val rebuildFrom = if (pyramid.size == 0) Long.MIN_VALUE else pyramid.removeLastBucket()
+    val fetchFrom = if (rebuildFrom == Long.MIN_VALUE) range.min else rebuildFrom.toDouble()
+    for (data in source.getDataForRange(Range(fetchFrom, range.max))) {
+      // The point before the fetched range is already summarized.
+      if (data.x >= rebuildFrom) {
+        pyramid.add(data.x, data.value)
+        coveredMin = minOf(coveredMin, data.x.toDouble())
+      }
+    }
+  }
+
+  /**
+   * The min/max summaries of points sorted by x. levels[k] summarizes buckets of FANOUT^(k + 2) points. Only the summaries are kept: a
+   * level holds at most a quarter as many points as its buckets cover, so the pyramid takes about a third of the memory of the points.
+   */
+  private class MinMaxPyramid {
+    private val levels = mutableListOf(Level())
+
+    var size = 0
+      private set
+
+    val lastX get() = levels[0].lastX(levels[0].count - 1)
+
+    fun clear() {
+      size = 0
+      levels.clear()
+      levels.add(Level())
+    }
+
+    fun add(x: Long, value: Long) {
+      val index = size++
+      levels.forEachIndexed { k, level -> level.add(index ushr shift(k), x, value) }
+      if (size > 1 shl shift(levels.size)) {
+        // Points now span more than one bucket of what would be the next level.
+        val finer = levels.last()
+        val level = Level()
+        for (bucket in 0 until finer.count) {
+          level.merge(bucket ushr LOG_FANOUT, finer, bucket)
+        }
+        levels.add(level)
+      }
+    }
+
+    /**
+     * Drops the points of the last bucket of the finest level from every level.
+     *
+     * @return the x of the first point dropped
+     */
+    fun removeLastBucket(): Long {
+      val finest = levels[0]
+      val bucket = finest.count - 1
+      val firstX = finest.firstX(bucket)
+      size = bucket shl shift(0)
+      finest.count = bucket
+      for (k in 1 until levels.size) {
+        // The bucket holding the dropped points keeps the summaries of the buckets of the finer level before them.
+        val level = levels[k]
+        val finer = levels[k - 1]
+        val partialBucket = size ushr shift(k)
+        level.count = partialBucket
+        for (finerBucket in (partialBucket shl LOG_FANOUT) until finer.count) {
+          level.merge(partialBucket, finer, finerBucket)
+        }
+      }
+      return firstX
+    }
+
+    /**
+     * @return the summaries of the buckets overlapping [min, max], plus the ones right before and after, at the coarsest level whose
+     * buckets span less than [resolution] on average, or null if even the finest buckets are wider.
+     */
+    fun query(min: Double, max: Double, resolution: Double): List<SeriesData<Long>>? {
+      if (size == 0) {
+        return null
+      }
+      var k = 0
+      while (k < levels.size && levels[k].averageWidth(min, max) <= resolution) {
+        k++
+      }
+      if (k == 0) {
+        return null
+      }
+      val level = levels[k - 1]
+      val result = ArrayList<SeriesData<Long>>()
+      val xs = LongArray(4)
+      val values = LongArray(4)
+      for (bucket in level.firstBucket(min)..level.lastBucket(max)) {
+        level.pointsOf(bucket, xs, values)
+        for (i in 0 until 4) {
+          // The first, min, max and last points of a bucket may be the same point.
+          if (result.isEmpty() || xs[i] != result.last().x || values[i] != result.last().value) {
+            result.add(SeriesData(xs[i], values[i]))
+          }
+        }
+      }
+      return result
+    }
+
+    private fun shift(level: Int) = LOG_FANOUT * (level + 2)
+
+    /**
+     * The first, min, max and last points of each bucket, as consecutive x and value pairs.
+     */
+    private class Level {
+      private var points = LongArray(INITIAL_CAPACITY * 8)
+      var count = 0
+
+      fun firstX(bucket: Int) = points[bucket * 8]
+      fun lastX(bucket: Int) = points[bucket * 8 + 6]
+
+      fun add(bucket: Int, x: Long, value: Long) {
+        val offset = bucket * 8
+        if (bucket == count) {
+          newBucket()
+          for (i in 0 until 4) {
+            points[offset + i * 2] = x
+            points[offset + i * 2 + 1] = value
+          }
+          return
+        }
+        if (value < points[offset + 3]) {
+          points[offset + 2] = x
+          points[offset + 3] = value
+        }
+        if (value > points[offset + 5]) {
+          points[offset + 4] = x
+          points[offset + 5] = value
+        }
+        points[offset + 6] = x
+        points[offset + 7] = value
+      }
+
+      /**
+       * Adds the summary of a bucket of [finer] to [bucket], which covers it.
+       */
+      fun merge(bucket: Int, finer: Level, finerBucket: Int) {
+        val offset = bucket * 8
+        val from = finerBucket * 8
+        if (bucket == count) {
+          newBucket()
+          finer.points.copyInto(points, offset, from, from + 8)
+          return
+        }
+        if (finer.points[from + 3] < points[offset + 3]) {
+          finer.points.copyInto(points, offset + 2, from + 2, from + 4)
+        }
+        if (finer.points[from + 5] > points[offset + 5]) {
+          finer.points.copyInto(points, offset + 4, from + 4, from + 6)
+        }
+        finer.points.copyInto(points, offset + 6, from + 6, from + 8)
+      }
+
+      /**
+       * Copies the points of the bucket, sorted by x.
+       */
+      fun pointsOf(bucket: Int, xs: LongArray, values: LongArray) {
+        val offset = bucket * 8
+        val order = if (points[offset + 2] <= points[offset + 4]) MIN_FIRST else MAX_FIRST
+        for (i in 0 until 4) {
+          xs[i] = points[offset + order[i] * 2]
+          values[i] = points[offset + order[i] * 2 + 1]
+        }
+      }
+
+      /**
+       * @return the first bucket ending at or after [min], or the last bucket if there is none.
+       */
+      fun firstBucket(min: Double) = minOf(count - 1, firstBucket { lastX(it) >= min })
+
+      /**
+       * @return the first bucket starting after [max], or the last bucket if there is none.
+       */
+      fun lastBucket(max: Double) = minOf(count - 1, firstBucket { firstX(it) > max })
+
+      fun averageWidth(min: Double, max: Double): Double {
+        val first = firstBucket(min)
+        val last = lastBucket(max)
+        return (lastX(last) - firstX(first)).toDouble() / (last - first + 1)
+      }
+
+      private fun newBucket() {
+        if ((count + 1) * 8 > points.size) {
+          points = points.copyOf(points.size * 2)
+        }
+        count++
+      }
+
+      private inline fun firstBucket(predicate: (Int) -> Boolean): Int {
+        var low = 0
+        var high = count
+        while (low < high) {
+          val mid = (low + high) ushr 1
+          if (predicate(mid)) high = mid else low = mid + 1
+        }
+        return low
+      }
+    }
+  }
+
+  companion object {
+    private const val LOG_FANOUT = 2
+    const val FANOUT = 1 shl LOG_FANOUT
+    private const val INITIAL_CAPACITY = 64
+
+    // Orders of the first, min, max and last points of a bucket by x.
+    private val MIN_FIRST = intArrayOf(0, 1, 2, 3)
+    private val MAX_FIRST = intArrayOf(0, 2, 1, 3)
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+/**
+ * A [DataSeries] that can also provide its data reduced to what is visible at a given resolution, so that components drawing a wide
+ * range don't need to go through every point in it.
+ */
+interface MultiResolutionDataSeries<E> : DataSeries<E> {
+  /**
+   * @param resolution the length of the range covered by a single pixel, in the same unit as the range.
+   * @return a subset of [getDataForRange] that draws the same line at the given resolution.
+   */
+  fun getDataForRange(range: Range, resolution: Double): List<SeriesData<E>>
+}
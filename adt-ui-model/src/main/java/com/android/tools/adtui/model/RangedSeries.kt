@@ -73,6 +73,21 @@ open class RangedSeries<E>
     return lastQueriedSeries
   }
 
+  /**
+   * Same as [series], except that if the underlying data series is a [MultiResolutionDataSeries], the data is reduced to the points
+   * needed to draw it at the given resolution. Reduced data is proportional to the number of pixels rather than the number of points, so
+   * it is not cached.
+   *
+   * @param resolution the length of the range covered by a single pixel.
+   */
+  fun getSeries(resolution: Double): List<SeriesData<E>> {
+    val series = _series
+    if (series !is MultiResolutionDataSeries<E>) {
+      return getValuesInRange()
+    }
+    return series.getDataForRange(xRange.getIntersection(intersectRange), resolution)
+  }
+
   /**
    * @param range The range to which the data will be scoped.
    * @return A new, immutable [SeriesDataList] that allows the caller to get items in the DataStore scoped to the given range.
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class LevelOfDetailDataSeriesTest {
+  private val source = DefaultDataSeries<Long>()
+  private val queriedRanges = mutableListOf<Range>()
+  private val series = LevelOfDetailDataSeries(DataSeries.using { range ->
+    queriedRanges.add(range)
+    source.getDataForRange(range)
+  })
+
+  @Test
+  fun `requests without resolution are passed through`() {
+    addSamples(0 until 100)
+    assertThat(series.getDataForRange(Range(10.0, 20.0))).isEqualTo(source.getDataForRange(Range(10.0, 20.0)))
+  }
+
+  @Test
+  fun `sparse data is not reduced`() {
+    addSamples(0 until 100)
+    assertThat(series.getDataForRange(Range(0.0, 100.0), 0.5)).isEqualTo(source.getDataForRange(Range(0.0, 100.0)))
+  }
+
+  @Test
+  fun `dense data is reduced to its shape`() {
+    addSamples(0 until 100_000)
+    val range = Range(0.0, 100_000.0)
+    val reduced = series.getDataForRange(range, range.length / 100)
+
+    // At most four points per bucket, and buckets are narrower than a pixel.
+    assertThat(reduced.size).isAtMost(4 * 4 * 100)
+    assertThat(reduced.size).isAtLeast(100)
+    assertThat(reduced.map { it.x }).isStrictlyOrdered()
+    val all = source.getDataForRange(range)
+    assertThat(reduced.first()).isEqualTo(all.first())
+    assertThat(reduced.last()).isEqualTo(all.last())
+    assertThat(reduced.minOf { it.value }).isEqualTo(all.minOf { it.value })
+    assertThat(reduced.maxOf { it.value }).isEqualTo(all.maxOf { it.value })
+    // Every point is a real one.
+    assertThat(all).containsAtLeastElementsIn(reduced)
+  }
+
+  @Test
+  fun `streamed data is fetched once`() {
+    addSamples(0 until 10_000)
+    series.getDataForRange(Range(0.0, 10_000.0), 100.0)
+    addSamples(10_000 until 20_000)
+    queriedRanges.clear()
+
+    val reduced = series.getDataForRange(Range(0.0, 20_000.0), 100.0)
+    assertThat(queriedRanges).hasSize(1)
+    // The last bucket of 16 points is fetched again along with the new points.
+    assertThat(queriedRanges[0].min).isEqualTo(9_984.0)
+    assertThat(reduced.last().x).isEqualTo(19_999)
+
+    // Ranges already copied don't fetch anything.
+    queriedRanges.clear()
+    series.getDataForRange(Range(5_000.0, 15_000.0), 100.0)
+    assertThat(queriedRanges).isEmpty()
+  }
+
+  @Test
+  fun `points added at the end of the summarized data are not dropped`() {
+    addSamples(0 until 10_000)
+    series.getDataForRange(Range(0.0, 10_000.0), 100.0)
+    // A late sample with the same x as the last one.
+    source.add(9_999, 5_000)
+
+    val reduced = series.getDataForRange(Range(0.0, 10_000.0), 100.0)
+    assertThat(reduced.maxOf { it.value }).isEqualTo(5_000L)
+    assertThat(reduced.last()).isEqualTo(SeriesData(9_999L, 5_000L))
+  }
+
+  private fun addSamples(xs: IntRange) {
+    // A saw tooth with a single spike, so that the extremes are in the middle of buckets.
+    xs.forEach { x -> source.add(x.toLong(), if (x == 54_321) 1_000L else (x % 37).toLong()) }
+  }
+}
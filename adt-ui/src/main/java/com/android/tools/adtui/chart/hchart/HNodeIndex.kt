@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.HNode
+
+/**
+ * Index of the nodes of an [HNode] tree by level, to find the nodes overlapping a range without visiting the whole tree.
+ *
+ * Within a level, nodes are sorted by start, along with the running maximum of their ends. The nodes overlapping [min, max] all lie
+ * between the first one whose running maximum end reaches `min` and the last one starting before `max`, and both are found by binary
+ * search. Nodes of a level don't overlap each other in practice, so nearly every node in between is in range.
+ */
+internal class HNodeIndex<N : HNode<N>>(root: N) {
+  private val levels: List<Level<N>>
+
+  /**
+   * The greatest [HNode.getDepth] of the nodes of the tree.
+   */
+  val maxDepth: Int
+
+  init {
+    val levels = mutableListOf<Level<N>>()
+    var maxDepth = root.depth
+    var level = listOf(root)
+    while (level.isNotEmpty()) {
+      levels.add(Level(level))
+      val next = ArrayList<N>()
+      for (node in level) {
+        maxDepth = maxOf(maxDepth, node.depth)
+        for (i in 0 until node.childCount) {
+          next.add(node.getChildAt(i))
+        }
+      }
+      level = next
+    }
+    this.levels = levels
+    this.maxDepth = maxDepth
+  }
+
+  /**
+   * Adds the nodes with start <= max and end >= min to the given list, level by level and in order of start within each level.
+   *
+   * @param skipRoot whether to leave out the root of the tree.
+   */
+  fun collectInRange(min: Double, max: Double, skipRoot: Boolean, result: MutableList<N>) {
+    for (level in levels.subList(if (skipRoot) 1 else 0, levels.size)) {
+      level.collectInRange(min, max, result)
+    }
+  }
+
+  private class Level<N : HNode<N>>(nodes: List<N>) {
+    // Sorting is stable, and nodes are usually already in order since children are.
+    private val nodes = nodes.sortedBy { it.start }
+    private val starts = LongArray(this.nodes.size) { this.nodes[it].start }
+    private val maxEnds = LongArray(this.nodes.size).also { maxEnds ->
+      var maxEnd = Long.MIN_VALUE
+      this.nodes.forEachIndexed { i, node ->
+        maxEnd = maxOf(maxEnd, node.end)
+        maxEnds[i] = maxEnd
+      }
+    }
+
+    fun collectInRange(min: Double, max: Double, result: MutableList<N>) {
+      val from = firstIndex(maxEnds) { it >= min }
+      val to = firstIndex(starts) { it > max }
+      for (i in from until to) {
+        val node = nodes[i]
+        if (node.end >= min) {
+          result.add(node)
+        }
+      }
+    }
+
+    /**
+     * @return the index of the first value matching the predicate, which must hold for every value after it.
+     */
+    private inline fun firstIndex(values: LongArray, predicate: (Long) -> Boolean): Int {
+      var low = 0
+      var high = values.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (predicate(values[mid])) high = mid else low = mid + 1
+      }
+      return low
+    }
+  }
+}
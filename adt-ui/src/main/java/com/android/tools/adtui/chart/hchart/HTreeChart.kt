@@ -36,8 +36,6 @@ import java.awt.event.MouseEvent
 import java.awt.event.MouseWheelEvent
 import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
-import java.util.LinkedList
-import java.util.Queue
 import javax.swing.AbstractAction
 import javax.swing.KeyStroke
 import kotlin.math.max
@@ -84,13 +82,24 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   var selectedNode: N? = null
     set(node) {
       if (field !== node) {
-        dataUpdated = true
+        canvasOutdated = true
         field = node
       }
     }
 
   private val drawnRectangles = ArrayList<Rectangle2D.Float>()
   private val drawnNodes = ArrayList<N>()
+
+  /**
+   * Index of the first drawn rectangle of each row, followed by the number of drawn rectangles. Rectangles of a row are sorted by x.
+   */
+  private var drawnRowOffsets = IntArray(1)
+
+  /**
+   * For each drawn rectangle, the greatest right edge among it and the rectangles before it in the same row.
+   */
+  private var drawnMaxRights = FloatArray(0)
+  private var index: HNodeIndex<N>? = null
   private val reducer = builder.reducer
   private var canvas: Image? = null
 
@@ -99,6 +108,11 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
    * operation which doesn't have to be done too often as usually the contents are static)
    */
   private var dataUpdated = false
+
+  /**
+   * If true, the next render pass will redraw the nodes already in range, e.g. because the focused node changed.
+   */
+  private var canvasOutdated = false
   var maximumHeight = 0
     private set
 
@@ -132,6 +146,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   }
 
   private fun rootChanged() {
+    index = root?.let { HNodeIndex(it) }
     maximumHeight = calculateMaximumHeight()
     // Update preferred size using calculated height to make sure containers of this chart account for the height change during layout.
     preferredSize = Dimension(preferredSize.width, maximumHeight)
@@ -155,9 +170,11 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
       return
     }
     if (canvas == null
+        || canvasOutdated
         || ImageUtil.getUserHeight(canvas!!) != dim.height
         || ImageUtil.getUserWidth(canvas!!) != dim.width) {
       redrawToCanvas(dim)
+      canvasOutdated = false
     }
     UIUtil.drawImage(g, canvas!!, 0, 0, null)
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6)
@@ -181,10 +198,9 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     UISettings.setupAntialiasing(g)
     g.font = font
     drawnNodes.clear()
-    drawnNodes.addAll(nodes)
     drawnRectangles.clear()
     // Transform
-    for (rect in rectangles) {
+    for ((node, rect) in nodes zip rectangles) {
       val newRect = Rectangle2D.Float()
       newRect.x = rect.x * dim.getWidth().toFloat()
       newRect.y = rect.y
@@ -193,10 +209,15 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
       if (orientation == Orientation.BOTTOM_UP) {
         newRect.y = (dim.getHeight() - newRect.y - newRect.getHeight()).toFloat()
       }
-      drawnRectangles.add(newRect)
+      // Rows scrolled out of view are neither drawn nor hit.
+      if (newRect.maxY >= 0 && newRect.y <= dim.height) {
+        drawnNodes.add(node)
+        drawnRectangles.add(newRect)
+      }
     }
     reducer.reduce(drawnRectangles, drawnNodes)
     assert(drawnRectangles.size == drawnNodes.size)
+    indexDrawnRows()
     for (i in drawnNodes.indices) {
       val node = drawnNodes[i]
       val drawingArea = drawnRectangles[i]
@@ -215,32 +236,36 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     nodes.clear()
     rectangles.clear()
     canvas = null
-    if (root == null) {
+    val index = index ?: return
+    if (!inRange(root!!)) {
       return
     }
-    if (inRange(root!!)) {
-      nodes.add(root!!)
-      rectangles.add(createRectangle(root!!))
-    }
-    var head = 0
-    while (head < nodes.size) {
-      val curNode = nodes[head++]
-      for (i in 0 until curNode.childCount) {
-        val child = curNode.getChildAt(i)
-        if (inRange(child)) {
-          nodes.add(child)
-          rectangles.add(createRectangle(child))
-        }
-      }
-    }
-    if (!rootVisible && nodes.isNotEmpty()) {
-      nodes.removeAt(0)
-      rectangles.removeAt(0)
-    }
+    index.collectInRange(xRange.min, xRange.max, !rootVisible, nodes)
+    nodes.mapTo(rectangles, ::createRectangle)
   }
 
   private fun inRange(node: N) = node.start <= xRange.max && node.end >= xRange.min
 
+  /**
+   * Splits the drawn rectangles into rows, which the index collected and the reducer kept in order of x.
+   */
+  private fun indexDrawnRows() {
+    val rowOffsets = ArrayList<Int>()
+    drawnMaxRights = FloatArray(drawnRectangles.size)
+    for (i in drawnRectangles.indices) {
+      val rect = drawnRectangles[i]
+      if (i == 0 || rect.y != drawnRectangles[i - 1].y) {
+        rowOffsets.add(i)
+        drawnMaxRights[i] = rect.maxX.toFloat()
+      }
+      else {
+        drawnMaxRights[i] = max(drawnMaxRights[i - 1], rect.maxX.toFloat())
+      }
+    }
+    rowOffsets.add(drawnRectangles.size)
+    drawnRowOffsets = rowOffsets.toIntArray()
+  }
+
   private fun createRectangle(node: N): Rectangle2D.Float {
     val left = ((node.start - xRange.min) / xRange.length).toFloat()
     val right = ((node.end - xRange.min) / xRange.length).toFloat()
@@ -254,12 +279,34 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
 
   private fun positionToRange(x: Double) = x / width * xRange.length + xRange.min
 
+  /**
+   * Sets the root of the chart. Node times are indexed when the root is set, so this must also be called with the same root
+   * after the start or end of its nodes change in place.
+   */
   fun setHTree(root: N?) {
     this.root = root
     rootChanged()
   }
 
-  fun getNodeAt(point: Point): N? = (drawnNodes zip drawnRectangles).find { (_, rect) -> point in rect }?.first
+  fun getNodeAt(point: Point): N? {
+    for (row in 0 until drawnRowOffsets.size - 1) {
+      val rowStart = drawnRowOffsets[row]
+      val rowEnd = drawnRowOffsets[row + 1]
+      val rowRect = drawnRectangles[rowStart]
+      if (point.y < rowRect.y || point.y >= rowRect.y + rowRect.height) {
+        continue
+      }
+      // Only rectangles starting at or before the point, and after every rectangle of the row that ends before it, can contain it.
+      val from = firstIndex(rowStart, rowEnd) { drawnMaxRights[it] > point.x }
+      val to = firstIndex(rowStart, rowEnd) { drawnRectangles[it].x > point.x }
+      for (i in from until to) {
+        if (point in drawnRectangles[i]) {
+          return drawnNodes[i]
+        }
+      }
+    }
+    return null
+  }
 
   private fun initializeInputMap() {
     fun bindKey(key: Int, action: String) = inputMap.put(KeyStroke.getKeyStroke(key, 0), action)
@@ -295,7 +342,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
       override fun mouseMoved(e: MouseEvent) {
         val node = getNodeAt(e.point)
         if (node !== focusedNode) {
-          dataUpdated = true
+          canvasOutdated = true
           focusedNode = node
           eventSourceRepaint(e)
         }
@@ -363,22 +410,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   }
 
   private fun calculateMaximumHeight(): Int {
-    if (root == null) {
-      return 0
-    }
-    var maxDepth = -1
-    val queue: Queue<N> = LinkedList()
-    queue.add(root)
-    while (!queue.isEmpty()) {
-      val n = queue.poll()!!
-      if (n.depth > maxDepth) {
-        maxDepth = n.depth
-      }
-      for (i in 0 until n.childCount) {
-        queue.add(n.getChildAt(i))
-      }
-    }
-    maxDepth += 1
+    val maxDepth = (index ?: return 0).maxDepth + 1
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
@@ -458,5 +490,18 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     const val HEIGHT_PADDING = 15
     private const val MOUSE_WHEEL_SCROLL_FACTOR = 8
     //private operator fun Rectangle2D.contains(p: Point) = p.getX() in minX..maxX && p.getY() in minY .. maxY
+
+    /**
+     * @return the first index in [from, to) matching the predicate, which must hold for every index after it, or `to` if there is none.
+     */
+    private inline fun firstIndex(from: Int, to: Int, predicate: (Int) -> Boolean): Int {
+      var low = from
+      var high = to
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (predicate(mid)) high = mid else low = mid + 1
+      }
+      return low
+    }
   }
 }
\ No newline at end of file
@@ -194,7 +194,10 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      // Stacked series are summed point by point and bars are drawn for every point, so only plain lines can use reduced data.
+      List<SeriesData<Long>> seriesList = config.isStacked() || config.getDataBucketInterval() > 0 || dim.width <= 0
+                                          ? ranged.getSeries()
+                                          : ranged.getSeries(ranged.getXRange().getLength() / dim.width);
       if (config.isStacked()) {
         if (lastStackedSeries == null) {
           // Create a new list of SeriesData to prevent modifying the backing data series, which could be cached.
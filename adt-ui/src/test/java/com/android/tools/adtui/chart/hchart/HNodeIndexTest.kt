@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.DefaultHNode
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HNodeIndexTest {
+  @Test
+  fun collectsNodesInRangeLevelByLevel() {
+    // root [0, 100] -> a [0, 40] -> c [0, 10], d [20, 40]
+    //               -> b [50, 100] -> e [60, 70]
+    val root = node("root", 0, 100, 0)
+    val a = node("a", 0, 40, 1)
+    val b = node("b", 50, 100, 1)
+    root.addChild(a)
+    root.addChild(b)
+    a.addChild(node("c", 0, 10, 2))
+    a.addChild(node("d", 20, 40, 2))
+    b.addChild(node("e", 60, 70, 2))
+    val index = HNodeIndex(root)
+
+    assertThat(index.maxDepth).isEqualTo(2)
+    assertThat(collect(index, 0.0, 100.0, false)).containsExactly("root", "a", "b", "c", "d", "e").inOrder()
+    assertThat(collect(index, 0.0, 100.0, true)).containsExactly("a", "b", "c", "d", "e").inOrder()
+    assertThat(collect(index, 15.0, 55.0, true)).containsExactly("a", "b", "d").inOrder()
+    // Bounds are inclusive.
+    assertThat(collect(index, 40.0, 50.0, true)).containsExactly("a", "b", "d").inOrder()
+    assertThat(collect(index, 71.0, 80.0, true)).containsExactly("b")
+    assertThat(collect(index, 200.0, 300.0, false)).isEmpty()
+  }
+
+  @Test
+  fun collectsNodesOutOfOrder() {
+    val root = node("root", 0, 100, 0)
+    root.addChild(node("late", 50, 60, 1))
+    // A long node listed after a later one, which overlaps ranges after the start of the node listed before it.
+    root.addChild(node("long", 0, 90, 1))
+    val index = HNodeIndex(root)
+    assertThat(collect(index, 70.0, 80.0, true)).containsExactly("long")
+    assertThat(collect(index, 55.0, 56.0, true)).containsExactly("long", "late").inOrder()
+  }
+
+  private fun collect(index: HNodeIndex<DefaultHNode<String>>, min: Double, max: Double, skipRoot: Boolean) =
+    mutableListOf<DefaultHNode<String>>().also { index.collectInRange(min, max, skipRoot, it) }.map { it.data }
+
+  private fun node(name: String, start: Long, end: Long, depth: Int) = DefaultHNode(name, start, end).also { it.depth = depth }
+}
@@ -184,6 +184,12 @@ public final class StudioFlags {
 
   public static final Flag<Boolean> PROFILER_TRACEBOX =
     Flag.create(PROFILER, "tracebox", "Tracebox", "Tracebox for versions M,N,O,P of Android", false);
+
+  public static final Flag<Boolean> PROFILER_COLUMNAR_EVENT_STORE = Flag.create(
+    PROFILER, "columnar.event.store", "Serve transport events from a columnar store",
+    "Serve the event queries of a stream from columns kept in memory, loaded from SQL when the stream is first queried and evicted " +
+    "when too many events are loaded, instead of parsing every event from SQL.",
+    false);
   //endregion
 
   //region ML
@@ -382,6 +388,10 @@ public final class StudioFlags {
     RESOURCE_REPOSITORY, "trace.size", "Maximum Size of Resource Repository Update Trace",
     "Size of the in-memory cyclic buffer used for tracing of resource repository updates",
     10000);
+  public static final Flag<Boolean> RESOURCE_REPOSITORY_PARALLEL_LOADING = Flag.create(
+    RESOURCE_REPOSITORY, "parallel.loading", "Parallel Loading of Resource Folders",
+    "If enabled, the resource files of large resource folders that are missing from the file cache are parsed in parallel",
+    true);
   //endregion
 
   //region Run/Debug
@@ -1464,6 +1474,11 @@ public final class StudioFlags {
     COMPOSE, "preview.loader.affinity", "Enable the class loading affinity.",
     "If enabled, the class loading will cache which class loaders are more likely to have the class.",
     true);
+
+  public static final Flag<Boolean> COMPOSE_PERSISTENT_CLASS_CACHE = Flag.create(
+    COMPOSE, "preview.persistent.class.cache", "Enable the persistent class cache.",
+    "If enabled, the transformed library classes used by the previews will be kept on disk and reused after restarts.",
+    false);
   // endregion
 
   // region Network Inspector
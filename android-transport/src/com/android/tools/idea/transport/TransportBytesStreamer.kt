@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport
+
+import com.android.tools.profiler.proto.Transport
+import java.io.InputStream
+
+/**
+ * Streaming alternative to the getBytes rpc for clients running in the same process as the datastore. Payloads that are already cached
+ * are read back a chunk at a time instead of being materialized as a single response.
+ */
+fun interface TransportBytesStreamer {
+  /**
+   * @return a stream of the payload, or null if it is empty or unavailable. Callers are responsible for closing the stream.
+   */
+  fun openStream(request: Transport.BytesRequest): InputStream?
+}
@@ -16,6 +16,7 @@
 package com.android.tools.idea.transport
 
 import com.android.tools.datastore.LogService
+import com.android.tools.idea.transport.poller.TransportEventSubscriber
 import com.android.tools.profiler.proto.Common
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.service
@@ -31,6 +32,18 @@ interface TransportService : Disposable {
   val logService: LogService
   val messageBus: MessageBus
 
+  /**
+   * Pushes new events from the datastore to in-process clients, or null if this service only supports polling.
+   */
+  val eventSubscriber: TransportEventSubscriber?
+    get() = null
+
+  /**
+   * Streams payloads from the datastore to in-process clients, or null if payloads can only be fetched whole.
+   */
+  val bytesStreamer: TransportBytesStreamer?
+    get() = null
+
   /**
    * Registers an [EventStreamServer] for the given [streamType] to push events and bytes via the transport pipeline.
    *
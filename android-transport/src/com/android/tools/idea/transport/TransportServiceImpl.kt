@@ -16,8 +16,11 @@
 package com.android.tools.idea.transport
 
 import com.android.tools.datastore.DataStoreService
+import com.android.tools.datastore.database.UnifiedEventsTable
 import com.android.tools.idea.diagnostics.crash.exception.NoPiiException
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.io.grpc.inprocess.InProcessChannelBuilder
+import com.android.tools.idea.transport.poller.TransportEventSubscriber
 import com.android.tools.profiler.proto.Common
 import com.google.common.annotations.VisibleForTesting
 import com.intellij.openapi.application.ApplicationManager
@@ -41,6 +44,10 @@ class TransportServiceImpl @VisibleForTesting constructor() : TransportService {
 
   override val logService = IntellijLogService()
   override val messageBus = ApplicationManager.getApplication().messageBus
+  override val eventSubscriber = TransportEventSubscriber { filter, executor, listener ->
+    dataStoreService.subscribeToEvents(filter, executor, listener)
+  }
+  override val bytesStreamer = TransportBytesStreamer { request -> dataStoreService.openBytesStream(request) }
 
   override fun dispose() {
     streamIdToServerMap.values.forEach(EventStreamServer::stop)
@@ -70,8 +77,11 @@ class TransportServiceImpl @VisibleForTesting constructor() : TransportService {
 
   init {
     val datastoreDirectory = Paths.get(PathManager.getSystemPath(), ".android").toString() + File.separator
+    val eventStorage =
+      if (StudioFlags.PROFILER_COLUMNAR_EVENT_STORE.get()) UnifiedEventsTable.EventStorage.COLUMNAR else UnifiedEventsTable.EventStorage.SQL
     dataStoreService = DataStoreService(TransportService.channelName, datastoreDirectory,
-                                        { runnable -> ApplicationManager.getApplication().executeOnPooledThread(runnable) }, logService)
+                                        { runnable -> ApplicationManager.getApplication().executeOnPooledThread(runnable) }, logService,
+                                        eventStorage)
     dataStoreService.setNoPiiExceptionHandler { t -> logger.error(NoPiiException(t)) }
     deviceManager = TransportDeviceManager(dataStoreService, messageBus, this)
   }
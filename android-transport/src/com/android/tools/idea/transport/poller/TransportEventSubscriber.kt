@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport.poller
+
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Transport
+import java.util.concurrent.Executor
+import java.util.function.Consumer
+
+/**
+ * Push-based alternative to [TransportEventPoller] for clients running in the same process as the datastore. Every new event matching
+ * the kind, stream id, pid and group id of the filter is handed to the listener on the given executor. Timestamp filters are ignored.
+ */
+fun interface TransportEventSubscriber {
+  /**
+   * @return a handle that stops the subscription when closed.
+   */
+  fun subscribe(filter: Transport.GetEventGroupsRequest, executor: Executor, listener: Consumer<Common.Event>): AutoCloseable
+}
@@ -27,14 +27,17 @@ import com.android.tools.idea.res.StudioResourceRepositoryManager;
 import com.android.tools.res.LocalResourceRepository;
 import com.google.common.collect.Iterables;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTagValue;
 import org.jetbrains.android.AndroidTestCase;
 import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.annotations.NotNull;
 
 public class ResourceResolverCacheTest extends AndroidTestCase {
 
@@ -98,6 +101,46 @@ public class ResourceResolverCacheTest extends AndroidTestCase {
     assertSame(cache, configuration2.getSettings().getResolverCache());
   }
 
+  public void testValueEditPublishesUpdatedAppResources() {
+    VirtualFile layout = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    VirtualFile strings = myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    PsiFile stringsPsiFile = PsiManager.getInstance(getProject()).findFile(strings);
+    assertNotNull(stringsPsiFile);
+    LocalResourceRepository resources = StudioResourceRepositoryManager.getModuleResources(myFacet);
+    Configuration configuration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(layout);
+
+    // The first edit of the file may not be incremental, as it switches the file to PSI.
+    replaceText(resources, stringsPsiFile, "Application Name", "Application Title");
+    ResourceResolver resolver = configuration.getResourceResolver();
+    assertEquals("Cancel", resolver.findResValue("@string/cancel", false).getValue());
+
+    long generation = resources.getModificationCount();
+    int rescans = resources.getFileRescans();
+    replaceText(resources, stringsPsiFile, "Cancel", "Dismiss");
+    assertThat(resources.getModificationCount()).isGreaterThan(generation);
+    assertThat(resources.getFileRescans()).isEqualTo(rescans);
+
+    // The resolver is created again from an updated copy of the configured app resources, which the previous one doesn't see.
+    ResourceResolver updatedResolver = configuration.getResourceResolver();
+    assertNotSame(resolver, updatedResolver);
+    assertEquals("Dismiss", updatedResolver.findResValue("@string/cancel", false).getValue());
+    assertEquals("Application Title", updatedResolver.findResValue("@string/app_name", false).getValue());
+    assertEquals("Cancel", resolver.findResValue("@string/cancel", false).getValue());
+  }
+
+  private void replaceText(@NotNull LocalResourceRepository resources, @NotNull PsiFile file, @NotNull String oldText,
+                           @NotNull String newText) {
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(file);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      int offset = document.getText().indexOf(oldText);
+      document.replaceString(offset, offset + oldText.length(), newText);
+      documentManager.commitDocument(document);
+    });
+    waitForUpdates(resources);
+  }
+
   public void testCustomConfiguration() {
     VirtualFile file1 = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
     ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
@@ -17,10 +17,18 @@ package org.jetbrains.android.uipreview
 
 import com.google.common.base.Ticker
 import com.intellij.openapi.module.Module
+import com.intellij.openapi.util.io.FileUtil
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
+import java.io.File
+import java.nio.file.Path
+import java.util.concurrent.Executor
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertNull
@@ -31,6 +39,9 @@ class ClassBinaryCacheManagerTest {
     override fun read(): Long = timeNanos
   }
 
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
   @Mock
   private lateinit var module: Module
 
@@ -105,4 +116,119 @@ class ClassBinaryCacheManagerTest {
 
     assertNull(moduleCache.get("a.b.c"))
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testPersistedAcrossInstances() {
+    val storeDirectory = temporaryFolder.newFolder("store").toPath()
+    val jar = createJar("A.jar", "a/b/c.class")
+
+    val moduleCache = createPersistentManager(storeDirectory).getCache(module)
+    moduleCache.setDependencies(listOf(jar))
+    moduleCache.put("a.b.c", "T", jar, "hello".toByteArray())
+
+    // A new manager, as after a restart, reads the class back from the store.
+    val restartedCache = createPersistentManager(storeDirectory).getCache(module)
+    restartedCache.setDependencies(listOf(jar))
+    assertEquals("hello", restartedCache.get("a.b.c", "T")?.toString(Charsets.UTF_8))
+    assertNull(restartedCache.get("a.b.c", "U"))
+    assertNull(restartedCache.get("a.b.d", "T"))
+
+    // Classes of libraries that aren't dependencies aren't returned.
+    restartedCache.setDependencies(listOf(createJar("B.jar", "a/b/d.class")))
+    assertNull(restartedCache.get("a.b.c", "T"))
+  }
+
+  @Test
+  fun testPersistedClassesInvalidatedWhenJarChanges() {
+    val storeDirectory = temporaryFolder.newFolder("store").toPath()
+    val jar = createJar("A.jar", "a/b/c.class")
+
+    val moduleCache = createPersistentManager(storeDirectory).getCache(module)
+    moduleCache.setDependencies(listOf(jar))
+    moduleCache.put("a.b.c", "T", jar, "hello".toByteArray())
+
+    createJar("A.jar", "a/b/c.class", "a/b/d.class")
+    val restartedCache = createPersistentManager(storeDirectory).getCache(module)
+    restartedCache.setDependencies(listOf(jar))
+    assertNull(restartedCache.get("a.b.c", "T"))
+  }
+
+  @Test
+  fun testPersistedClassesSharedBetweenPaths() {
+    val storeDirectory = temporaryFolder.newFolder("store").toPath()
+    val jar = createJar("A.jar", "a/b/c.class")
+
+    val moduleCache = createPersistentManager(storeDirectory).getCache(module)
+    moduleCache.setDependencies(listOf(jar))
+    moduleCache.put("a.b.c", "T", jar, "hello".toByteArray())
+
+    // The same jar at another path reuses the classes.
+    val copy = FileUtil.toSystemIndependentName(temporaryFolder.newFolder("copy").resolve("A.jar").path)
+    File(jar).copyTo(File(copy))
+    val restartedCache = createPersistentManager(storeDirectory).getCache(module)
+    restartedCache.setDependencies(listOf(copy))
+    assertEquals("hello", restartedCache.get("a.b.c", "T")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testTruncatedRecordRemovedOnLoad() {
+    val storeDirectory = temporaryFolder.newFolder("store").toPath()
+    val jar = createJar("A.jar", "a/b/c.class", "a/b/d.class")
+
+    val moduleCache = createPersistentManager(storeDirectory).getCache(module)
+    moduleCache.setDependencies(listOf(jar))
+    moduleCache.put("a.b.c", "T", jar, "hello".toByteArray())
+
+    // A write interrupted by a crash leaves the start of a record.
+    val storeFile = storeDirectory.toFile().listFiles()!!.single()
+    val completeSize = storeFile.length()
+    storeFile.appendBytes(byteArrayOf(0, 5, 'a'.code.toByte(), '.'.code.toByte()))
+
+    val restartedCache = createPersistentManager(storeDirectory).getCache(module)
+    restartedCache.setDependencies(listOf(jar))
+    assertEquals("hello", restartedCache.get("a.b.c", "T")?.toString(Charsets.UTF_8))
+    assertEquals(completeSize, storeFile.length())
+    restartedCache.put("a.b.d", "T", jar, "bye".toByteArray())
+
+    // The class written after the truncated record was removed is read back.
+    val secondRestartCache = createPersistentManager(storeDirectory).getCache(module)
+    secondRestartCache.setDependencies(listOf(jar))
+    assertEquals("hello", secondRestartCache.get("a.b.c", "T")?.toString(Charsets.UTF_8))
+    assertEquals("bye", secondRestartCache.get("a.b.d", "T")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testCorruptedClassIgnored() {
+    val storeDirectory = temporaryFolder.newFolder("store").toPath()
+    val jar = createJar("A.jar", "a/b/c.class")
+
+    val moduleCache = createPersistentManager(storeDirectory).getCache(module)
+    moduleCache.setDependencies(listOf(jar))
+    moduleCache.put("a.b.c", "T", jar, "hello".toByteArray())
+
+    // Change the last byte of the class.
+    val storeFile = storeDirectory.toFile().listFiles()!!.single()
+    val bytes = storeFile.readBytes()
+    bytes[bytes.size - 1] = 'O'.code.toByte()
+    storeFile.writeBytes(bytes)
+
+    val restartedCache = createPersistentManager(storeDirectory).getCache(module)
+    restartedCache.setDependencies(listOf(jar))
+    assertNull(restartedCache.get("a.b.c", "T"))
+  }
+
+  private fun createPersistentManager(storeDirectory: Path) =
+    ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, PersistentClassBinaryStore(storeDirectory, Executor { it.run() }))
+
+  private fun createJar(name: String, vararg entries: String): String {
+    val jar = File(temporaryFolder.root, name)
+    ZipOutputStream(jar.outputStream()).use { output ->
+      for (entry in entries) {
+        output.putNextEntry(ZipEntry(entry))
+        output.write(entry.toByteArray())
+        output.closeEntry()
+      }
+    }
+    return FileUtil.toSystemIndependentName(jar.path)
+  }
+}
@@ -28,6 +28,7 @@ import com.android.ide.common.gradle.Component;
 import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.tools.idea.editors.fast.FastPreviewConfiguration;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.model.IdeAndroidProjectType;
 import com.android.tools.idea.gradle.model.impl.IdeAndroidLibraryImpl;
 import com.android.tools.idea.projectsystem.ProjectSystemBuildManager;
@@ -382,6 +383,31 @@ public class StudioModuleClassLoaderTest extends AndroidTestCase {
     assertNull("Disposed ModuleClassLoaders can not be copied", copy);
   }
 
+  public void testBinaryCacheOnlyUsedWithPersistentClassCache() {
+    Module module = Objects.requireNonNull(myFixture.getModule());
+    String libraryPath = FileUtil.toSystemIndependentName(ModuleClassLoaderUtil.getExternalLibraries(module).get(0).toString());
+    ClassBinaryCache cache = ClassBinaryCacheManager.getInstance().getCache(module);
+    cache.put("test.Cached", "T", libraryPath, new byte[]{1});
+
+    StudioFlags.COMPOSE_PERSISTENT_CLASS_CACHE.override(false);
+    ModuleClassLoaderManager.Reference<StudioModuleClassLoader> loaderRef = StudioModuleClassLoaderManager.get()
+      .getPrivate(null, ModuleRenderContext.forModule(module));
+    try {
+      // Without the flag, class loaders don't set their dependencies, so the cache keeps returning nothing, as before the flag existed.
+      assertNull(cache.get("test.Cached", "T"));
+
+      StudioFlags.COMPOSE_PERSISTENT_CLASS_CACHE.override(true);
+      StudioModuleClassLoader copy = loaderRef.getClassLoader().copy(NopModuleClassLoadedDiagnostics.INSTANCE);
+      assertNotNull(copy);
+      assertNotNull(cache.get("test.Cached", "T"));
+      copy.dispose();
+    }
+    finally {
+      StudioFlags.COMPOSE_PERSISTENT_CLASS_CACHE.clearOverride();
+      StudioModuleClassLoaderManager.get().release(loaderRef);
+    }
+  }
+
   private static AndroidLibraryDependency ideAndroidLibrary(File gradleCacheRoot,
                                                             @SuppressWarnings("SameParameterValue") String artifactAddress,
                                                             String folder,
@@ -16,6 +16,7 @@
 package com.android.tools.idea.res;
 
 import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
+import static com.android.tools.idea.projectsystem.ProjectSystemSyncUtil.PROJECT_SYSTEM_SYNC_TOPIC;
 import static com.android.tools.idea.res.ResourcesTestsUtil.addBinaryAarDependency;
 import static com.android.tools.idea.res.ResourcesTestsUtil.getSingleItem;
 import static com.android.tools.idea.testing.AndroidTestUtils.waitForUpdates;
@@ -31,14 +32,19 @@ import com.android.projectmodel.DynamicResourceValue;
 import com.android.resources.AarTestUtils;
 import com.android.resources.ResourceType;
 import com.android.resources.aar.AarSourceResourceRepository;
+import com.android.tools.idea.model.AndroidModel;
+import com.android.tools.idea.model.TestAndroidModel;
+import com.android.tools.idea.projectsystem.ProjectSystemSyncManager;
 import com.android.tools.res.LocalResourceRepository;
 import com.android.tools.res.MultiResourceRepository;
+import com.android.tools.res.ResourceChanges;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
@@ -47,7 +53,9 @@ import com.intellij.psi.PsiManager;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
 import org.jetbrains.android.AndroidTestCase;
@@ -291,6 +299,37 @@ public class AppResourceRepositoryTest extends AndroidTestCase {
                                  true);
   }
 
+  public void testDynamicValueChangedBySync() {
+    // This is necessary to use DynamicResourceValueRepository.
+    myFacet.getProperties().ALLOW_USER_CONFIGURATION = false;
+    Map<String, DynamicResourceValue> resValues = new HashMap<>();
+    resValues.put("model_value", new DynamicResourceValue(ResourceType.STRING, "before sync"));
+    AndroidModel.set(myFacet, new TestAndroidModel() {
+      @Override
+      public Map<String, DynamicResourceValue> getResValues() {
+        return resValues;
+      }
+    });
+    DynamicValueResourceRepository dynamicResources = DynamicValueResourceRepository.create(myFacet, RES_AUTO);
+    Disposer.register(myFacet, dynamicResources);
+    ModuleResourceRepository moduleResources = ModuleResourceRepository.createForTest(
+        myFacet,
+        ImmutableSet.of(myFixture.copyFileToProject(VALUES, "res/values/values.xml").getParent().getParent()),
+        RES_AUTO,
+        dynamicResources);
+    assertOnlyValue(moduleResources, RES_AUTO, "model_value", "before sync");
+
+    long generation = moduleResources.getModificationCount();
+    resValues.put("model_value", new DynamicResourceValue(ResourceType.STRING, "after sync"));
+    getProject().getMessageBus().syncPublisher(PROJECT_SYSTEM_SYNC_TOPIC).syncEnded(ProjectSystemSyncManager.SyncResult.SUCCESS);
+
+    // Caches keyed by the modification count, like the resource resolvers, have to see the change.
+    assertThat(moduleResources.getModificationCount()).isGreaterThan(generation);
+    ResourceChanges changes = moduleResources.getChangesSince(generation);
+    assertTrue(changes == null || changes.containsType(ResourceType.STRING));
+    assertOnlyValue(moduleResources, RES_AUTO, "model_value", "after sync");
+  }
+
   public void testLibraryResources() {
     addBinaryAarDependency(myModule);
     enableNamespacing("p1.p2");
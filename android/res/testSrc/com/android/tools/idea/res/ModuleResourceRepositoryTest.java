@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.res;
 
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_ID;
 import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
 import static com.android.tools.idea.res.ResourcesTestsUtil.getSingleItem;
 import static com.android.tools.idea.testing.AndroidTestUtils.waitForUpdates;
@@ -23,11 +25,13 @@ import static com.google.common.truth.Truth.assertThat;
 import com.android.ide.common.rendering.api.ResourceValue;
 import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepositoryUtil;
+import com.android.ide.common.resources.SingleNamespaceResourceRepository;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
 import com.android.tools.lint.detector.api.Lint;
 import com.android.tools.res.LocalResourceRepository;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -36,6 +40,8 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.PsiManagerEx;
 import com.intellij.psi.impl.file.impl.FileManagerImpl;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.containers.ContainerUtil;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -476,6 +482,54 @@ public class ModuleResourceRepositoryTest extends AndroidTestCase {
     }
   }
 
+  public void testSnapshots() {
+    VirtualFile res1 = myFixture.copyFileToProject(LAYOUT, "res/layout/layout1.xml").getParent().getParent();
+    VirtualFile res2 = myFixture.copyFileToProject(VALUES_OVERLAY1, "res2/values/values.xml").getParent().getParent();
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res1, res2), RES_AUTO, null);
+
+    ListMultimap<String, ResourceItem> layouts = resources.getResources(RES_AUTO, ResourceType.LAYOUT);
+    ListMultimap<String, ResourceItem> strings = resources.getResources(RES_AUTO, ResourceType.STRING);
+    assertSame(layouts, resources.getResources(RES_AUTO, ResourceType.LAYOUT));
+    assertSame(strings, resources.getResources(RES_AUTO, ResourceType.STRING));
+
+    // Only the invalidated types are merged again.
+    SingleNamespaceResourceRepository child = (SingleNamespaceResourceRepository)resources.getLocalResources().get(1);
+    synchronized (LocalResourceRepository.ITEM_MAP_LOCK) {
+      resources.invalidateCache(child, ResourceType.STRING);
+    }
+    ListMultimap<String, ResourceItem> newStrings = resources.getResources(RES_AUTO, ResourceType.STRING);
+    assertNotSame(strings, newStrings);
+    assertEquals(strings, newStrings);
+    assertSame(layouts, resources.getResources(RES_AUTO, ResourceType.LAYOUT));
+    assertSame(newStrings, resources.getResources(RES_AUTO, ResourceType.STRING));
+  }
+
+  public void testIdEditVisibleThroughParent() {
+    VirtualFile layout = myFixture.copyFileToProject(LAYOUT, "res/layout/layout1.xml");
+    VirtualFile res1 = layout.getParent().getParent();
+    VirtualFile res2 = myFixture.copyFileToProject(VALUES_OVERLAY1, "res2/values/values.xml").getParent().getParent();
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res1, res2), RES_AUTO, null);
+    PsiFile psiFile = PsiManager.getInstance(getProject()).findFile(layout);
+    assertNotNull(psiFile);
+    XmlTag tag = ContainerUtil.find(PsiTreeUtil.findChildrenOfType(psiFile, XmlTag.class),
+                                    candidate -> "@+id/noteArea".equals(candidate.getAttributeValue(ATTR_ID, ANDROID_URI)));
+    assertNotNull(tag);
+
+    // Reading the ids through the parent keeps them in its snapshot.
+    assertTrue(resources.hasResources(RES_AUTO, ResourceType.ID, "noteArea"));
+    assertFalse(resources.hasResources(RES_AUTO, ResourceType.ID, "note2Area"));
+
+    // The first edit rescans the file, the next ones update the ids of the tag incrementally. Each must invalidate the parent.
+    for (String id : ImmutableList.of("note2Area", "note23Area")) {
+      WriteCommandAction.runWriteCommandAction(null, () -> tag.setAttribute(ATTR_ID, ANDROID_URI, "@+id/" + id));
+      waitForUpdates(resources);
+      assertTrue(id, resources.hasResources(RES_AUTO, ResourceType.ID, id));
+      assertFalse(resources.hasResources(RES_AUTO, ResourceType.ID, "noteArea"));
+      assertThat(resources.getResources(RES_AUTO, ResourceType.ID).keySet()).contains(id);
+    }
+    assertFalse(resources.hasResources(RES_AUTO, ResourceType.ID, "note2Area"));
+  }
+
   public void testAllowEmpty() {
     assertTrue(Lint.assertionsEnabled()); // This test should be run with assertions enabled!
     LocalResourceRepository repository = ModuleResourceRepository.createForTest(myFacet, Collections.emptyList(), RES_AUTO, null);
@@ -38,6 +38,7 @@ import static org.junit.Assert.fail;
 
 import com.android.ide.common.rendering.api.ArrayResourceValue;
 import com.android.ide.common.rendering.api.AttrResourceValue;
+import com.android.ide.common.rendering.api.AttributeFormat;
 import com.android.ide.common.rendering.api.DensityBasedResourceValue;
 import com.android.ide.common.rendering.api.PluralsResourceValue;
 import com.android.ide.common.rendering.api.ResourceNamespace;
@@ -55,6 +56,7 @@ import com.android.resources.ResourceType;
 import com.android.testutils.TestUtils;
 import com.android.tools.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.DrawableRenderer;
 import com.android.tools.idea.testing.AndroidProjectRule;
 import com.android.tools.res.LocalResourceRepository;
@@ -3959,6 +3961,48 @@ public class ResourceFolderRepositoryTest {
     assertContainSameData(myFacet, repository, fromCacheFile);
   }
 
+  @Test
+  public void parallelLoading() {
+    // Enough files for the initial scan to happen in parallel.
+    for (int i = 0; i < 50; i++) {
+      myFixture.copyFileToProject(LAYOUT1, "res/layout/layout" + i + ".xml");
+      myFixture.copyFileToProject(LAYOUT1, "res/layout-land/layout" + i + ".xml");
+      myFixture.copyFileToProject(STRINGS, "res/values-fr/strings" + i + ".xml");
+    }
+    myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
+    myFixture.copyFileToProject(DRAWABLE, "res/drawable-hdpi/logo.png");
+    // An attr defined in one values folder and declared with its format in a styleable of another.
+    myFixture.addFileToProject("res/values/attrs.xml",
+                               "<resources>\n" +
+                               "  <attr name=\"shadeColor\" format=\"color\"/>\n" +
+                               "</resources>\n");
+    myFixture.addFileToProject("res/values-night/styleables.xml",
+                               "<resources>\n" +
+                               "  <declare-styleable name=\"Shade\">\n" +
+                               "    <attr name=\"shadeColor\" format=\"color\"/>\n" +
+                               "  </declare-styleable>\n" +
+                               "</resources>\n");
+
+    ResourceFolderRepository repository = createRepository(false);
+    assertThat(repository.getNumXmlFilesLoadedInitially()).isEqualTo(153);
+    assertThat(repository.getNumXmlFilesLoadedInitiallyFromSources()).isEqualTo(153);
+    // The styleable's attr refers to the attr defined in values rather than defining another one.
+    assertThat(repository.getResources(RES_AUTO, ResourceType.ATTR, "shadeColor")).hasSize(1);
+    ResourceItem styleable = getOnlyItem(repository, ResourceType.STYLEABLE, "Shade");
+    AttrResourceValue attr = findAttr((StyleableResourceValue)styleable.getResourceValue(), "shadeColor", repository);
+    assertThat(attr).isNotNull();
+    assertThat(attr.getFormats()).containsExactly(AttributeFormat.COLOR);
+
+    StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.override(false);
+    try {
+      ResourceFolderRepository loadedSequentially = createRepository(false);
+      assertContainSameData(myFacet, loadedSequentially, repository);
+    }
+    finally {
+      StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.clearOverride();
+    }
+  }
+
   @Test
   public void invalidateCache() {
     myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
@@ -118,6 +118,8 @@ public class DynamicValueResourceRepository extends LocalResourceRepository impl
   private void notifyProjectSynced() {
     synchronized (ITEM_MAP_LOCK) {
       myResourceTable.clear(); // Computed lazily in getMap.
+      // There is no change log, so the parents report any resource as possibly changed.
+      setModificationCount(ourModificationCounter.incrementAndGet());
       invalidateParentCaches(this, ResourceType.values());
     }
   }
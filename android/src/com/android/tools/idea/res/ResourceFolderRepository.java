@@ -36,8 +36,10 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.android.SdkConstants;
 import com.android.annotations.concurrency.GuardedBy;
+import com.android.ide.common.rendering.api.AttrResourceValue;
 import com.android.ide.common.rendering.api.DensityBasedResourceValue;
 import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.rendering.api.StyleableResourceValue;
 import com.android.ide.common.resources.FileResourceNameValidator;
 import com.android.ide.common.resources.ResourceFile;
 import com.android.ide.common.resources.ResourceItem;
@@ -65,13 +67,17 @@ import com.android.resources.base.ResourceSerializationUtil;
 import com.android.resources.base.ResourceSourceFile;
 import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.util.FileExtensions;
 import com.android.tools.module.ModuleKeyManager;
 import com.android.tools.res.LocalResourceRepository;
+import com.android.tools.res.ResourceChangeLog;
+import com.android.tools.res.ResourceChanges;
 import com.android.tools.sdk.AndroidTargetData;
 import com.android.utils.Base128InputStream;
 import com.android.utils.SdkUtils;
 import com.android.utils.TraceUtils;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -133,6 +139,7 @@ import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -140,8 +147,10 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -192,6 +201,17 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   private static final Comparator<ResourceItemSource<?>> SOURCE_COMPARATOR =
       Comparator.comparing(ResourceItemSource::getFolderConfiguration);
   private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
+  /**
+   * Minimum number of files to parse for the initial scan to happen in parallel.
+   */
+  private static final int PARALLEL_LOADING_MIN_FILES = 100;
+  private static final int PARALLEL_LOADING_MIN_FILES_PER_THREAD = 50;
+  private static final int PARALLEL_LOADING_THREADS = Math.max(Math.min(Runtime.getRuntime().availableProcessors() - 1, 8), 2);
+  /**
+   * Shared by all repositories, so that the initial scans of many resource folders don't use more than {@link #PARALLEL_LOADING_THREADS}.
+   */
+  private static final ExecutorService PARALLEL_LOADING_EXECUTOR =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("ResourceFolderRepository Loader", PARALLEL_LOADING_THREADS);
 
   @NotNull private final AndroidFacet myFacet;
   @NotNull private final PsiTreeChangeListener myPsiListener;
@@ -236,6 +256,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   private int fileRescans;
   private int layoutlibCacheFlushes;
 
+  /** The changes of the repository, which tell the resource resolver caches which configured resources to update. */
+  private final @NotNull ResourceChangeLog myChangeLog = new ResourceChangeLog();
+
   @GuardedBy("ITEM_MAP_LOCK")
   @Nullable
   private Map<ResourceType, ImmutableSet<FolderConfiguration>> myResourceTypeToFolderConfigs = null;
@@ -395,12 +418,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   }
 
   /**
-   * Inserts the given resources into this repository, while holding the global repository lock.
+   * Inserts the given resources into this repository, while holding the global repository lock, and invalidates the parent caches of
+   * their types, which may have been read since the resources were removed.
    */
   private void commitToRepository(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> itemsByType) {
     if (!itemsByType.isEmpty()) {
       synchronized (ITEM_MAP_LOCK) {
         commitToRepositoryWithoutLock(itemsByType);
+        invalidateParentCaches(this, itemsByType.keySet().toArray(new ResourceType[0]));
       }
     }
   }
@@ -962,7 +987,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
           }
 
           // Identities may have changed even if the ids are the same, so update maps.
-          setModificationCount(ourModificationCounter.incrementAndGet());
+          setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID, null);
           invalidateParentCaches(this, ResourceType.ID);
         }
       } else {
@@ -994,6 +1019,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
               scanFileResourceFileAsPsi(file, folderType, folderConfiguration, type, idGeneratingFile, result);
             }
           }
+        }
+        // The old items were removed even if the file is no longer valid.
+        if (file != null || source != null) {
           setModificationCount(ourModificationCounter.incrementAndGet());
           invalidateParentCaches(this, ResourceType.values());
         }
@@ -1139,11 +1167,40 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     return myPsiListener;
   }
 
+  @Override
   protected void setModificationCount(long count) {
+    // Also called by the superclass constructor, before the change log is created.
+    //noinspection ConstantValue
+    if (myChangeLog != null) {
+      myChangeLog.recordUnknownChange(count);
+    }
     ResourceUpdateTracer.log(() -> getSimpleId(this) + ".setModificationCount " + count);
     super.setModificationCount(count);
   }
 
+  /**
+   * Sets the modification count after a change of only the given resource item.
+   */
+  private void setModificationCount(long count, @NotNull ResourceItem changedItem) {
+    setModificationCount(count, changedItem.getType(), changedItem.getName());
+  }
+
+  /**
+   * Sets the modification count after a change of only the resource with the given type and name, or of any resource of the type if the
+   * name is null.
+   */
+  private void setModificationCount(long count, @NotNull ResourceType type, @Nullable String name) {
+    myChangeLog.recordChange(count, myNamespace, type, name);
+    ResourceUpdateTracer.log(() -> getSimpleId(this) + ".setModificationCount " + count + " " + type + "/" + name);
+    super.setModificationCount(count);
+  }
+
+  @Override
+  @Nullable
+  public ResourceChanges getChangesSince(long modificationCount) {
+    return myChangeLog.getChangesSince(modificationCount);
+  }
+
   /**
    * PSI listener which keeps the repository up to date. It handles simple edits synchronously and schedules rescans for other events.
    *
@@ -1201,7 +1258,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           synchronized (ITEM_MAP_LOCK) {
                             getOrCreateMap(type).put(name, item);
                             psiResourceFile.addItem(item);
-                            setModificationCount(ourModificationCounter.incrementAndGet());
+                            setModificationCount(ourModificationCounter.incrementAndGet(), item);
                             invalidateParentCaches(ResourceFolderRepository.this, type);
                           }
 
@@ -1218,7 +1275,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     ResourceItem parentItem = findValueResourceItem(parentTag, psiFile);
                     if (parentItem instanceof PsiResourceItem) {
                       if (((PsiResourceItem)parentItem).recomputeValue()) {
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCount(ourModificationCounter.incrementAndGet(), parentItem);
                       }
                       ResourceUpdateTracer.log(() -> getSimpleId(this) + ".childAdded " + pathForLogging(event.getFile()) +
                                                      " recomputed: " + parentItem);
@@ -1275,7 +1332,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         psiResourceFile.addItem(item);
                       }
                       commitToRepository(result);
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID, null);
                       invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                     }
                   });
@@ -1308,7 +1365,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           psiResourceFile.addItem(newIdResource);
                           ResourceUpdateTracer.log(() -> getSimpleId(this) + ": Adding id/" + newIdResource.getName());
                           getOrCreateMap(ResourceType.ID).put(newIdResource.getName(), newIdResource);
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID, null);
                           invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                         }
                       }
@@ -1366,7 +1423,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                     if (resourceItem instanceof PsiResourceItem) {
                       if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCount(ourModificationCounter.incrementAndGet(), resourceItem);
                       }
                       ResourceUpdateTracer.log(() -> getSimpleId(this) + ".childRemoved " + pathForLogging(event.getFile()) +
                                                      " recomputed: " + resourceItem);
@@ -1377,7 +1434,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           ResourceItem declareStyleable = findValueResourceItem(parentTag, psiFile);
                           if (declareStyleable instanceof PsiResourceItem) {
                             if (((PsiResourceItem)declareStyleable).recomputeValue()) {
-                              setModificationCount(ourModificationCounter.incrementAndGet());
+                              setModificationCount(ourModificationCounter.incrementAndGet(), declareStyleable);
                             }
                           }
                         }
@@ -1419,7 +1476,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         synchronized (ITEM_MAP_LOCK) {
                           boolean removed = removeItemsForTag(resourceFile, tag, type);
                           if (removed) {
-                            setModificationCount(ourModificationCounter.incrementAndGet());
+                            setModificationCount(ourModificationCounter.incrementAndGet(), type, name);
                             invalidateParentCaches(ResourceFolderRepository.this, type);
                           }
                         }
@@ -1543,7 +1600,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                             psiResourceFile.addItem(item);
                           }
                           commitToRepositoryWithoutLock(result);
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID, null);
+                          invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                         }
                       });
 
@@ -1596,7 +1654,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         for (PsiResourceItem item : items) {
                           psiResourceFile.addItem(item);
                         }
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCount(ourModificationCounter.incrementAndGet(), ResourceType.ID, null);
                         invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                       }
                     });
@@ -1646,7 +1704,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                     if (resourceItem instanceof PsiResourceItem) {
                       if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCount(ourModificationCounter.incrementAndGet(), resourceItem);
                       }
                       ResourceUpdateTracer.log(() -> getSimpleId(this) + ".childReplaced " + pathForLogging(event.getFile()) +
                                                      " recomputed: " + resourceItem);
@@ -1738,7 +1796,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                               assert false : item;
                             }
                           }
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCount(ourModificationCounter.incrementAndGet(), type, null);
                           invalidateParentCaches(ResourceFolderRepository.this, type);
                         }
 
@@ -1769,7 +1827,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                         if (resourceItem instanceof PsiResourceItem) {
                           if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                            setModificationCount(ourModificationCounter.incrementAndGet());
+                            setModificationCount(ourModificationCounter.incrementAndGet(), resourceItem);
                           }
                           ResourceUpdateTracer.log(() -> getSimpleId(this) + ".childReplaced " + pathForLogging(event.getFile()) +
                                                          " recomputed: " + resourceItem);
@@ -1886,7 +1944,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             if (item instanceof PsiResourceItem) {
               boolean cleared = ((PsiResourceItem)item).recomputeValue();
               if (cleared) { // Only bump revision if this is a value which has already been observed!
-                setModificationCount(ourModificationCounter.incrementAndGet());
+                setModificationCount(ourModificationCounter.incrementAndGet(), item);
               }
               ResourceUpdateTracer.log(() -> getSimpleId(this) + ".handleValueXmlTextEdit " + pathForLogging(virtualFile) +
                                              " recomputed: " + item);
@@ -1915,7 +1973,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             // Edited XML value.
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              setModificationCount(ourModificationCounter.incrementAndGet(), item);
             }
             ResourceUpdateTracer.log(() -> getSimpleId(this) + ".handleValueXmlTextEdit " + pathForLogging(virtualFile) +
                                            " recomputed: " + item);
@@ -2284,6 +2342,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
     @NotNull Set<VirtualFile> myFilesToReparseAsPsi = new HashSet<>();
     private final FileDocumentManager myFileDocumentManager;
+    // Number of XML files parsed by this loader.
+    private int myParsedFileCount;
 
     Loader(@NotNull ResourceFolderRepository repository, @Nullable ResourceFolderRepositoryCachingData cachingData) {
       super(VfsUtilCore.virtualToIoFile(repository.myResourceDir).toPath(), null, repository.getNamespace());
@@ -2369,12 +2429,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
     private void scanResFolder() {
       try {
+        List<FilesToLoad> filesToLoad = new ArrayList<>();
         for (VirtualFile subDir : myResourceDir.getChildren()) {
           if (subDir.isValid() && subDir.isDirectory()) {
             String folderName = subDir.getName();
             FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
             if (folderInfo != null) {
               RepositoryConfiguration configuration = getConfiguration(myRepository, folderInfo.configuration);
+              FilesToLoad folderFiles = new FilesToLoad(folderInfo, configuration);
               for (VirtualFile file : subDir.getChildren()) {
                 if (file.getName().startsWith(".")) {
                   continue; // Skip file with the name starting with a dot.
@@ -2393,24 +2455,15 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                   continue;
                 }
 
-                PathString pathString = FileExtensions.toPathString(file);
-                myLastVirtualFile = file;
-                myLastPathString = pathString;
-                try {
-                  loadResourceFile(pathString, folderInfo, configuration);
-                  if (isParsableFile(file, folderInfo)) {
-                    countCacheMiss();
-                  }
-                }
-                catch (ParsingException e) {
-                  // Reparse the file as PSI. The PSI parser is more forgiving than KXmlParser because
-                  // it is designed to work with potentially malformed files in the middle of editing.
-                  myFilesToReparseAsPsi.add(file);
-                }
+                folderFiles.files.add(file);
+              }
+              if (!folderFiles.files.isEmpty()) {
+                filesToLoad.add(folderFiles);
               }
             }
           }
         }
+        loadFiles(filesToLoad);
       }
       catch (ProcessCanceledException e) {
         throw e;
@@ -2441,6 +2494,178 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       }
     }
 
+    /**
+     * Loads the given files, in parallel when there are enough of them. Each thread loads its share of the files with its own loader,
+     * since loaders aren't thread safe, and the results are merged into this loader at the end.
+     */
+    private void loadFiles(@NotNull List<FilesToLoad> filesToLoad) {
+      int fileCount = countFiles(filesToLoad);
+      if (!StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.get() || fileCount < PARALLEL_LOADING_MIN_FILES) {
+        for (FilesToLoad folderFiles : filesToLoad) {
+          loadFolderFiles(folderFiles);
+        }
+        countCacheMisses(myParsedFileCount);
+        return;
+      }
+
+      List<List<FilesToLoad>> shards = shard(filesToLoad, fileCount);
+      List<Future<Loader>> futures = new ArrayList<>(shards.size());
+      for (List<FilesToLoad> shard : shards) {
+        futures.add(PARALLEL_LOADING_EXECUTOR.submit(() -> {
+          Loader loader = new Loader(myRepository, null);
+          for (FilesToLoad folderFiles : shard) {
+            loader.loadFolderFiles(folderFiles);
+          }
+          loader.finishLoading(myRepository);
+          return loader;
+        }));
+      }
+      int parsedFileCount = 0;
+      List<Loader> loaders = new ArrayList<>(futures.size());
+      try {
+        for (Future<Loader> future : futures) {
+          Loader loader = future.get();
+          mySources.putAll(loader.mySources);
+          myFileResources.putAll(loader.myFileResources);
+          myFilesToReparseAsPsi.addAll(loader.myFilesToReparseAsPsi);
+          parsedFileCount += loader.myParsedFileCount;
+          loaders.add(loader);
+        }
+      }
+      catch (InterruptedException e) {
+        futures.forEach(future -> future.cancel(true));
+        Thread.currentThread().interrupt();
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        futures.forEach(future -> future.cancel(true));
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new RuntimeException(e.getCause());
+      }
+      resolveStyleableAttrsAcrossShards(loaders);
+      countCacheMisses(parsedFileCount);
+    }
+
+    /**
+     * A shard loader turns an attr declared with a format inside a styleable into an attr definition when it didn't load an attr with
+     * the same name itself, e.g. for a styleable in values-night whose attr is defined in values loaded by another shard. Resolves these
+     * attrs once over the files of all shards, keeping the definitions that aren't declarations inside a styleable, or the ones of the
+     * first shard if all of them are.
+     */
+    private void resolveStyleableAttrsAcrossShards(@NotNull List<Loader> loaders) {
+      Map<String, List<BasicResourceItem>> attrsByName = new HashMap<>();
+      Map<BasicResourceItem, Loader> attrLoaders = new IdentityHashMap<>();
+      for (Loader loader : loaders) {
+        for (ResourceItemSource<BasicResourceItem> source : loader.mySources.values()) {
+          for (BasicResourceItem item : source) {
+            if (item.getType() == ResourceType.ATTR) {
+              attrsByName.computeIfAbsent(item.getName(), name -> new ArrayList<>()).add(item);
+              attrLoaders.put(item, loader);
+            }
+          }
+        }
+      }
+
+      for (List<BasicResourceItem> attrs : attrsByName.values()) {
+        if (attrs.stream().map(attrLoaders::get).distinct().count() < 2) {
+          continue;
+        }
+        List<BasicResourceItem> declaredInStyleables = new ArrayList<>();
+        for (BasicResourceItem attr : attrs) {
+          if (isDeclaredInStyleable(attr)) {
+            declaredInStyleables.add(attr);
+          }
+        }
+        if (declaredInStyleables.size() == attrs.size()) {
+          // Keep the attrs of a single shard, like a single loader keeps the first of the attrs declared in styleables.
+          Loader kept = attrLoaders.get(attrs.get(0));
+          declaredInStyleables.removeIf(attr -> attrLoaders.get(attr) == kept);
+        }
+        for (BasicResourceItem attr : declaredInStyleables) {
+          ((VfsResourceFile)((BasicValueResourceItemBase)attr).getSourceFile()).removeItem(attr);
+        }
+      }
+    }
+
+    /**
+     * Checks if the source file of the given attr has a styleable declaring an attr with the same name and a format.
+     */
+    private static boolean isDeclaredInStyleable(@NotNull BasicResourceItem attr) {
+      for (BasicResourceItem item : (VfsResourceFile)((BasicValueResourceItemBase)attr).getSourceFile()) {
+        if (item.getType() == ResourceType.STYLEABLE) {
+          for (AttrResourceValue styleableAttr : ((StyleableResourceValue)item.getResourceValue()).getAllAttributes()) {
+            if (styleableAttr.getName().equals(attr.getName()) && !styleableAttr.getFormats().isEmpty()) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Splits the files to load into shards of similar size, one per thread. Folders with more files than a shard should get are split
+     * into several units, and the largest units are assigned first.
+     */
+    private static @NotNull List<List<FilesToLoad>> shard(@NotNull List<FilesToLoad> filesToLoad, int fileCount) {
+      int shardCount = Math.min(PARALLEL_LOADING_THREADS, fileCount / PARALLEL_LOADING_MIN_FILES_PER_THREAD);
+      int maxUnitSize = Math.max(fileCount / shardCount, 1);
+      List<List<FilesToLoad>> units = new ArrayList<>();
+      for (FilesToLoad folderFiles : filesToLoad) {
+        if (folderFiles.files.size() <= maxUnitSize) {
+          units.add(Collections.singletonList(folderFiles));
+          continue;
+        }
+        for (int i = 0; i < folderFiles.files.size(); i += maxUnitSize) {
+          FilesToLoad unit = new FilesToLoad(folderFiles.folderInfo, folderFiles.configuration);
+          unit.files.addAll(folderFiles.files.subList(i, Math.min(i + maxUnitSize, folderFiles.files.size())));
+          units.add(Collections.singletonList(unit));
+        }
+      }
+
+      // Assign the largest units first, each to the shard with the fewest files so far.
+      units.sort(Comparator.comparingInt((List<FilesToLoad> unit) -> countFiles(unit)).reversed());
+      List<List<FilesToLoad>> shards = new ArrayList<>(shardCount);
+      int[] shardSizes = new int[shardCount];
+      for (int i = 0; i < shardCount; i++) {
+        shards.add(new ArrayList<>());
+      }
+      for (List<FilesToLoad> unit : units) {
+        int smallest = 0;
+        for (int i = 1; i < shardCount; i++) {
+          if (shardSizes[i] < shardSizes[smallest]) {
+            smallest = i;
+          }
+        }
+        shards.get(smallest).addAll(unit);
+        shardSizes[smallest] += countFiles(unit);
+      }
+      return shards;
+    }
+
+    private static int countFiles(@NotNull List<FilesToLoad> filesToLoad) {
+      return filesToLoad.stream().mapToInt(folderFiles -> folderFiles.files.size()).sum();
+    }
+
+    private void loadFolderFiles(@NotNull FilesToLoad folderFiles) {
+      for (VirtualFile file : folderFiles.files) {
+        PathString pathString = FileExtensions.toPathString(file);
+        myLastVirtualFile = file;
+        myLastPathString = pathString;
+        try {
+          loadResourceFile(pathString, folderFiles.folderInfo, folderFiles.configuration);
+          if (isParsableFile(file, folderFiles.folderInfo)) {
+            myParsedFileCount++;
+          }
+        }
+        catch (ParsingException e) {
+          // Reparse the file as PSI. The PSI parser is more forgiving than KXmlParser because
+          // it is designed to work with potentially malformed files in the middle of editing.
+          myFilesToReparseAsPsi.add(file);
+        }
+      }
+    }
+
     private void loadResourceFile(
         @NotNull PathString file, @NotNull FolderInfo folderInfo, @NotNull RepositoryConfiguration configuration) {
       if (folderInfo.resourceType == null) {
@@ -2589,9 +2814,23 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       ++myRepository.myNumXmlFilesLoadedInitially;
     }
 
-    private void countCacheMiss() {
-      ++myRepository.myNumXmlFilesLoadedInitially;
-      ++myRepository.myNumXmlFilesLoadedInitiallyFromSources;
+    private void countCacheMisses(int count) {
+      myRepository.myNumXmlFilesLoadedInitially += count;
+      myRepository.myNumXmlFilesLoadedInitiallyFromSources += count;
+    }
+
+    /**
+     * Files of a resource folder that weren't loaded from the persistent cache.
+     */
+    private static class FilesToLoad {
+      @NotNull final FolderInfo folderInfo;
+      @NotNull final RepositoryConfiguration configuration;
+      @NotNull final List<VirtualFile> files = new ArrayList<>();
+
+      FilesToLoad(@NotNull FolderInfo folderInfo, @NotNull RepositoryConfiguration configuration) {
+        this.folderInfo = folderInfo;
+        this.configuration = configuration;
+      }
     }
   }
 
@@ -108,6 +108,10 @@ internal class VfsResourceFile(
     items.add(item)
   }
 
+  fun removeItem(item: BasicResourceItem) {
+    items.removeIf { it === item }
+  }
+
   override val relativePath: String?
     get() = virtualFile?.let { VfsUtilCore.getRelativePath(it, repository.resourceDir) }
 
@@ -17,10 +17,14 @@ package org.jetbrains.android.uipreview
 
 import com.android.annotations.concurrency.AnyThread
 import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.flags.StudioFlags
 import com.google.common.base.Ticker
 import com.google.common.cache.CacheBuilder
+import com.intellij.openapi.application.PathManager
 import com.intellij.openapi.module.Module
+import com.intellij.util.concurrency.AppExecutorUtil
 import org.jetbrains.annotations.TestOnly
+import java.nio.file.Paths
 import java.time.Duration
 import java.util.WeakHashMap
 import java.util.concurrent.locks.ReentrantLock
@@ -30,8 +34,14 @@ private const val MAX_WEIGHT_BYTES = 100_000_000L // We will store no more than
 private const val EXPIRE_MINUTES = 30L // We will store cached classes for no longer than 30 minutes
 /**
  * A class binary representation cache.
+ *
+ * Classes missing from memory are looked up in the [persistentStore], when there is one, which keeps the classes put in the cache across
+ * restarts.
  */
-class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
+class ClassBinaryCacheManager private constructor(ticker: Ticker,
+                                                  maxWeight: Long,
+                                                  expireMinutes: Long,
+                                                  private val persistentStore: PersistentClassBinaryStore?) {
   @GuardedBy("this")
   private val moduleCaches = WeakHashMap<Module, ModuleClassCache>()
   private var lock = ReentrantLock()
@@ -78,6 +88,12 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
   private inner class ModuleClassCache : ClassBinaryCache {
     @GuardedBy("this")
     private var libraryPaths = setOf<String>()
+    /**
+     * The classes of [libraryPaths] in the [persistentStore], with their library path, per transformation id. They are looked up on the
+     * first miss of each transformation after the dependencies are set.
+     */
+    @GuardedBy("this")
+    private val persistedLibraries = mutableMapOf<String, List<Pair<String, PersistentClassBinaryStore.Library>>>()
 
     /**
      * Synchronously checks if there a library with [path] among the current module dependencies.
@@ -94,16 +110,40 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
         libraryPath?.let {
           lock.withLock { libraryPath2ClassFqns.remove(libraryPath) }?.forEach { globalCache.invalidate(it) }
         }
-        return null
+        return getPersisted(fqcn, transformationId)
       }
 
-      return globalCache.getIfPresent(key)
+      return globalCache.getIfPresent(key) ?: getPersisted(fqcn, transformationId)
     }
 
     private fun getCachingKey(fqcn: String, transformationId: String) = "$transformationId:$fqcn"
 
+    /**
+     * Returns the class from the first of the current dependencies that has it in the [persistentStore], and keeps it in memory.
+     */
+    private fun getPersisted(fqcn: String, transformationId: String): ByteArray? {
+      val store = persistentStore ?: return null
+      for ((libraryPath, library) in getPersistedLibraries(store, transformationId)) {
+        val data = library.get(fqcn) ?: continue
+        putInMemory(fqcn, transformationId, libraryPath, data)
+        return data
+      }
+      return null
+    }
+
+    @Synchronized
+    private fun getPersistedLibraries(store: PersistentClassBinaryStore, transformationId: String) =
+      persistedLibraries.getOrPut(transformationId) {
+        libraryPaths.mapNotNull { path -> store.getLibrary(path, transformationId)?.let { path to it } }
+      }
+
     // @LayoutlibRenderThread
     override fun put(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
+      putInMemory(fqcn, transformationId, libraryPath, data)
+      persistentStore?.getLibrary(libraryPath, transformationId)?.put(fqcn, data)
+    }
+
+    private fun putInMemory(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
       val key = getCachingKey(fqcn, transformationId)
       lock.withLock {
         classFqn2LibraryPath[key] = libraryPath
@@ -116,16 +156,26 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
     @Synchronized
     override fun setDependencies(paths: Collection<String>) {
       libraryPaths = paths.toSet()
+      persistedLibraries.clear()
     }
   }
 
   companion object {
-    private val globalManager = ClassBinaryCacheManager(Ticker.systemTicker(), MAX_WEIGHT_BYTES, EXPIRE_MINUTES)
+    private val globalManager = ClassBinaryCacheManager(
+      Ticker.systemTicker(),
+      MAX_WEIGHT_BYTES,
+      EXPIRE_MINUTES,
+      if (StudioFlags.COMPOSE_PERSISTENT_CLASS_CACHE.get())
+        PersistentClassBinaryStore(Paths.get(PathManager.getSystemPath(), "preview-classes"),
+                                   AppExecutorUtil.createBoundedApplicationPoolExecutor("Preview Class Cache Writer", 1))
+      else
+        null)
 
     @JvmStatic
     fun getInstance() = globalManager
 
     @TestOnly
-    fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long) = ClassBinaryCacheManager(ticker, maxWeight, expireMinutes)
+    fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long, persistentStore: PersistentClassBinaryStore? = null) =
+      ClassBinaryCacheManager(ticker, maxWeight, expireMinutes, persistentStore)
   }
 }
\ No newline at end of file
@@ -276,6 +276,10 @@ internal class ModuleClassLoaderImpl(module: Module,
   }
 
   init {
+    // Setting the dependencies is what lets the binary cache return classes, so it is only done with the persistent class cache.
+    if (StudioFlags.COMPOSE_PERSISTENT_CLASS_CACHE.get()) {
+      binaryCache.setDependencies(externalLibraries.map { FileUtil.toSystemIndependentName(it.toString()) })
+    }
     val nonProjectLoader = createNonProjectLoader(nonProjectTransforms,
                                                   binaryCache,
                                                   { _nonProjectLoadedClassNames.add(it) },
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import com.android.annotations.concurrency.AnyThread
+import com.android.annotations.concurrency.GuardedBy
+import com.intellij.openapi.diagnostic.Logger
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.zip.CRC32
+
+private const val MAGIC = 0x41434243 // "ACBC", Android Class Binary Cache
+private const val FORMAT_VERSION = 1
+private const val HEADER_SIZE = 8
+private const val FILE_EXTENSION = ".classes"
+private const val ZIP_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50
+private const val ZIP_END_OF_CENTRAL_DIRECTORY_SIZE = 22
+private const val ZIP_MAX_COMMENT_SIZE = 0xffff
+
+/**
+ * A store of transformed library classes that survives restarts, backing [ClassBinaryCacheManager].
+ *
+ * Classes are content-addressed by the hash of the library jar they come from, the transformation applied to them and their FQCN, so
+ * the same jar in another project, or at another path, reuses them, and an updated jar never returns stale classes. The classes of a
+ * (jar, transformation) pair are appended to their own file, which is memory-mapped the first time a class of that jar is looked up.
+ * Classes written during a session are only read back in later sessions, while [ClassBinaryCacheManager] keeps them in memory.
+ *
+ * Writes happen on [writeExecutor]. When the store goes over [maxSizeBytes], the least recently used files are deleted when the store
+ * is first used.
+ */
+class PersistentClassBinaryStore(private val directory: Path,
+                                 private val writeExecutor: Executor,
+                                 private val maxSizeBytes: Long = DEFAULT_MAX_SIZE_BYTES) {
+  private val jarHashes = ConcurrentHashMap<String, JarHash>()
+  private val files = ConcurrentHashMap<String, Library>()
+
+  @Volatile
+  private var isInitialized = false
+
+  /**
+   * Returns the classes stored for the library at [libraryPath] with the given transformation, or null if the library can't be stored.
+   *
+   * This reads the library's size and modification time, so callers looking up many classes should keep the returned [Library].
+   */
+  @AnyThread
+  fun getLibrary(libraryPath: String, transformationId: String): Library? {
+    initialize()
+    val jarHash = getJarHash(libraryPath) ?: return null
+    val fileName = "$jarHash-${sha256(transformationId.toByteArray()).take(16)}$FILE_EXTENSION"
+    return files.computeIfAbsent(fileName) { Library(directory.resolve(it)) }
+  }
+
+  /**
+   * Deletes the least recently used files while the store is over [maxSizeBytes]. This happens before any file is mapped, as mapped files
+   * can't be deleted on Windows.
+   */
+  private fun initialize() {
+    if (isInitialized) {
+      return
+    }
+    synchronized(this) {
+      if (isInitialized) {
+        return
+      }
+      isInitialized = true
+      try {
+        Files.createDirectories(directory)
+        val storedFiles = directory.toFile().listFiles { file -> file.name.endsWith(FILE_EXTENSION) }?.toList() ?: return
+        var totalSize = storedFiles.sumOf { it.length() }
+        for (file in storedFiles.sortedBy { it.lastModified() }) {
+          if (totalSize <= maxSizeBytes) {
+            break
+          }
+          totalSize -= file.length()
+          file.delete()
+        }
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to initialize the class cache in $directory", e)
+      }
+    }
+  }
+
+  /**
+   * Returns the hash of the jar at [libraryPath], or null if it can't be read.
+   *
+   * The hash is the one of the jar's central directory, which holds the name, size and CRC of each of its entries, and so changes with any
+   * of its classes without having to read them. Hashes are kept for as long as the jar's size and modification time don't change.
+   */
+  private fun getJarHash(libraryPath: String): String? {
+    val file = File(libraryPath)
+    val length = file.length()
+    val lastModified = file.lastModified()
+    jarHashes[libraryPath]?.let { if (it.length == length && it.lastModified == lastModified) return it.hash }
+    val hash = try {
+      readCentralDirectory(file)?.let { sha256(it) } ?: return null
+    }
+    catch (e: IOException) {
+      LOG.debug("Unable to hash $libraryPath", e)
+      return null
+    }
+    jarHashes[libraryPath] = JarHash(length, lastModified, hash)
+    return hash
+  }
+
+  private class JarHash(val length: Long, val lastModified: Long, val hash: String)
+
+  /**
+   * The classes stored for one (jar, transformation) pair.
+   *
+   * The file starts with a header of [MAGIC] and [FORMAT_VERSION], followed by one record per class: the FQCN as written by
+   * [DataOutputStream.writeUTF], then the size of the class, the CRC32 of its bytes and its bytes. Each record is written with a single
+   * write, but one that didn't complete can still leave a truncated last record. It is cut off when the file is loaded, so that the next
+   * records are appended after the last complete one. The bytes of a class are checked against their CRC32 when it is read.
+   */
+  inner class Library internal constructor(private val path: Path) {
+    @GuardedBy("this")
+    private var isLoaded = false
+    /**
+     * False when the end of the file couldn't be checked, as records appended after a truncated one would be lost.
+     */
+    @GuardedBy("this")
+    private var isWritable = true
+    @GuardedBy("this")
+    private var buffer: MappedByteBuffer? = null
+    /**
+     * The position and size in [buffer] of the bytes of each stored class, which are preceded by their CRC32.
+     */
+    @GuardedBy("this")
+    private val entries = HashMap<String, Long>()
+    /**
+     * The classes stored or being written, which must not be written again.
+     */
+    @GuardedBy("this")
+    private val storedNames = HashSet<String>()
+
+    /**
+     * Returns the bytes of the class, or null if they weren't stored by a previous session.
+     */
+    @Synchronized
+    fun get(fqcn: String): ByteArray? {
+      load()
+      val entry = entries[fqcn] ?: return null
+      val position = (entry ushr 32).toInt()
+      val bytes = ByteArray(entry.toInt())
+      val buffer = buffer!!
+      buffer.get(position, bytes)
+      if (crc32(bytes) != buffer.getInt(position - 4)) {
+        LOG.warn("Ignoring the corrupted class $fqcn in the class cache $path")
+        // Written again by the next put.
+        entries.remove(fqcn)
+        storedNames.remove(fqcn)
+        return null
+      }
+      return bytes
+    }
+
+    /**
+     * Stores the bytes of the class, unless they already are. The bytes are written asynchronously.
+     */
+    fun put(fqcn: String, data: ByteArray) {
+      synchronized(this) {
+        load()
+        if (!isWritable || !storedNames.add(fqcn)) {
+          return
+        }
+      }
+      try {
+        writeExecutor.execute { append(fqcn, data) }
+      }
+      catch (e: RejectedExecutionException) {
+        LOG.debug(e)
+      }
+    }
+
+    // Only called from the write executor.
+    private fun append(fqcn: String, data: ByteArray) {
+      try {
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND).use { channel ->
+          val startSize = channel.size()
+          val record = ByteArrayOutputStream(HEADER_SIZE + fqcn.length + data.size + 10)
+          DataOutputStream(record).use { output ->
+            if (startSize == 0L) {
+              output.writeInt(MAGIC)
+              output.writeInt(FORMAT_VERSION)
+            }
+            output.writeUTF(fqcn)
+            output.writeInt(data.size)
+            output.writeInt(crc32(data))
+            output.write(data)
+          }
+          val bytes = ByteBuffer.wrap(record.toByteArray())
+          try {
+            while (bytes.hasRemaining()) {
+              channel.write(bytes)
+            }
+          }
+          catch (e: IOException) {
+            // Don't leave a truncated record for the next ones to be appended after.
+            channel.truncate(startSize)
+            throw e
+          }
+        }
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to write $fqcn to the class cache", e)
+      }
+    }
+
+    private fun load() {
+      if (isLoaded) {
+        return
+      }
+      isLoaded = true
+      if (!Files.exists(path)) {
+        return
+      }
+      try {
+        // The file is read and cut off before being mapped, as mapped files can't be truncated or deleted on Windows.
+        val isOtherFormat = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE).use { channel ->
+          val validSize = readEntries(channel)
+          if (validSize < 0) {
+            return@use true
+          }
+          if (validSize < channel.size()) {
+            LOG.info("Removing the truncated last record of the class cache $path")
+            channel.truncate(validSize.toLong())
+          }
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, validSize.toLong())
+          false
+        }
+        if (isOtherFormat) {
+          LOG.info("Deleting the class cache $path written in another format")
+          Files.delete(path)
+          return
+        }
+        storedNames.addAll(entries.keys)
+        // Files are deleted in least recently used order.
+        path.toFile().setLastModified(System.currentTimeMillis())
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to read the class cache $path", e)
+        entries.clear()
+        buffer = null
+        isWritable = false
+      }
+    }
+
+    /**
+     * Reads the names, positions and sizes of the classes in the file into [entries], without reading their bytes.
+     *
+     * @return the size of the file up to the end of its last complete record, or -1 if the file was written in another format.
+     */
+    private fun readEntries(channel: FileChannel): Int {
+      // Positions are kept as ints, so anything past that is ignored, like a truncated record.
+      val size = minOf(channel.size(), Int.MAX_VALUE.toLong()).toInt()
+      val header = readFully(channel, 0, HEADER_SIZE)
+      if (size < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+        return -1
+      }
+      var position = HEADER_SIZE
+      while (position + 2 <= size) {
+        val nameSize = readFully(channel, position, 2).getShort(0).toInt() and 0xffff
+        val dataPosition = position + 2 + nameSize + 8
+        if (dataPosition > size) {
+          break
+        }
+        val record = readFully(channel, position, 2 + nameSize + 8)
+        val dataSize = record.getInt(2 + nameSize)
+        if (dataSize < 0 || dataPosition.toLong() + dataSize > size) {
+          break
+        }
+        entries[readModifiedUtf8(record, 2, nameSize)] = (dataPosition.toLong() shl 32) or dataSize.toLong()
+        position = dataPosition + dataSize
+      }
+      return position
+    }
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(PersistentClassBinaryStore::class.java)
+
+    private const val DEFAULT_MAX_SIZE_BYTES = 500_000_000L
+
+    private fun sha256(bytes: ByteArray) =
+      MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { String.format("%02x", it) }
+
+    /**
+     * Returns the central directory of the zip file, or null if the file isn't a zip file or its central directory can't be found.
+     */
+    private fun readCentralDirectory(file: File): ByteArray? = RandomAccessFile(file, "r").use { input ->
+      val length = input.length()
+      val tailSize = minOf(length, (ZIP_END_OF_CENTRAL_DIRECTORY_SIZE + ZIP_MAX_COMMENT_SIZE).toLong()).toInt()
+      val tail = ByteArray(tailSize)
+      input.seek(length - tailSize)
+      input.readFully(tail)
+      val buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN)
+      for (position in tailSize - ZIP_END_OF_CENTRAL_DIRECTORY_SIZE downTo 0) {
+        if (buffer.getInt(position) != ZIP_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          continue
+        }
+        val size = buffer.getInt(position + 12).toLong() and 0xffffffffL
+        val offset = buffer.getInt(position + 16).toLong() and 0xffffffffL
+        // Zip64 archives keep the real values elsewhere, and aren't stored.
+        if (offset + size > length || size > Int.MAX_VALUE) {
+          return@use null
+        }
+        val centralDirectory = ByteArray(size.toInt())
+        input.seek(offset)
+        input.readFully(centralDirectory)
+        return@use centralDirectory
+      }
+      null
+    }
+
+    private fun crc32(bytes: ByteArray) = CRC32().apply { update(bytes) }.value.toInt()
+
+    private fun readFully(channel: FileChannel, position: Int, size: Int): ByteBuffer {
+      val buffer = ByteBuffer.allocate(size)
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position.toLong() + buffer.position()) < 0) {
+          break
+        }
+      }
+      return buffer
+    }
+
+    private fun readModifiedUtf8(buffer: ByteBuffer, position: Int, size: Int): String {
+      val bytes = ByteArray(size + 2)
+      bytes[0] = (size ushr 8).toByte()
+      bytes[1] = size.toByte()
+      buffer.get(position, bytes, 2, size)
+      return DataInputStream(bytes.inputStream()).readUTF()
+    }
+  }
+}
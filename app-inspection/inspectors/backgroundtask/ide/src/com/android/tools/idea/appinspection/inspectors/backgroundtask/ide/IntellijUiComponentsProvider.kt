@@ -25,6 +25,7 @@ import com.android.tools.nativeSymbolizer.ProjectSymbolSource
 import com.android.tools.nativeSymbolizer.SymbolFilesLocator
 import com.android.tools.nativeSymbolizer.createNativeSymbolizer
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
 
 class IntellijUiComponentsProvider(private val project: Project) : UiComponentsProvider {
   override val codeNavigator: CodeNavigator
@@ -32,6 +33,7 @@ class IntellijUiComponentsProvider(private val project: Project) : UiComponentsP
   init {
     val locator = SymbolFilesLocator(ProjectSymbolSource(project))
     val symbolizer = createNativeSymbolizer(locator)
+    Disposer.register(project, symbolizer)
     codeNavigator =
       CodeNavigator(IntelliJNavSource(project, symbolizer), CodeNavigator.applicationExecutor)
   }
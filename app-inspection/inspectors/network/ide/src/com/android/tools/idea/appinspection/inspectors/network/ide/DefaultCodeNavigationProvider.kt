@@ -22,6 +22,7 @@ import com.android.tools.nativeSymbolizer.ProjectSymbolSource
 import com.android.tools.nativeSymbolizer.SymbolFilesLocator
 import com.android.tools.nativeSymbolizer.createNativeSymbolizer
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
 
 /**
  * The Android Studio implementation of [CodeNavigationProvider] that provides a [CodeNavigator] for
@@ -29,7 +30,7 @@ import com.intellij.openapi.project.Project
  */
 class DefaultCodeNavigationProvider(project: Project) : CodeNavigationProvider {
   private val locator = SymbolFilesLocator(ProjectSymbolSource(project))
-  private val symbolizer = createNativeSymbolizer(locator)
+  private val symbolizer = createNativeSymbolizer(locator).also { Disposer.register(project, it) }
 
   override val codeNavigator: CodeNavigator =
     CodeNavigator(IntelliJNavSource(project, symbolizer), CodeNavigator.applicationExecutor)
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res
+
+import com.android.resources.ResourceType
+import com.android.tools.idea.flags.StudioFlags
+import com.android.tools.idea.testing.AndroidProjectRule
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.Metric.MetricSample
+import com.google.common.base.Stopwatch
+import com.intellij.openapi.vfs.VfsUtil
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.android.facet.AndroidFacet
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import java.io.File
+
+private const val NUMBER_OF_SAMPLES = 20
+private const val NUMBER_OF_LOCALES = 60
+private const val NUMBER_OF_STRING_FILES_PER_LOCALE = 5
+private const val NUMBER_OF_STRINGS_PER_FILE = 100
+private const val NUMBER_OF_LAYOUTS = 400
+private const val NUMBER_OF_DRAWABLES = 400
+
+private val benchmark =
+  Benchmark.Builder("DesignTools Resource Folder Repository Benchmark")
+    .setProject("Design Tools")
+    .setDescription("Initial scan of a large resource folder without file cache (mean) after $NUMBER_OF_SAMPLES samples.")
+    .build()
+
+/**
+ * Measures the initial scan of a synthetic resource folder with many locales, layouts and drawables, as when opening a project whose
+ * resource folders are missing from the file cache.
+ */
+class PerfgateResourceFolderRepositoryTest {
+  @get:Rule
+  val projectRule = AndroidProjectRule.withSdk().initAndroid(true)
+
+  private lateinit var facet: AndroidFacet
+  private lateinit var resourceDir: VirtualFile
+
+  @Before
+  fun setUp() {
+    facet = AndroidFacet.getInstance(projectRule.module)!!
+    val resDir = File(projectRule.fixture.tempDirPath, "res")
+    generateResources(resDir)
+    resourceDir = VfsUtil.findFileByIoFile(resDir, true)!!
+    VfsUtil.markDirtyAndRefresh(false, true, true, resourceDir)
+  }
+
+  @Test
+  fun testInitialScan() {
+    measureInitialScan("resource_folder_repository_initial_scan_time")
+  }
+
+  @Test
+  fun testSequentialInitialScan() {
+    StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.override(false)
+    try {
+      measureInitialScan("resource_folder_repository_sequential_initial_scan_time")
+    }
+    finally {
+      StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.clearOverride()
+    }
+  }
+
+  private fun measureInitialScan(metricName: String) {
+    val namespace = StudioResourceRepositoryManager.getInstance(facet).namespace
+    val samples = ArrayList<MetricSample>(NUMBER_OF_SAMPLES)
+    repeat(NUMBER_OF_SAMPLES) {
+      val stopwatch = Stopwatch.createStarted()
+      val repository = ResourceFolderRepository.create(facet, resourceDir, namespace, null)
+      samples.add(MetricSample(System.currentTimeMillis(), stopwatch.elapsed().toMillis()))
+      assertEquals(NUMBER_OF_LAYOUTS, repository.getResources(namespace, ResourceType.LAYOUT).size())
+    }
+    Metric(metricName).apply {
+      addSamples(benchmark, *samples.toTypedArray())
+      commit()
+    }
+  }
+
+  private fun generateResources(resDir: File) {
+    // Two letter language qualifiers: -aa, -ab, ...
+    val locales = listOf("") + (0 until NUMBER_OF_LOCALES).map { "-${'a' + it / 26}${'a' + it % 26}" }
+    for (locale in locales) {
+      repeat(NUMBER_OF_STRING_FILES_PER_LOCALE) { file ->
+        val strings = (0 until NUMBER_OF_STRINGS_PER_FILE).joinToString("\n") {
+          """  <string name="string_${file}_$it">String $it of file $file in locale $locale</string>"""
+        }
+        writeFile(File(resDir, "values$locale/strings$file.xml"), "<resources>\n$strings\n</resources>\n")
+      }
+    }
+    repeat(NUMBER_OF_LAYOUTS) {
+      writeFile(File(resDir, "layout/layout$it.xml"), """
+        <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android"
+            android:layout_width="match_parent"
+            android:layout_height="match_parent">
+          <TextView android:id="@+id/title$it" android:layout_width="wrap_content" android:layout_height="wrap_content"/>
+          <Button android:id="@+id/button$it" android:layout_width="wrap_content" android:layout_height="wrap_content"/>
+        </LinearLayout>
+      """.trimIndent())
+    }
+    repeat(NUMBER_OF_DRAWABLES) {
+      writeFile(File(resDir, "drawable/drawable$it.xml"), """
+        <shape xmlns:android="http://schemas.android.com/apk/res/android" android:shape="rectangle">
+          <solid android:color="#FF00${"%02X".format(it % 256)}00"/>
+        </shape>
+      """.trimIndent())
+    }
+  }
+
+  private fun writeFile(file: File, content: String) {
+    file.parentFile.mkdirs()
+    file.writeText(content)
+  }
+}
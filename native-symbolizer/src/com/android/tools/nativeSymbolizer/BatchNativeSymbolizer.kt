@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A NativeSymbolizer for symbolizing many frames at once, as found in large native allocation captures.
+ *
+ * [symbolizeAll] looks up each distinct (module, offset) pair once: first in a [SymbolCache], which can persist the symbols of each symbol
+ * file across restarts, then in the symbol files themselves. The offsets missing from the cache are split among a pool of
+ * [LlvmSymbolizer]s, each with its own llvm-symbolizer process, which are all sent their requests without waiting for each answer.
+ *
+ * @param poolSize - The number of llvm-symbolizer processes used at once. Processes are only started when they are first needed.
+ * @param cacheDir - The directory the symbols are persisted in, or null to only keep them in memory.
+ */
+class BatchNativeSymbolizer(poolSize: Int,
+                            cacheDir: File?,
+                            createSymbolizer: () -> LlvmSymbolizer) : NativeSymbolizer {
+
+  /**
+   * A frame to symbolize.
+   */
+  data class SymbolRequest(val module: File, val offset: Long)
+
+  /**
+   * Counts of the frames symbolized so far, to tell how much batching and caching save.
+   *
+   * @param requestCount - The number of frames asked for.
+   * @param uniqueRequestCount - The number of distinct frames among them, the others were answered by the same lookups.
+   * @param cacheHitCount - The number of offsets found in the cache, including the ones known to have no symbol.
+   * @param symbolizerCount - The number of offsets that had to be looked up by llvm-symbolizer.
+   * @param symbolizeTimeMs - The total time spent symbolizing.
+   */
+  data class Stats(val requestCount: Long,
+                   val uniqueRequestCount: Long,
+                   val cacheHitCount: Long,
+                   val symbolizerCount: Long,
+                   val symbolizeTimeMs: Long) {
+    val cacheHitRate get() = if (cacheHitCount + symbolizerCount == 0L) 0.0 else cacheHitCount.toDouble() / (cacheHitCount + symbolizerCount)
+  }
+
+  private val symbolizers = List(poolSize) { createSymbolizer() }
+  private val idleSymbolizers = LinkedBlockingQueue(symbolizers)
+  private val executor: ExecutorService = Executors.newFixedThreadPool(poolSize)
+  private val cache = SymbolCache(cacheDir)
+
+  private val requestCount = AtomicLong()
+  private val uniqueRequestCount = AtomicLong()
+  private val cacheHitCount = AtomicLong()
+  private val symbolizerCount = AtomicLong()
+  private val symbolizeTimeNs = AtomicLong()
+
+  val stats get() = Stats(requestCount.get(), uniqueRequestCount.get(), cacheHitCount.get(), symbolizerCount.get(),
+                          TimeUnit.NANOSECONDS.toMillis(symbolizeTimeNs.get()))
+
+  @Throws(IOException::class)
+  override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? =
+    symbolizeAll(abiArch, listOf(SymbolRequest(module, offset))).first()
+
+  /**
+   * @return the symbols of the requested frames, in the same order, with null for the frames that couldn't be symbolized.
+   */
+  @Throws(IOException::class)
+  fun symbolizeAll(abiArch: String, requests: List<SymbolRequest>): List<Symbol?> {
+    val startTimeNs = System.nanoTime()
+    val symbols = HashMap<SymbolRequest, Symbol>()
+    val requestsByModule = requests.distinct().groupBy { it.module }
+    for ((module, moduleRequests) in requestsByModule) {
+      var pending = moduleRequests.map { it.offset }
+      // Like LlvmSymbolizer.symbolize, look into each candidate symbol file for the offsets not found in the previous ones.
+      for (symFile in symbolizers.first().getSymbolFiles(abiArch, module)) {
+        if (pending.isEmpty()) {
+          break
+        }
+        val fileSymbols = cache.forFile(symFile)
+        val misses = pending.filter { fileSymbols[it] == null }
+        cacheHitCount.addAndGet((pending.size - misses.size).toLong())
+        symbolizerCount.addAndGet(misses.size.toLong())
+        if (misses.isNotEmpty()) {
+          symbolizeInParallel(symFile, module, misses)?.let { fileSymbols.putAll(misses, it) }
+        }
+        pending = pending.filter { offset ->
+          val cached = fileSymbols[offset]
+          if (cached != null && cached.isFound) {
+            symbols[SymbolRequest(module, offset)] = cached.toSymbol(module)
+          }
+          // Offsets llvm-symbolizer failed to answer aren't cached, and are looked up in the other files like the ones without a symbol.
+          cached?.isFound != true
+        }
+      }
+    }
+    requestCount.addAndGet(requests.size.toLong())
+    uniqueRequestCount.addAndGet(requestsByModule.values.sumOf { it.size }.toLong())
+    symbolizeTimeNs.addAndGet(System.nanoTime() - startTimeNs)
+    return requests.map { symbols[it] }
+  }
+
+  /**
+   * Splits the offsets among the idle symbolizers of the pool.
+   *
+   * @return the symbols at the offsets, or null if llvm-symbolizer failed to answer some of them.
+   */
+  private fun symbolizeInParallel(symFile: File, module: File, offsets: List<Long>): List<Symbol?>? {
+    val partSize = maxOf(MIN_PART_SIZE, (offsets.size + symbolizers.size - 1) / symbolizers.size)
+    val futures = offsets.chunked(partSize).map { part ->
+      executor.submit<List<Symbol?>?> {
+        val symbolizer = idleSymbolizers.take()
+        try {
+          symbolizer.symbolizeAll(symFile, module, part)
+        }
+        finally {
+          idleSymbolizers.put(symbolizer)
+        }
+      }
+    }
+    val parts = try {
+      futures.map { it.get() }
+    }
+    catch (e: ExecutionException) {
+      // llvm-symbolizer couldn't be started.
+      throw e.cause as? IOException ?: RuntimeException(e.cause)
+    }
+    return if (parts.any { it == null }) null else parts.flatMap { it!! }
+  }
+
+  override fun stop() {
+    symbolizers.forEach { it.stop() }
+    val stats = stats
+    getLogger().info("Symbolized ${stats.requestCount} frames (${stats.uniqueRequestCount} distinct) in ${stats.symbolizeTimeMs}ms, " +
+                     "cache hit rate ${"%.2f".format(stats.cacheHitRate)}")
+  }
+
+  override fun dispose() {
+    stop()
+    symbolizers.forEach { it.dispose() }
+    executor.shutdownNow()
+  }
+
+  companion object {
+    /**
+     * Below this many offsets, a part isn't worth the round trip of its own llvm-symbolizer process.
+     */
+    private const val MIN_PART_SIZE = 64
+  }
+}
@@ -50,23 +50,63 @@ class LlvmSymbolizer(private val symbolizerExe: String,
 
   private var procHolder : ProcessHolder? = null
   private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  // Requests are written from their own thread, so that llvm-symbolizer is never blocked on writing answers nobody reads yet.
+  private val writer : ExecutorService = Executors.newSingleThreadExecutor()
 
   /**
    * @param abiArch - The cpu architecture of the symbol.
    * @param module - The file path to the module.
    * @param offset - The starting byte address in the module of the symbol.
    */
+  @Synchronized
   override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? {
-    val symFiles = symLocator.getFiles(abiArch)
+    for (symFile in getSymbolFiles(abiArch, module)) {
+      val response = query(listOf(formatRequest(symFile, offset)))?.first() ?: continue
+      val result = parseResponse(response, module)
+      if (result != null)
+        return result
+    }
 
-    for (symFile in symFiles.filter { it.nameWithoutExtension == module.nameWithoutExtension }) {
-      val request = formatRequest(symFile, offset)
+    return null
+  }
 
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
+  /**
+   * @return the symbol files that may contain the symbols of the module, in the order [symbolize] looks into them.
+   */
+  fun getSymbolFiles(abiArch: String, module: File): List<File> =
+    symLocator.getFiles(abiArch).filter { it.nameWithoutExtension == module.nameWithoutExtension }
 
+  /**
+   * Looks up many offsets of a module in one of its symbol files. All the requests are sent without waiting for the answers to the
+   * previous ones, [BATCH_SIZE] at a time, which saves a round trip to llvm-symbolizer per offset.
+   *
+   * @return the symbols at the offsets, in the same order and null for the ones without a symbol, or null if llvm-symbolizer failed.
+   */
+  @Synchronized
+  fun symbolizeAll(symFile: File, module: File, offsets: List<Long>): List<Symbol?>? {
+    val symbols = ArrayList<Symbol?>(offsets.size)
+    for (batch in offsets.chunked(BATCH_SIZE)) {
+      val responses = query(batch.map { formatRequest(symFile, it) }) ?: return null
+      responses.mapTo(symbols) { parseResponse(it, module) }
+    }
+    return symbols
+  }
+
+  /**
+   * Sends the requests to llvm-symbolizer and reads their responses, which come in the same order.
+   *
+   * @return the lines of each response, or null if llvm-symbolizer didn't answer all of them in time.
+   */
+  private fun query(requests: List<String>): List<List<String>>? {
+    val holder = getProcHolder()
+    val write = writer.submit {
+      for (request in requests) {
+        holder.stdin.write(request)
+      }
+      holder.stdin.flush()
+    }
+    val read = executor.submit( Callable<List<List<String>>> {
+      List(requests.size) {
         val response: MutableList<String> = mutableListOf()
         var responseLine: String?
         while (true) {
@@ -77,25 +117,21 @@ class LlvmSymbolizer(private val symbolizerExe: String,
           response.add(responseLine)
         }
         response
-      })
-      val response : List<String>
-      try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
       }
-
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
+    })
+    try {
+      val deadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMsc)
+      // Requests that failed to be written will never be answered, so a failed write is reported right away instead of waiting for the
+      // answers until the timeout.
+      write.get(timeoutMsc, TimeUnit.MILLISECONDS)
+      return read.get(maxOf(0L, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS)
+    } catch (e: TimeoutException) {
+      getLogger().warn("llvm-symbolizer timed out", e)
+      stop()
+    } catch (e: ExecutionException) {
+      getLogger().warn("llvm-symbolizer communication failed", e)
+      stop()
     }
-
     return null
   }
 
@@ -155,11 +191,25 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     procHolder = ProcessHolder(process, stdout, stdin)
   }
 
+  @Synchronized
   override fun stop() {
     procHolder?.dispose()
     procHolder = null
   }
 
+  override fun dispose() {
+    stop()
+    executor.shutdownNow()
+    writer.shutdownNow()
+  }
+
+  companion object {
+    /**
+     * Number of requests sent at once by [symbolizeAll]. Each batch gets [timeoutMsc] to be answered.
+     */
+    const val BATCH_SIZE = 256
+  }
+
   private class ProcessHolder(val process: Process,
                               val stdout: BufferedReader,
                               val stdin: OutputStreamWriter) : Disposable {
@@ -18,6 +18,7 @@ package com.android.tools.nativeSymbolizer
 import com.android.tools.idea.IdeInfo
 import com.android.tools.idea.downloads.AndroidProfilerDownloader
 import com.android.tools.idea.util.StudioPathManager
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.PathManager
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.util.SystemInfo
@@ -36,7 +37,7 @@ data class Symbol(val name: String, val module: String, val sourceFile: String =
 /**
  * Components that can fetch information about native symbols by a module and an offset.
  */
-interface NativeSymbolizer {
+interface NativeSymbolizer : Disposable {
 
   /**
    * Obtains information about a function (symbol) located at a given offset in a given module
@@ -48,14 +49,26 @@ interface NativeSymbolizer {
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: File, offset: Long): Symbol?
   fun stop()
+
+  /**
+   * Stops the symbolizer for good, also releasing the threads it uses. Unlike after [stop], it can't be used anymore.
+   */
+  override fun dispose() = stop()
 }
 
 fun createNativeSymbolizer(locator:SymbolFilesLocator): NativeSymbolizer {
   val symbolizerPath = getLlvmSymbolizerPath()
   getLogger().info("Creating a native symbolizer. Executable path: $symbolizerPath")
-  return LlvmSymbolizer(symbolizerPath, locator)
+  val poolSize = (Runtime.getRuntime().availableProcessors() / 2).coerceIn(1, MAX_SYMBOLIZER_PROCESSES)
+  val cacheDir = Paths.get(PathManager.getSystemPath(), "native-symbols").toFile()
+  return BatchNativeSymbolizer(poolSize, cacheDir) { LlvmSymbolizer(symbolizerPath, locator) }
 }
 
+/**
+ * Each llvm-symbolizer process loads the debug info of the symbol files it is asked about, so more of them cost a lot of memory.
+ */
+private const val MAX_SYMBOLIZER_PROCESSES = 4
+
 /**
  *  Get path to the llvm-symbolizer executable
  */
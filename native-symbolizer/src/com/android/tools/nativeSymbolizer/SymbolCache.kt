@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Symbols already looked up in symbol files, by offset in each file.
+ *
+ * When given a [directory], the symbols of each symbol file are also written to a file named after the file's build id and size, so that
+ * they survive restarts and are shared by every copy of the same file, and the symbol files are only asked for offsets never seen before.
+ * The size tells a stripped copy, which has the build id of the unstripped file but no symbols or line numbers, from the unstripped one.
+ * The format is the one of the expected symbols in the test data: one `<hex offset>|<name>|<source file>|<line>` line per offset, with an
+ * empty name for offsets that have no symbol.
+ *
+ * The directory is kept under [maxDirectorySizeBytes] by deleting the files of the least recently used symbol files when the cache is
+ * created.
+ */
+internal class SymbolCache(private val directory: File?, maxDirectorySizeBytes: Long = MAX_DIRECTORY_SIZE_BYTES) {
+  private val symbolsByFile = ConcurrentHashMap<String, FileSymbols>()
+
+  init {
+    directory?.let { evictLeastRecentlyUsedFiles(it, maxDirectorySizeBytes) }
+  }
+
+  fun forFile(symFile: File): FileSymbols = symbolsByFile.computeIfAbsent(
+    "${symFile.absolutePath}-${symFile.length()}-${symFile.lastModified()}") {
+    FileSymbols(directory?.let { File(it, "${cacheKey(symFile)}.txt") })
+  }
+
+  /**
+   * The symbols of a single symbol file.
+   */
+  class FileSymbols(private val file: File?) {
+    private val symbols = HashMap<Long, CachedSymbol>()
+
+    init {
+      try {
+        file?.takeIf { it.exists() }?.let {
+          it.forEachLine { line -> parseLine(line)?.let { (offset, symbol) -> symbols[offset] = symbol } }
+          // Reading the file counts as using it, so that it's the last one evicted.
+          it.setLastModified(System.currentTimeMillis())
+        }
+      }
+      catch (e: IOException) {
+        getLogger().warn("Unable to read cached symbols from $file", e)
+      }
+    }
+
+    /**
+     * @return the symbol at the offset, or null if the offset was never looked up. The symbol has an empty name if none was found.
+     */
+    @Synchronized
+    operator fun get(offset: Long): CachedSymbol? = symbols[offset]
+
+    @Synchronized
+    fun putAll(offsets: List<Long>, found: List<Symbol?>) {
+      val lines = StringBuilder()
+      offsets.forEachIndexed { i, offset ->
+        val symbol = found[i]?.let { CachedSymbol(it.name, it.sourceFile, it.lineNumber) } ?: CachedSymbol.NOT_FOUND
+        if (symbols.put(offset, symbol) == null) {
+          lines.append(String.format("%x|%s|%s|%d\n", offset, symbol.name, symbol.sourceFile, symbol.lineNumber))
+        }
+      }
+      if (file == null || lines.isEmpty()) {
+        return
+      }
+      try {
+        file.parentFile.mkdirs()
+        file.appendText(lines.toString())
+      }
+      catch (e: IOException) {
+        getLogger().warn("Unable to write cached symbols to $file", e)
+      }
+    }
+
+    private fun parseLine(line: String): Pair<Long, CachedSymbol>? {
+      // Names can contain '|' (e.g. operator|), so the other fields are found from both ends of the line.
+      val offsetEnd = line.indexOf('|')
+      val lineStart = line.lastIndexOf('|')
+      val sourceStart = line.lastIndexOf('|', lineStart - 1)
+      if (offsetEnd < 0 || sourceStart <= offsetEnd) {
+        return null
+      }
+      val offset = line.substring(0, offsetEnd).toLongOrNull(16) ?: return null
+      val lineNumber = line.substring(lineStart + 1).toIntOrNull() ?: return null
+      return offset to CachedSymbol(line.substring(offsetEnd + 1, sourceStart), line.substring(sourceStart + 1, lineStart), lineNumber)
+    }
+  }
+
+  data class CachedSymbol(val name: String, val sourceFile: String, val lineNumber: Int) {
+    val isFound get() = name.isNotEmpty()
+
+    fun toSymbol(module: File) = Symbol(name, module.absolutePath, sourceFile, lineNumber)
+
+    companion object {
+      val NOT_FOUND = CachedSymbol("", "", 0)
+    }
+  }
+
+  companion object {
+    private const val PT_NOTE = 4
+    private const val NT_GNU_BUILD_ID = 3
+
+    /**
+     * Size past which the least recently used files of the directory are deleted.
+     */
+    const val MAX_DIRECTORY_SIZE_BYTES = 64L * 1024 * 1024
+
+    /**
+     * Deletes the least recently modified symbol files of the directory until the ones left take less than [maxSizeBytes].
+     */
+    fun evictLeastRecentlyUsedFiles(directory: File, maxSizeBytes: Long) {
+      val files = directory.listFiles { file -> file.isFile && file.extension == "txt" } ?: return
+      var totalBytes = 0L
+      for (file in files.sortedByDescending { it.lastModified() }) {
+        totalBytes += file.length()
+        if (totalBytes > maxSizeBytes && !file.delete()) {
+          getLogger().warn("Unable to delete cached symbols $file")
+        }
+      }
+    }
+
+    /**
+     * @return the build id and size of the symbol file, or its name, size and modification time if it doesn't have a build id.
+     */
+    fun cacheKey(symFile: File) = readBuildId(symFile)?.let { "$it-${symFile.length()}" }
+                                  ?: "${symFile.nameWithoutExtension}-${symFile.length()}-${symFile.lastModified()}"
+
+    /**
+     * @return the GNU build id of an ELF file, as found in its note segments, or null if the file isn't an ELF file or has no build id.
+     */
+    fun readBuildId(elfFile: File): String? {
+      try {
+        RandomAccessFile(elfFile, "r").use { file ->
+          val header = file.read(0, 64) ?: return null
+          if (header.getInt(0) != 0x7f454c46) {
+            return null
+          }
+          val is64Bit = header.get(4).toInt() == 2
+          header.order(if (header.get(5).toInt() == 2) ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN)
+          val programHeadersOffset = if (is64Bit) header.getLong(0x20) else header.getInt(0x1c).toLong() and 0xffffffffL
+          val programHeaderSize = header.getShort(if (is64Bit) 0x36 else 0x2a).toInt() and 0xffff
+          val programHeaderCount = header.getShort(if (is64Bit) 0x38 else 0x2c).toInt() and 0xffff
+          for (i in 0 until programHeaderCount) {
+            val programHeader = file.read(programHeadersOffset + i * programHeaderSize, programHeaderSize)?.order(header.order()) ?: break
+            if (programHeader.getInt(0) != PT_NOTE) {
+              continue
+            }
+            val notesOffset = if (is64Bit) programHeader.getLong(0x08) else programHeader.getInt(0x04).toLong() and 0xffffffffL
+            val notesSize = if (is64Bit) programHeader.getLong(0x20) else programHeader.getInt(0x10).toLong() and 0xffffffffL
+            val notes = file.read(notesOffset, notesSize.toInt())?.order(header.order()) ?: continue
+            findBuildId(notes)?.let { return it }
+          }
+          return null
+        }
+      }
+      catch (e: IOException) {
+        getLogger().warn("Unable to read the build id of $elfFile", e)
+        return null
+      }
+    }
+
+    private fun findBuildId(notes: ByteBuffer): String? {
+      while (notes.remaining() >= 12) {
+        val nameSize = notes.int
+        val descriptorSize = notes.int
+        val type = notes.int
+        val nameStart = notes.position()
+        val descriptorStart = nameStart + align4(nameSize)
+        if (nameSize < 0 || descriptorSize < 0 || descriptorStart + descriptorSize > notes.limit()) {
+          return null
+        }
+        val name = String(ByteArray(nameSize).also { notes.get(it) }, Charsets.US_ASCII)
+        if (type == NT_GNU_BUILD_ID && name == "GNU\u0000") {
+          notes.position(descriptorStart)
+          return ByteArray(descriptorSize).also { notes.get(it) }.joinToString("") { String.format("%02x", it) }
+        }
+        notes.position(minOf(descriptorStart + align4(descriptorSize), notes.limit()))
+      }
+      return null
+    }
+
+    private fun align4(size: Int) = (size + 3) and 3.inv()
+
+    private fun RandomAccessFile.read(offset: Long, size: Int): ByteBuffer? {
+      if (offset < 0 || size <= 0 || offset + size > length()) {
+        return null
+      }
+      val bytes = ByteArray(size)
+      seek(offset)
+      readFully(bytes)
+      return ByteBuffer.wrap(bytes)
+    }
+  }
+}
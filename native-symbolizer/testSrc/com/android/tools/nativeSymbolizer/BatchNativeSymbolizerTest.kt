@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.android.testutils.TestUtils.resolveWorkspacePath
+import com.android.tools.nativeSymbolizer.BatchNativeSymbolizer.SymbolRequest
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.RejectedExecutionException
+
+class BatchNativeSymbolizerTest {
+  private val architectures = listOf("arm", "arm64", "x86", "x86_64")
+  private val modulePath = File("/data/app/com.someapp.name-abcd09876abds==/lib/arm64/libnative-lib.so")
+
+  @Test
+  fun symbolizeAllMatchesExpectedSymbols() {
+    val symbolizer = createSymbolizer(null)
+    for (arch in architectures) {
+      val expected = readExpectedSymbols(arch)
+      // Each offset is asked for twice, to check that duplicates are answered too.
+      val requests = (expected + expected).map { SymbolRequest(modulePath, it.offset) }
+      val symbols = symbolizer.symbolizeAll(arch, requests)
+      assertThat(symbols).hasSize(requests.size)
+      for ((i, symbol) in symbols.withIndex()) {
+        val expectedSymbol = expected[i % expected.size]
+        assertThat(symbol!!.name).isEqualTo(expectedSymbol.name)
+        assertThat(symbol.lineNumber).isAtLeast(expectedSymbol.lineNumber)
+      }
+    }
+    assertThat(symbolizer.stats.uniqueRequestCount * 2).isEqualTo(symbolizer.stats.requestCount)
+    symbolizer.stop()
+  }
+
+  @Test
+  fun unknownSymbolsAreNull() {
+    val symbolizer = createSymbolizer(null)
+    val symbols = symbolizer.symbolizeAll("arm", listOf(SymbolRequest(File("/p/libnotexists.so"), 12345),
+                                                        SymbolRequest(modulePath, 0xffffffffff)))
+    assertThat(symbols).containsExactly(null, null)
+    symbolizer.stop()
+  }
+
+  @Test
+  fun symbolsArePersistedInCacheDirectory() {
+    val cacheDir = FileUtil.createTempDirectory("native-symbols", null, true)
+    val expected = readExpectedSymbols("arm64")
+    val requests = expected.map { SymbolRequest(modulePath, it.offset) }
+
+    val first = createSymbolizer(cacheDir)
+    val firstSymbols = first.symbolizeAll("arm64", requests)
+    first.stop()
+    assertThat(first.stats.symbolizerCount).isEqualTo(requests.size.toLong())
+    assertThat(cacheDir.listFiles()).hasLength(1)
+
+    val second = createSymbolizer(cacheDir)
+    assertThat(second.symbolizeAll("arm64", requests)).isEqualTo(firstSymbols)
+    second.stop()
+    assertThat(second.stats.symbolizerCount).isEqualTo(0)
+    assertThat(second.stats.cacheHitRate).isEqualTo(1.0)
+  }
+
+  @Test
+  fun leastRecentlyUsedCacheFilesAreEvicted() {
+    val cacheDir = FileUtil.createTempDirectory("native-symbols", null, true)
+    val files = (1..3).map { i ->
+      File(cacheDir, "build-id-$i.txt").apply {
+        writeText("${i}0|name|source|$i\n")
+        setLastModified(i * 100_000L)
+      }
+    }
+
+    // Room for the two most recently used files only.
+    SymbolCache(cacheDir, files.sumOf { it.length() } - 1)
+    assertThat(cacheDir.listFiles()!!.map { it.name }).containsExactly("build-id-2.txt", "build-id-3.txt")
+  }
+
+  @Test(expected = RejectedExecutionException::class)
+  fun disposedSymbolizerReleasesItsPool() {
+    val symbolizer = createSymbolizer(null)
+    val expected = readExpectedSymbols("arm64")
+    symbolizer.symbolizeAll("arm64", listOf(SymbolRequest(modulePath, expected[0].offset)))
+    symbolizer.dispose()
+    // Offsets that aren't cached need the pool, which was shut down.
+    symbolizer.symbolizeAll("arm64", listOf(SymbolRequest(modulePath, expected[1].offset)))
+  }
+
+  @Test
+  fun buildIdIsReadFromElfNotes() {
+    val buildId = SymbolCache.readBuildId(getTestPath("arm64", "libnative-lib.so"))
+    assertThat(buildId).matches("[0-9a-f]{40}")
+    assertThat(SymbolCache.readBuildId(getTestPath("arm64", "symbols.txt"))).isNull()
+  }
+
+  @Test
+  fun strippedCopyHasItsOwnCacheKey() {
+    val library = getTestPath("arm64", "libnative-lib.so")
+    // Same build id, different contents, like a copy stripped of its debug info.
+    val copy = FileUtil.createTempFile("libnative-lib", ".so", true)
+    copy.writeBytes(library.readBytes().copyOf(library.length().toInt() + 16))
+    assertThat(SymbolCache.readBuildId(copy)).isEqualTo(SymbolCache.readBuildId(library))
+    assertThat(SymbolCache.cacheKey(copy)).isNotEqualTo(SymbolCache.cacheKey(library))
+  }
+
+  private fun createSymbolizer(cacheDir: File?): BatchNativeSymbolizer {
+    val source = DynamicSymbolSource()
+    for (arch in architectures) {
+      source.add(arch, getTestPath(arch))
+    }
+    val symLocator = SymbolFilesLocator(source)
+    return BatchNativeSymbolizer(2, cacheDir) { LlvmSymbolizer(getLlvmSymbolizerPath(), symLocator) }
+  }
+
+  private fun readExpectedSymbols(arch: String) = getTestPath(arch, "symbols.txt").readLines().map { line ->
+    val symParts = line.split('|')
+    // +1 to get an address within the function, rather than function start address
+    ExpectedSymbol(symParts[0].toLong(16) + 1, symParts[1], symParts[3].toInt())
+  }
+
+  private fun getTestPath(vararg part: String): File {
+    var testDataDir = resolveWorkspacePath("tools/adt/idea/native-symbolizer/testData/bin/")
+    for (p in part) {
+      testDataDir = testDataDir.resolve(p)
+    }
+    return testDataDir.toAbsolutePath().toFile()
+  }
+
+  private data class ExpectedSymbol(val offset: Long, val name: String, val lineNumber: Int)
+}
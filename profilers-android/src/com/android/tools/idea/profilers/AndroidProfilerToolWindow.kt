@@ -63,9 +63,9 @@ class AndroidProfilerToolWindow(private val window: ToolWindowWrapper, private v
     Disposer.register(this, ideProfilerServices)
 
     // Ensures the transport service is initialized.
-    TransportService.getInstance()
+    val transportService = TransportService.getInstance()
 
-    val client = ProfilerClient(TransportService.channelName)
+    val client = ProfilerClient(TransportService.channelName, transportService.eventSubscriber, transportService.bytesStreamer)
     profilers = StudioProfilers(client, ideProfilerServices)
     val navigator = ideProfilerServices.codeNavigator
     // CPU ABI architecture, when needed by the code navigator, should be retrieved from StudioProfiler selected session.
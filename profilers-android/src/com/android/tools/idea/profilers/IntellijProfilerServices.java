@@ -104,7 +104,7 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
     mySymbolLocator = symbolLocator;
 
     NativeSymbolizer nativeSymbolizer = NativeSymbolizerKt.createNativeSymbolizer(mySymbolLocator);
-    Disposer.register(this, nativeSymbolizer::stop);
+    Disposer.register(this, nativeSymbolizer);
     myNativeSymbolizer = new IntelliJNativeFrameSymbolizer(nativeSymbolizer);
     myPersistentPreferences = new IntellijProfilerPreferences();
     myTemporaryPreferences = new TemporaryProfilerPreferences();
@@ -58,31 +58,43 @@ class WindowsNameDemangler(val timeoutMsc: Long = 5000) : NameDemangler {
       // Currently only windows needs an outside process to demangle names, mac/linux are done inside the daemon.
       return
     }
+    // Only submit names that start with _Z. Other names are invalid.
+    val mangledNames = stackFrames.asSequence().map { it.name }.filter { it.startsWith("_Z") }.distinct().toList()
+    if (mangledNames.isEmpty()) {
+      return
+    }
     val holder = start()
     holder ?: return
 
-    val duplicatesMap = HashMap<String, String>()
-    for (frame in stackFrames) {
+    // c++filt answers names in order, so all of them are written from another thread while the answers are read here. Waiting for each
+    // answer before writing the next name would cost a round trip per name.
+    val writer = Thread({
       try {
-        if (duplicatesMap.containsKey(frame.name)) {
-          frame.name = duplicatesMap[frame.name]!!
-          continue
-        }
-        // Only submit names that start with _Z. Other names are invalid.
-        if (frame.name.startsWith("_Z")) {
-          holder.stdin.write(frame.name + "\n")
-          holder.stdin.flush()
-          val response = holder.stdout.readLine() ?: frame.name
-          duplicatesMap[frame.name] = response
-          frame.name = response
-
+        for (name in mangledNames) {
+          holder.stdin.write(name + "\n")
         }
+        holder.stdin.flush()
       }
-      catch (ex: Exception) {
-        getLogger().error(ex)
+      catch (ex: IOException) {
+        getLogger().warn(ex)
       }
+    }, "CppNameDemangler writer")
+    writer.start()
+    val demangledNames = HashMap<String, String>()
+    try {
+      for (name in mangledNames) {
+        demangledNames[name] = holder.stdout.readLine() ?: break
+      }
+    }
+    catch (ex: Exception) {
+      getLogger().error(ex)
     }
     holder.dispose()
+    writer.join(timeoutMsc)
+
+    for (frame in stackFrames) {
+      demangledNames[frame.name]?.let { frame.name = it }
+    }
   }
 
   private fun start() : ProcessHolder? {
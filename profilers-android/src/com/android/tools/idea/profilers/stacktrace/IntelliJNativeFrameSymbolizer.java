@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.profilers.stacktrace;
 
+import com.android.tools.nativeSymbolizer.BatchNativeSymbolizer;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
@@ -22,7 +23,10 @@ import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper for {@link NativeSymbolizer} to return a NativeCallStack.NativeFrame instead of the Symbol class which profilers don't have a
@@ -55,7 +59,44 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     catch (IOException | RuntimeException e) {
       getLogger().warn(e);
     }
+    return toFrame(unsymbolizedFrame, instructionOffset, symbol);
+  }
+
+  @NotNull
+  @Override
+  public List<NativeCallStack.NativeFrame> symbolizeAll(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    if (!(mySymbolizer instanceof BatchNativeSymbolizer)) {
+      return NativeFrameSymbolizer.super.symbolizeAll(abi, unsymbolizedFrames);
+    }
+    List<BatchNativeSymbolizer.SymbolRequest> requests = new ArrayList<>(unsymbolizedFrames.size());
+    for (NativeCallStack.NativeFrame frame : unsymbolizedFrames) {
+      requests.add(new BatchNativeSymbolizer.SymbolRequest(new File(frame.getModuleName()),
+                                                           getOffsetOfPreviousInstruction(frame.getModuleOffset())));
+    }
+    List<Symbol> symbols = null;
+    try {
+      symbols = ((BatchNativeSymbolizer)mySymbolizer).symbolizeAll(abi, requests);
+    }
+    catch (IOException | RuntimeException e) {
+      getLogger().warn(e);
+    }
+    List<NativeCallStack.NativeFrame> frames = new ArrayList<>(unsymbolizedFrames.size());
+    for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+      frames.add(toFrame(unsymbolizedFrames.get(i), requests.get(i).getOffset(), symbols == null ? null : symbols.get(i)));
+    }
+    return frames;
+  }
 
+  @Override
+  public void stop() {
+    // When stop is called we call stop on the native symbolizer indicating it is optimal to shutdown the process.
+    mySymbolizer.stop();
+  }
+
+  @NotNull
+  private static NativeCallStack.NativeFrame toFrame(@NotNull NativeCallStack.NativeFrame unsymbolizedFrame,
+                                                    long instructionOffset,
+                                                    @Nullable Symbol symbol) {
     NativeCallStack.NativeFrame.Builder builder = unsymbolizedFrame.toBuilder();
     if (symbol == null) {
       String unfoundSymbolName = String.format("0x%x", instructionOffset);
@@ -70,12 +111,6 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     return builder.build();
   }
 
-  @Override
-  public void stop() {
-    // When stop is called we call stop on the native symbolizer indicating it is optimal to shutdown the process.
-    mySymbolizer.stop();
-  }
-
   private long getOffsetOfPreviousInstruction(long offset) {
     // In non-bottom frames native backtrace contains addresses where the execution will
     // continue after a function call. After symbolization such addresses often resolved
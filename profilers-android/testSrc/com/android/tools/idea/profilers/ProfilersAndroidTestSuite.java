@@ -20,8 +20,11 @@ import com.android.tools.idea.profilers.performance.CaptureDetailsTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerAtraceCaptureTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerEmptyCaptureTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerPerfettoCaptureTest;
+import com.android.tools.idea.profilers.performance.MemoryCaptureIndexMemoryTest;
 import com.android.tools.idea.profilers.performance.MemoryClassifierViewFindSuperSetNodeTest;
 import com.android.tools.idea.profilers.performance.MemoryProfilerHeapDumpTest;
+import com.android.tools.idea.profilers.performance.PerfettoSorterBenchmarkTest;
+import com.android.tools.idea.profilers.performance.SimpleperfParserBenchmarkTest;
 import com.android.tools.idea.profilers.performance.TraceProcessorDaemonBenchmarkTest;
 import com.android.tools.tests.IdeaTestSuiteBase;
 import org.junit.runner.RunWith;
@@ -37,7 +40,10 @@ import org.junit.runner.RunWith;
   CpuProfilerPerfettoCaptureTest.class,
   MemoryProfilerHeapDumpTest.class, // b/152344964
   MemoryClassifierViewFindSuperSetNodeTest.class,
+  MemoryCaptureIndexMemoryTest.class,
   TraceProcessorDaemonBenchmarkTest.class,
+  SimpleperfParserBenchmarkTest.class,
+  PerfettoSorterBenchmarkTest.class,
   CaptureDetailsTest.class,
 })
 public class ProfilersAndroidTestSuite extends IdeaTestSuiteBase {
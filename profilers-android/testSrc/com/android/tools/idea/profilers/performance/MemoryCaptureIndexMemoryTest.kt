@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.profilers.memory.adapters.ClassDb
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import org.junit.Test
+import java.lang.ref.Reference
+
+/**
+ * Measures the heap used per entry by the id-keyed indices of memory captures, comparing the boxed [HashMap] they used to be with the
+ * primitive-keyed open-addressing maps they use now.
+ */
+class MemoryCaptureIndexMemoryTest {
+  private val logBytesPerEntry = makeLogger("Memory Capture Index Memory (b)", "Per-Entry")
+
+  @Test
+  fun `measure memory per instance of boxed index`() = measure("HashMap") {
+    HashMap<Long, Any>().apply { for (id in ids()) put(id, VALUE) }
+  }
+
+  @Test
+  fun `measure memory per instance of primitive index`() = measure("Long2ObjectOpenHashMap") {
+    Long2ObjectOpenHashMap<Any>().apply { for (id in ids()) put(id, VALUE) }
+  }
+
+  @Test
+  fun `measure memory per class of class database`() = measure("ClassDb") {
+    // Includes the class entries themselves, which all share the same name.
+    ClassDb().apply { for (id in ids()) registerClass(id, CLASS_NAME) }
+  }
+
+  private fun measure(tag: String, build: () -> Any) {
+    val before = getMemoryUsed()
+    val index = build()
+    val after = getMemoryUsed()
+    logBytesPerEntry(tag, (after - before) / ENTRY_COUNT)
+    Reference.reachabilityFence(index)
+  }
+
+  private fun ids() = (0 until ENTRY_COUNT).asSequence().map { it * ID_STRIDE }
+
+  companion object {
+    private const val ENTRY_COUNT = 2_000_000L
+    // Object ids in heap dumps are addresses, so they are spread out rather than dense.
+    private const val ID_STRIDE = 16L
+    private val VALUE = Any()
+    private const val CLASS_NAME = "com.example.Foo"
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.profilers.cpu.CpuProfilerTestUtils
+import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketSorter
+import com.android.tools.profilers.cpu.systemtrace.PerfettoProducer
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Test
+import java.io.File
+import java.sql.DriverManager
+import kotlin.random.Random
+import kotlin.system.measureTimeMillis
+
+/**
+ * Measures the time spent converting perfetto traces to the sorted lines read by Trebuchet, and the time spent sorting lines alone for
+ * captures much larger than the recorded ones,
+ * compared with sorting the same lines through SQLite.
+ */
+class PerfettoSorterBenchmarkTest {
+  private val logTime = makeLogger("Perfetto Line Sorting Time (millis)", "Sort")
+
+  @Test
+  fun benchmarkRecordedTrace() {
+    val trace = CpuProfilerTestUtils.getTraceFile("perfetto.trace")
+    // Warm up, so that the measure doesn't include class loading and JIT compilation.
+    produceAllLines(trace)
+    val elapsedMillis = (1..ITERATIONS).minOf { measureTimeMillis { produceAllLines(trace) } }
+    logTime("Producer-perfetto.trace", elapsedMillis)
+  }
+
+  @Test
+  fun benchmarkSortingMillionsOfLines() {
+    for (lineCount in listOf(1_000_000, 5_000_000)) {
+      val elapsedMillis = measureTimeMillis {
+        val sorter = PerfettoPacketSorter()
+        addInterleavedLines(lineCount, sorter::addLine)
+        sorter.resetForIterator()
+        var sorted = 0
+        while (sorter.hasNext()) {
+          sorter.next()
+          sorted++
+        }
+        sorter.close()
+        assertThat(sorted).isEqualTo(lineCount)
+      }
+      logTime("Sorter-${lineCount / 1_000_000}M-lines", elapsedMillis)
+    }
+  }
+
+  /**
+   * Baseline for [benchmarkSortingMillionsOfLines]: lines are sorted through a temporary SQLite table, as they were before
+   * [PerfettoPacketSorter]. Only the smaller capture is measured, since the larger one takes minutes this way.
+   */
+  @Test
+  fun benchmarkSortingMillionsOfLinesWithSQLite() {
+    val lineCount = 1_000_000
+    val dbFile = FileUtil.createTempFile("perfetto", ".db", true)
+    val elapsedMillis = measureTimeMillis {
+      DriverManager.getConnection("jdbc:sqlite:${dbFile.path}").use { connection ->
+        connection.autoCommit = false
+        connection.createStatement().use { it.execute("CREATE TABLE Events (Timestamp INTEGER, Line TEXT)") }
+        connection.prepareStatement("INSERT INTO Events (Timestamp, Line) VALUES (?, ?)").use { insert ->
+          addInterleavedLines(lineCount) { timestamp, line ->
+            insert.setLong(1, timestamp)
+            insert.setString(2, line)
+            insert.execute()
+          }
+        }
+        var sorted = 0
+        connection.createStatement().use { statement ->
+          statement.executeQuery("SELECT Line FROM Events ORDER BY Timestamp asc").use { results ->
+            while (results.next()) {
+              results.getString(1)
+              sorted++
+            }
+          }
+        }
+        assertThat(sorted).isEqualTo(lineCount)
+      }
+    }
+    dbFile.delete()
+    logTime("SQLite-${lineCount / 1_000_000}M-lines", elapsedMillis)
+  }
+
+  /**
+   * Bundles are written per CPU, so lines are sorted within a bundle but interleave with the bundles of the other CPUs.
+   */
+  private fun addInterleavedLines(lineCount: Int, addLine: (Long, String) -> Unit) {
+    val random = Random(lineCount)
+    var timestamp = 0L
+    repeat(lineCount) { i ->
+      timestamp += random.nextLong(1_000)
+      addLine(timestamp - (i % CPU_COUNT) * BUNDLE_SPAN_NS, SAMPLE_LINE)
+    }
+  }
+
+  private fun produceAllLines(trace: File) {
+    val producer = PerfettoProducer()
+    assertThat(producer.parseFile(trace)).isTrue()
+    while (producer.next() != null) {
+    }
+    producer.close()
+  }
+
+  companion object {
+    private const val ITERATIONS = 5
+    private const val CPU_COUNT = 8
+    private const val BUNDLE_SPAN_NS = 10_000_000L
+    private const val SAMPLE_LINE =
+      "surfaceflinger-601   (  601) [002] d..3 1214209.724359: sched_switch: prev_comm=surfaceflinger prev_pid=601 prev_prio=97 " +
+      "prev_state=S ==> next_comm=swapper/2 next_pid=0 next_prio=120"
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.profilers.cpu.CpuProfilerTestUtils
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import org.junit.Test
+import java.io.File
+import kotlin.system.measureTimeMillis
+
+/**
+ * Measures how the time to parse simpleperf traces scales with the number of threads building their call trees.
+ */
+class SimpleperfParserBenchmarkTest {
+  private val logTime = makeLogger("Simpleperf Parse Time (millis)", "Parse")
+
+  private enum class TestCase(val traceFile: String) {
+    REPORT("simpleperf.trace"),
+    CALLCHAIN_650KB("simpleperf_callchain.trace"),
+  }
+
+  @Test
+  fun benchmarkReportTrace() = runBenchmark(TestCase.REPORT)
+
+  @Test
+  fun benchmarkCallchainTrace() = runBenchmark(TestCase.CALLCHAIN_650KB)
+
+  private fun runBenchmark(case: TestCase) {
+    val trace = CpuProfilerTestUtils.getTraceFile(case.traceFile)
+    val cores = Runtime.getRuntime().availableProcessors()
+    for (parallelism in generateSequence(1) { it * 2 }.takeWhile { it < cores } + cores) {
+      // Warm up, so that the first configuration measured doesn't pay for class loading and JIT compilation.
+      parse(trace, parallelism)
+      val elapsedMillis = (1..ITERATIONS).minOf { measureTimeMillis { parse(trace, parallelism) } }
+      logTime("${case.name}-${parallelism}Threads", elapsedMillis)
+    }
+  }
+
+  private fun parse(trace: File, parallelism: Int) = SimpleperfTraceParser(parallelism).parse(trace, 0)
+
+  companion object {
+    private const val ITERATIONS = 5
+  }
+}
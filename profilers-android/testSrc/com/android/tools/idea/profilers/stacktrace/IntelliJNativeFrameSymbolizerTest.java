@@ -22,7 +22,9 @@ import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -60,6 +62,18 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeAll() {
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(new FakeNativeSymbolizer());
+    NativeCallStack.NativeFrame frame1 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test1").setModuleOffset(100).build();
+    NativeCallStack.NativeFrame frame2 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(200).build();
+
+    List<NativeCallStack.NativeFrame> symbolizedFrames = frameSymbolizer.symbolizeAll("arm", Arrays.asList(frame1, frame2));
+    assertThat(symbolizedFrames)
+      .containsExactly(frameSymbolizer.symbolize("arm", frame1), frameSymbolizer.symbolize("arm", frame2))
+      .inOrder();
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     private final HashSet<String> supportedArch = new HashSet<>();
 
@@ -86,5 +100,9 @@ public class IntelliJNativeFrameSymbolizerTest {
     @Override
     public void stop() {
     }
+
+    @Override
+    public void dispose() {
+    }
   }
 }
\ No newline at end of file
@@ -90,6 +90,7 @@ import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingConstants;
 import kotlin.Unit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This class represents the view of a capture taken from within the {@link CpuProfilerStageView}.
@@ -134,12 +135,19 @@ public class CpuCaptureStageView extends StageView<CpuCaptureStage> {
                        StringUtils::abbreviatePath)
   );
   private final JBCheckBox myVsyncBackgroundCheckBox = new JBCheckBox("VSync guide", true);
+  private final JLabel myPartialCaptureLabel = new JLabel("Parsing the rest of the trace...");
 
   /**
    * To avoid conflict with drag-and-drop, we need a keyboard modifier (e.g. VK_SPACE) to toggle panning mode.
    */
   private boolean myIsPanningMode = false;
 
+  /**
+   * Models whose events are registered while analyzing, see {@link #registerAnalyzingEvents()}.
+   */
+  @Nullable private CpuCaptureMinimapModel myRegisteredMinimapModel;
+  @Nullable private CpuCapture myRegisteredCapture;
+
   public CpuCaptureStageView(@NotNull StudioProfilersView view, @NotNull CpuCaptureStage stage) {
     super(view, stage);
     myTrackRendererFactory = new ProfilerTrackRendererFactory(getProfilersView(), myVsyncBackgroundCheckBox::isSelected);
@@ -195,6 +203,7 @@ public class CpuCaptureStageView extends StageView<CpuCaptureStage> {
     leftPanel.setLayout(new BoxLayout(leftPanel, BoxLayout.LINE_AXIS));
     leftPanel.add(myCollapseFrameButton);
     leftPanel.add(myVsyncBackgroundCheckBox);
+    leftPanel.add(myPartialCaptureLabel);
     panel.add(myDeselectAllToolbar, BorderLayout.EAST);
     panel.add(leftPanel, BorderLayout.WEST);
     return panel;
@@ -206,6 +215,7 @@ public class CpuCaptureStageView extends StageView<CpuCaptureStage> {
       getComponent().add(new StatusPanel(getStage().getCaptureHandler(), "Parsing", "Abort"));
       myCollapseFrameButton.setVisible(false);
       myVsyncBackgroundCheckBox.setVisible(false);
+      myPartialCaptureLabel.setVisible(false);
     }
     else {
       // If we had any previously registered analyzing events we unregister them first.
@@ -219,6 +229,7 @@ public class CpuCaptureStageView extends StageView<CpuCaptureStage> {
       myTrackGroupList.getComponent().requestFocusInWindow();
       myCollapseFrameButton.setVisible(!getStage().getCapture().getTags().isEmpty());
       myVsyncBackgroundCheckBox.setVisible(getStage().getCapture().getSystemTraceData() != null);
+      myPartialCaptureLabel.setVisible(getStage().isCapturePartial());
     }
   }
 
@@ -226,11 +237,13 @@ public class CpuCaptureStageView extends StageView<CpuCaptureStage> {
    * Helper function for registering listeners on objects that may not be initialized until the capture has been parsed.
    */
   private void registerAnalyzingEvents() {
-    getStage().getMinimapModel().getRangeSelectionModel().addDependency(this)
+    myRegisteredMinimapModel = getStage().getMinimapModel();
+    myRegisteredCapture = getStage().getCapture();
+    myRegisteredMinimapModel.getRangeSelectionModel().addDependency(this)
       .onChange(RangeSelectionModel.Aspect.SELECTION, this::updateTrackGroupList);
 
     // Repaint track groups when the root nodes' filters changed.
-    getStage().getCapture().getCaptureNodes().forEach(node -> node.getAspectModel().addDependency(this)
+    myRegisteredCapture.getCaptureNodes().forEach(node -> node.getAspectModel().addDependency(this)
       .onChange(CaptureNode.Aspect.FILTER_APPLIED, this::updateTrackGroupList));
   }
 
@@ -238,8 +251,15 @@ public class CpuCaptureStageView extends StageView<CpuCaptureStage> {
    * Helper function for unregistering listeners that get set when we enter the analyzing state for a capture.
    */
   private void unregisterAnalyzingEvents() {
-    getStage().getMinimapModel().getRangeSelectionModel().removeDependencies(this);
-    getStage().getCapture().getCaptureNodes().forEach(node -> node.getAspectModel().removeDependencies(this));
+    // The stage may have replaced a partial capture and its models since they were registered.
+    if (myRegisteredMinimapModel != null) {
+      myRegisteredMinimapModel.getRangeSelectionModel().removeDependencies(this);
+      myRegisteredMinimapModel = null;
+    }
+    if (myRegisteredCapture != null) {
+      myRegisteredCapture.getCaptureNodes().forEach(node -> node.getAspectModel().removeDependencies(this));
+      myRegisteredCapture = null;
+    }
   }
 
   private JComponent createAnalyzingComponents() {
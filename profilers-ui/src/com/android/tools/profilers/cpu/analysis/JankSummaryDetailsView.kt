@@ -25,7 +25,6 @@ import com.android.tools.profilers.StringUtils.bestFittingSuffix
 import com.android.tools.profilers.StudioProfilersView
 import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.CpuCapture
-import com.android.tools.profilers.cpu.LazyDataSeries
 import com.android.tools.profilers.cpu.analysis.TableUtils.setColumnRenderers
 import com.android.tools.profilers.cpu.getActiveColor
 import com.android.tools.profilers.cpu.systemtrace.getTitle
@@ -80,12 +79,12 @@ class JankSummaryDetailsView(profilersView: StudioProfilersView, model: JankAnal
                                            model.sequence.mainEvent.descendants() to "Main")))
 
     addSection(CpuThreadStateTable(profilersView.studioProfilers,
-                                   listOf(LazyDataSeries { model.getThreadState(model.capture.mainThreadId)}),
+                                   listOf(model.getThreadState(model.capture.mainThreadId)),
                                    model.sequence.mainEvent.range(),
                                    "Main thread states")
                  .component)
     addSection(CpuThreadStateTable(profilersView.studioProfilers,
-                                   listOf(LazyDataSeries{model.getThreadState(model.capture.renderThreadId)}),
+                                   listOf(model.getThreadState(model.capture.renderThreadId)),
                                    model.sequence.renderEvent.range(),
                                    "RenderThread states")
                  .component)
@@ -17,12 +17,28 @@ package com.android.tools.profilers.memory
 
 import com.android.tools.profilers.StageView
 import com.android.tools.profilers.StudioProfilersView
+import com.android.tools.profilers.stacktrace.LoadingPanel
+import java.util.Locale
 
 abstract class BaseMemoryProfilerStageView<T: BaseMemoryProfilerStage>(profilersView: StudioProfilersView,
                                                                        stage: T)
       : StageView<T>(profilersView, stage) {
 
+  // Only one loading panel is shown at a time, so only the latest one reports progress.
+  private var latestLoadingPanel: LoadingPanel? = null
+
+  init {
+    stage.captureSelection.aspect.addDependency(this)
+      .onChange(CaptureSelectionAspect.CURRENT_LOADING_PROGRESS) { latestLoadingPanel?.setLoadingText(loadingText()) }
+  }
+
   fun makeLoadingPanel() = profilersView.ideProfilerComponents.createLoadingPanel(-1).apply {
-    setLoadingText("Fetching results")
+    setLoadingText(loadingText())
+    latestLoadingPanel = this
+  }
+
+  private fun loadingText() = when (val progress = stage.captureSelection.loadingProgress) {
+    0.0 -> "Fetching results"
+    else -> String.format(Locale.US, "Fetching results (%d%%)", (progress * 100).toInt())
   }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import com.android.tools.adtui.common.AdtUiCursorType
 import com.android.tools.adtui.common.AdtUiCursorsProvider
 import com.android.tools.adtui.common.TestAdtUiCursorsProvider
 import com.android.tools.adtui.common.replaceAdtUiCursorWithPredefinedCursor
+import com.android.tools.adtui.model.DataSeries
 import com.android.tools.adtui.model.FakeTimer
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.swing.FakeKeyboard
@@ -271,6 +272,7 @@ class CpuCaptureStageViewTest {
     val capture = Mockito.mock(SystemTraceCpuCapture::class.java).apply {
       whenever(range).thenReturn(Range(0.0, 50.0))
       whenever(frameRenderSequence).thenReturn { RenderSequence(null, null, null) }
+      whenever(getThreadStateDataSeries(Mockito.anyInt())).thenReturn(DataSeries.empty())
     }
     val frame = AndroidFrameTimelineEvent(42, 42, 0, 20, 30, "",
                                           PerfettoTrace.FrameTimelineEvent.PresentType.PRESENT_LATE,
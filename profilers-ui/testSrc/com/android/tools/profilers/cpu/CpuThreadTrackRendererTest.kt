@@ -19,13 +19,16 @@ import com.android.testutils.MockitoKt.whenever
 import com.android.tools.adtui.TreeWalker
 import com.android.tools.adtui.chart.hchart.HTreeChart
 import com.android.tools.adtui.chart.statechart.StateChart
+import com.android.tools.adtui.model.DataSeries
 import com.android.tools.adtui.model.DefaultTimeline
 import com.android.tools.adtui.model.FakeTimer
 import com.android.tools.adtui.model.MultiSelectionModel
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.trackgroup.TrackModel
+import com.android.tools.adtui.swing.FakeUi
 import com.android.tools.idea.transport.faketransport.FakeGrpcChannel
 import com.android.tools.idea.transport.faketransport.FakeTransportService
+import com.android.tools.perflib.vmtrace.ClockType
 import com.android.tools.profilers.FakeIdeProfilerComponents
 import com.android.tools.profilers.FakeIdeProfilerServices
 import com.android.tools.profilers.ProfilerClient
@@ -45,6 +48,8 @@ import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
 import org.mockito.Mockito
+import java.awt.Dimension
+import java.awt.Point
 import javax.swing.JComponent
 
 class CpuThreadTrackRendererTest {
@@ -80,7 +85,7 @@ class CpuThreadTrackRendererTest {
     val multiSelectionModel = MultiSelectionModel<CpuAnalyzable<*>>()
     val captureNode = CaptureNode(StubCaptureNodeModel())
     val sysTraceData = Mockito.mock(CpuSystemTraceData::class.java).apply {
-      whenever(getThreadStatesForThread(1)).thenReturn(listOf())
+      whenever(getThreadStateDataSeries(1)).thenReturn(DataSeries.empty())
     }
     val fakeTimeline = DefaultTimeline()
     val mockCapture = Mockito.mock(CpuCapture::class.java).apply {
@@ -157,4 +162,54 @@ class CpuThreadTrackRendererTest {
     val callChart = TreeWalker(component).descendants().filterIsInstance<HTreeChart<*>>().first()
     assertThat(ideProfilerComponents.getCodeLocationSupplier(callChart)).isNotNull()
   }
-}
\ No newline at end of file
+
+  @Test
+  fun callChartFollowsClockTypeChanges() {
+    val child = CaptureNode(StubCaptureNodeModel()).apply {
+      startGlobal = 10
+      endGlobal = 20
+      startThread = 70
+      endThread = 80
+      setDepth(1)
+    }
+    val root = CaptureNode(StubCaptureNodeModel()).apply {
+      startGlobal = 0
+      endGlobal = 100
+      startThread = 0
+      endThread = 100
+      addChild(child)
+    }
+    val capture = BaseCpuCapture(42, TraceType.ART, Range(0.0, 100.0), mapOf(CpuThreadInfo(1, "Thread-1") to root))
+    val timeline = DefaultTimeline().apply { viewRange.set(0.0, 100.0) }
+    val threadTrackModel = TrackModel.newBuilder(
+      CpuThreadTrackModel(
+        capture,
+        CpuThreadInfo(1, "Thread-1"),
+        timeline,
+        MultiSelectionModel(),
+        Utils::runOnUi
+      ),
+      ProfilerTrackRendererType.CPU_THREAD, "Foo").build()
+    val component = CpuThreadTrackRenderer(profilersView, {false}).render(threadTrackModel)
+    @Suppress("UNCHECKED_CAST")
+    val callChart = TreeWalker(component).descendants().filterIsInstance<HTreeChart<*>>().first() as HTreeChart<CaptureNode>
+    callChart.size = Dimension(100, 50)
+    val ui = FakeUi(callChart)
+
+    fun nodeAtX(x: Int): CaptureNode? {
+      ui.render()
+      return (0 until callChart.height).firstNotNullOfOrNull { callChart.getNodeAt(Point(x, it)) }
+    }
+
+    assertThat(nodeAtX(15)).isSameAs(child)
+    assertThat(nodeAtX(75)).isNull()
+
+    capture.updateClockType(ClockType.THREAD)
+    assertThat(nodeAtX(15)).isNull()
+    assertThat(nodeAtX(75)).isSameAs(child)
+
+    capture.updateClockType(ClockType.GLOBAL)
+    assertThat(nodeAtX(15)).isSameAs(child)
+    assertThat(nodeAtX(75)).isNull()
+  }
+}
@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu.analysis
 
 import com.android.testutils.MockitoKt.whenever
 import com.android.tools.adtui.TreeWalker
+import com.android.tools.adtui.model.DataSeries
 import com.android.tools.adtui.model.DefaultTimeline
 import com.android.tools.adtui.model.FakeTimer
 import com.android.tools.adtui.model.MultiSelectionModel
@@ -122,7 +123,7 @@ class CpuThreadSummaryDetailsViewTest {
       viewRange.set(0.0, 0.0)
     }
     val sysTraceData = Mockito.mock(CpuSystemTraceData::class.java).apply {
-      whenever(getThreadStatesForThread(123)).thenReturn(listOf())
+      whenever(getThreadStateDataSeries(123)).thenReturn(DataSeries.empty())
     }
     val sysTrace = Mockito.mock(CpuCapture::class.java).apply {
       whenever(type).thenReturn(TraceType.PERFETTO)
@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu.analysis
 
 import com.android.testutils.MockitoKt.whenever
 import com.android.tools.adtui.TreeWalker
+import com.android.tools.adtui.model.DataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.ui.HideablePanel
 import com.android.tools.profilers.StudioProfilers
@@ -71,7 +72,7 @@ private val CAPTURE = Mockito.mock(SystemTraceCpuCapture::class.java).apply {
   whenever(range).thenReturn(CAPTURE_RANGE)
   whenever(systemTraceData).thenReturn(this)
   whenever(getThreads()).thenReturn(setOf(FAKE_MAIN_THREAD, FAKE_GPU_THREAD, FAKE_RENDER_THREAD))
-  whenever(getThreadStatesForThread(anyInt())).thenReturn(listOf())
+  whenever(getThreadStateDataSeries(anyInt())).thenReturn(DataSeries.empty())
   whenever(frameRenderSequence).thenReturn { RenderSequence(EVENT_NODE, EVENT_NODE, EVENT_NODE) }
 }
 private val MODEL = JankAnalysisModel.Summary(
@@ -16,6 +16,7 @@
 package com.android.tools.profilers.memory
 
 import com.android.tools.adtui.TreeWalker
+import com.android.tools.adtui.model.AspectObserver
 import com.android.tools.adtui.model.FakeTimer
 import com.android.tools.idea.transport.faketransport.FakeGrpcChannel
 import com.android.tools.idea.transport.faketransport.FakeTransportService
@@ -96,6 +97,31 @@ class MemoryCaptureStageViewTest {
     assertThat(createStageWithCaptureLoaded(capture).captureSelection.selectedCapture).isEqualTo(capture)
   }
 
+  @Test
+  fun `loading progress is published while the capture loads`() {
+    val capture = makeFakeCapture { setDoneLoading(false) }
+    val stage = createStageWithCaptureLoaded(capture)
+    MemoryCaptureStageView(profilersView, stage)
+    var progressChanges = 0
+    val observer = AspectObserver()
+    stage.captureSelection.aspect.addDependency(observer)
+      .onChange(CaptureSelectionAspect.CURRENT_LOADING_PROGRESS) { progressChanges++ }
+
+    capture.loadingProgress = 0.5
+    myTimer.tick(FakeTimer.ONE_SECOND_IN_NS)
+    assertThat(stage.captureSelection.loadingProgress).isEqualTo(0.5)
+    assertThat(progressChanges).isEqualTo(1)
+
+    // Unchanged progress is not published again.
+    myTimer.tick(FakeTimer.ONE_SECOND_IN_NS)
+    assertThat(progressChanges).isEqualTo(1)
+
+    stage.exit()
+    capture.loadingProgress = 0.75
+    myTimer.tick(FakeTimer.ONE_SECOND_IN_NS)
+    assertThat(progressChanges).isEqualTo(1)
+  }
+
   private fun createStageWithCaptureLoaded(capture: CaptureObject) = MemoryCaptureStage(
     profilers,
     mockLoader,
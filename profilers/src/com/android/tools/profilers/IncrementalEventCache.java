@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.idea.transport.poller.TransportEventSubscriber;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.Transport.EventGroup;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsResponse;
+import com.android.tools.profiler.proto.TransportServiceGrpc;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Client-side copy of the latest events of a single stream, pid, kind and group, kept up to date by events pushed from the datastore
+ * through a {@link TransportEventSubscriber}. The cache is backfilled with one query from the start of the first requested range; after
+ * that, requests for ranges it covers are answered locally without going back to the datastore.
+ * <p>
+ * Range requests follow the same rules as {@link TransportServiceGrpc.TransportServiceBlockingStub#getEventGroups}: besides the events
+ * within the range, the last event before the range is included if it does not end the group, and the first event after the range is
+ * included if any other event was.
+ * <p>
+ * At most {@link #MAX_EVENTS} events are kept, dropping the oldest ones, so requests for older ranges are left to the caller. Closing the
+ * cache drops its events and its subscription; it is backfilled again if it is used after that. The subscription only holds the cache
+ * weakly and is also closed once the cache has been garbage collected.
+ */
+public class IncrementalEventCache implements AutoCloseable {
+  private static final int INITIAL_CAPACITY = 64;
+  @VisibleForTesting static final int MAX_EVENTS = 20000;
+
+  @NotNull private final TransportServiceGrpc.TransportServiceBlockingStub myClient;
+  @NotNull private final TransportEventSubscriber mySubscriber;
+  @NotNull private final GetEventGroupsRequest myFilter;
+  private final Object myLock = new Object();
+
+  // Events sorted by timestamp. Events sharing a timestamp are kept in arrival order.
+  private long[] myTimestamps = new long[INITIAL_CAPACITY];
+  private Common.Event[] myEvents = new Common.Event[INITIAL_CAPACITY];
+  private int mySize;
+  // All events at or after this timestamp are cached, as well as the last one before it, unless that one ends the group.
+  private long myCoveredFromNs;
+
+  // Events pushed while the backfill query is in flight. Null once the cache has been backfilled.
+  @Nullable private List<Common.Event> myPendingEvents;
+  @Nullable private AutoCloseable mySubscription;
+
+  /**
+   * @param filter the kind, stream id, pid and group id of the events to cache. Timestamp filters are ignored.
+   */
+  public IncrementalEventCache(@NotNull TransportServiceGrpc.TransportServiceBlockingStub client,
+                               @NotNull TransportEventSubscriber subscriber,
+                               @NotNull GetEventGroupsRequest filter) {
+    myClient = client;
+    mySubscriber = subscriber;
+    myFilter = filter.toBuilder().clearFromTimestamp().clearToTimestamp().build();
+  }
+
+  /**
+   * @return the events overlapping [fromNs, toNs], in time order, or null if the range starts before the events in the cache. A bound of 0
+   * means unbounded, as in {@link GetEventGroupsRequest}.
+   */
+  @Nullable
+  public List<Common.Event> getEventsForRange(long fromNs, long toNs) {
+    boolean hasFrom = fromNs > 0;
+    boolean hasTo = toNs > 0 && toNs != Long.MAX_VALUE;
+    ensureBackfilled(hasFrom ? fromNs : Long.MIN_VALUE);
+    synchronized (myLock) {
+      if ((hasFrom ? fromNs : Long.MIN_VALUE) < myCoveredFromNs) {
+        return null;
+      }
+      int start = hasFrom ? lowerBound(fromNs) : 0;
+      int end = hasTo ? upperBound(toNs) : mySize;
+      List<Common.Event> result = new ArrayList<>(end - start + 2);
+      if (start > 0 && !myEvents[start - 1].getIsEnded()) {
+        result.add(myEvents[start - 1]);
+      }
+      result.addAll(Arrays.asList(myEvents).subList(start, end));
+      if (!result.isEmpty() && end < mySize) {
+        result.add(myEvents[end]);
+      }
+      return result;
+    }
+  }
+
+  @VisibleForTesting
+  int getEventCount() {
+    synchronized (myLock) {
+      return mySize;
+    }
+  }
+
+  @Override
+  public void close() {
+    AutoCloseable subscription;
+    synchronized (myLock) {
+      subscription = mySubscription;
+      mySubscription = null;
+      myPendingEvents = null;
+      myTimestamps = new long[INITIAL_CAPACITY];
+      myEvents = new Common.Event[INITIAL_CAPACITY];
+      mySize = 0;
+    }
+    closeSubscription(subscription);
+  }
+
+  private void ensureBackfilled(long fromNs) {
+    synchronized (myLock) {
+      if (mySubscription != null) {
+        return;
+      }
+      myPendingEvents = new ArrayList<>();
+      myCoveredFromNs = fromNs;
+      // Subscribe before querying so that no event can fall in between the two. Events seen by both are de-duplicated when merged.
+      mySubscription = subscribe(new WeakReference<>(this));
+    }
+
+    GetEventGroupsRequest request = fromNs == Long.MIN_VALUE ? myFilter : myFilter.toBuilder().setFromTimestamp(fromNs).build();
+    GetEventGroupsResponse response = myClient.getEventGroups(request);
+    synchronized (myLock) {
+      if (myPendingEvents == null) {
+        // Closed while the query was in flight.
+        return;
+      }
+      for (EventGroup group : response.getGroupsList()) {
+        for (Common.Event event : group.getEventsList()) {
+          add(event);
+        }
+      }
+      List<Common.Event> pendingEvents = myPendingEvents;
+      myPendingEvents = null;
+      pendingEvents.forEach(this::add);
+    }
+  }
+
+  @NotNull
+  private AutoCloseable subscribe(@NotNull WeakReference<IncrementalEventCache> cacheRef) {
+    AtomicReference<AutoCloseable> subscriptionRef = new AtomicReference<>();
+    // Events are pushed from the datastore's poller threads; merging one is cheap enough to be done on the spot.
+    AutoCloseable subscription = mySubscriber.subscribe(myFilter, MoreExecutors.directExecutor(), event -> {
+      IncrementalEventCache cache = cacheRef.get();
+      if (cache != null) {
+        cache.onEvent(event);
+      }
+      else {
+        closeSubscription(subscriptionRef.getAndSet(null));
+      }
+    });
+    subscriptionRef.set(subscription);
+    return subscription;
+  }
+
+  private void onEvent(@NotNull Common.Event event) {
+    synchronized (myLock) {
+      if (myPendingEvents != null) {
+        myPendingEvents.add(event);
+      }
+      else {
+        add(event);
+      }
+    }
+  }
+
+  private void add(@NotNull Common.Event event) {
+    long timestamp = event.getTimestamp();
+    int index = upperBound(timestamp);
+    for (int i = index - 1; i >= 0 && myTimestamps[i] == timestamp; i--) {
+      if (myEvents[i].equals(event)) {
+        return;
+      }
+    }
+    if (mySize == myTimestamps.length) {
+      myTimestamps = Arrays.copyOf(myTimestamps, mySize * 2);
+      myEvents = Arrays.copyOf(myEvents, mySize * 2);
+    }
+    // Events almost always arrive in time order, in which case this is an append.
+    System.arraycopy(myTimestamps, index, myTimestamps, index + 1, mySize - index);
+    System.arraycopy(myEvents, index, myEvents, index + 1, mySize - index);
+    myTimestamps[index] = timestamp;
+    myEvents[index] = event;
+    mySize++;
+    if (mySize > MAX_EVENTS) {
+      dropOldestEvents();
+    }
+  }
+
+  /**
+   * Drops the oldest half of the events, keeping the last one before the new start of the covered range.
+   */
+  private void dropOldestEvents() {
+    myCoveredFromNs = myTimestamps[mySize - MAX_EVENTS / 2];
+    int dropped = Math.max(0, lowerBound(myCoveredFromNs) - 1);
+    System.arraycopy(myTimestamps, dropped, myTimestamps, 0, mySize - dropped);
+    System.arraycopy(myEvents, dropped, myEvents, 0, mySize - dropped);
+    Arrays.fill(myEvents, mySize - dropped, mySize, null);
+    mySize -= dropped;
+  }
+
+  /**
+   * @return the index of the first event at or after the timestamp.
+   */
+  private int lowerBound(long timestamp) {
+    int low = 0;
+    int high = mySize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myTimestamps[mid] < timestamp) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the first event after the timestamp.
+   */
+  private int upperBound(long timestamp) {
+    int low = 0;
+    int high = mySize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myTimestamps[mid] <= timestamp) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static void closeSubscription(@Nullable AutoCloseable subscription) {
+    if (subscription == null) {
+      return;
+    }
+    try {
+      subscription.close();
+    }
+    catch (Exception ignored) {
+    }
+  }
+}
@@ -17,30 +17,77 @@ package com.android.tools.profilers;
 
 import com.android.tools.idea.io.grpc.ManagedChannel;
 import com.android.tools.idea.io.grpc.inprocess.InProcessChannelBuilder;
+import com.android.tools.idea.protobuf.ByteString;
+import com.android.tools.idea.transport.TransportBytesStreamer;
 import com.android.tools.idea.transport.TransportClient;
+import com.android.tools.idea.transport.poller.TransportEventSubscriber;
 import com.android.tools.profiler.proto.Commands;
 import com.android.tools.profiler.proto.EventServiceGrpc;
 import com.android.tools.profiler.proto.Transport;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.google.common.annotations.VisibleForTesting;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class ProfilerClient {
   @NotNull private final ManagedChannel myChannel;
   @NotNull private final TransportServiceGrpc.TransportServiceBlockingStub myTransportClient;
   @NotNull private final EventServiceGrpc.EventServiceBlockingStub myEventClient;
+  @Nullable private final TransportEventSubscriber myEventSubscriber;
+  @Nullable private final TransportBytesStreamer myBytesStreamer;
+  /**
+   * Event caches created by {@link #createEventCache}, held weakly since their data series don't have a dispose hook.
+   */
+  @NotNull private final Set<IncrementalEventCache> myEventCaches =
+    Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
   public ProfilerClient(@NotNull String name) {
+    this(name, null);
+  }
+
+  /**
+   * @param eventSubscriber if not null, data series may subscribe to the events pushed by the datastore instead of polling for them.
+   */
+  public ProfilerClient(@NotNull String name, @Nullable TransportEventSubscriber eventSubscriber) {
+    this(name, eventSubscriber, null);
+  }
+
+  /**
+   * @param bytesStreamer if not null, large payloads are read from the datastore a chunk at a time by {@link #openBytesStream}.
+   */
+  public ProfilerClient(@NotNull String name,
+                        @Nullable TransportEventSubscriber eventSubscriber,
+                        @Nullable TransportBytesStreamer bytesStreamer) {
     // Optimization - In-process direct-executor channel which allows us to communicate between the profiler and transport-database without
     // going through the thread pool. This gives us a speed boost per grpc call plus the full caller's stack in transport-database.
-    this(InProcessChannelBuilder.forName(name).usePlaintext().directExecutor().build());
+    this(InProcessChannelBuilder.forName(name).usePlaintext().directExecutor().build(), eventSubscriber, bytesStreamer);
   }
 
   @VisibleForTesting
   public ProfilerClient(@NotNull ManagedChannel channel) {
+    this(channel, null);
+  }
+
+  @VisibleForTesting
+  public ProfilerClient(@NotNull ManagedChannel channel, @Nullable TransportEventSubscriber eventSubscriber) {
+    this(channel, eventSubscriber, null);
+  }
+
+  @VisibleForTesting
+  public ProfilerClient(@NotNull ManagedChannel channel,
+                        @Nullable TransportEventSubscriber eventSubscriber,
+                        @Nullable TransportBytesStreamer bytesStreamer) {
     myChannel = channel;
+    myEventSubscriber = eventSubscriber;
+    myBytesStreamer = bytesStreamer;
     myTransportClient = TransportServiceGrpc.newBlockingStub(channel);
     myEventClient = EventServiceGrpc.newBlockingStub(channel);
   }
@@ -59,10 +106,57 @@ public class ProfilerClient {
     return myEventClient;
   }
 
+  @Nullable
+  public TransportEventSubscriber getEventSubscriber() {
+    return myEventSubscriber;
+  }
+
+  /**
+   * Creates a cache of the events matching the given filter, kept up to date by the event subscriber, or returns null if there is no event
+   * subscriber. The cache is closed, releasing its events and its subscription, by {@link #closeEventCaches()}.
+   */
+  @Nullable
+  public IncrementalEventCache createEventCache(@NotNull Transport.GetEventGroupsRequest filter) {
+    if (myEventSubscriber == null) {
+      return null;
+    }
+    IncrementalEventCache cache = new IncrementalEventCache(myTransportClient, myEventSubscriber, filter);
+    myEventCaches.add(cache);
+    return cache;
+  }
+
+  /**
+   * Closes the event caches created by {@link #createEventCache}, e.g. when the stage that showed their data goes away. A cache that is
+   * still used after that is backfilled again.
+   */
+  public void closeEventCaches() {
+    List<IncrementalEventCache> caches;
+    synchronized (myEventCaches) {
+      caches = new ArrayList<>(myEventCaches);
+    }
+    caches.forEach(IncrementalEventCache::close);
+  }
+
+  /**
+   * Opens a payload stored in the datastore, e.g. a trace or a heap dump. Payloads are streamed from the datastore when it runs in the same
+   * process, so that callers copying them elsewhere never need to hold them in memory as a whole.
+   *
+   * @return a stream of the payload, or null if it is empty or unavailable. Callers are responsible for closing the stream.
+   */
+  @Nullable
+  public InputStream openBytesStream(@NotNull Transport.BytesRequest request) {
+    if (myBytesStreamer != null) {
+      return myBytesStreamer.openStream(request);
+    }
+    ByteString contents = myTransportClient.getBytes(request).getContents();
+    return contents.isEmpty() ? null : contents.newInput();
+  }
+
   /**
    * Shuts down the managed channel. Should be called when this client is no longer used.
    */
   public void shutdownChannel() {
+    closeEventCaches();
     if (!myChannel.isShutdown()) {
       myChannel.shutdown();
     }
@@ -41,6 +41,7 @@ import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
 import com.android.tools.profiler.proto.Transport.GetEventGroupsResponse;
 import com.android.tools.profiler.proto.Transport.TimeRequest;
 import com.android.tools.profiler.proto.Transport.TimeResponse;
+import com.android.tools.profilers.cpu.CpuCaptureCache;
 import com.android.tools.profilers.cpu.CpuCaptureMetadata;
 import com.android.tools.profilers.cpu.CpuProfiler;
 import com.android.tools.profilers.cpu.CpuProfilerStage;
@@ -146,6 +147,11 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
 
   @NotNull private final SessionsManager mySessionsManager;
 
+  /**
+   * CPU captures parsed while the profilers are open, so that going back to a capture doesn't parse its trace again.
+   */
+  @NotNull private final CpuCaptureCache myCpuCaptureCache = new CpuCaptureCache();
+
   @Nullable
   private Common.Process myProcess;
 
@@ -306,6 +312,7 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     changed(ProfilerAspect.STAGE);
     // Shutdown the gRPC channel after changing the aspect because some operations triggered by the aspect depends on the channel.
     myClient.shutdownChannel();
+    myCpuCaptureCache.clear();
   }
 
   @NotNull
@@ -785,6 +792,11 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     return myClient;
   }
 
+  @NotNull
+  public CpuCaptureCache getCpuCaptureCache() {
+    return myCpuCaptureCache;
+  }
+
   @NotNull
   public SessionsManager getSessionsManager() {
     return mySessionsManager;
@@ -819,6 +831,8 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
 
   public void setStage(@NotNull Stage stage) {
     myStage.exit();
+    // Release the events cached for the data series of the previous stage. The ones the new stage uses are backfilled on demand.
+    myClient.closeEventCaches();
     getTimeline().getSelectionRange().clear();
     myStage = stage;
     myStage.getStudioProfilers().getUpdater().reset();
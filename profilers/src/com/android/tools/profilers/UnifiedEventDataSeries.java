@@ -28,6 +28,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Generic numeric (Long) data series that allows the caller to customize which field within the {@link Common.Event} to use when when
@@ -43,6 +44,7 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
   @NotNull private final Common.Event.Kind myKind;
   private final int myGroupId;
   @NotNull private final Function<List<Common.Event>, List<SeriesData<T>>> myDataExtractor;
+  @Nullable private final IncrementalEventCache myCache;
 
   /**
    * @param client        the grpc client to request data from.
@@ -58,24 +60,48 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
                                 @NotNull Common.Event.Kind kind,
                                 int groupId,
                                 @NotNull Function<List<Common.Event>, List<SeriesData<T>>> dataExtractor) {
+    this(client, null, streamId, pid, kind, groupId, dataExtractor);
+  }
+
+  /**
+   * Same as above, except that if the client has an event subscriber the latest events are cached locally and kept up to date by the
+   * datastore, so that each request for a recent range only costs a lookup instead of a query. See {@link ProfilerClient#createEventCache}.
+   */
+  public UnifiedEventDataSeries(@NotNull ProfilerClient client,
+                                long streamId,
+                                int pid,
+                                @NotNull Common.Event.Kind kind,
+                                int groupId,
+                                @NotNull Function<List<Common.Event>, List<SeriesData<T>>> dataExtractor) {
+    this(client.getTransportClient(), client, streamId, pid, kind, groupId, dataExtractor);
+  }
+
+  private UnifiedEventDataSeries(@NotNull TransportServiceGrpc.TransportServiceBlockingStub client,
+                                 @Nullable ProfilerClient profilerClient,
+                                 long streamId,
+                                 int pid,
+                                 @NotNull Common.Event.Kind kind,
+                                 int groupId,
+                                 @NotNull Function<List<Common.Event>, List<SeriesData<T>>> dataExtractor) {
     myClient = client;
     myStreamId = streamId;
     myPid = pid;
     myKind = kind;
     myGroupId = groupId;
     myDataExtractor = dataExtractor;
+    myCache = profilerClient == null ? null : profilerClient.createEventCache(buildRequest().build());
   }
 
   @Override
   public List<SeriesData<T>> getDataForRange(Range rangeUs) {
-    GetEventGroupsRequest request = GetEventGroupsRequest.newBuilder()
-      .setStreamId(myStreamId)
-      .setPid(myPid)
-      .setKind(myKind)
-      .setGroupId(myGroupId)
-      .setFromTimestamp(TimeUnit.MICROSECONDS.toNanos((long)rangeUs.getMin()))
-      .setToTimestamp(TimeUnit.MICROSECONDS.toNanos((long)rangeUs.getMax()))
-      .build();
+    long fromNs = TimeUnit.MICROSECONDS.toNanos((long)rangeUs.getMin());
+    long toNs = TimeUnit.MICROSECONDS.toNanos((long)rangeUs.getMax());
+    List<Common.Event> cachedEvents = myCache != null ? myCache.getEventsForRange(fromNs, toNs) : null;
+    if (cachedEvents != null) {
+      return cachedEvents.isEmpty() ? new ArrayList<>() : myDataExtractor.apply(cachedEvents);
+    }
+
+    GetEventGroupsRequest request = buildRequest().setFromTimestamp(fromNs).setToTimestamp(toNs).build();
     GetEventGroupsResponse response = myClient.getEventGroups(request);
     // We don't expect more than one data group in our numeric data series. This is to avoid having to sort the data from multiple groups
     // after they are added to the list. We can re-evaluate if the need arises.
@@ -86,6 +112,15 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
     return myDataExtractor.apply(response.getGroups(0).getEventsList());
   }
 
+  @NotNull
+  private GetEventGroupsRequest.Builder buildRequest() {
+    return GetEventGroupsRequest.newBuilder()
+      .setStreamId(myStreamId)
+      .setPid(myPid)
+      .setKind(myKind)
+      .setGroupId(myGroupId);
+  }
+
   /**
    * Helper function that constructs list data extractor from a field extractor for the simple case of extracting one field out of every
    * {@link Common.Event}.
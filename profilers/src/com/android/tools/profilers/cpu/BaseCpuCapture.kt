@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu
 import com.android.tools.adtui.model.DefaultTimeline
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.Timeline
+import com.android.tools.adtui.model.filter.Filter
 import com.android.tools.perflib.vmtrace.ClockType
 import com.android.tools.profilers.cpu.config.ProfilingConfiguration.TraceType
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
@@ -57,6 +58,7 @@ open class BaseCpuCapture @JvmOverloads constructor(/**
   private val threadIdToNode: Map<Int, CaptureNode> = captureTrees.mapKeys { it.key.id }
   private val mainThreadId: Int
   private var clockType: ClockType
+  private val initialClockType: ClockType
   var tagsCollapsed = setOf<String>()
   private val unabbreviatedTrees: Map<CaptureNode, List<CaptureNode>>
 
@@ -64,6 +66,7 @@ open class BaseCpuCapture @JvmOverloads constructor(/**
     // If the trace is empty, use [NO_THREAD_ID].
     mainThreadId = (availableThreads.find { it.isMainThread } ?: captureTrees.maxByOrNull { it.value.duration }?.key)?.id ?: NO_THREAD_ID
     clockType = threadIdToNode[mainThreadId]?.clockType ?: ClockType.GLOBAL
+    initialClockType = clockType
     unabbreviatedTrees = threadIdToNode.values.associateWith { it.children.toList() }
   }
 
@@ -82,6 +85,11 @@ open class BaseCpuCapture @JvmOverloads constructor(/**
     viewRange.set(range)
   }
 
+  /**
+   * The view range the capture is first shown with.
+   */
+  protected open val initialViewRange: Range get() = timeline.dataRange
+
   override fun getMainThreadId() = mainThreadId
   override fun getTimeline() = timeline
   override fun getCaptureNode(threadId: Int) = threadIdToNode[threadId]
@@ -95,7 +103,7 @@ open class BaseCpuCapture @JvmOverloads constructor(/**
     if (this.clockType != clockType) {
       this.clockType = clockType
       for (tree in captureNodes) {
-        tree.descendantsStream.forEach { it.clockType = clockType }
+        tree.updateClockType(clockType)
       }
     }
   }
@@ -126,6 +134,19 @@ open class BaseCpuCapture @JvmOverloads constructor(/**
     }
   }
 
+  /**
+   * Puts the capture back in the state it was parsed in, so that a stage showing it again doesn't inherit the view range, clock type,
+   * collapsed tags and filter that another stage left it with.
+   */
+  fun resetViewState() {
+    timeline.selectionRange.clear()
+    timeline.tooltipRange.clear()
+    timeline.viewRange.set(initialViewRange)
+    updateClockType(initialClockType)
+    collapseNodesWithTags(setOf())
+    captureNodes.forEach { it.applyFilter(Filter.EMPTY_FILTER) }
+  }
+
   override fun getTags() = tags
   override fun getCollapsedTags() = tagsCollapsed
 
@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu
+
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A call tree stored as parallel arrays with one slot per node: its model, its start and end with each clock, its parent, first child,
+ * last child and next sibling, its depth and its filter and clock types. A capture with millions of frames then takes a dozen arrays
+ * instead of a node object, a child list and its backing array per frame.
+ *
+ * [CaptureNode]s are views over the slots of a store. The view of a slot is only created when it is asked for with [node], and is then
+ * reused so that nodes keep their identity. Parsers build their trees directly in a store with [addNode] and only need the views of the
+ * roots.
+ *
+ * Like trees of [CaptureNode] objects, a store is built on one thread and only read once it is shared.
+ */
+class CallTreeStore @JvmOverloads constructor(initialCapacity: Int = DEFAULT_CAPACITY) {
+
+  companion object {
+    /**
+     * Slot index standing for no node, e.g. the parent of a root.
+     */
+    const val NO_NODE = -1
+
+    private const val DEFAULT_CAPACITY = 16
+
+    /**
+     * Children before this position are found by walking the sibling links, the others through [childrenOf].
+     */
+    private const val LINEAR_SCAN_LIMIT = 8
+
+    private const val FILTER_TYPE_MASK = 0x3
+    private const val THREAD_CLOCK = 0x4
+    private const val LINKED = 0x8
+    private const val HAS_CHILD_LIST = 0x10
+    private const val HAS_PARENT_OVERRIDE = 0x20
+
+    private val FILTER_TYPES = CaptureNode.FilterType.values()
+  }
+
+  /**
+   * Number of slots in use.
+   */
+  var size = 0
+    private set
+
+  private var models = arrayOfNulls<CaptureNodeModel>(initialCapacity)
+  private var startsGlobal = LongArray(initialCapacity)
+  private var endsGlobal = LongArray(initialCapacity)
+  private var startsThread = LongArray(initialCapacity)
+  private var endsThread = LongArray(initialCapacity)
+  private var parents = IntArray(initialCapacity)
+  private var firstChildren = IntArray(initialCapacity)
+  private var lastChildren = IntArray(initialCapacity)
+  private var nextSiblings = IntArray(initialCapacity)
+  private var childCounts = IntArray(initialCapacity)
+  private var depths = IntArray(initialCapacity)
+  private var flags = ByteArray(initialCapacity)
+  private var views = arrayOfNulls<CaptureNode>(initialCapacity)
+
+  /**
+   * Whether this store only holds the tree of a node created on its own, so that a parent in another store can take the tree over when
+   * the node is added to it.
+   */
+  internal var isStandalone = false
+
+  /**
+   * Children of the nodes whose children are kept as a list of views instead of being linked in this store, because some of them are in
+   * other stores or keep their own parent. See [addChild] and [appendChild].
+   */
+  private var childLists: HashMap<Int, MutableList<CaptureNode>>? = null
+
+  /**
+   * Parents in other stores of the nodes that were added to them as children.
+   */
+  private var parentOverrides: HashMap<Int, CaptureNode>? = null
+
+  /**
+   * Children of the nodes with many children by position, so that going through them with [getChildAt] doesn't walk the sibling links
+   * every time. Dropped when the children of a node change.
+   */
+  @Volatile
+  private var wideChildren: ConcurrentHashMap<Int, IntArray>? = null
+
+  /**
+   * Adds a node with the [ClockType.GLOBAL] clock as the last child of [parent], or as a root if it is [NO_NODE].
+   *
+   * @return the slot of the new node
+   */
+  fun addNode(parent: Int, data: CaptureNodeModel) = addNode(parent, data, ClockType.GLOBAL)
+
+  /**
+   * Adds a node as the last child of [parent], or as a root if it is [NO_NODE]. Its times and depth start at 0.
+   *
+   * @return the slot of the new node
+   */
+  fun addNode(parent: Int, data: CaptureNodeModel, clockType: ClockType): Int {
+    ensureCapacity(size + 1)
+    val slot = size++
+    models[slot] = data
+    parents[slot] = NO_NODE
+    firstChildren[slot] = NO_NODE
+    lastChildren[slot] = NO_NODE
+    nextSiblings[slot] = NO_NODE
+    flags[slot] = (CaptureNode.FilterType.MATCH.ordinal or (if (clockType == ClockType.THREAD) THREAD_CLOCK else 0)).toByte()
+    if (parent != NO_NODE) {
+      link(slot, parent)
+      childList(parent)?.add(node(slot))
+    }
+    return slot
+  }
+
+  /**
+   * Makes [node] the last child of [parent], along with its descendants. It no longer is a child of its previous parent.
+   */
+  fun moveNode(node: Int, parent: Int) {
+    if (hasFlag(node, LINKED)) {
+      unlink(node)
+    }
+    link(node, parent)
+  }
+
+  /**
+   * Returns the view of the given slot.
+   */
+  fun node(index: Int): CaptureNode = views[index] ?: synchronized(this) {
+    views[index] ?: CaptureNode(this, index).also { views[index] = it }
+  }
+
+  fun getData(node: Int): CaptureNodeModel = models[node]!!
+
+  fun getStartGlobal(node: Int) = startsGlobal[node]
+  fun setStartGlobal(node: Int, timeUs: Long) {
+    startsGlobal[node] = timeUs
+  }
+
+  fun getEndGlobal(node: Int) = endsGlobal[node]
+  fun setEndGlobal(node: Int, timeUs: Long) {
+    endsGlobal[node] = timeUs
+  }
+
+  fun getStartThread(node: Int) = startsThread[node]
+  fun setStartThread(node: Int, timeUs: Long) {
+    startsThread[node] = timeUs
+  }
+
+  fun getEndThread(node: Int) = endsThread[node]
+  fun setEndThread(node: Int, timeUs: Long) {
+    endsThread[node] = timeUs
+  }
+
+  fun getDepth(node: Int) = depths[node]
+  fun setDepth(node: Int, depth: Int) {
+    depths[node] = depth
+  }
+
+  /**
+   * Returns the parent of [node] in this store, or [NO_NODE].
+   */
+  fun getParent(node: Int) = parents[node]
+
+  /**
+   * The following return the children linked in this store, which are all the children of a node unless some were added from other
+   * stores.
+   */
+  fun getChildCount(node: Int) = childCounts[node]
+  fun getFirstChild(node: Int) = firstChildren[node]
+  fun getLastChild(node: Int) = lastChildren[node]
+  fun getNextSibling(node: Int) = nextSiblings[node]
+
+  fun getChildAt(parent: Int, position: Int): Int {
+    val count = childCounts[parent]
+    if (position < 0 || position >= count) {
+      throw IndexOutOfBoundsException("Index: $position, Size: $count")
+    }
+    if (position == count - 1) {
+      return lastChildren[parent]
+    }
+    if (position < LINEAR_SCAN_LIMIT) {
+      var child = firstChildren[parent]
+      repeat(position) { child = nextSiblings[child] }
+      return child
+    }
+    return childrenOf(parent)[position]
+  }
+
+  internal fun getFilterType(node: Int) = FILTER_TYPES[flags[node].toInt() and FILTER_TYPE_MASK]
+  internal fun setFilterType(node: Int, filterType: CaptureNode.FilterType) {
+    flags[node] = (flags[node].toInt() and FILTER_TYPE_MASK.inv() or filterType.ordinal).toByte()
+  }
+
+  internal fun getClockType(node: Int) = if (hasFlag(node, THREAD_CLOCK)) ClockType.THREAD else ClockType.GLOBAL
+  internal fun setClockType(node: Int, clockType: ClockType) = setFlag(node, THREAD_CLOCK, clockType == ClockType.THREAD)
+
+  internal fun register(view: CaptureNode) {
+    views[view.index] = view
+  }
+
+  /**
+   * Returns the children of [node] when they are kept as a list, see [childLists].
+   */
+  internal fun childList(node: Int): MutableList<CaptureNode>? = if (hasFlag(node, HAS_CHILD_LIST)) childLists!![node] else null
+
+  /**
+   * Returns the parent of [child], which may be in another store.
+   */
+  internal fun parentNode(child: Int): CaptureNode? = when {
+    hasFlag(child, HAS_PARENT_OVERRIDE) -> parentOverrides!![child]
+    parents[child] == NO_NODE -> null
+    else -> node(parents[child])
+  }
+
+  /**
+   * Adds [child] as the last child of [parent] and makes [parent] its parent. A child in this store is linked to its new parent. A node
+   * created on its own is moved to this store with its descendants. Any other node stays in its store and is listed by [parent].
+   */
+  internal fun addChild(parent: Int, child: CaptureNode) {
+    if (child.store !== this && child.store.canBeMovedOut(child.index)) {
+      moveIn(child)
+    }
+    if (child.store === this) {
+      setParentOverride(child.index, null)
+      moveNode(child.index, parent)
+      childList(parent)?.add(child)
+    }
+    else {
+      appendChild(parent, child)
+      child.store.setParentOverride(child.index, node(parent))
+    }
+  }
+
+  /**
+   * Adds [child] as the last child of [parent] without changing its parent.
+   */
+  internal fun appendChild(parent: Int, child: CaptureNode) {
+    val list = childList(parent) ?: ArrayList<CaptureNode>(childCounts[parent] + 1).also { list ->
+      var linked = firstChildren[parent]
+      while (linked != NO_NODE) {
+        list.add(node(linked))
+        linked = nextSiblings[linked]
+      }
+      (childLists ?: HashMap<Int, MutableList<CaptureNode>>().also { childLists = it })[parent] = list
+      setFlag(parent, HAS_CHILD_LIST, true)
+    }
+    list.add(child)
+  }
+
+  /**
+   * Removes all the children of [parent]. Like removing them from a list, their parent doesn't change.
+   */
+  internal fun clearChildren(parent: Int) {
+    var child = firstChildren[parent]
+    while (child != NO_NODE) {
+      setFlag(child, LINKED, false)
+      child = nextSiblings[child]
+    }
+    firstChildren[parent] = NO_NODE
+    lastChildren[parent] = NO_NODE
+    childCounts[parent] = 0
+    wideChildren?.remove(parent)
+    if (hasFlag(parent, HAS_CHILD_LIST)) {
+      childLists!!.remove(parent)
+      setFlag(parent, HAS_CHILD_LIST, false)
+    }
+  }
+
+  private fun canBeMovedOut(node: Int) =
+    isStandalone && node == 0 && parents[0] == NO_NODE && childLists == null && parentOverrides == null
+
+  /**
+   * Moves the tree of a node created on its own into this store, as a new root. Its views are moved along, so the nodes keep their
+   * identity. Nodes that were removed from the tree stay in the old store.
+   */
+  private fun moveIn(root: CaptureNode) {
+    val from = root.store
+    val slots = IntArray(from.size) { NO_NODE }
+    ensureCapacity(size + from.size)
+    // Pre-order walk of the tree through its links, so that parents are copied before their children.
+    var node = 0
+    while (true) {
+      val copy = size++
+      models[copy] = from.models[node]
+      startsGlobal[copy] = from.startsGlobal[node]
+      endsGlobal[copy] = from.endsGlobal[node]
+      startsThread[copy] = from.startsThread[node]
+      endsThread[copy] = from.endsThread[node]
+      depths[copy] = from.depths[node]
+      flags[copy] = (from.flags[node].toInt() and (FILTER_TYPE_MASK or THREAD_CLOCK)).toByte()
+      parents[copy] = NO_NODE
+      firstChildren[copy] = NO_NODE
+      lastChildren[copy] = NO_NODE
+      nextSiblings[copy] = NO_NODE
+      if (node != 0) {
+        link(copy, slots[from.parents[node]])
+      }
+      slots[node] = copy
+
+      if (from.firstChildren[node] != NO_NODE) {
+        node = from.firstChildren[node]
+        continue
+      }
+      while (node != 0 && from.nextSiblings[node] == NO_NODE) {
+        node = from.parents[node]
+      }
+      if (node == 0) {
+        break
+      }
+      node = from.nextSiblings[node]
+    }
+
+    for (oldSlot in 0 until from.size) {
+      val view = from.views[oldSlot]
+      if (view != null && slots[oldSlot] != NO_NODE) {
+        view.moveTo(this, slots[oldSlot])
+        views[slots[oldSlot]] = view
+        from.views[oldSlot] = null
+      }
+    }
+    from.isStandalone = false
+  }
+
+  private fun link(node: Int, parent: Int) {
+    parents[node] = parent
+    nextSiblings[node] = NO_NODE
+    val last = lastChildren[parent]
+    if (last == NO_NODE) {
+      firstChildren[parent] = node
+    }
+    else {
+      nextSiblings[last] = node
+    }
+    lastChildren[parent] = node
+    childCounts[parent]++
+    setFlag(node, LINKED, true)
+    wideChildren?.remove(parent)
+  }
+
+  private fun unlink(node: Int) {
+    val parent = parents[node]
+    var previous = NO_NODE
+    var child = firstChildren[parent]
+    while (child != node) {
+      if (child == NO_NODE) {
+        return
+      }
+      previous = child
+      child = nextSiblings[child]
+    }
+    if (previous == NO_NODE) {
+      firstChildren[parent] = nextSiblings[node]
+    }
+    else {
+      nextSiblings[previous] = nextSiblings[node]
+    }
+    if (lastChildren[parent] == node) {
+      lastChildren[parent] = previous
+    }
+    childCounts[parent]--
+    setFlag(node, LINKED, false)
+    wideChildren?.remove(parent)
+  }
+
+  private fun setParentOverride(node: Int, parent: CaptureNode?) {
+    if (parent != null) {
+      (parentOverrides ?: HashMap<Int, CaptureNode>().also { parentOverrides = it })[node] = parent
+      setFlag(node, HAS_PARENT_OVERRIDE, true)
+    }
+    else if (hasFlag(node, HAS_PARENT_OVERRIDE)) {
+      parentOverrides!!.remove(node)
+      setFlag(node, HAS_PARENT_OVERRIDE, false)
+    }
+  }
+
+  private fun childrenOf(parent: Int): IntArray {
+    val cache = wideChildren ?: synchronized(this) { wideChildren ?: ConcurrentHashMap<Int, IntArray>().also { wideChildren = it } }
+    return cache.getOrPut(parent) {
+      val children = IntArray(childCounts[parent])
+      var child = firstChildren[parent]
+      for (i in children.indices) {
+        children[i] = child
+        child = nextSiblings[child]
+      }
+      children
+    }
+  }
+
+  private fun hasFlag(node: Int, flag: Int) = flags[node].toInt() and flag != 0
+
+  private fun setFlag(node: Int, flag: Int, value: Boolean) {
+    flags[node] = (if (value) flags[node].toInt() or flag else flags[node].toInt() and flag.inv()).toByte()
+  }
+
+  private fun ensureCapacity(capacity: Int) {
+    if (capacity <= models.size) {
+      return
+    }
+    val newCapacity = maxOf(capacity, models.size + (models.size shr 1) + 1)
+    models = models.copyOf(newCapacity)
+    startsGlobal = startsGlobal.copyOf(newCapacity)
+    endsGlobal = endsGlobal.copyOf(newCapacity)
+    startsThread = startsThread.copyOf(newCapacity)
+    endsThread = endsThread.copyOf(newCapacity)
+    parents = parents.copyOf(newCapacity)
+    firstChildren = firstChildren.copyOf(newCapacity)
+    lastChildren = lastChildren.copyOf(newCapacity)
+    nextSiblings = nextSiblings.copyOf(newCapacity)
+    childCounts = childCounts.copyOf(newCapacity)
+    depths = depths.copyOf(newCapacity)
+    flags = flags.copyOf(newCapacity)
+    views = views.copyOf(newCapacity)
+  }
+}
@@ -23,51 +23,83 @@ import com.android.tools.perflib.vmtrace.ClockType
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 import com.google.common.annotations.VisibleForTesting
 import java.util.PriorityQueue
+import java.util.Spliterator
+import java.util.Spliterators
+import java.util.function.Consumer
 import java.util.function.Predicate
 import java.util.stream.Stream
-import kotlin.reflect.KMutableProperty1
+import java.util.stream.StreamSupport
 
-open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : HNode<CaptureNode> {
+/**
+ * A node of a call tree. Nodes are views over the slots of a [CallTreeStore]: a node created on its own gets a store of its own, which
+ * is merged into the store of the first parent it is added to.
+ */
+open class CaptureNode internal constructor(store: CallTreeStore, index: Int) : HNode<CaptureNode> {
+
+  constructor(data: CaptureNodeModel, clockType: ClockType) : this(CallTreeStore(1), data, clockType)
 
   @VisibleForTesting
   constructor(data: CaptureNodeModel) : this(data, ClockType.GLOBAL) {}
 
+  private constructor(store: CallTreeStore, data: CaptureNodeModel, clockType: ClockType)
+    : this(store, store.addNode(CallTreeStore.NO_NODE, data, clockType)) {
+    store.isStandalone = true
+    store.register(this)
+  }
+
   /**
-   * Start time with GLOBAL clock.
+   * The store holding this node, which changes when the tree of a node created on its own is added to a parent.
    */
-  var startGlobal = 0L
+  var store = store
+    private set
 
   /**
-   * End time with GLOBAL clock.
+   * The slot of this node in [store].
    */
-  var endGlobal = 0L
+  var index = index
+    private set
+
+  val data: CaptureNodeModel
+    get() = store.getData(index)
+
+  var clockType: ClockType
+    get() = store.getClockType(index)
+    set(value) = store.setClockType(index, value)
 
   /**
-   * Start time with THREAD clock.
+   * Start time with GLOBAL clock.
    */
-  var startThread = 0L
+  var startGlobal: Long
+    get() = store.getStartGlobal(index)
+    set(value) = store.setStartGlobal(index, value)
 
   /**
-   * End time with THREAD clock.
+   * End time with GLOBAL clock.
    */
-  var endThread = 0L
-  @JvmField
-  protected val childrenList = mutableListOf<CaptureNode>()
+  var endGlobal: Long
+    get() = store.getEndGlobal(index)
+    set(value) = store.setEndGlobal(index, value)
 
   /**
-   * The parent of its child is set to it when it is added [.addChild]
+   * Start time with THREAD clock.
    */
-  private var parent: CaptureNode? = null
+  var startThread: Long
+    get() = store.getStartThread(index)
+    set(value) = store.setStartThread(index, value)
 
   /**
-   * see [FilterType].
+   * End time with THREAD clock.
    */
-  var filterType = FilterType.MATCH
+  var endThread: Long
+    get() = store.getEndThread(index)
+    set(value) = store.setEndThread(index, value)
 
   /**
-   * The shortest distance from the root.
+   * see [FilterType].
    */
-  private var depth = 0
+  var filterType: FilterType
+    get() = store.getFilterType(index)
+    set(value) = store.setFilterType(index, value)
 
   /**
    * Aspect model for the node [Aspect]. Only root nodes provide aspect changes so it is lazily initialized to avoid the overhead of
@@ -76,7 +108,7 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
   private var aspectModelPlaceHolder: AspectModel<Aspect>? = null
 
   val children: List<CaptureNode>
-    get() = childrenList
+    get() = store.childList(index) ?: LinkedChildren(store, index)
 
   val isUnmatched: Boolean
     get() = filterType == FilterType.UNMATCH
@@ -85,34 +117,58 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    * @return all descendants in pre-order (i.e. node, left, right) as a stream.
    */
   val descendantsStream: Stream<CaptureNode>
-    get() = Stream.concat(Stream.of(this), children.stream().flatMap { it.descendantsStream })
+    get() = StreamSupport.stream(PreOrderSpliterator(PreOrderWalk(this)), false)
 
-  open fun addChild(node: CaptureNode) {
-    childrenList.add(node)
-    node.parent = this
-  }
+  open fun addChild(node: CaptureNode) = store.addChild(index, node)
+
+  /**
+   * Adds a child without making this node its parent.
+   */
+  protected fun appendChild(node: CaptureNode) = store.appendChild(index, node)
+
+  /**
+   * Adds a new node as the last child of this one, in the same store. Its times and depth start at 0.
+   */
+  fun createChild(data: CaptureNodeModel): CaptureNode = store.node(store.addNode(index, data, clockType))
 
   fun addChildren(nodes: Collection<CaptureNode>) = nodes.forEach(::addChild)
-  fun clearChildren() = childrenList.clear()
+  fun clearChildren() = store.clearChildren(index)
+
+  override fun getChildCount() = store.childList(index)?.size ?: store.getChildCount(index)
+  override fun getChildAt(index: Int) = store.childList(this.index)?.get(index) ?: store.node(store.getChildAt(this.index, index))
+  override fun getFirstChild() = store.childList(index)?.firstOrNull() ?: store.getFirstChild(index).let(::nodeOrNull)
+  override fun getLastChild() = store.childList(index)?.lastOrNull() ?: store.getLastChild(index).let(::nodeOrNull)
 
-  override fun getChildCount() = childrenList.size
-  override fun getChildAt(index: Int) = childrenList[index]
-  override fun getParent() = parent
+  /**
+   * Calls [action] on this node and all its descendants in pre-order. Unlike [descendantsStream], this doesn't go through a stream.
+   */
+  fun forEachDescendant(action: (CaptureNode) -> Unit) {
+    val walk = PreOrderWalk(this)
+    while (walk.advance()) {
+      action(walk.store.node(walk.index))
+    }
+  }
+  override fun getParent() = store.parentNode(index)
 
   /**
    * @return root node of this node. If this node doesn't have a parent, return this node.
    */
   fun findRootNode(): CaptureNode {
-    tailrec fun find(node: CaptureNode): CaptureNode = when (val parent = node.parent) {
-      null -> node
-      else -> find(parent)
+    var node = this
+    while (true) {
+      // Climb through the slots of the store, and only go through the views to get to another store.
+      var slot = node.index
+      while (node.store.getParent(slot) != CallTreeStore.NO_NODE && node.store.node(slot).hasOwnParent()) {
+        slot = node.store.getParent(slot)
+      }
+      node = node.store.node(slot)
+      node = node.parent ?: return node
     }
-    return find(this)
   }
 
   override fun getStart() = if (clockType == ClockType.THREAD) startThread else startGlobal
   override fun getEnd() = if (clockType == ClockType.THREAD) endThread else endGlobal
-  override fun getDepth() = depth
+  override fun getDepth() = store.getDepth(index)
 
   val aspectModel: AspectModel<Aspect>
     get() {
@@ -127,24 +183,30 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    */
   fun threadGlobalRatio(): Double = (endThread - startThread).toDouble() / (endGlobal - startGlobal)
 
-  fun setDepth(depth: Int) {
-    this.depth = depth
-  }
+  fun setDepth(depth: Int) = store.setDepth(index, depth)
 
   /**
-   * Iterate through all descendants of this node, apply a filter and then find the top k nodes by the given comparator.
+   * Iterate through all descendants of this node, apply a filter and then find the top k nodes by the given comparator. Only the nodes
+   * whose model passes the filter are compared.
    *
    * @param k          number of results
-   * @param filter     keep only nodes that satisfies this filter
+   * @param filter     keep only nodes whose model satisfies this filter
    * @param comparator to compare nodes by
    * @return up to top k nodes from all descendants, in descending order
    */
-  fun getTopKNodes(k: Int, filter: Predicate<CaptureNode>, comparator: Comparator<CaptureNode>): List<CaptureNode> {
+  fun getTopKNodes(k: Int, filter: Predicate<CaptureNodeModel>, comparator: Comparator<CaptureNode>): List<CaptureNode> {
     // Put all matched nodes in a priority queue capped at size n, so the queue always contain the n longest running ones.
     val candidates = PriorityQueue(k + 1, comparator)
-    descendantsStream.filter(filter).forEach { node ->
-      candidates.offer(node)
-      if (candidates.size > k) candidates.poll()
+    val walk = PreOrderWalk(this)
+    while (walk.advance()) {
+      if (filter.test(walk.store.getData(walk.index))) {
+        val node = walk.store.node(walk.index)
+        // Once the queue is full, most nodes are shorter than the shortest candidate; skip them without touching the queue.
+        if (candidates.size < k || comparator.compare(node, candidates.peek()) > 0) {
+          candidates.offer(node)
+          if (candidates.size > k) candidates.poll()
+        }
+      }
     }
     return candidates.sortedWith(comparator.reversed())
   }
@@ -158,55 +220,117 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
   fun applyFilter(filter: Filter) = computeFilter(filter).also { aspectModelPlaceHolder?.changed(Aspect.FILTER_APPLIED) }
 
   /**
-   * Recursively applies filter to this node and its children.
+   * Switches this node and its descendants to the given clock type, which changes their start and end in place.
+   */
+  fun updateClockType(clockType: ClockType) {
+    val walk = PreOrderWalk(this)
+    while (walk.advance()) {
+      walk.store.setClockType(walk.index, clockType)
+    }
+    aspectModelPlaceHolder?.changed(Aspect.CLOCK_TYPE_CHANGED)
+  }
+
+  /**
+   * Applies filter to this node and its descendants. A node matches if it or one of its ancestors matches the filter exactly, so the
+   * nodes are first visited in pre-order. It is unmatched if it doesn't match and none of its children does, so they are then visited
+   * in reverse pre-order, where children come before their parent.
    */
   private fun computeFilter(filter: Filter): FilterResult {
+    var stores = arrayOfNulls<CallTreeStore>(INITIAL_WALK_CAPACITY)
+    var slots = IntArray(INITIAL_WALK_CAPACITY)
+    var parentPositions = IntArray(INITIAL_WALK_CAPACITY)
+    var exactMatches = BooleanArray(INITIAL_WALK_CAPACITY)
+    var matches = BooleanArray(INITIAL_WALK_CAPACITY)
     var totalCount = 0
     var matchCount = 0
-    fun CaptureNode.updateFilter(ancestorMatches: Boolean) {
-      val nodeExactMatch = filter.matches(data.fullName)
-      val matches = ancestorMatches || nodeExactMatch
-      if (nodeExactMatch) matchCount++
+    val walk = PreOrderWalk(this)
+    while (walk.advance()) {
+      if (totalCount == slots.size) {
+        val capacity = totalCount * 2
+        stores = stores.copyOf(capacity)
+        slots = slots.copyOf(capacity)
+        parentPositions = parentPositions.copyOf(capacity)
+        exactMatches = exactMatches.copyOf(capacity)
+        matches = matches.copyOf(capacity)
+      }
+      val exactMatch = filter.matches(walk.store.getData(walk.index).fullName)
+      if (exactMatch) matchCount++
+      stores[totalCount] = walk.store
+      slots[totalCount] = walk.index
+      parentPositions[totalCount] = walk.parentPosition
+      exactMatches[totalCount] = exactMatch
+      matches[totalCount] = exactMatch || (walk.parentPosition >= 0 && matches[walk.parentPosition])
       totalCount++
-      children.forEach { it.updateFilter(matches) }
-      filterType = when {
-        !matches && children.all { it.isUnmatched } -> FilterType.UNMATCH
-        nodeExactMatch && !filter.isEmpty -> FilterType.EXACT_MATCH
+    }
+
+    val hasMatchingChild = BooleanArray(totalCount)
+    for (position in totalCount - 1 downTo 0) {
+      val filterType = when {
+        !matches[position] && !hasMatchingChild[position] -> FilterType.UNMATCH
+        exactMatches[position] && !filter.isEmpty -> FilterType.EXACT_MATCH
         else -> FilterType.MATCH
       }
+      stores[position]!!.setFilterType(slots[position], filterType)
+      val parentPosition = parentPositions[position]
+      if (filterType != FilterType.UNMATCH && parentPosition >= 0) {
+        hasMatchingChild[parentPosition] = true
+      }
     }
-    updateFilter(false)
     return FilterResult(matchCount, totalCount, !filter.isEmpty)
   }
 
-  private fun resetDepth(n: Int) {
-    depth = n
-    children.forEach { it.resetDepth(n + 1) }
-  }
-
   /**
    * Return a new tree like this one, but with all uninteresting nodes collapsed into the given abbreviation.
    * In the returned abbreviated tree:
    *   - no abbreviated parent has any abbreviated child of the same kind
    *   - no consecutive siblings are both abbreviated of the same kind
+   * The new tree is built top-down in a store of its own.
    */
-  fun abbreviatedBy(abbreviate: (CaptureNode) -> CaptureNodeModel?, isAbbreviation: (CaptureNodeModel) -> Boolean) =
-    fold({it.clonedWithData(abbreviate(it) ?: it.data)}) { clone, abbreviatedChild ->
-      clone.also {
+  fun abbreviatedBy(abbreviate: (CaptureNode) -> CaptureNodeModel?, isAbbreviation: (CaptureNodeModel) -> Boolean): CaptureNode {
+    val abbreviated = CallTreeStore()
+    fun copyOf(node: CaptureNode, data: CaptureNodeModel, parent: Int) = abbreviated.addNode(parent, data, node.clockType).also { copy ->
+      abbreviated.setStartGlobal(copy, node.startGlobal)
+      abbreviated.setEndGlobal(copy, node.endGlobal)
+      abbreviated.setStartThread(copy, node.startThread)
+      abbreviated.setEndThread(copy, node.endThread)
+      abbreviated.setDepth(copy, if (parent == CallTreeStore.NO_NODE) node.depth else abbreviated.getDepth(parent) + 1)
+    }
+
+    /**
+     * Adds the abbreviated children of [node], whose abbreviated model is [data], to [target]. Only the children added by this call are
+     * merged with each other, as each abbreviated child has its own children merged before it is added.
+     *
+     * @return the last child added to [target], or [CallTreeStore.NO_NODE]
+     */
+    fun addAbbreviatedChildren(node: CaptureNode, data: CaptureNodeModel, target: Int): Int {
+      var last = CallTreeStore.NO_NODE
+      for (child in node.children) {
+        val childData = abbreviate(child) ?: child.data
         when {
           // Parent and child are both abbreviated -> merge child's children with parent's
-          isAbbreviation(clone.data) && abbreviatedChild.data === clone.data -> clone.addChildren(abbreviatedChild.children)
+          isAbbreviation(data) && childData === data ->
+            addAbbreviatedChildren(child, childData, target).let { if (it != CallTreeStore.NO_NODE) last = it }
           // Consecutive children are abbreviated -> merge em
-          isAbbreviation(abbreviatedChild.data) && clone.children.lastOrNull()?.data === abbreviatedChild.data ->
-            clone.children.last().let { mergedChild ->
-              mergedChild.addChildren(abbreviatedChild.children)
-              mergedChild.copyFrom(abbreviatedChild, CaptureNode::endGlobal, CaptureNode::endThread)
-            }
+          isAbbreviation(childData) && last != CallTreeStore.NO_NODE && abbreviated.getData(last) === childData -> {
+            addAbbreviatedChildren(child, childData, last)
+            abbreviated.setEndGlobal(last, child.endGlobal)
+            abbreviated.setEndThread(last, child.endThread)
+          }
           // Nothing to merge, just add it
-          else -> clone.addChild(abbreviatedChild)
+          else -> {
+            last = copyOf(child, childData, target)
+            addAbbreviatedChildren(child, childData, last)
+          }
         }
       }
-    }.also { it.resetDepth(depth) }
+      return last
+    }
+
+    val rootData = abbreviate(this) ?: data
+    val root = copyOf(this, rootData, CallTreeStore.NO_NODE)
+    addAbbreviatedChildren(this, rootData, root)
+    return abbreviated.node(root)
+  }
 
   fun abbreviatedBy(shouldAbbreviate: (CaptureNode) -> Boolean, abbreviation: CaptureNodeModel) =
     abbreviatedBy({ node -> abbreviation.takeIf { shouldAbbreviate(node) } }, { it === abbreviation })
@@ -223,13 +347,116 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
   fun <T> fold(init: (CaptureNode) -> T, combine: (T, T) -> T): T =
     children.fold(init(this)) { acc, child -> combine(acc, child.fold(init, combine)) }
 
+  internal fun moveTo(store: CallTreeStore, index: Int) {
+    this.store = store
+    this.index = index
+  }
+
+  /**
+   * Whether the parent of this node is the one in its store, rather than a node of another store it was added to.
+   */
+  private fun hasOwnParent() = parent?.store === store
+
+  private fun nodeOrNull(slot: Int) = if (slot == CallTreeStore.NO_NODE) null else store.node(slot)
+
   /**
-   * Return a copy of this node (same start, end, etc.) with custom data and empty children list
+   * The children linked to a node in its store.
    */
-  private fun clonedWithData(data: CaptureNodeModel) = CaptureNode(data, clockType).also { clone ->
-    clone.copyFrom(this,
-                   CaptureNode::startGlobal, CaptureNode::endGlobal,
-                   CaptureNode::startThread, CaptureNode::endThread)
+  private class LinkedChildren(private val store: CallTreeStore, private val parent: Int) : AbstractList<CaptureNode>() {
+    override val size get() = store.getChildCount(parent)
+    override fun get(index: Int) = store.node(store.getChildAt(parent, index))
+  }
+
+  /**
+   * Pre-order walk over a subtree that goes through the slots of the stores, so it neither recurses nor creates views, and its memory is
+   * proportional to the depth of the tree rather than its size. Children kept as a list of views, e.g. those of a
+   * [VisualNodeCaptureNode], are walked through that list.
+   */
+  private class PreOrderWalk(private val root: CaptureNode) {
+    lateinit var store: CallTreeStore
+      private set
+    var index = CallTreeStore.NO_NODE
+      private set
+    /**
+     * Position in the walk of the parent of the current node, or -1 for the root.
+     */
+    var parentPosition = -1
+      private set
+    private var position = -1
+
+    // For each node on the path to the current one: the store and next sibling of the child to visit next, or the list of its children
+    // and the position of the next one, and the position of the node in the walk.
+    private var pathStores = arrayOfNulls<CallTreeStore>(INITIAL_WALK_CAPACITY)
+    private var pathLists = arrayOfNulls<List<CaptureNode>>(INITIAL_WALK_CAPACITY)
+    private var pathNext = IntArray(INITIAL_WALK_CAPACITY)
+    private var pathPositions = IntArray(INITIAL_WALK_CAPACITY)
+    private var top = -1
+
+    fun advance(): Boolean {
+      if (position < 0) {
+        store = root.store
+        index = root.index
+        position = 0
+        return true
+      }
+      pushChildrenOfCurrent()
+      while (top >= 0) {
+        val list = pathLists[top]
+        val next = pathNext[top]
+        if (list != null && next < list.size) {
+          pathNext[top] = next + 1
+          val child = list[next]
+          return visit(child.store, child.index)
+        }
+        if (list == null && next != CallTreeStore.NO_NODE) {
+          val childStore = pathStores[top]!!
+          pathNext[top] = childStore.getNextSibling(next)
+          return visit(childStore, next)
+        }
+        pathStores[top] = null
+        pathLists[top] = null
+        top--
+      }
+      return false
+    }
+
+    private fun visit(store: CallTreeStore, index: Int): Boolean {
+      this.store = store
+      this.index = index
+      parentPosition = pathPositions[top]
+      position++
+      return true
+    }
+
+    private fun pushChildrenOfCurrent() {
+      val list = store.childList(index)
+      val first = store.getFirstChild(index)
+      if (list?.isEmpty() ?: (first == CallTreeStore.NO_NODE)) {
+        return
+      }
+      if (++top == pathNext.size) {
+        val capacity = top * 2
+        pathStores = pathStores.copyOf(capacity)
+        pathLists = pathLists.copyOf(capacity)
+        pathNext = pathNext.copyOf(capacity)
+        pathPositions = pathPositions.copyOf(capacity)
+      }
+      pathStores[top] = store
+      pathLists[top] = list
+      pathNext[top] = if (list != null) 0 else first
+      pathPositions[top] = position
+    }
+  }
+
+  private class PreOrderSpliterator(private val walk: PreOrderWalk)
+    : Spliterators.AbstractSpliterator<CaptureNode>(Long.MAX_VALUE, Spliterator.ORDERED or Spliterator.NONNULL) {
+    override fun tryAdvance(action: Consumer<in CaptureNode>): Boolean {
+      if (!walk.advance()) {
+        return false
+      }
+      action.accept(walk.store.node(walk.index))
+      return true
+    }
   }
 
   enum class FilterType {
@@ -253,11 +480,13 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
     /**
      * Fired when a [Filter] is applied to this node.
      */
-    FILTER_APPLIED
+    FILTER_APPLIED,
+
+    /**
+     * Fired when this node and its descendants switch to another [ClockType], so the start and end of every node may have changed.
+     */
+    CLOCK_TYPE_CHANGED
   }
 }
 
-private fun<T> T.copyFrom(that: T, vararg properties: KMutableProperty1<T, *>) {
-  fun<P> T.copy(property: KMutableProperty1<T, P>) = property.set(this, property.get(that))
-  properties.forEach { copy(it) }
-}
+private const val INITIAL_WALK_CAPACITY = 16
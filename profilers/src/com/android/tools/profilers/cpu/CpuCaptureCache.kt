@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu
+
+import com.android.annotations.concurrency.GuardedBy
+import com.google.common.annotations.VisibleForTesting
+import java.io.File
+
+/**
+ * Keeps the captures parsed during a profiling session, so that going back to a capture doesn't parse its trace again.
+ *
+ * Captures are kept in memory up to [memoryBudgetBytes], estimated from the number of call tree nodes and CPU slices they hold, past
+ * which the least recently used ones are dropped. A dropped capture is parsed again if it is opened later.
+ *
+ * Only one capture stage is shown at a time, so a cached capture is handed to the next stage that opens its trace after its view state is
+ * reset with [BaseCpuCapture.resetViewState]. The new stage then starts from the view range, clock type, tags and filter the capture was
+ * parsed with, not from what the previous stage left.
+ */
+class CpuCaptureCache @JvmOverloads constructor(private val memoryBudgetBytes: Long = Runtime.getRuntime().maxMemory() / 8) {
+  // In access order, so that the first entry is the least recently used one.
+  @GuardedBy("this")
+  private val inMemory = LinkedHashMap<Key, CachedCapture>(16, .75f, true)
+  @GuardedBy("this")
+  private var usedBytes = 0L
+
+  /**
+   * @return whether a capture of the trace is cached.
+   */
+  @Synchronized
+  fun contains(traceId: Long, traceFile: File) = Key(traceId, traceFile.absolutePath) in inMemory
+
+  /**
+   * @return the capture cached for the trace with its view state reset, or null if the trace needs to be parsed.
+   */
+  fun get(traceId: Long, traceFile: File): CpuCapture? {
+    val capture = synchronized(this) { inMemory[Key(traceId, traceFile.absolutePath)]?.capture } ?: return null
+    (capture as? BaseCpuCapture)?.resetViewState()
+    return capture
+  }
+
+  fun put(traceId: Long, traceFile: File, capture: CpuCapture) {
+    val key = Key(traceId, traceFile.absolutePath)
+    val entry = CachedCapture(capture, estimateSizeBytes(capture))
+    synchronized(this) {
+      inMemory.remove(key)?.let { usedBytes -= it.sizeBytes }
+      inMemory[key] = entry
+      usedBytes += entry.sizeBytes
+      // The capture just added is kept even if it is over the budget on its own, as it is the one being shown.
+      val iterator = inMemory.values.iterator()
+      while (usedBytes > memoryBudgetBytes && inMemory.size > 1) {
+        usedBytes -= iterator.next().sizeBytes
+        iterator.remove()
+      }
+    }
+  }
+
+  /**
+   * Drops every cached capture.
+   */
+  @Synchronized
+  fun clear() {
+    inMemory.clear()
+    usedBytes = 0
+  }
+
+  private data class Key(val traceId: Long, val tracePath: String)
+
+  private class CachedCapture(val capture: CpuCapture, val sizeBytes: Long)
+
+  companion object {
+    /**
+     * Rough retained size of a call tree node or a CPU slice, including the models it is built from.
+     */
+    private const val ESTIMATED_ENTRY_SIZE_BYTES = 200L
+
+    @VisibleForTesting
+    fun estimateSizeBytes(capture: CpuCapture): Long {
+      var entryCount = 0L
+      capture.captureNodes.forEach { root -> root.forEachDescendant { entryCount++ } }
+      capture.systemTraceData?.let { data ->
+        for (cpu in 0 until data.cpuCount) {
+          entryCount += data.getCpuThreadSliceInfoStates(cpu).size
+        }
+      }
+      return entryCount * ESTIMATED_ENTRY_SIZE_BYTES
+    }
+  }
+}
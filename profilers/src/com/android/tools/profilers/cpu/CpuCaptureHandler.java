@@ -51,7 +51,7 @@ public class CpuCaptureHandler implements Updatable, StatusPanelModel {
                            @Nullable String captureProcessNameHint,
                            int captureProcessIdHint) {
     this(services, captureFile, traceId, configuration, CpuCaptureMetadata.CpuProfilerEntryPoint.UNKNOWN, captureProcessNameHint,
-         captureProcessIdHint);
+         captureProcessIdHint, null);
   }
 
   public CpuCaptureHandler(@NotNull IdeProfilerServices services,
@@ -60,8 +60,9 @@ public class CpuCaptureHandler implements Updatable, StatusPanelModel {
                            @NotNull ProfilingConfiguration configuration,
                            CpuCaptureMetadata.CpuProfilerEntryPoint entryPoint,
                            @Nullable String captureProcessNameHint,
-                           int captureProcessIdHint) {
-    myCaptureParser = new CpuCaptureParser(services);
+                           int captureProcessIdHint,
+                           @Nullable CpuCaptureCache captureCache) {
+    myCaptureParser = new CpuCaptureParser(services, captureCache);
     myCaptureFile = captureFile;
     myTraceId = traceId;
     myServices = services;
@@ -121,10 +122,26 @@ public class CpuCaptureHandler implements Updatable, StatusPanelModel {
    *                         will be passed a null {@link CpuCapture}.
    */
   public void parse(Consumer<CpuCapture> captureCompleted) {
+    parse(null, captureCompleted);
+  }
+
+  /**
+   * Same as {@link #parse(Consumer)}, but also passes snapshots of the capture decoded so far to {@code partialCaptureParsed} while
+   * parsing large traces of the types that support it. Both callbacks are called on the main executor, and no snapshot is passed once
+   * parsing is done.
+   */
+  public void parse(@Nullable Consumer<CpuCapture> partialCaptureParsed, Consumer<CpuCapture> captureCompleted) {
     myIsParsing = true;
     myParseRange.set(0, 0);
+    Consumer<CpuCapture> partialCaptureConsumer = partialCaptureParsed == null ? null : partialCapture ->
+      myServices.getMainExecutor().execute(() -> {
+        // Parsing may have been aborted while the snapshot was being built.
+        if (myIsParsing) {
+          partialCaptureParsed.accept(partialCapture);
+        }
+      });
     CompletableFuture<CpuCapture> capture = myCaptureParser.parse(
-      myCaptureFile, myTraceId, myConfiguration.getTraceType(), myCaptureProcessIdHint, myCaptureProcessNameHint);
+      myCaptureFile, myTraceId, myConfiguration.getTraceType(), myCaptureProcessIdHint, myCaptureProcessNameHint, partialCaptureConsumer);
 
     // Parsing is in progress. Handle it asynchronously and set the capture afterwards using the main executor.
     capture.handleAsync((parsedCapture, exception) -> {
@@ -52,6 +52,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -83,6 +84,12 @@ public class CpuCaptureParser {
   @NotNull
   private final IdeProfilerServices myServices;
 
+  /**
+   * Captures parsed during the session, shared by the parsers of the session so that a trace parsed before isn't parsed again.
+   */
+  @Nullable
+  private final CpuCaptureCache myCaptureCache;
+
   private final AspectModel<CpuProfilerAspect> myAspect = new AspectModel<>();
 
   /**
@@ -111,7 +118,12 @@ public class CpuCaptureParser {
   private static final Logger LOGGER = Logger.getInstance(CpuCaptureParser.class);
 
   public CpuCaptureParser(@NotNull IdeProfilerServices services) {
+    this(services, null);
+  }
+
+  public CpuCaptureParser(@NotNull IdeProfilerServices services, @Nullable CpuCaptureCache captureCache) {
     myServices = services;
+    myCaptureCache = captureCache;
     myCaptures = new HashMap<>();
   }
 
@@ -193,6 +205,21 @@ public class CpuCaptureParser {
   public CompletableFuture<CpuCapture> parse(
     // Consider passing a CompletableFuture<File> instead of a File here, so we can chain all of them properly.
     @NotNull File traceFile, long traceId, @NotNull TraceType preferredProfilerType, int processIdHint, String processNameHint) {
+    return parse(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, null);
+  }
+
+  /**
+   * Same as {@link #parse(File, long, TraceType, int, String)}, but also hands snapshots of the capture decoded so far to
+   * {@code partialCaptureConsumer} from the parsing thread, for the trace types that support it (see {@link TraceParser#parse(File, long,
+   * Consumer)}). No snapshot is reported if the capture was already parsed or is being parsed.
+   */
+  @NotNull
+  public CompletableFuture<CpuCapture> parse(@NotNull File traceFile,
+                                             long traceId,
+                                             @NotNull TraceType preferredProfilerType,
+                                             int processIdHint,
+                                             String processNameHint,
+                                             @Nullable Consumer<CpuCapture> partialCaptureConsumer) {
     if (myCaptures.containsKey(traceId)) {
       return myCaptures.get(traceId);
     }
@@ -202,9 +229,10 @@ public class CpuCaptureParser {
 
     CompletableFuture<CpuCapture> cpuCapture =
       CompletableFuture.runAsync(new TraceFileValidationAction(traceFile), myServices.getPoolExecutor())
-        .thenRunAsync(new ParsingStartAction(traceFile), myServices.getMainExecutor())
+        .thenRunAsync(new ParsingStartAction(traceFile, traceId), myServices.getMainExecutor())
         .thenApplyAsync(
-          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices),
+          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices,
+                                 partialCaptureConsumer, myCaptureCache),
           myServices.getPoolExecutor())
         .whenCompleteAsync(new TraceResultHandler(traceFile, traceId, isImportedTrace), myServices.getMainExecutor());
     myCaptures.put(traceId, cpuCapture);
@@ -315,8 +343,11 @@ public class CpuCaptureParser {
     @NotNull
     private final File traceFile;
 
-    private ParsingStartAction(@NotNull File traceFile) {
+    private final long traceId;
+
+    private ParsingStartAction(@NotNull File traceFile, long traceId) {
       this.traceFile = traceFile;
+      this.traceId = traceId;
     }
 
     @Override
@@ -324,7 +355,9 @@ public class CpuCaptureParser {
       updateParsingStateWhenStarting();
 
       long traceLengthBytes = traceFile.length();
-      if (traceFile.length() > MAX_SUPPORTED_TRACE_SIZE) {
+      // A cached capture is loaded without parsing the trace again, so the user isn't asked about its size.
+      boolean isCached = myCaptureCache != null && myCaptureCache.contains(traceId, traceFile);
+      if (traceFile.length() > MAX_SUPPORTED_TRACE_SIZE && !isCached) {
         // If the user decided to proceed, we have nothing to do.
         Runnable yesCallback = () -> {
         };
@@ -375,6 +408,12 @@ public class CpuCaptureParser {
     @NotNull
     private final IdeProfilerServices services;
 
+    @Nullable
+    private final Consumer<CpuCapture> partialCaptureConsumer;
+
+    @Nullable
+    private final CpuCaptureCache captureCache;
+
     // Parsers used by parseToCapture
     private static final Supplier<TraceParser> ART_PARSER_SUPPLIER = () -> new ArtTraceParser();
     private static final Supplier<TraceParser> SIMPLEPERF_PARSER_SUPPLIER = () -> new SimpleperfTraceParser();
@@ -394,6 +433,13 @@ public class CpuCaptureParser {
     ProcessTraceAction(
       @NotNull File traceFile, long traceId, @NotNull TraceType preferredProfilerType,
       int processIdHint, @Nullable String processNameHint, @NotNull IdeProfilerServices services) {
+      this(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, services, null, null);
+    }
+
+    private ProcessTraceAction(
+      @NotNull File traceFile, long traceId, @NotNull TraceType preferredProfilerType,
+      int processIdHint, @Nullable String processNameHint, @NotNull IdeProfilerServices services,
+      @Nullable Consumer<CpuCapture> partialCaptureConsumer, @Nullable CpuCaptureCache captureCache) {
 
       this.traceFile = traceFile;
       this.traceId = traceId;
@@ -401,11 +447,21 @@ public class CpuCaptureParser {
       this.processIdHint = processIdHint;
       this.processNameHint = processNameHint != null ? processNameHint : "";
       this.services = services;
+      this.partialCaptureConsumer = partialCaptureConsumer;
+      this.captureCache = captureCache;
     }
 
     @Override
     public CpuCapture apply(Void aVoid) {
-      return parseToCapture(traceFile, traceId, preferredProfilerType);
+      if (captureCache == null) {
+        return parseToCapture(traceFile, traceId, preferredProfilerType);
+      }
+      CpuCapture capture = captureCache.get(traceId, traceFile);
+      if (capture == null) {
+        capture = parseToCapture(traceFile, traceId, preferredProfilerType);
+        captureCache.put(traceId, traceFile, capture);
+      }
+      return capture;
     }
 
     private CpuCapture parseToCapture(@NotNull File traceFile, long traceId, @NotNull TraceType profilerType) {
@@ -480,7 +536,9 @@ public class CpuCaptureParser {
       Supplier<TraceParser> parserSupplier = getParserSupplier(type);
       TraceParser parser = parserSupplier.get();
       try {
-        return parser.parse(traceFile, traceId);
+        return partialCaptureConsumer == null
+               ? parser.parse(traceFile, traceId)
+               : parser.parse(traceFile, traceId, partialCaptureConsumer);
       }
       catch (ProcessSelectorDialogAbortedException e) {
         throw new CancellationException("User aborted process choice dialog.");
@@ -621,7 +679,7 @@ public class CpuCaptureParser {
         var node = queue.removeFirst();
         var data = node.getData();
         if (data instanceof SystemTraceNodeModel && pattern.matcher(data.getFullName()).find()) return true;
-        for (CaptureNode child : node.childrenList) if (seen.add(child)) queue.addLast(child);
+        for (CaptureNode child : node.getChildren()) if (seen.add(child)) queue.addLast(child);
       }
 
       return false;
@@ -23,6 +23,7 @@ import com.android.tools.adtui.model.AspectModel;
 import com.android.tools.adtui.model.BoxSelectionModel;
 import com.android.tools.adtui.model.DefaultTimeline;
 import com.android.tools.adtui.model.MultiSelectionModel;
+import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedSeries;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.adtui.model.Timeline;
@@ -92,6 +93,7 @@ import com.intellij.openapi.util.io.FileUtil;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -139,6 +141,7 @@ public class CpuCaptureStage extends Stage<Timeline> {
     PARSING,
     /**
      * When parsing has completed the state transitions to analyzing, we remain in this state while viewing data of the capture.
+     * Large traces may enter this state with a partial capture before parsing has completed, see {@link #isCapturePartial()}.
      */
     ANALYZING,
   }
@@ -149,10 +152,19 @@ public class CpuCaptureStage extends Stage<Timeline> {
    */
   @NotNull
   public static File saveCapture(long traceId, ByteString data) {
-    try {
+    return saveCapture(traceId, data.newInput());
+  }
+
+  /**
+   * Same as {@link #saveCapture(long, ByteString)}, but copies the trace a buffer at a time so it never needs to be held in memory.
+   * The stream is closed once copied.
+   */
+  @NotNull
+  public static File saveCapture(long traceId, @NotNull InputStream data) {
+    try (InputStream in = data) {
       File trace = FileUtil.createTempFile(String.format(Locale.US, "cpu_trace_%d", traceId), ".trace", true);
       try (FileOutputStream out = new FileOutputStream(trace)) {
-        out.write(data.toByteArray());
+        FileUtil.copy(in, out);
       }
       return trace;
     }
@@ -167,11 +179,8 @@ public class CpuCaptureStage extends Stage<Timeline> {
       .setStreamId(profilers.getSession().getStreamId())
       .setId(String.valueOf(traceId))
       .build();
-    Transport.BytesResponse traceResponse = profilers.getClient().getTransportClient().getBytes(traceRequest);
-    if (!traceResponse.getContents().isEmpty()) {
-      return saveCapture(traceId, traceResponse.getContents());
-    }
-    return null;
+    InputStream trace = profilers.getClient().openBytesStream(traceRequest);
+    return trace == null ? null : saveCapture(traceId, trace);
   }
 
   /**
@@ -190,6 +199,11 @@ public class CpuCaptureStage extends Stage<Timeline> {
   // Accessible only when in state analyzing
   private CpuCapture myCapture;
 
+  /**
+   * Whether {@link #myCapture} is a snapshot of a trace that is still being parsed.
+   */
+  private boolean myIsCapturePartial;
+
   /**
    * The track groups share a timeline based on the minimap selection.
    * <p>
@@ -268,7 +282,8 @@ public class CpuCaptureStage extends Stage<Timeline> {
                          int captureProcessIdHint) {
     super(profilers);
     myCpuCaptureHandler = new CpuCaptureHandler(
-      profilers.getIdeServices(), captureFile, traceId, configuration, entryPoint, captureProcessNameHint, captureProcessIdHint);
+      profilers.getIdeServices(), captureFile, traceId, configuration, entryPoint, captureProcessNameHint, captureProcessIdHint,
+      profilers.getCpuCaptureCache());
 
     getMultiSelectionModel().addDependency(this)
       .onChange(MultiSelectionModel.Aspect.SELECTIONS_CHANGED, this::onSelectionChanged)
@@ -338,44 +353,20 @@ public class CpuCaptureStage extends Stage<Timeline> {
     return myCapture;
   }
 
+  /**
+   * @return whether the capture is a snapshot of the part of a large trace parsed so far. It is replaced by the complete capture, firing
+   * {@link Aspect#STATE} again, once parsing is done.
+   */
+  public boolean isCapturePartial() {
+    return myIsCapturePartial;
+  }
+
   @Override
   public void enter() {
     logEnterStage();
     getStudioProfilers().getUpdater().register(myCpuCaptureHandler);
     getStudioProfilers().getIdeServices().getFeatureTracker().trackEnterStage(getStageType());
-    myCpuCaptureHandler.parse(capture -> {
-      try {
-        if (capture == null) {
-          // Generic catch all for capture failing to load, this happens for both import and live captures.
-          if (getStudioProfilers().getSessionsManager().isSessionAlive()) {
-            // User will get a notification then sent back to the CpuProfilerStage
-            getStudioProfilers().getIdeServices().getMainExecutor()
-              .execute(() -> getStudioProfilers().setStage(getParentStage()));
-          }
-          else {
-            // If the user was importing a trace the user will be sent to the null stage with an warning + notification.
-            getStudioProfilers().getIdeServices().getMainExecutor().execute(
-              () -> {
-                // Deselect the imported session so user may import it again to retry.
-                getStudioProfilers().getSessionsManager().setSession(Common.Session.getDefaultInstance());
-                getStudioProfilers().setStage(new NullMonitorStage(
-                  getStudioProfilers(),
-                  "The profiler was unable to parse the trace file. Please make sure the file selected is a valid trace."));
-              });
-          }
-        }
-        else {
-          LogUtils.log(getClass(), "CPU capture parse succeeded");
-          myCapture = capture;
-          onCaptureParsed(capture);
-          setState(State.ANALYZING);
-        }
-      }
-      catch (Exception ex) {
-        // Logging if an exception happens since setState may trigger various callbacks.
-        Logger.getInstance(CpuCaptureStage.class).error(ex);
-      }
-    });
+    myCpuCaptureHandler.parse(this::onPartialCaptureParsed, this::onCaptureParseCompleted);
   }
 
   @Override
@@ -405,9 +396,91 @@ public class CpuCaptureStage extends Stage<Timeline> {
     return CpuProfilerStage.class;
   }
 
+  /**
+   * Called once parsing is done, with the complete capture or null if parsing failed. A failure leaves the stage even if a partial capture
+   * was shown.
+   */
+  @VisibleForTesting
+  void onCaptureParseCompleted(@Nullable CpuCapture capture) {
+    try {
+      if (capture == null) {
+        // Generic catch all for capture failing to load, this happens for both import and live captures.
+        if (getStudioProfilers().getSessionsManager().isSessionAlive()) {
+          // User will get a notification then sent back to the CpuProfilerStage
+          getStudioProfilers().getIdeServices().getMainExecutor()
+            .execute(() -> getStudioProfilers().setStage(getParentStage()));
+        }
+        else {
+          // If the user was importing a trace the user will be sent to the null stage with an warning + notification.
+          getStudioProfilers().getIdeServices().getMainExecutor().execute(
+            () -> {
+              // Deselect the imported session so user may import it again to retry.
+              getStudioProfilers().getSessionsManager().setSession(Common.Session.getDefaultInstance());
+              getStudioProfilers().setStage(new NullMonitorStage(
+                getStudioProfilers(),
+                "The profiler was unable to parse the trace file. Please make sure the file selected is a valid trace."));
+            });
+        }
+      }
+      else {
+        LogUtils.log(getClass(), "CPU capture parse succeeded");
+        myCapture = capture;
+        myIsCapturePartial = false;
+        onCaptureParsed(capture);
+        setState(State.ANALYZING);
+      }
+    }
+    catch (Exception ex) {
+      // Logging if an exception happens since setState may trigger various callbacks.
+      Logger.getInstance(CpuCaptureStage.class).error(ex);
+    }
+  }
+
+  /**
+   * Shows the part of a large trace parsed so far. Each snapshot replaces the previous one, and the last one is replaced by the complete
+   * capture.
+   */
+  @VisibleForTesting
+  void onPartialCaptureParsed(@NotNull CpuCapture capture) {
+    try {
+      myCapture = capture;
+      myIsCapturePartial = true;
+      showCapture(capture);
+      setState(State.ANALYZING);
+    }
+    catch (Exception ex) {
+      Logger.getInstance(CpuCaptureStage.class).error(ex);
+    }
+  }
+
   private void onCaptureParsed(@NotNull CpuCapture capture) {
+    showCapture(capture);
+    if (getStudioProfilers().getSession().getPid() == 0) {
+      // For an imported traces we need to insert a CPU_TRACE event into the database. This is used by the Sessions' panel to display the
+      // correct trace type associated with the imported file.
+      insertImportedTraceEvent(capture);
+    }
+  }
+
+  private void showCapture(@NotNull CpuCapture capture) {
+    // When replacing a snapshot, keep looking at the same part of the trace unless the whole of it was shown.
+    Range previousSelection = null;
+    if (myMinimapModel != null) {
+      Range selection = myMinimapModel.getRangeSelectionModel().getSelectionRange();
+      if (!selection.isEmpty() && !selection.isSameAs(myMinimapModel.getCaptureRange())) {
+        previousSelection = new Range(selection);
+      }
+    }
+    // Selections and analysis models refer to the nodes of the capture they were created for.
+    myMultiSelectionModel.clearSelection();
+    myPinnedAnalysisModels.clear();
+    myTrackGroupModels.clear();
+
     myTrackGroupTimeline.getDataRange().set(capture.getRange());
     myMinimapModel = new CpuCaptureMinimapModel(getStudioProfilers(), capture, getTimeline().getViewRange());
+    if (previousSelection != null) {
+      myMinimapModel.getRangeSelectionModel().set(previousSelection.getMin(), previousSelection.getMax());
+    }
     if (!capture.getRange().isEmpty()) {
       initTrackGroupList(capture);
       addPinnedCpuAnalysisModel(new CpuFullTraceAnalysisModel(capture, getTimeline().getViewRange(), this::runInBackground));
@@ -427,11 +500,6 @@ public class CpuCaptureStage extends Stage<Timeline> {
         }
       }
     }
-    if (getStudioProfilers().getSession().getPid() == 0) {
-      // For an imported traces we need to insert a CPU_TRACE event into the database. This is used by the Sessions' panel to display the
-      // correct trace type associated with the imported file.
-      insertImportedTraceEvent(capture);
-    }
   }
 
   private void insertImportedTraceEvent(@NotNull CpuCapture capture) {
@@ -35,10 +35,10 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -171,7 +171,10 @@ public class CpuProfiler implements StudioProfiler {
         .setStreamId(profilers.getSession().getStreamId())
         .setId(String.valueOf(info.getTraceId()))
         .build();
-      Transport.BytesResponse traceResponse = profilers.getClient().getTransportClient().getBytes(traceRequest);
+      InputStream traceStream = profilers.getClient().openBytesStream(traceRequest);
+      if (traceStream == null) {
+        return;
+      }
 
       // Atrace Format = [HEADER|ZlibData][HEADER|ZlibData]
       // Systrace Expected format = [HEADER|ZlipData]
@@ -182,13 +185,15 @@ public class CpuProfiler implements StudioProfiler {
       // the individual dumps.
       if (TraceType.from(info.getConfiguration()) == TraceType.ATRACE) {
         File trace = FileUtil.createTempFile(String.format("cpu_trace_%d", info.getTraceId()), ".trace", true);
-        try (FileOutputStream out = new FileOutputStream(trace)) {
-          out.write(traceResponse.getContents().toByteArray());
+        try (InputStream in = traceStream; FileOutputStream out = new FileOutputStream(trace)) {
+          FileUtil.copy(in, out);
         }
         AtraceExporter.export(trace, outputStream);
       }
       else {
-        FileUtil.copy(new ByteArrayInputStream(traceResponse.getContents().toByteArray()), outputStream);
+        try (InputStream in = traceStream) {
+          FileUtil.copy(in, outputStream);
+        }
         if (TraceType.from(info.getConfiguration()) == TraceType.PERFETTO) {
           // TODO (b/184681183): Uncomment this when we know what we want the user experience to be.
           //PerfettoTrace.Trace trace = PerfettoTrace.Trace.newBuilder()
@@ -73,7 +73,7 @@ public class CpuThreadTrackModel implements CpuAnalyzable<CpuThreadTrackModel> {
     myRunInBackground = runModelUpdate;
 
     if (capture.getSystemTraceData() != null) {
-      myThreadStateSeries = new LazyDataSeries<>(() -> capture.getSystemTraceData().getThreadStatesForThread(threadInfo.getId()));
+      myThreadStateSeries = capture.getSystemTraceData().getThreadStateDataSeries(threadInfo.getId());
       myThreadStateChartModel.addSeries(new RangedSeries<>(timeline.getViewRange(), myThreadStateSeries));
       myThreadStateTooltip.setThread(threadInfo.getName(), myThreadStateSeries);
     }
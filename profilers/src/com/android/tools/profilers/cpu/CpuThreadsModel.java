@@ -203,8 +203,7 @@ public class CpuThreadsModel extends DragAndDropListModel<CpuThreadsModel.Ranged
                                               capture);
       // If we have an Atrace capture selected then we need to create a MergeCaptureDataSeries
       if (capture != null && capture.getSystemTraceData() != null) {
-        mySeries = new MergeCaptureDataSeries<>(
-          capture, mySeries, new LazyDataSeries<>(() -> capture.getSystemTraceData().getThreadStatesForThread(threadId)));
+        mySeries = new MergeCaptureDataSeries<>(capture, mySeries, capture.getSystemTraceData().getThreadStateDataSeries(threadId));
       }
       // For non-imported traces, the main thread ID is equal to the process ID of the current session
       isMainThread = threadId == mySession.getPid();
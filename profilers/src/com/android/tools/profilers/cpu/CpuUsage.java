@@ -16,13 +16,14 @@
 package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LevelOfDetailDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Cpu;
-import com.android.tools.profiler.proto.TransportServiceGrpc;
+import com.android.tools.profilers.ProfilerClient;
 import com.android.tools.profilers.StudioProfilers;
 import com.android.tools.profilers.UnifiedEventDataSeries;
 import com.android.tools.profilers.cpu.systemtrace.SystemTraceCpuCapture;
@@ -53,7 +54,11 @@ public class CpuUsage extends LineChartModel {
    */
   public CpuUsage(@NotNull StudioProfilers profilers, @NotNull Range viewRange, @NotNull Range dataRange, @Nullable CpuCapture cpuCapture) {
     myCpuRange = new Range(0, 100);
-    DataSeries<Long> series = buildDataSeries(profilers.getClient().getTransportClient(), profilers.getSession(), cpuCapture);
+    DataSeries<Long> series = buildDataSeries(profilers.getClient(), profilers.getSession(), cpuCapture);
+    if (cpuCapture == null) {
+      // Only samples streamed from the device, which are always appended, can be summarized as they arrive.
+      series = new LevelOfDetailDataSeries(series);
+    }
     myCpuSeries = new RangedContinuousSeries(getCpuSeriesLabel(), viewRange, myCpuRange, series, dataRange);
     add(myCpuSeries);
   }
@@ -104,7 +109,7 @@ public class CpuUsage extends LineChartModel {
   }
 
   @VisibleForTesting
-  public static DataSeries<Long> buildDataSeries(@NotNull TransportServiceGrpc.TransportServiceBlockingStub client,
+  public static DataSeries<Long> buildDataSeries(@NotNull ProfilerClient client,
                                                  @NotNull Common.Session session,
                                                  @Nullable CpuCapture cpuCapture) {
     DataSeries<Long> series = new UnifiedEventDataSeries<>(
@@ -37,7 +37,7 @@ public class DetailedCpuUsage extends CpuUsage {
     long streamId = profilers.getSession().getStreamId();
     int pid = profilers.getSession().getPid();
     DataSeries<Long> others = new UnifiedEventDataSeries<>(
-      profilers.getClient().getTransportClient(),
+      profilers.getClient(),
       streamId,
       pid,
       Common.Event.Kind.CPU_USAGE,
@@ -39,16 +39,16 @@ public class MergeCaptureDataSeries<T> implements DataSeries<T> {
   // The series overrides any thread state data coming from perfd. As the Atrace capture
   // has more accurate data.
   @NotNull
-  private LazyDataSeries<T> myLazyDataSeries;
+  private final DataSeries<T> myTraceDataSeries;
 
   @NotNull
   private final CpuCapture myCapture;
 
   public MergeCaptureDataSeries(@NotNull CpuCapture capture,
                                 @NotNull DataSeries<T> dataStoreSeries,
-                                @NotNull LazyDataSeries<T> traceState) {
+                                @NotNull DataSeries<T> traceState) {
     myCapture = capture;
-    myLazyDataSeries = traceState;
+    myTraceDataSeries = traceState;
     myDataStoreSeries = dataStoreSeries;
   }
 
@@ -73,7 +73,7 @@ public class MergeCaptureDataSeries<T> implements DataSeries<T> {
           atraceSeriesRequestTo = maxRangeUs;
         }
         // We request atrace data from our trace start up to the trace end, or request range.
-        List<SeriesData<T>> atraceSeries = getDataForRangeFromSeries(traceStart, atraceSeriesRequestTo, myLazyDataSeries);
+        List<SeriesData<T>> atraceSeries = getDataForRangeFromSeries(traceStart, atraceSeriesRequestTo, myTraceDataSeries);
 
         // If we have trace data we adjust the range we request sampled data from.
         // The end point of our sampled data is either the first sampled point in our Atrace series. Or if we have no Atrace data
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decides when a {@link TraceParser} hands a snapshot of the capture decoded so far to the consumer passed to
+ * {@link TraceParser#parse(java.io.File, long, Consumer)}.
+ * <p>
+ * The first snapshot is taken once parsing has run for {@link #FIRST_REPORT_DELAY_NS}, so small traces never pay for one. The delay then
+ * doubles after each snapshot, which bounds the time spent copying partial call trees to a fraction of the parse however long it takes.
+ */
+public final class PartialCaptureReporter {
+  @VisibleForTesting
+  static final long FIRST_REPORT_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(500);
+
+  /**
+   * Reading the clock for every event would be noticeable on traces with hundreds of millions of them.
+   */
+  private static final int EVENTS_PER_CLOCK_CHECK = 4096;
+
+  @NotNull private final Consumer<CpuCapture> myConsumer;
+  @NotNull private final Supplier<CpuCapture> mySnapshot;
+  @NotNull private final LongSupplier myClock;
+  private final int myEventsPerClockCheck;
+  private long myDelayNs;
+  private long myNextReportNs;
+  private int myEventsUntilClockCheck;
+
+  /**
+   * @param snapshot builds a capture from the data decoded so far. The capture must not share any mutable state with the one being built.
+   */
+  public PartialCaptureReporter(@NotNull Consumer<CpuCapture> consumer, @NotNull Supplier<CpuCapture> snapshot) {
+    this(consumer, snapshot, System::nanoTime, FIRST_REPORT_DELAY_NS, EVENTS_PER_CLOCK_CHECK);
+  }
+
+  @VisibleForTesting
+  public PartialCaptureReporter(@NotNull Consumer<CpuCapture> consumer,
+                                @NotNull Supplier<CpuCapture> snapshot,
+                                @NotNull LongSupplier clock,
+                                long firstReportDelayNs,
+                                int eventsPerClockCheck) {
+    myConsumer = consumer;
+    mySnapshot = snapshot;
+    myClock = clock;
+    myEventsPerClockCheck = eventsPerClockCheck;
+    myEventsUntilClockCheck = eventsPerClockCheck;
+    myDelayNs = firstReportDelayNs;
+    myNextReportNs = clock.getAsLong() + firstReportDelayNs;
+  }
+
+  /**
+   * Called by the parser after each event it decodes. Reports a snapshot if one is due.
+   */
+  public void onEventDecoded() {
+    if (--myEventsUntilClockCheck > 0) {
+      return;
+    }
+    myEventsUntilClockCheck = myEventsPerClockCheck;
+    if (myClock.getAsLong() < myNextReportNs) {
+      return;
+    }
+    myConsumer.accept(mySnapshot.get());
+    myDelayNs *= 2;
+    // Measured from the end of the snapshot, so that the time it took to build isn't counted as parsing time.
+    myNextReportNs = myClock.getAsLong() + myDelayNs;
+  }
+}
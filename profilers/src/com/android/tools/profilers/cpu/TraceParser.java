@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -25,4 +26,13 @@ import org.jetbrains.annotations.NotNull;
 public interface TraceParser {
 
   CpuCapture parse(@NotNull File file, long traceId) throws IOException;
+
+  /**
+   * Same as {@link #parse(File, long)}, but also hands snapshots of the capture decoded so far to {@code partialCaptureConsumer} while
+   * parsing, so that large traces can be explored before they are fully parsed. Snapshots are delivered on the parsing thread and share
+   * no mutable state with each other or with the returned capture. Parsers that can't decode a trace incrementally never call it.
+   */
+  default CpuCapture parse(@NotNull File file, long traceId, @NotNull Consumer<CpuCapture> partialCaptureConsumer) throws IOException {
+    return parse(file, traceId);
+  }
 }
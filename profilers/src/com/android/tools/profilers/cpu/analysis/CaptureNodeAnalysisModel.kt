@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu.analysis
 import com.android.tools.adtui.model.Range
 import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.CpuCapture
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 
 data class CaptureNodeAnalysisModel(val node: CaptureNode,
                                     private val capture: CpuCapture,
@@ -29,7 +30,7 @@ data class CaptureNodeAnalysisModel(val node: CaptureNode,
    */
   val allOccurrenceStats: CaptureNodeAnalysisStats
     get() {
-      val allOccurrences = node.findRootNode().descendantsStream.filter(::matchesFullName).toList()
+      val allOccurrences = node.findRootNode().descendantsStream.filter { matchesFullName(it.data) }.toList()
       return CaptureNodeAnalysisStats.fromNodes(allOccurrences)
     }
 
@@ -39,7 +40,7 @@ data class CaptureNodeAnalysisModel(val node: CaptureNode,
   fun getLongestRunningOccurrences(k: Int): List<CaptureNode> =
     node.findRootNode().getTopKNodes(k, ::matchesFullName, compareBy(CaptureNode::getDuration))
 
-  private fun matchesFullName(otherNode: CaptureNode) = node.data.fullName == otherNode.data.fullName
+  private fun matchesFullName(otherData: CaptureNodeModel) = node.data.fullName == otherData.fullName
 
   override fun getAnalysisModel(): CpuAnalysisModel<CaptureNodeAnalysisModel> {
     val nodeRange = nodeRange
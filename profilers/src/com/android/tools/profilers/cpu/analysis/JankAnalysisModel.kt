@@ -46,6 +46,6 @@ data class JankAnalysisModel(val event: AndroidFrameTimelineEvent,
     val eventRange = Range(event.expectedStartUs.toDouble(), event.actualEndUs.toDouble())
     override fun getLabel() = "Janky Frame"
     override fun getSelectionRange() = eventRange
-    fun getThreadState(threadId: Int) = capture.getThreadStatesForThread(threadId)
+    fun getThreadState(threadId: Int) = capture.getThreadStateDataSeries(threadId)
   }
 }
\ No newline at end of file
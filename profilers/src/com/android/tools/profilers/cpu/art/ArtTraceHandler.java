@@ -18,15 +18,17 @@ package com.android.tools.profilers.cpu.art;
 import com.android.tools.perflib.vmtrace.MethodInfo;
 import com.android.tools.perflib.vmtrace.TraceAction;
 import com.android.tools.perflib.vmtrace.VmTraceHandler;
+import com.android.tools.profilers.cpu.CallTreeStore;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.android.tools.profilers.cpu.PartialCaptureReporter;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -54,6 +56,14 @@ public class ArtTraceHandler implements VmTraceHandler {
   @Nullable
   private Map<CpuThreadInfo, CaptureNode> myThreadsGraph;
 
+  /**
+   * Latest global time of all method actions, relative to {@link #myStartTimeUs}.
+   */
+  private long myLastGlobalTimeUs;
+
+  @Nullable
+  private PartialCaptureReporter myPartialCaptureReporter;
+
   @Override
   public void addThread(int id, String name) {
     myThreads.put(id, name);
@@ -84,6 +94,18 @@ public class ArtTraceHandler implements VmTraceHandler {
       myNodeConstructors.put(threadId, constructor);
     }
     constructor.addTraceAction(myMethods.get(methodId), methodAction, threadTime, globalTime);
+    myLastGlobalTimeUs = Math.max(myLastGlobalTimeUs, globalTime);
+
+    if (myPartialCaptureReporter != null) {
+      myPartialCaptureReporter.onEventDecoded();
+    }
+  }
+
+  /**
+   * Sets the reporter notified of every method action, or null to stop reporting.
+   */
+  public void setPartialCaptureReporter(@Nullable PartialCaptureReporter reporter) {
+    myPartialCaptureReporter = reporter;
   }
 
   private CaptureNodeModel createUniqueMethodForThread(int threadId) {
@@ -97,13 +119,29 @@ public class ArtTraceHandler implements VmTraceHandler {
 
   public Map<CpuThreadInfo, CaptureNode> getThreadsGraph() {
     if (myThreadsGraph == null) {
-      myThreadsGraph = createThreadsGraph();
+      myThreadsGraph = createThreadsGraph(CaptureNodeConstructor::getTopLevel);
     }
     return myThreadsGraph;
   }
 
+  /**
+   * Returns the threads graph of the method actions handled so far. Unlike {@link #getThreadsGraph()}, it can be called while the trace
+   * is still being parsed, and each call returns new trees.
+   */
+  @NotNull
+  public Map<CpuThreadInfo, CaptureNode> snapshotThreadsGraph() {
+    return createThreadsGraph(CaptureNodeConstructor::snapshotTopLevel);
+  }
+
+  /**
+   * Returns the elapsed time of the trace, or of the part of it parsed so far if the trace doesn't record it upfront.
+   */
+  public long getElapsedTimeSoFarUs() {
+    return Math.max(myElapsedTimeUs, myLastGlobalTimeUs);
+  }
+
   @NotNull
-  private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
+  private Map<CpuThreadInfo, CaptureNode> createThreadsGraph(@NotNull Function<CaptureNodeConstructor, CaptureNode> getTopLevel) {
     Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
 
     for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
@@ -115,7 +153,7 @@ public class ArtTraceHandler implements VmTraceHandler {
         continue;
       }
 
-      CaptureNode topLevelCall = constructor.getTopLevel();
+      CaptureNode topLevelCall = getTopLevel.apply(constructor);
       assert topLevelCall != null;
       CpuThreadInfo info = new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
 
@@ -132,23 +170,25 @@ public class ArtTraceHandler implements VmTraceHandler {
    * Adjusts global and thread time from relative to absolute time and the depth of nodes.
    */
   private void adjustNodesTimeAndDepth(CaptureNode node, long topLevelStart) {
-    Deque<CaptureNode> stack = new ArrayDeque<>();
-    stack.push(node);
+    // The call stacks of a thread are built in a store of their own, so walk them through its slots rather than through node views.
+    CallTreeStore store = node.getStore();
+    IntArrayList stack = new IntArrayList();
+    stack.push(node.getIndex());
 
     while (!stack.isEmpty()) {
-      CaptureNode current = stack.pop();
+      int current = stack.popInt();
 
-      current.setStartGlobal(myStartTimeUs + current.getStartGlobal());
-      current.setEndGlobal(myStartTimeUs + current.getEndGlobal());
-      CaptureNode parent = current.getParent();
-      current.setDepth(parent == null ? 0 : parent.getDepth() + 1);
+      store.setStartGlobal(current, myStartTimeUs + store.getStartGlobal(current));
+      store.setEndGlobal(current, myStartTimeUs + store.getEndGlobal(current));
+      int parent = current == node.getIndex() ? CallTreeStore.NO_NODE : store.getParent(current);
+      store.setDepth(current, parent == CallTreeStore.NO_NODE ? 0 : store.getDepth(parent) + 1);
       // Timestamps of ClockType.THREAD are stored in a different way: the first event on the thread is considered as the base
       // and the subsequent events timestamps are stored in 32 bits relative to that base. We sum this timestamps to topLevelStart,
       // so the first entry timestamp (represented as 0) is aligned (in wall clock time) with the top-level call start timestamp.
-      current.setStartThread(topLevelStart + current.getStartThread());
-      current.setEndThread(topLevelStart + current.getEndThread());
+      store.setStartThread(current, topLevelStart + store.getStartThread(current));
+      store.setEndThread(current, topLevelStart + store.getEndThread(current));
 
-      for (CaptureNode callee : current.getChildren()) {
+      for (int callee = store.getFirstChild(current); callee != CallTreeStore.NO_NODE; callee = store.getNextSibling(callee)) {
         stack.push(callee);
       }
     }
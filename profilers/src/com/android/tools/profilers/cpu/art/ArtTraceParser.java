@@ -18,11 +18,16 @@ package com.android.tools.profilers.cpu.art;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.BaseCpuCapture;
+import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuCapture;
+import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.android.tools.profilers.cpu.PartialCaptureReporter;
 import com.android.tools.profilers.cpu.TraceParser;
 import com.android.tools.profilers.cpu.config.ProfilingConfiguration.TraceType;
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -36,11 +41,27 @@ public class ArtTraceParser implements TraceParser {
   public CpuCapture parse(@NotNull File trace, long traceId) throws IOException {
     VmTraceParser parser = new VmTraceParser(trace, myTraceHandler);
     parser.parse();
-    Range range = new Range(
-      myTraceHandler.getStartTimeUs(),
-      myTraceHandler.getStartTimeUs() + myTraceHandler.getElapsedTimeUs());
+    return createCapture(traceId, myTraceHandler.getElapsedTimeUs(), myTraceHandler.getThreadsGraph());
+  }
+
+  @Override
+  public CpuCapture parse(@NotNull File trace, long traceId, @NotNull Consumer<CpuCapture> partialCaptureConsumer) throws IOException {
+    myTraceHandler.setPartialCaptureReporter(new PartialCaptureReporter(
+      partialCaptureConsumer,
+      () -> createCapture(traceId, myTraceHandler.getElapsedTimeSoFarUs(), myTraceHandler.snapshotThreadsGraph())));
+    try {
+      return parse(trace, traceId);
+    }
+    finally {
+      myTraceHandler.setPartialCaptureReporter(null);
+    }
+  }
+
+  @NotNull
+  private CpuCapture createCapture(long traceId, long elapsedTimeUs, @NotNull Map<CpuThreadInfo, CaptureNode> threadsGraph) {
+    Range range = new Range(myTraceHandler.getStartTimeUs(), myTraceHandler.getStartTimeUs() + elapsedTimeUs);
     // ART traces always support dual clock mode.
-    return new BaseCpuCapture(traceId, TraceType.ART, true, null, range, myTraceHandler.getThreadsGraph());
+    return new BaseCpuCapture(traceId, TraceType.ART, true, null, range, threadsGraph);
   }
 
   public static boolean verifyFileHasArtHeader(@NotNull File trace) {
@@ -15,17 +15,17 @@
  */
 package com.android.tools.profilers.cpu.art;
 
-import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.perflib.vmtrace.TraceAction;
+import com.android.tools.profilers.cpu.CallTreeStore;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
-import java.util.ArrayList;
-import java.util.List;
-import org.jetbrains.annotations.Nullable;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.BitSet;
 
 /**
  * {@link CaptureNodeConstructor} helps in constructing per thread call stacks from a sequence of
- * trace events (method entry/exit events).
+ * trace events (method entry/exit events). The call stacks are built directly in a {@link CallTreeStore}, so that a node costs a slot in
+ * its arrays rather than a {@link CaptureNode} and its child list.
  */
 class CaptureNodeConstructor {
   /**
@@ -33,27 +33,36 @@ class CaptureNodeConstructor {
    */
   private final CaptureNodeModel myTopLevelNodeModel;
 
+  private final CallTreeStore myStore = new CallTreeStore();
+
   /**
-   * List of nodes currently assumed to be at stack depth 0 (called from the top level)
+   * Slots of the nodes currently assumed to be at stack depth 0 (called from the top level)
    */
-  private final List<CaptureNode> myTopLevelNodes = new ArrayList<>();
+  private final IntArrayList myTopLevelNodes = new IntArrayList();
 
   /**
-   * The current node, i.e it is updated when we enter or exit a method.
+   * Slot of the current node, i.e it is updated when we enter or exit a method.
    */
-  @Nullable
-  private CaptureNode myCurrentNode;
+  private int myCurrentNode = CallTreeStore.NO_NODE;
 
   /**
    * The single top level node under which the entire constructed call stack nests.
    */
   private CaptureNode myTopLevelNode;
 
+  /**
+   * Timestamps of the last action on this thread. Methods that haven't exited yet are assumed to run until then in snapshots.
+   */
+  private int myLastThreadTime;
+  private int myLastGlobalTime;
+
   CaptureNodeConstructor(CaptureNodeModel captureNodeModel) {
     myTopLevelNodeModel = captureNodeModel;
   }
 
   void addTraceAction(CaptureNodeModel captureNodeModel, TraceAction action, int threadTime, int globalTime) {
+    myLastThreadTime = threadTime;
+    myLastGlobalTime = globalTime;
     if (action == TraceAction.METHOD_ENTER) {
       enterMethod(captureNodeModel, threadTime, globalTime);
     } else {
@@ -62,46 +71,44 @@ class CaptureNodeConstructor {
   }
 
   private void enterMethod(CaptureNodeModel captureNodeModel, int threadTime, int globalTime) {
-    CaptureNode node = new CaptureNode(captureNodeModel, ClockType.GLOBAL);
-    node.setStartGlobal(globalTime);
-    node.setStartThread(threadTime);
+    int node = myStore.addNode(myCurrentNode, captureNodeModel);
+    myStore.setStartGlobal(node, globalTime);
+    myStore.setStartThread(node, threadTime);
 
-    if (myCurrentNode == null) {
+    if (myCurrentNode == CallTreeStore.NO_NODE) {
       myTopLevelNodes.add(node);
-    } else {
-      myCurrentNode.addChild(node);
     }
 
     myCurrentNode = node;
   }
 
   private void exitMethod(CaptureNodeModel captureNodeModel, long threadTime, long globalTime) {
-    if (myCurrentNode != null) {
-      if (myCurrentNode.getData() != captureNodeModel) {
+    if (myCurrentNode != CallTreeStore.NO_NODE) {
+      if (myStore.getData(myCurrentNode) != captureNodeModel) {
         String msg = String
           .format("Error during call stack reconstruction. Attempt to exit from method %s while in method %s",
-                  myCurrentNode.getData().getId(), captureNodeModel.getId());
+                  myStore.getData(myCurrentNode).getId(), captureNodeModel.getId());
         throw new RuntimeException(msg);
       }
 
-      myCurrentNode.setEndGlobal(globalTime);
-      myCurrentNode.setEndThread(threadTime);
-      myCurrentNode = myCurrentNode.getParent();
+      myStore.setEndGlobal(myCurrentNode, globalTime);
+      myStore.setEndThread(myCurrentNode, threadTime);
+      myCurrentNode = myStore.getParent(myCurrentNode);
     } else {
       // We are exiting out of a method that was entered into before tracing was started.
       // In such a case, create this method
-      CaptureNode node = new CaptureNode(captureNodeModel, ClockType.GLOBAL);
+      int node = myStore.addNode(CallTreeStore.NO_NODE, captureNodeModel);
       // All the previous nodes at the top level are now assumed to have been called from
       // this method. So mark this method as having called all of those methods, and reset
       // the top level to only include this method
-      for (CaptureNode topLevel : myTopLevelNodes) {
-        node.addChild(topLevel);
+      for (int i = 0; i < myTopLevelNodes.size(); i++) {
+        myStore.moveNode(myTopLevelNodes.getInt(i), node);
       }
       myTopLevelNodes.clear();
       myTopLevelNodes.add(node);
 
-      node.setEndGlobal(globalTime);
-      node.setEndThread(threadTime);
+      myStore.setEndGlobal(node, globalTime);
+      myStore.setEndThread(node, threadTime);
 
       // We don't know this method's entry times, so we try to guess:
       // If it has at least 1 child, then we know it must've been at least before that child's
@@ -110,14 +117,13 @@ class CaptureNodeConstructor {
       long entryThreadTime = threadTime - 1;
       long entryGlobalTime = globalTime - 1;
 
-      if (node.getChildCount() > 0) {
-        CaptureNode first = node.getFirstChild();
-        assert first != null;
-        entryThreadTime = Math.max(first.getStartThread() - 1, 0);
-        entryGlobalTime = Math.max(first.getStartGlobal() - 1, 0);
+      int first = myStore.getFirstChild(node);
+      if (first != CallTreeStore.NO_NODE) {
+        entryThreadTime = Math.max(myStore.getStartThread(first) - 1, 0);
+        entryGlobalTime = Math.max(myStore.getStartGlobal(first) - 1, 0);
       }
-      node.setStartGlobal(entryGlobalTime);
-      node.setStartThread(entryThreadTime);
+      myStore.setStartGlobal(node, entryGlobalTime);
+      myStore.setStartThread(node, entryThreadTime);
     }
   }
 
@@ -126,23 +132,21 @@ class CaptureNodeConstructor {
    * @param captureNodeModel model of the method from which we are exiting
    * @param entryThreadTime method's thread entry time
    * @param entryGlobalTime method's global entry time
-   * @param children from the method that we are exiting
+   * @param lastChild slot of the last child of the method that we are exiting, or {@link CallTreeStore#NO_NODE}
    */
-  private void exitMethod(CaptureNodeModel captureNodeModel, long entryThreadTime, long entryGlobalTime,
-                          @Nullable List<CaptureNode> children) {
+  private void exitMethod(CaptureNodeModel captureNodeModel, long entryThreadTime, long entryGlobalTime, int lastChild) {
     long lastExitThreadTime;
     long lastExitGlobalTime;
 
-    if (children == null || children.isEmpty()) {
+    if (lastChild == CallTreeStore.NO_NODE) {
       // if the call doesn't have any children, we assume that it just ran for 1us.
       lastExitThreadTime = entryThreadTime + 1;
       lastExitGlobalTime = entryGlobalTime + 1;
     } else {
       // if it did call other methods, we assume that this call exited 1us after
       // its last child exited
-      CaptureNode last = children.get(children.size() - 1);
-      lastExitThreadTime = last.getEndThread() + 1;
-      lastExitGlobalTime = last.getEndGlobal() + 1;
+      lastExitThreadTime = myStore.getEndThread(lastChild) + 1;
+      lastExitGlobalTime = myStore.getEndGlobal(lastChild) + 1;
     }
 
     exitMethod(captureNodeModel, lastExitThreadTime, lastExitGlobalTime);
@@ -156,23 +160,64 @@ class CaptureNodeConstructor {
     // If there are any methods still on the call stack, then the trace doesn't have
     // exit trace action for them, so clean those up
     //noinspection WhileLoopSpinsOnField
-    while (myCurrentNode != null) {
-      exitMethod(myCurrentNode.getData(), myCurrentNode.getStartThread(),
-                 myCurrentNode.getStartGlobal(), myCurrentNode.getChildren());
+    while (myCurrentNode != CallTreeStore.NO_NODE) {
+      exitMethod(myStore.getData(myCurrentNode), myStore.getStartThread(myCurrentNode),
+                 myStore.getStartGlobal(myCurrentNode), myStore.getLastChild(myCurrentNode));
     }
 
     // Now that we have parsed the entire call stack, let us move all of it under a single
     // top level call.
-    exitMethod(myTopLevelNodeModel, 0, 0, myTopLevelNodes);
+    int lastTopLevel = myTopLevelNodes.isEmpty() ? CallTreeStore.NO_NODE : myTopLevelNodes.getInt(myTopLevelNodes.size() - 1);
+    exitMethod(myTopLevelNodeModel, 0, 0, lastTopLevel);
 
     // Build calls from their respective builders
     // Now that we've added the top level call, there should be only 1 top level call
     assert myTopLevelNodes.size() == 1;
-    myTopLevelNode = myTopLevelNodes.get(0);
+    myTopLevelNode = myStore.node(myTopLevelNodes.getInt(0));
   }
 
   public CaptureNode getTopLevel() {
     fixUpCallStacks();
     return myTopLevelNode;
   }
+
+  /**
+   * Returns a copy of the call stacks constructed so far, nested under a top level node like {@link #getTopLevel()} does once the whole
+   * trace has been read. Methods that haven't exited yet end at the last action seen on this thread. Constructing the call stacks can
+   * go on afterwards: the copy is in a store of its own. Only meaningful before {@link #getTopLevel()} is called.
+   */
+  CaptureNode snapshotTopLevel() {
+    assert myTopLevelNode == null;
+    BitSet running = new BitSet();
+    for (int node = myCurrentNode; node != CallTreeStore.NO_NODE; node = myStore.getParent(node)) {
+      running.set(node);
+    }
+
+    CallTreeStore snapshot = new CallTreeStore(myStore.getSize() + 1);
+    int topLevel = snapshot.addNode(CallTreeStore.NO_NODE, myTopLevelNodeModel);
+    for (int i = 0; i < myTopLevelNodes.size(); i++) {
+      copy(myTopLevelNodes.getInt(i), running, snapshot, topLevel);
+    }
+    // Same guesses as exitMethod makes for the top level call at the end of the trace.
+    int first = snapshot.getFirstChild(topLevel);
+    int last = snapshot.getLastChild(topLevel);
+    snapshot.setStartThread(topLevel, first == CallTreeStore.NO_NODE ? 0 : Math.max(snapshot.getStartThread(first) - 1, 0));
+    snapshot.setStartGlobal(topLevel, first == CallTreeStore.NO_NODE ? 0 : Math.max(snapshot.getStartGlobal(first) - 1, 0));
+    snapshot.setEndThread(topLevel, last == CallTreeStore.NO_NODE ? 1 : snapshot.getEndThread(last) + 1);
+    snapshot.setEndGlobal(topLevel, last == CallTreeStore.NO_NODE ? 1 : snapshot.getEndGlobal(last) + 1);
+    return snapshot.node(topLevel);
+  }
+
+  private void copy(int node, BitSet running, CallTreeStore snapshot, int parent) {
+    int copy = snapshot.addNode(parent, myStore.getData(node));
+    snapshot.setStartGlobal(copy, myStore.getStartGlobal(node));
+    snapshot.setStartThread(copy, myStore.getStartThread(node));
+    boolean isRunning = running.get(node);
+    snapshot.setEndGlobal(copy, isRunning ? myLastGlobalTime : myStore.getEndGlobal(node));
+    snapshot.setEndThread(copy, isRunning ? myLastThreadTime : myStore.getEndThread(node));
+    // Recursion is bounded by the depth of the call stacks, not by the size of the trace.
+    for (int child = myStore.getFirstChild(node); child != CallTreeStore.NO_NODE; child = myStore.getNextSibling(child)) {
+      copy(child, running, snapshot, copy);
+    }
+  }
 }
@@ -21,7 +21,6 @@ import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
 import java.util.IdentityHashMap
-import java.util.Stack
 
 /**
  * The full aggregation (e.g. top-down/bottom-up) not restricted to any range,
@@ -35,7 +34,12 @@ abstract class Aggregate<T: Aggregate<T>> {
   abstract val filterType: CaptureNode.FilterType
   val isUnmatched get() = filterType == CaptureNode.FilterType.UNMATCH
   abstract fun totalOver(clockType: ClockType, range: Range): Summary
-  fun overlapsWith(range: Range) = nodes.any { it.start < range.max && range.min < it.end }
+  // Shared by overlapsWith and the totals of the subclasses.
+  protected val nodeIntervals = IntervalIndexByClock { nodes }
+  fun overlapsWith(range: Range) = when {
+    range.min < range.max && nodes.isNotEmpty() -> nodeIntervals[nodes[0].clockType].overlaps(range)
+    else -> nodes.any { it.start < range.max && range.min < it.end }
+  }
   data class Summary(val total: Double, val childrenTotal: Double)
 
   class TopDown private constructor(override val id: String, override val nodes: List<CaptureNode>): Aggregate<TopDown>() {
@@ -50,17 +54,10 @@ abstract class Aggregate<T: Aggregate<T>> {
       { nodes.all { it.childCount == 0 } }
     )
 
-    override fun totalOver(clockType: ClockType, range: Range): Summary {
-      var total = 0.0
-      var childrenTotal = 0.0
-      for (node in nodes) {
-        total += getIntersection(range, node, clockType)
-        for (child in node.children) {
-          childrenTotal += getIntersection(range, child, clockType)
-        }
-      }
-      return Summary(total, childrenTotal)
-    }
+    private val childIntervals = IntervalIndexByClock { nodes.flatMap(CaptureNode::children) }
+
+    override fun totalOver(clockType: ClockType, range: Range) =
+      Summary(nodeIntervals[clockType].overlapLength(range), childIntervals[clockType].overlapLength(range))
 
     companion object {
       @JvmStatic fun rootAt(node: CaptureNode) = TopDown(node.data.id, listOf(node))
@@ -89,44 +86,40 @@ abstract class Aggregate<T: Aggregate<T>> {
       )
     }
 
+    // How much time was spent in this call stack path, and in the functions it called.
+    private val outerIntervals = IntervalIndexByClock { clockType -> outerNodes(clockType) }
+    // How much time was spent doing work directly in this call stack path, as the time of the nodes (see nodeIntervals) minus that of
+    // their children.
+    private val childIntervals = IntervalIndexByClock { nodes.flatMap(CaptureNode::children) }
+
     override fun totalOver(clockType: ClockType, range: Range): Summary {
-      // how much time was spent in this call stack path, and in the functions it called
-      var total = 0.0
+      val total = outerIntervals[clockType].overlapLength(range)
+      val self = nodeIntervals[clockType].overlapLength(range) - childIntervals[clockType].overlapLength(range)
+      return Summary(total, total - self)
+    }
 
-      // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-      // then the second method can't be outerSoFarByParent.
-      // It's used to exclude nodes which aren't at the top of the
-      // call stack from the total time calculation.
+    /**
+     * @return the nodes that are at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20], then only the
+     * first one. Nested nodes are excluded from the total time, since their time is already counted by their outermost ancestor.
+     */
+    private fun outerNodes(clockType: ClockType): List<CaptureNode> {
+      val outerNodes = mutableListOf<CaptureNode>()
       // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
-      // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
-      val outerSoFarByParent = IdentityHashMap<CaptureNode, CaptureNode>()
-
-      // how much time was spent doing work directly in this call stack path
-      var self = 0.0
-      // myNodes is sorted by CaptureNode#getStart() in increasing order,
-      // if they are equal then ancestor comes first
+      // each of the threads. As such we keep a mapping of outer so far by root, to compute the outer nodes of each tree independently.
+      val outerSoFarByRoot = IdentityHashMap<CaptureNode, CaptureNode>()
+      // nodes is sorted by CaptureNode#getStart() in increasing order, if they are equal then ancestor comes first
       for (node in nodes) {
-        // We use the root node to distinguish if two nodes share the same tree. In the event of multi-select we want to compute the bottom
-        // up calculation independently for each tree then sum them after the fact.
-        // TODO(153306735): Cache the root calculation, otherwise our update algorithm is going to be O(n*depth) instead of O(n)
         val root = node.findRootNode()
-        val outerSoFar = outerSoFarByParent[root]
-        if (outerSoFar == null || node.end > outerSoFar.end) {
+        val outerSoFar = outerSoFarByRoot[root]
+        if (outerSoFar == null || node.endOf(clockType) > outerSoFar.endOf(clockType)) {
           if (outerSoFar != null) {
-            // |outerSoFarByParent| is at the top of the call stack
-            total += getIntersection(range, outerSoFar, clockType)
+            outerNodes.add(outerSoFar)
           }
-          outerSoFarByParent[root] = node
+          outerSoFarByRoot[root] = node
         }
-        self += getIntersection(range, node, clockType) -
-                node.children.sumOf { getIntersection(range, it, clockType) }
       }
-      for (outerSoFar in outerSoFarByParent.values) {
-        // |outerSoFarByParent| is at the top of the call stack
-        total += getIntersection(range, outerSoFar, clockType)
-      }
-      val childrenTotal = total - self
-      return Summary(total, childrenTotal)
+      outerNodes.addAll(outerSoFarByRoot.values)
+      return outerNodes
     }
 
     companion object {
@@ -142,23 +135,17 @@ abstract class Aggregate<T: Aggregate<T>> {
             Child(key.second, pathNodes, nodes)
           }
 
-      private fun CaptureNode.preOrderTraversal() = sequence<CaptureNode> {
-        val stack = Stack<CaptureNode>().also { it.add(this@preOrderTraversal) }
-        while (stack.isNotEmpty()) {
-          val next = stack.pop()
-          stack.addAll(next.children.asReversed()) // reversed order so that first child is processed first
-          // If we don't have an Id then we exclude this node from being added as a child to the parent.
-          // The only known occurrence of this is the empty root node used to aggregate multiple selected objects.
-          if (next.data.id.isNotEmpty()) yield(next)
-        }
-      }
+      private fun CaptureNode.preOrderTraversal() = descendantsStream.iterator().asSequence()
+        // If we don't have an Id then we exclude this node from being added as a child to the parent.
+        // The only known occurrence of this is the empty root node used to aggregate multiple selected objects.
+        .filter { it.data.id.isNotEmpty() }
     }
   }
 
   companion object {
-    internal fun getIntersection(range: Range, node: CaptureNode, type: ClockType): Double = when (type) {
-      ClockType.GLOBAL -> range.getIntersectionLength(node.startGlobal.toDouble(), node.endGlobal.toDouble())
-      ClockType.THREAD -> range.getIntersectionLength(node.startThread.toDouble(), node.endThread.toDouble())
+    private fun CaptureNode.endOf(type: ClockType) = when (type) {
+      ClockType.GLOBAL -> endGlobal
+      ClockType.THREAD -> endThread
     }
   }
 }
@@ -191,7 +191,14 @@ sealed class CaptureDetails(val clockType: ClockType, val capture: CpuCapture) {
      * are combined into one wider bar. It converts it from [TopDownNode] as it's similar to FlameChart.
      */
     private fun convertToFlameChart(topDown: CpuTreeNode<TopDownTree>, start: Double, depth: Int): CaptureNode =
-      CaptureNode(topDown.base.nodes[0].data, clockType).apply {
+      CaptureNode(topDown.base.nodes[0].data, clockType).also { fillFlameChart(it, topDown, start, depth) }
+
+    /**
+     * Sets the range of [node] from [topDown] and adds its children, so that the whole flame chart is built top-down in the store of its
+     * root.
+     */
+    private fun fillFlameChart(node: CaptureNode, topDown: CpuTreeNode<TopDownTree>, start: Double, depth: Int) {
+      with(node) {
         assert(topDown.total > 0)
 
         filterType = topDown.base.nodes[0].filterType
@@ -206,10 +213,11 @@ sealed class CaptureDetails(val clockType: ClockType, val capture: CpuCapture) {
           .filter { it.total > 0 }
           .sortedWith(compareBy({it.base.isUnmatched}, {-it.total}))
           .fold(start) { accStart, child ->
-            addChild(convertToFlameChart(child, accStart, depth + 1))
+            fillFlameChart(createChild(child.base.nodes[0].data), child, accStart, depth + 1)
             accStart + child.total
           }
       }
+    }
 
     enum class Aspect {
       /**
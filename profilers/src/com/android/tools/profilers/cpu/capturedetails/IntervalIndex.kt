@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CaptureNode
+
+/**
+ * Answers how much a fixed set of intervals overlaps a range in O(log n).
+ *
+ * The overlap of [s, e] with [a, b] is `clamp(e) - clamp(s)`, where `clamp` restricts a value to [a, b]. Summed over all intervals, this is
+ * the sum of the clamped ends minus the sum of the clamped starts. Over sorted values, each of these sums is `a` times the number of values
+ * below `a`, plus `b` times the number of values above `b`, plus a prefix sum of the values in between.
+ */
+internal class IntervalIndex(starts: LongArray, ends: LongArray) {
+  // Values are kept relative to the earliest start, so that prefix sums of large timestamps don't overflow.
+  private val origin = starts.minOrNull() ?: 0L
+  private val sortedStarts = LongArray(starts.size) { starts[it] - origin }.apply { sort() }
+  // An interval ending before it starts doesn't overlap anything, just like an empty one.
+  private val sortedEnds = LongArray(ends.size) { maxOf(starts[it], ends[it]) - origin }.apply { sort() }
+  private val startSums = prefixSums(sortedStarts)
+  private val endSums = prefixSums(sortedEnds)
+
+  val size get() = sortedStarts.size
+
+  /**
+   * @return the sum of the lengths of the intersections of each interval with the range.
+   */
+  fun overlapLength(range: Range): Double {
+    if (size == 0 || range.min > range.max) {
+      return 0.0
+    }
+    val min = range.min - origin
+    val max = range.max - origin
+    val startsBelow = lowerBound(sortedStarts, min)
+    val startsNotAbove = upperBound(sortedStarts, max)
+    val endsBelow = lowerBound(sortedEnds, min)
+    val endsNotAbove = upperBound(sortedEnds, max)
+    // The terms are grouped so that the large sums cancel out in exact arithmetic before being converted.
+    val inside = (endSums[endsNotAbove] - endSums[endsBelow]) - (startSums[startsNotAbove] - startSums[startsBelow])
+    return min * (endsBelow - startsBelow) + inside + max * (startsNotAbove - endsNotAbove)
+  }
+
+  /**
+   * @return whether any interval [s, e] satisfies s < range.max and range.min < e. The range must not be empty.
+   */
+  fun overlaps(range: Range): Boolean {
+    require(range.min < range.max)
+    // No interval can both start after the range and end before it, so the two counts don't overlap.
+    val startingAfter = size - lowerBound(sortedStarts, range.max - origin)
+    val endingBefore = upperBound(sortedEnds, range.min - origin)
+    return startingAfter + endingBefore < size
+  }
+
+  companion object {
+    fun of(nodes: Collection<CaptureNode>, clockType: ClockType): IntervalIndex {
+      val starts = LongArray(nodes.size)
+      val ends = LongArray(nodes.size)
+      nodes.forEachIndexed { i, node ->
+        starts[i] = if (clockType == ClockType.THREAD) node.startThread else node.startGlobal
+        ends[i] = if (clockType == ClockType.THREAD) node.endThread else node.endGlobal
+      }
+      return IntervalIndex(starts, ends)
+    }
+
+    private fun prefixSums(values: LongArray) = LongArray(values.size + 1).also { sums ->
+      values.forEachIndexed { i, value -> sums[i + 1] = sums[i] + value }
+    }
+
+    /**
+     * @return the index of the first value that is not less than `key`.
+     */
+    private fun lowerBound(values: LongArray, key: Double): Int {
+      var low = 0
+      var high = values.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (values[mid] < key) low = mid + 1 else high = mid
+      }
+      return low
+    }
+
+    /**
+     * @return the index of the first value that is greater than `key`.
+     */
+    private fun upperBound(values: LongArray, key: Double): Int {
+      var low = 0
+      var high = values.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (values[mid] <= key) low = mid + 1 else high = mid
+      }
+      return low
+    }
+  }
+}
+
+/**
+ * An [IntervalIndex] for each clock type, built the first time that clock type is queried.
+ */
+internal class IntervalIndexByClock(private val nodes: (ClockType) -> Collection<CaptureNode>) {
+  private val global by lazy(LazyThreadSafetyMode.PUBLICATION) { IntervalIndex.of(nodes(ClockType.GLOBAL), ClockType.GLOBAL) }
+  private val thread by lazy(LazyThreadSafetyMode.PUBLICATION) { IntervalIndex.of(nodes(ClockType.THREAD), ClockType.THREAD) }
+
+  operator fun get(clockType: ClockType) = when (clockType) {
+    ClockType.GLOBAL -> global
+    ClockType.THREAD -> thread
+  }
+}
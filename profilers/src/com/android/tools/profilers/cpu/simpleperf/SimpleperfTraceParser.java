@@ -16,9 +16,9 @@
 package com.android.tools.profilers.cpu.simpleperf;
 
 import com.android.tools.adtui.model.Range;
-import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profiler.proto.SimpleperfReport;
 import com.android.tools.profilers.cpu.BaseCpuCapture;
+import com.android.tools.profilers.cpu.CallTreeStore;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
@@ -44,9 +44,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Parses a trace file obtained using simpleperf to a map threadId -> {@link CaptureNode}.
@@ -106,6 +109,11 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   @VisibleForTesting final List<SimpleperfReport.Sample> mySamples;
 
+  /**
+   * The samples of {@link #mySamples} grouped by thread id as they are decoded, in the same order.
+   */
+  private final Map<Integer, List<SimpleperfReport.Sample>> myThreadSamples;
+
   /**
    * Maps a {@link CpuThreadInfo} to its correspondent method call tree.
    */
@@ -147,11 +155,28 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private String myAppDataFolderPrefix;
 
-  private Set<String> myTags = new TreeSet<>(TAG_COMPARATOR);
+  /**
+   * Tags of the nodes, added to concurrently by the threads building the call trees.
+   */
+  private final Set<String> myTags = new ConcurrentSkipListSet<>(TAG_COMPARATOR);
+
+  /**
+   * Number of threads building call trees.
+   */
+  private final int myParallelism;
 
   public SimpleperfTraceParser() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param parallelism number of threads used to build the call trees of the sampled threads.
+   */
+  public SimpleperfTraceParser(int parallelism) {
+    myParallelism = parallelism;
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
+    myThreadSamples = new HashMap<>();
     myCaptureTrees = new HashMap<>();
     myThreads = new HashMap<>();
   }
@@ -231,11 +256,15 @@ public class SimpleperfTraceParser implements TraceParser {
     return myCpuClockEventTypeId >= 0;
   }
 
-  @NotNull
-  private static CaptureNode createCaptureNode(CaptureNodeModel model, long startGlobalNs, long startThreadNs) {
-    CaptureNode node = new CaptureNode(model, ClockType.GLOBAL);
-    setNodeStartTime(node, startGlobalNs, startThreadNs);
-    node.setDepth(0);
+  /**
+   * Adds a node as the last child of {@code parent} in {@code store}, or as a root if it is {@link CallTreeStore#NO_NODE}.
+   *
+   * @return the slot of the new node
+   */
+  private static int addCaptureNode(CallTreeStore store, int parent, CaptureNodeModel model, long startGlobalNs, long startThreadNs) {
+    int node = store.addNode(parent, model);
+    setNodeStartTime(store, node, startGlobalNs, startThreadNs);
+    store.setDepth(node, parent == CallTreeStore.NO_NODE ? 0 : store.getDepth(parent) + 1);
     return node;
   }
 
@@ -252,7 +281,7 @@ public class SimpleperfTraceParser implements TraceParser {
    * message Record(record_N) (having record_size_N bytes)
    * LittleEndian32(0)
    * <p>
-   * Parsed data is stored in {@link #myFiles} and {@link #mySamples}.
+   * Parsed data is stored in {@link #myFiles}, {@link #mySamples} and {@link #myThreadSamples}.
    */
   @VisibleForTesting
   void parseTraceFile(File trace) throws IOException {
@@ -284,6 +313,7 @@ public class SimpleperfTraceParser implements TraceParser {
         case SAMPLE:
           SimpleperfReport.Sample sample = record.getSample();
           mySamples.add(sample);
+          myThreadSamples.computeIfAbsent(sample.getThreadId(), threadId -> new ArrayList<>()).add(sample);
           break;
         case THREAD:
           SimpleperfReport.Thread thread = record.getThread();
@@ -331,7 +361,10 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   /**
-   * Parses the data from {@link #mySamples} into a map of tid -> {@link CaptureNode}.
+   * Parses the data from {@link #myThreadSamples} into a map of tid -> {@link CaptureNode}.
+   * <p>
+   * The samples of a thread only ever add to its own call tree, so trees are built concurrently, one task per thread, and added to
+   * {@link #myCaptureTrees} once all of them are done.
    */
   private void parseSampleData() {
     if (mySamples.isEmpty()) {
@@ -343,47 +376,56 @@ public class SimpleperfTraceParser implements TraceParser {
     long endTimestamp = mySamples.get(mySamples.size() - 1).getTime();
     myCaptureRange.set(TimeUnit.NANOSECONDS.toMicros(startTimestamp), TimeUnit.NANOSECONDS.toMicros(endTimestamp));
 
-    // Split the samples per thread.
-    Map<Integer, List<SimpleperfReport.Sample>> threadSamples = splitSamplesPerThread();
-
     // Process the samples for each thread
-    for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
-      parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
+    if (myParallelism <= 1 || myThreadSamples.size() <= 1) {
+      for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : myThreadSamples.entrySet()) {
+        addCaptureTree(parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue()));
+      }
+      return;
+    }
+    ForkJoinPool pool = new ForkJoinPool(Math.min(myParallelism, myThreadSamples.size()));
+    try {
+      List<ForkJoinTask<Map.Entry<CpuThreadInfo, CaptureNode>>> tasks = new ArrayList<>(myThreadSamples.size());
+      // Start with the threads that have the most samples, so that they don't end up being the last ones left running.
+      myThreadSamples.entrySet().stream()
+        .sorted(Comparator.comparingInt((Map.Entry<Integer, List<SimpleperfReport.Sample>> entry) -> entry.getValue().size()).reversed())
+        .forEach(entry -> tasks.add(pool.submit(() -> parseThreadSamples(entry.getKey(), entry.getValue()))));
+      for (ForkJoinTask<Map.Entry<CpuThreadInfo, CaptureNode>> task : tasks) {
+        addCaptureTree(task.join());
+      }
+    }
+    finally {
+      pool.shutdownNow();
     }
   }
 
-  /**
-   * Group the samples collected by thread.
-   */
-  private Map<Integer, List<SimpleperfReport.Sample>> splitSamplesPerThread() {
-    Map<Integer, List<SimpleperfReport.Sample>> threadSamples = new HashMap<>();
-    for (SimpleperfReport.Sample sample : mySamples) {
-      int threadId = sample.getThreadId();
-      if (!threadSamples.containsKey(threadId)) {
-        threadSamples.put(threadId, new ArrayList<>());
-      }
-      threadSamples.get(threadId).add(sample);
+  private void addCaptureTree(@Nullable Map.Entry<CpuThreadInfo, CaptureNode> threadTree) {
+    if (threadTree != null) {
+      myCaptureTrees.put(threadTree.getKey(), threadTree.getValue());
     }
-    return threadSamples;
   }
 
-  private static void setNodeStartTime(CaptureNode node, long startGlobalNs, long startThreadNs) {
-    node.setStartGlobal(TimeUnit.NANOSECONDS.toMicros(startGlobalNs));
-    node.setStartThread(TimeUnit.NANOSECONDS.toMicros(startThreadNs));
+  private static void setNodeStartTime(CallTreeStore store, int node, long startGlobalNs, long startThreadNs) {
+    store.setStartGlobal(node, TimeUnit.NANOSECONDS.toMicros(startGlobalNs));
+    store.setStartThread(node, TimeUnit.NANOSECONDS.toMicros(startThreadNs));
   }
 
-  private static void setNodeEndTime(CaptureNode node, long endGlobalNs, long endThreadNs) {
-    node.setEndGlobal(TimeUnit.NANOSECONDS.toMicros(endGlobalNs));
-    node.setEndThread(TimeUnit.NANOSECONDS.toMicros(endThreadNs));
+  private static void setNodeEndTime(CallTreeStore store, int node, long endGlobalNs, long endThreadNs) {
+    store.setEndGlobal(node, TimeUnit.NANOSECONDS.toMicros(endGlobalNs));
+    store.setEndThread(node, TimeUnit.NANOSECONDS.toMicros(endThreadNs));
   }
 
   /**
-   * Parses the list of samples of a thread into a {@link CaptureNode} tree.
+   * Parses the list of samples of a thread into a {@link CaptureNode} tree, built in a {@link CallTreeStore} of its own. Only reads the
+   * state of the parser, apart from {@link #myTags}, so it can be called for several threads at once.
+   *
+   * @return the thread and its call tree, or null if the thread has no samples.
    */
-  private void parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
+  @Nullable
+  private Map.Entry<CpuThreadInfo, CaptureNode> parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
     if (threadSamples.isEmpty()) {
       getLog().warn(String.format("Warning: No samples read for thread %s (%d)", myThreads.get(threadId), threadId));
-      return;
+      return null;
     }
 
     if (!myThreads.containsKey(threadId)) {
@@ -397,15 +439,13 @@ public class SimpleperfTraceParser implements TraceParser {
     // ArtTraceHandler.
     long threadTimeNs = firstTimestamp;
     SimpleperfReport.Thread thread = myThreads.get(threadId);
-    CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp, threadTimeNs);
-    root.setDepth(0);
-    myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
+    CallTreeStore store = new CallTreeStore();
+    int root = addCaptureNode(store, CallTreeStore.NO_NODE, new SingleNameModel(thread.getThreadName()), firstTimestamp, threadTimeNs);
 
     // Parse the first call chain so we have a value for lastCallchain
     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
     // Node used to traverse the tree. In the first traversal we pass an empty list as previous call chain and root as last visited node.
-    CaptureNode lastVisitedNode = parseCallChain(previousCallChain, Collections.emptyList(), firstTimestamp,
-                                                 threadTimeNs, root);
+    int lastVisitedNode = parseCallChain(store, previousCallChain, Collections.emptyList(), firstTimestamp, threadTimeNs, root);
 
     // Now parse all the rest of the samples collected for this thread
     for (int i = 1; i < threadSamples.size(); i++) {
@@ -419,41 +459,42 @@ public class SimpleperfTraceParser implements TraceParser {
         threadTimeNs += sample.getEventCount();
       }
       // TODO: when --trace-offcpu is supported, we will need to call updateAncestorsEndTime if sample has a "schedule" out event.
-      lastVisitedNode = parseCallChain(callChain, previousCallChain, sample.getTime(), threadTimeNs, lastVisitedNode);
+      lastVisitedNode = parseCallChain(store, callChain, previousCallChain, sample.getTime(), threadTimeNs, lastVisitedNode);
       previousCallChain = callChain;
     }
 
     // Finally, update the end timestamp of the nodes in the last sample of the thread, which should be the last sample's timestamp.
     // TODO: when --trace-offcpu is supported, we need to check if the last sample has a "schedule" out event before updating the end time.
     long lastTimestamp = mySamples.get(mySamples.size() - 1).getTime();
-    updateAncestorsEndTime(lastTimestamp, threadTimeNs, lastVisitedNode);
+    updateAncestorsEndTime(store, lastTimestamp, threadTimeNs, lastVisitedNode);
     // update the root timestamp
-    setNodeEndTime(root, lastTimestamp, threadTimeNs);
+    setNodeEndTime(store, root, lastTimestamp, threadTimeNs);
+    return Map.entry(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), store.node(root));
   }
 
   /**
    * Updates the end timestamp of a node and all its ancestors except the root.
    */
-  private static void updateAncestorsEndTime(long globalTimeNs, long threadTimeNs, CaptureNode lastVisited) {
-    CaptureNode node = lastVisited;
-    while (node.getParent() != null && node.getEnd() == 0) {
-      setNodeEndTime(node, globalTimeNs, threadTimeNs);
-      node = node.getParent();
-      assert node != null;
+  private static void updateAncestorsEndTime(CallTreeStore store, long globalTimeNs, long threadTimeNs, int lastVisited) {
+    int node = lastVisited;
+    while (store.getParent(node) != CallTreeStore.NO_NODE && store.getEndGlobal(node) == 0) {
+      setNodeEndTime(store, node, globalTimeNs, threadTimeNs);
+      node = store.getParent(node);
     }
   }
 
   /**
    * Given a {@link SimpleperfReport.Sample.CallChainEntry} and the previous one, add the new method calls as nodes to
    * the tree and set their start time to the given timestamps (GLOBAL and THREAD). Also, check which methods are not
-   * on the call chain anymore and update their end time. Receives a {@link CaptureNode} as a starting point to
-   * traverse the tree when adding new nodes or visiting existing ones. Returns the last visited node.
+   * on the call chain anymore and update their end time. Receives the slot of a node as a starting point to
+   * traverse the tree when adding new nodes or visiting existing ones. Returns the slot of the last visited node.
    */
-  private CaptureNode parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain,
-                                     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain,
-                                     long globalTimeNs, long threadTimeNs, CaptureNode lastVisitedNode) {
+  private int parseCallChain(CallTreeStore store,
+                             List<SimpleperfReport.Sample.CallChainEntry> callChain,
+                             List<SimpleperfReport.Sample.CallChainEntry> previousCallChain,
+                             long globalTimeNs, long threadTimeNs, int lastVisitedNode) {
     // Node used to traverse the tree when adding new nodes or going up to find the divergent node ancestor.
-    CaptureNode traversalNode = lastVisitedNode;
+    int traversalNode = lastVisitedNode;
 
     // Find the node where the current call chain diverge from the previous one
     int divergenceIndex = 0;
@@ -465,12 +506,12 @@ public class SimpleperfTraceParser implements TraceParser {
     // If there is a divergence, we update the end time of the traversal node and go up in the tree until we find the divergent node parent.
     if (divergenceIndex < previousCallChain.size()) {
       int divergenceCount = previousCallChain.size() - divergenceIndex;
-      traversalNode = findDivergenceAndUpdateEndTime(divergenceCount, globalTimeNs, threadTimeNs, traversalNode);
+      traversalNode = findDivergenceAndUpdateEndTime(store, divergenceCount, globalTimeNs, threadTimeNs, traversalNode);
     }
 
     // We add the new nodes (if any) present in the new call chain as descendants of the parent of the first divergent node.
     if (divergenceIndex < callChain.size()) {
-      traversalNode = addNewNodes(callChain, traversalNode, divergenceIndex, globalTimeNs, threadTimeNs);
+      traversalNode = addNewNodes(store, callChain, traversalNode, divergenceIndex, globalTimeNs, threadTimeNs);
     }
 
     // Finally, return the traversal node.
@@ -481,12 +522,12 @@ public class SimpleperfTraceParser implements TraceParser {
    * Updates the end timestamp of a given node and go up in the tree N times, where N is the divergence count passed as an argument.
    * Returns the parent of the last visited node, meaning nodes that we have changed the end time.
    */
-  private static CaptureNode findDivergenceAndUpdateEndTime(int divergenceCount, long endGlobalNs, long endThreadNs,
-                                                            CaptureNode node) {
+  private static int findDivergenceAndUpdateEndTime(CallTreeStore store, int divergenceCount, long endGlobalNs, long endThreadNs,
+                                                    int node) {
     for (int i = 0; i < divergenceCount; i++) {
-      assert node != null;
-      setNodeEndTime(node, endGlobalNs, endThreadNs);
-      node = node.getParent();
+      assert node != CallTreeStore.NO_NODE;
+      setNodeEndTime(store, node, endGlobalNs, endThreadNs);
+      node = store.getParent(node);
     }
 
     return node;
@@ -496,17 +537,13 @@ public class SimpleperfTraceParser implements TraceParser {
    * Given a list of call chain entries and a start index, convert them to {@link CaptureNode} and add them as descendants of a given node.
    * Returns the last visited (added) node.
    */
-  private CaptureNode addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
-                                  CaptureNode node, int startIndex, long startGlobalNs, long startThreadNs) {
-    assert node != null;
+  private int addNewNodes(CallTreeStore store, List<SimpleperfReport.Sample.CallChainEntry> callChain,
+                          int node, int startIndex, long startGlobalNs, long startThreadNs) {
+    assert node != CallTreeStore.NO_NODE;
     for (int i = startIndex; i < callChain.size(); i++) {
       // Get the parent function vAddress. That corresponds to the line of the parent function where the current function is called.
       long parentVAddress = i > 0 ? callChain.get(i - 1).getVaddrInFile() : -1;
-      CaptureNode child = createCaptureNode(methodModelFromCallchainEntry(callChain.get(i), parentVAddress),
-                                            startGlobalNs, startThreadNs);
-      node.addChild(child);
-      child.setDepth(node.getDepth() + 1);
-      node = child;
+      node = addCaptureNode(store, node, methodModelFromCallchainEntry(callChain.get(i), parentVAddress), startGlobalNs, startThreadNs);
     }
     // Return the last added node, as it's the visited one
     return node;
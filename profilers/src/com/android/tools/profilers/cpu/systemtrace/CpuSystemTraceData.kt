@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.cpu.systemtrace
 
+import com.android.tools.adtui.model.DataSeries
 import com.android.tools.adtui.model.SeriesData
 import com.android.tools.profiler.perfetto.proto.TraceProcessor
 import com.android.tools.profilers.cpu.ThreadState
@@ -30,7 +31,23 @@ interface CpuSystemTraceData {
    *
    * @param threadId Thread Id of thread requesting states for. If thread id is not found an empty list is returned.
    */
-  fun getThreadStatesForThread(threadId: Int): List<SeriesData<ThreadState>>
+  fun getThreadStatesForThread(threadId: Int): List<SeriesData<ThreadState>> =
+    getThreadStatesForThread(threadId, Long.MIN_VALUE, Long.MAX_VALUE)
+
+  /**
+   * Returns the thread state transitions for the given thread between [startUs] and [endUs], plus the state the thread was in at
+   * [startUs] and the first state after [endUs].
+   *
+   * @param threadId Thread Id of thread requesting states for. If thread id is not found an empty list is returned.
+   */
+  fun getThreadStatesForThread(threadId: Int, startUs: Long, endUs: Long): List<SeriesData<ThreadState>>
+
+  /**
+   * Returns a series of the thread state transitions for the given thread. Each query only builds the states of the range it asks for,
+   * so a track only reads the states of the thread it shows, and only for its visible range.
+   */
+  fun getThreadStateDataSeries(threadId: Int): DataSeries<ThreadState> =
+    DataSeries.using { range -> getThreadStatesForThread(threadId, range.min.toLong(), range.max.toLong()) }
 
   /**
    * Returns a series of [CpuThreadSliceInfo] information.
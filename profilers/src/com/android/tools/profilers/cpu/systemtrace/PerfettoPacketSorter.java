@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.systemtrace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sorts the Atrace lines converted from {@link PerfettoTrace.FtraceEventBundle}s by timestamp. This is needed because the bundles come in
+ * out of order, as well as the lines within a bundle.
+ * <p>
+ * Lines are appended to a spill file as they are added, and only their timestamp and offset in that file are kept in memory. Once a fixed
+ * number of them has been added, they are sorted and written out as a run to a second file. When iteration starts, both files are
+ * memory-mapped and the runs are merged with a heap, so memory use is bounded by the size of a run whatever the size of the capture.
+ * Captures small enough to fit in a single run are sorted in memory without writing any run, and the run buffers only grow as large as
+ * the number of lines added needs.
+ * <p>
+ * Lines sharing a timestamp are returned in the order they were added.
+ */
+public class PerfettoPacketSorter implements Iterator<String> {
+  /**
+   * 16 bytes per line, so full runs take 16MB of memory.
+   */
+  private static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+  /**
+   * Runs start this small and grow as lines are added, so that small captures don't pay for a full run.
+   */
+  private static final int INITIAL_RUN_CAPACITY = 1 << 10;
+
+  /**
+   * Files are mapped in segments of this size, since a single mapping can't exceed 2GB. Lines never cross a segment boundary.
+   */
+  private static final int SEGMENT_SIZE = 1 << 30;
+
+  private static final int RUN_ENTRY_BYTES = 2 * Long.BYTES;
+
+  private final int myRunSize;
+  private long[] myTimestamps;
+  private long[] myOffsets;
+  private int myRunLength;
+  private final List<Long> myRunStarts = new ArrayList<>();
+
+  @Nullable private File myLinesFile;
+  @Nullable private DataOutputStream myLinesOutput;
+  private long myLinesOffset;
+  @Nullable private File myRunsFile;
+  @Nullable private DataOutputStream myRunsOutput;
+  private boolean myFailed;
+
+  // Iteration state, set by resetForIterator.
+  @Nullable private MappedByteBuffer[] myLineSegments;
+  @Nullable private MappedByteBuffer[] myRunSegments;
+  // For each run being merged, the index of its next entry and the index past its last entry. Unused when the lines fit in memory.
+  private long[] myRunCursors = new long[0];
+  private long[] myRunEnds = new long[0];
+  // Min-heap of the indices of the runs that have entries left, ordered by their next entry.
+  private int[] myHeap = new int[0];
+  private int myHeapSize;
+  private int myMemoryCursor;
+  private boolean myIterating;
+  private byte[] myScratch = new byte[256];
+
+  private static Logger getLogger() {
+    return Logger.getInstance(PerfettoPacketSorter.class);
+  }
+
+  public PerfettoPacketSorter() {
+    this(DEFAULT_RUN_SIZE);
+  }
+
+  /**
+   * @param runSize the number of lines sorted in memory at once.
+   */
+  @VisibleForTesting
+  public PerfettoPacketSorter(int runSize) {
+    myRunSize = runSize;
+    myTimestamps = new long[0];
+    myOffsets = new long[0];
+  }
+
+  /**
+   * As a trace file is loaded, each line converted from an FtraceEventBundle should be added to the sorter.
+   */
+  public void addLine(long timestamp, @NotNull String line) {
+    if (myFailed || myIterating) {
+      return;
+    }
+    try {
+      if (myLinesOutput == null) {
+        myLinesFile = FileUtil.createTempFile("perfetto", ".lines", true);
+        myLinesOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myLinesFile)));
+      }
+      byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      int recordSize = Integer.BYTES + bytes.length;
+      long segmentEnd = (myLinesOffset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+      if (myLinesOffset + recordSize > segmentEnd) {
+        // Pad to the next segment, so that the line can be read from a single mapping.
+        myLinesOutput.write(new byte[(int)(segmentEnd - myLinesOffset)]);
+        myLinesOffset = segmentEnd;
+      }
+      myLinesOutput.writeInt(bytes.length);
+      myLinesOutput.write(bytes);
+      if (myRunLength == myTimestamps.length) {
+        int capacity = Math.min(myRunSize, Math.max(INITIAL_RUN_CAPACITY, myTimestamps.length * 2));
+        myTimestamps = Arrays.copyOf(myTimestamps, capacity);
+        myOffsets = Arrays.copyOf(myOffsets, capacity);
+      }
+      myTimestamps[myRunLength] = timestamp;
+      myOffsets[myRunLength] = myLinesOffset;
+      myRunLength++;
+      myLinesOffset += recordSize;
+      if (myRunLength == myRunSize) {
+        spillRun();
+      }
+    }
+    catch (IOException ex) {
+      // Stop adding lines instead of spamming the output.
+      myFailed = true;
+      getLogger().warn(ex);
+    }
+  }
+
+  /**
+   * This function should be called when we want to finalize this class for writing and enable it for reading.
+   */
+  public void resetForIterator() {
+    if (myIterating) {
+      return;
+    }
+    myIterating = true;
+    sort(myTimestamps, myOffsets, 0, myRunLength);
+    try {
+      if (myLinesOutput == null) {
+        return;
+      }
+      myLinesOutput.close();
+      myLinesOutput = null;
+      myLineSegments = map(myLinesFile, myLinesOffset);
+      if (myRunsOutput == null) {
+        // Everything fits in memory, iterate over the sorted run directly.
+        return;
+      }
+      spillRun();
+      myRunsOutput.close();
+      myRunsOutput = null;
+      int runCount = myRunStarts.size() - 1;
+      myRunSegments = map(myRunsFile, myRunStarts.get(runCount) * RUN_ENTRY_BYTES);
+      myRunCursors = new long[runCount];
+      myRunEnds = new long[runCount];
+      myHeap = new int[runCount];
+      for (int run = 0; run < runCount; run++) {
+        myRunCursors[run] = myRunStarts.get(run);
+        myRunEnds[run] = myRunStarts.get(run + 1);
+        if (myRunCursors[run] < myRunEnds[run]) {
+          myHeap[myHeapSize++] = run;
+        }
+      }
+      for (int i = myHeapSize / 2 - 1; i >= 0; i--) {
+        siftDown(i);
+      }
+    }
+    catch (IOException ex) {
+      getLogger().error(ex);
+      myLineSegments = null;
+    }
+  }
+
+  /**
+   * Free the memory and the files used for sorting.
+   */
+  public void close() {
+    closeQuietly(myLinesOutput);
+    closeQuietly(myRunsOutput);
+    myLinesOutput = null;
+    myRunsOutput = null;
+    // Mapped buffers are released once they are garbage collected, which also lets the files be deleted on Windows.
+    myLineSegments = null;
+    myRunSegments = null;
+    deleteQuietly(myLinesFile);
+    deleteQuietly(myRunsFile);
+    myLinesFile = null;
+    myRunsFile = null;
+    myTimestamps = new long[0];
+    myOffsets = new long[0];
+    myRunLength = 0;
+    myMemoryCursor = 0;
+    myHeapSize = 0;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (myLineSegments == null) {
+      return false;
+    }
+    return myRunSegments == null ? myMemoryCursor < myRunLength : myHeapSize > 0;
+  }
+
+  @Override
+  @NotNull
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    if (myRunSegments == null) {
+      return readLine(myOffsets[myMemoryCursor++]);
+    }
+    int run = myHeap[0];
+    long offset = runOffset(myRunCursors[run]);
+    if (++myRunCursors[run] == myRunEnds[run]) {
+      myHeap[0] = myHeap[--myHeapSize];
+    }
+    siftDown(0);
+    return readLine(offset);
+  }
+
+  private void spillRun() throws IOException {
+    if (myRunsOutput == null) {
+      myRunsFile = FileUtil.createTempFile("perfetto", ".runs", true);
+      myRunsOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myRunsFile)));
+      myRunStarts.add(0L);
+    }
+    sort(myTimestamps, myOffsets, 0, myRunLength);
+    for (int i = 0; i < myRunLength; i++) {
+      myRunsOutput.writeLong(myTimestamps[i]);
+      myRunsOutput.writeLong(myOffsets[i]);
+    }
+    myRunStarts.add(myRunStarts.get(myRunStarts.size() - 1) + myRunLength);
+    myRunLength = 0;
+  }
+
+  @NotNull
+  private String readLine(long offset) {
+    MappedByteBuffer segment = myLineSegments[(int)(offset / SEGMENT_SIZE)];
+    int position = (int)(offset % SEGMENT_SIZE);
+    int length = segment.getInt(position);
+    if (myScratch.length < length) {
+      myScratch = new byte[Math.max(length, myScratch.length * 2)];
+    }
+    // Absolute bulk reads would avoid moving the position, but aren't available before Java 13.
+    segment.position(position + Integer.BYTES);
+    segment.get(myScratch, 0, length);
+    return new String(myScratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private long runTimestamp(long entry) {
+    long position = entry * RUN_ENTRY_BYTES;
+    return myRunSegments[(int)(position / SEGMENT_SIZE)].getLong((int)(position % SEGMENT_SIZE));
+  }
+
+  private long runOffset(long entry) {
+    long position = entry * RUN_ENTRY_BYTES + Long.BYTES;
+    return myRunSegments[(int)(position / SEGMENT_SIZE)].getLong((int)(position % SEGMENT_SIZE));
+  }
+
+  /**
+   * @return whether the next entry of the first run comes before that of the second. Offsets grow in the order lines were added, so
+   * they break ties between timestamps.
+   */
+  private boolean runIsBefore(int first, int second) {
+    long firstTimestamp = runTimestamp(myRunCursors[first]);
+    long secondTimestamp = runTimestamp(myRunCursors[second]);
+    if (firstTimestamp != secondTimestamp) {
+      return firstTimestamp < secondTimestamp;
+    }
+    return runOffset(myRunCursors[first]) < runOffset(myRunCursors[second]);
+  }
+
+  private void siftDown(int index) {
+    while (true) {
+      int smallest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < myHeapSize && runIsBefore(myHeap[left], myHeap[smallest])) {
+        smallest = left;
+      }
+      if (right < myHeapSize && runIsBefore(myHeap[right], myHeap[smallest])) {
+        smallest = right;
+      }
+      if (smallest == index) {
+        return;
+      }
+      int swap = myHeap[index];
+      myHeap[index] = myHeap[smallest];
+      myHeap[smallest] = swap;
+      index = smallest;
+    }
+  }
+
+  /**
+   * Sorts the entries in [from, to) by timestamp then offset, without boxing them. Lines are mostly added in time order, and insertion
+   * sort is fast on nearly sorted data, so it is used for the small ranges the quicksort ends up with.
+   */
+  private static void sort(long[] timestamps, long[] offsets, int from, int to) {
+    while (to - from > 16) {
+      int mid = (from + to) >>> 1;
+      // Median of three, which also avoids the worst case on sorted input.
+      if (isBefore(timestamps, offsets, mid, from)) swap(timestamps, offsets, mid, from);
+      if (isBefore(timestamps, offsets, to - 1, from)) swap(timestamps, offsets, to - 1, from);
+      if (isBefore(timestamps, offsets, to - 1, mid)) swap(timestamps, offsets, to - 1, mid);
+      long pivotTimestamp = timestamps[mid];
+      long pivotOffset = offsets[mid];
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (compare(timestamps[i], offsets[i], pivotTimestamp, pivotOffset) < 0) i++;
+        while (compare(timestamps[j], offsets[j], pivotTimestamp, pivotOffset) > 0) j--;
+        if (i <= j) {
+          swap(timestamps, offsets, i++, j--);
+        }
+      }
+      // Recurse into the smaller half and loop on the larger one, to bound the stack depth.
+      if (j - from < to - i) {
+        sort(timestamps, offsets, from, j + 1);
+        from = i;
+      }
+      else {
+        sort(timestamps, offsets, i, to);
+        to = j + 1;
+      }
+    }
+    for (int i = from + 1; i < to; i++) {
+      long timestamp = timestamps[i];
+      long offset = offsets[i];
+      int j = i - 1;
+      while (j >= from && compare(timestamps[j], offsets[j], timestamp, offset) > 0) {
+        timestamps[j + 1] = timestamps[j];
+        offsets[j + 1] = offsets[j];
+        j--;
+      }
+      timestamps[j + 1] = timestamp;
+      offsets[j + 1] = offset;
+    }
+  }
+
+  private static int compare(long firstTimestamp, long firstOffset, long secondTimestamp, long secondOffset) {
+    int result = Long.compare(firstTimestamp, secondTimestamp);
+    return result != 0 ? result : Long.compare(firstOffset, secondOffset);
+  }
+
+  private static boolean isBefore(long[] timestamps, long[] offsets, int first, int second) {
+    return compare(timestamps[first], offsets[first], timestamps[second], offsets[second]) < 0;
+  }
+
+  private static void swap(long[] timestamps, long[] offsets, int first, int second) {
+    long timestamp = timestamps[first];
+    timestamps[first] = timestamps[second];
+    timestamps[second] = timestamp;
+    long offset = offsets[first];
+    offsets[first] = offsets[second];
+    offsets[second] = offset;
+  }
+
+  @NotNull
+  private static MappedByteBuffer[] map(@NotNull File file, long size) throws IOException {
+    MappedByteBuffer[] segments = new MappedByteBuffer[(int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long)i * SEGMENT_SIZE;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+      }
+    }
+    return segments;
+  }
+
+  private static void closeQuietly(@Nullable DataOutputStream stream) {
+    if (stream == null) {
+      return;
+    }
+    try {
+      stream.close();
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  private static void deleteQuietly(@Nullable File file) {
+    if (file != null && !file.delete()) {
+      // Mapped files can't be deleted on Windows until the mapping is garbage collected; they are deleted on exit instead.
+      file.deleteOnExit();
+    }
+  }
+}
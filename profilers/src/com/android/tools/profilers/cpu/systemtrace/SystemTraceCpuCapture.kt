@@ -27,9 +27,9 @@ import com.android.tools.profilers.cpu.systemtrace.SystemTraceFrame.FrameThread
 import kotlin.streams.asSequence
 
 class SystemTraceCpuCapture(traceId: Long,
-                            model: SystemTraceModelAdapter,
+                            private val model: SystemTraceModelAdapter,
+                            private val mainProcessId: Int,
                             captureNodes: Map<CpuThreadInfo, CaptureNode>,
-                            private val threadStateDataSeries: Map<Int, List<SeriesData<ThreadState>>>,
                             private val cpuThreadSliceInfoStates: Map<Int, List<SeriesData<CpuThreadSliceInfo>>>,
                             override val cpuUtilizationSeries: List<SeriesData<Long>>,
                             override val cpuCounters: List<Map<String, List<SeriesData<Long>>>>,
@@ -87,6 +87,8 @@ class SystemTraceCpuCapture(traceId: Long,
     timeline.viewRange[initialViewRangeUs.min] = initialViewRangeUs.max
   }
 
+  override val initialViewRange = Range(initialViewRangeUs)
+
   // SurfaceFlinger buffer queue counter on pre-S and BLAST buffer queue counter on S+.
   override val bufferQueueCounterValues get() = when {
     surfaceflingerManager.bufferQueueValues.isEmpty() -> blastBufferQueueCounter
@@ -98,7 +100,9 @@ class SystemTraceCpuCapture(traceId: Long,
    * Atrace reports a sched_switch event each time the thread state changes, because of this the thread states
    * reported here are more accurate than the ones sampled via perfd.
    */
-  override fun getThreadStatesForThread(threadId: Int) = threadStateDataSeries[threadId] ?: listOf()
+  override fun getThreadStatesForThread(threadId: Int, startUs: Long, endUs: Long): List<SeriesData<ThreadState>> =
+    if (model.getProcessById(mainProcessId)?.threadById?.containsKey(threadId) == true) model.getThreadStates(threadId, startUs, endUs)
+    else listOf()
 
   /**
    * The information is computed from the sched_switch trace line reported by atrace.
@@ -17,10 +17,9 @@ package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.SeriesData
-import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CallTreeStore
 import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.CpuThreadInfo
-import com.android.tools.profilers.cpu.ThreadState
 import com.android.tools.profilers.cpu.nodemodel.SystemTraceNodeFactory
 import com.android.tools.profilers.cpu.systemtrace.CounterDataUtils.aggregateCounters
 import com.android.tools.profilers.cpu.systemtrace.CounterDataUtils.convertCounterToSeriesData
@@ -46,7 +45,6 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
       "A process with the id $mainProcessId was not found while parsing the capture.")
 
     val captureTreeNodes = buildCaptureTreeNodes(mainProcess)
-    val threadState = buildThreadStateData(mainProcess)
     val cpuState = buildCpuStateData(mainProcess)
     val cpuCounters = buildCpuCountersData()
     val memoryCounters = buildMainProcessMemoryCountersData(mainProcess)
@@ -57,14 +55,14 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
     val frameManager = SystemTraceFrameManager(mainProcess)
     val sfManager = SystemTraceSurfaceflingerManager(model, mainProcess.name)
 
-    return SystemTraceCpuCapture(traceId, model, captureTreeNodes, threadState, cpuState.schedulingData, cpuState.utilizationData,
-                                 cpuCounters, memoryCounters, powerRailCounters, batteryDrainCounters, blastBufferQueueCounter,
-                                 frameManager, sfManager, initialViewRange)
+    return SystemTraceCpuCapture(traceId, model, mainProcessId, captureTreeNodes, cpuState.schedulingData,
+                                 cpuState.utilizationData, cpuCounters, memoryCounters, powerRailCounters, batteryDrainCounters,
+                                 blastBufferQueueCounter, frameManager, sfManager, initialViewRange)
   }
 
   /**
    * Returns a map of [CpuThreadInfo] to [CaptureNode].
-   * The capture nodes are built from [TraceEventModel] maintaining the order and hierarchy.
+   * The capture nodes are built from [TraceEventModel] maintaining the order and hierarchy, in a [CallTreeStore] per thread.
    */
   private fun buildCaptureTreeNodes(mainProcessModel: ProcessModel): Map<CpuThreadInfo, CaptureNode> {
     val threadToCaptureNodeMap = mutableMapOf<CpuThreadInfo, CaptureNode>()
@@ -73,71 +71,37 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
     for (thread in mainProcessModel.getThreads()) {
       val threadName = if (thread.id == mainProcessModel.id && thread.name.isEmpty()) mainProcessModel.name else thread.name
       val threadInfo = CpuThreadSliceInfo(thread.id, threadName, mainProcessModel.id, mainProcessModel.name)
-      val root = CaptureNode(nodeFactory.getNode(thread.name), ClockType.GLOBAL)
-      root.startGlobal = model.getCaptureStartTimestampUs()
-      root.endGlobal = model.getCaptureEndTimestampUs()
-      threadToCaptureNodeMap[threadInfo] = root
+      val store = CallTreeStore()
+      val root = store.addNode(CallTreeStore.NO_NODE, nodeFactory.getNode(thread.name))
+      store.setStartGlobal(root, model.getCaptureStartTimestampUs())
+      store.setEndGlobal(root, model.getCaptureEndTimestampUs())
+      threadToCaptureNodeMap[threadInfo] = store.node(root)
       for (event in thread.traceEvents) {
-        root.addChild(populateCaptureNode(event, 1, nodeFactory))
+        populateCaptureNode(store, root, event, 1, nodeFactory)
       }
     }
     return threadToCaptureNodeMap
   }
 
   /**
-   * Recursive function that builds a tree of [CaptureNode] from a [TraceEventModel].
+   * Recursive function that adds the node mirroring a [TraceEventModel] to a [CallTreeStore].
    *
-   * @param traceEventModel to convert to a [CaptureNode]. This method will be recursively called on all children.
+   * @param parent slot of the parent of the node.
+   * @param traceEventModel to convert to a node. This method will be recursively called on all children.
    * @param depth to current node. Depth starts at 0.
-   *
-   * @return The [CaptureNode] that mirrors the [TraceEventModel] passed in.
    */
-  private fun populateCaptureNode(traceEventModel: TraceEventModel, depth: Int, nodeFactory: SystemTraceNodeFactory): CaptureNode {
-    val node = CaptureNode(nodeFactory.getNode(traceEventModel.name), ClockType.GLOBAL)
-    node.startGlobal = traceEventModel.startTimestampUs
-    node.endGlobal = traceEventModel.endTimestampUs
+  private fun populateCaptureNode(store: CallTreeStore, parent: Int, traceEventModel: TraceEventModel, depth: Int,
+                                  nodeFactory: SystemTraceNodeFactory) {
+    val node = store.addNode(parent, nodeFactory.getNode(traceEventModel.name))
+    store.setStartGlobal(node, traceEventModel.startTimestampUs)
+    store.setEndGlobal(node, traceEventModel.endTimestampUs)
     // Should we drop these thread times, as SystemTrace does not support dual clock?
-    node.startThread = traceEventModel.startTimestampUs
-    node.endThread = traceEventModel.startTimestampUs + traceEventModel.cpuTimeUs
-    node.depth = depth
+    store.setStartThread(node, traceEventModel.startTimestampUs)
+    store.setEndThread(node, traceEventModel.startTimestampUs + traceEventModel.cpuTimeUs)
+    store.setDepth(node, depth)
     for (event in traceEventModel.childrenEvents) {
-      node.addChild(populateCaptureNode(event, depth + 1, nodeFactory))
-    }
-    return node
-  }
-
-  /**
-   * Builds a map of thread id to a list of [ThreadState] series.
-   */
-  private fun buildThreadStateData(mainProcessModel: ProcessModel): Map<Int, List<SeriesData<ThreadState>>> {
-    val threadToStateSeries = mutableMapOf<Int, List<SeriesData<ThreadState>>>()
-
-    for (thread in mainProcessModel.getThreads()) {
-      val states: MutableList<SeriesData<ThreadState>> = ArrayList()
-      threadToStateSeries[thread.id] = states
-
-      // We use a (state, timestamp) tuple and assume the state is valid until the next state.
-      // But Perfetto uses a (state, timestamp, duration) triplet to timebox each state.
-      var (lastState, lastEndTimestampUs) = Pair(ThreadState.NO_ACTIVITY, 0L)
-      for (sched in thread.schedulingEvents) {
-        if (sched.state !== lastState) {
-          states.add(SeriesData(sched.startTimestampUs, sched.state))
-          lastState = sched.state
-          lastEndTimestampUs = sched.endTimestampUs
-        }
-      }
-
-      // To avoid the last thread state slice extending until
-      // the end of user-dictated capture time, a fake NO_ACTIVITY
-      // event is appended to terminate the last state slice.
-      // Non-empty check makes sure we don't insert state data
-      // when there is actually isn't any.
-      if (lastState != ThreadState.NO_ACTIVITY && states.isNotEmpty()) {
-        states.add(SeriesData(lastEndTimestampUs, ThreadState.NO_ACTIVITY))
-      }
+      populateCaptureNode(store, node, event, depth + 1, nodeFactory)
     }
-
-    return threadToStateSeries
   }
 
   private data class CpuStateData(
@@ -45,6 +45,12 @@ interface SystemTraceModelAdapter {
    */
   fun getDanglingThread(tid: Int): ThreadModel?
 
+  /**
+   * @return the states of thread [tid] between [startUs] and [endUs], built from its scheduling events when a track asks for them.
+   * See [ThreadSchedulingTable.getThreadStates].
+   */
+  fun getThreadStates(tid: Int, startUs: Long, endUs: Long): List<SeriesData<ThreadState>>
+
   fun getCpuCores(): List<CpuCoreModel>
 
   fun getSystemTraceTechnology(): TraceType
@@ -109,8 +115,7 @@ data class ThreadModel(
   val id: Int,
   val tgid: Int,
   val name: String,
-  val traceEvents: List<TraceEventModel>,
-  val schedulingEvents: List<SchedulingEventModel>): Serializable {
+  val traceEvents: List<TraceEventModel>): Serializable {
 
   companion object {
     // generated by serialvar
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.systemtrace
+
+import com.android.tools.adtui.model.SeriesData
+import com.android.tools.profilers.cpu.ThreadState
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.LongArrayList
+import java.io.Serializable
+
+/**
+ * The scheduling events of the threads of a trace, stored as columns grouped by thread instead of as a list of [SchedulingEventModel] per
+ * thread. Thread states are built from these columns only for the thread and the time window a track asks for.
+ */
+class ThreadSchedulingTable private constructor(private val threadIds: IntArray,
+                                                private val threadOffsets: IntArray,
+                                                private val startsUs: LongArray,
+                                                private val endsUs: LongArray,
+                                                private val states: ByteArray) : Serializable {
+
+  companion object {
+    @JvmStatic
+    val serialVersionUID = 4106772345011872207L
+
+    private val THREAD_STATES = ThreadState.values()
+
+    @JvmField
+    val EMPTY = Builder().build()
+  }
+
+  /**
+   * Returns the states of thread [threadId] between [startUs] and [endUs]. As with [com.android.tools.profilers.cpu.InMemoryDataSeries],
+   * the state the thread was in at [startUs] and the first state after [endUs] are included. A thread that ends in any state other than
+   * [ThreadState.NO_ACTIVITY] gets a final [ThreadState.NO_ACTIVITY] state when its last event ends, so that its last state doesn't extend
+   * to the end of the capture.
+   */
+  fun getThreadStates(threadId: Int, startUs: Long, endUs: Long): List<SeriesData<ThreadState>> {
+    val thread = threadIds.binarySearch(threadId)
+    if (thread < 0 || startUs > endUs) {
+      return listOf()
+    }
+    val from = threadOffsets[thread]
+    val to = threadOffsets[thread + 1]
+
+    // Start where the state the thread was in at startUs began, as consecutive events may have the same state.
+    var first = maxOf(from, firstStartingAfter(startUs, from, to) - 1)
+    while (first > from && states[first - 1] == states[first]) {
+      first--
+    }
+    val last = minOf(to - 1, firstStartingAfter(endUs - 1, from, to))
+
+    val series = ArrayList<SeriesData<ThreadState>>()
+    var lastState = if (first == from) ThreadState.NO_ACTIVITY else THREAD_STATES[states[first - 1].toInt()]
+    for (i in first..last) {
+      val state = THREAD_STATES[states[i].toInt()]
+      if (state !== lastState) {
+        series.add(SeriesData(startsUs[i], state))
+        lastState = state
+      }
+    }
+    if (last == to - 1 && lastState != ThreadState.NO_ACTIVITY) {
+      series.add(SeriesData(endsUs[last], ThreadState.NO_ACTIVITY))
+    }
+    return series
+  }
+
+  /**
+   * Returns the index of the first event in [[from], [to]) that starts after [timeUs], or [to] if there is none.
+   */
+  private fun firstStartingAfter(timeUs: Long, from: Int, to: Int): Int {
+    var low = from
+    var high = to
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (startsUs[mid] <= timeUs) low = mid + 1 else high = mid
+    }
+    return low
+  }
+
+  class Builder {
+    private val eventsByThread = mutableMapOf<Int, ThreadEvents>()
+
+    fun add(threadId: Int, state: ThreadState, startUs: Long, endUs: Long) = apply {
+      eventsByThread.getOrPut(threadId) { ThreadEvents() }.add(state, startUs, endUs)
+    }
+
+    fun build(): ThreadSchedulingTable {
+      val threadIds = eventsByThread.keys.toIntArray().apply { sort() }
+      val threadOffsets = IntArray(threadIds.size + 1)
+      val eventCount = eventsByThread.values.sumOf { it.size }
+      val startsUs = LongArray(eventCount)
+      val endsUs = LongArray(eventCount)
+      val states = ByteArray(eventCount)
+      var offset = 0
+      threadIds.forEachIndexed { thread, threadId ->
+        val events = eventsByThread.getValue(threadId)
+        threadOffsets[thread] = offset
+        for (i in events.sortedOrder()) {
+          startsUs[offset] = events.startsUs.getLong(i)
+          endsUs[offset] = events.endsUs.getLong(i)
+          states[offset] = events.states.getInt(i).toByte()
+          offset++
+        }
+      }
+      threadOffsets[threadIds.size] = offset
+      return ThreadSchedulingTable(threadIds, threadOffsets, startsUs, endsUs, states)
+    }
+  }
+
+  private class ThreadEvents {
+    val startsUs = LongArrayList()
+    val endsUs = LongArrayList()
+    val states = IntArrayList()
+    val size get() = startsUs.size
+
+    fun add(state: ThreadState, startUs: Long, endUs: Long) {
+      startsUs.add(startUs)
+      endsUs.add(endUs)
+      states.add(state.ordinal)
+    }
+
+    /**
+     * Returns the indices of the events ordered by start time. Events are usually added in that order already, and events starting at
+     * the same time keep the order they were added in.
+     */
+    fun sortedOrder(): IntArray {
+      val order = IntArray(size) { it }
+      return if ((1 until size).all { startsUs.getLong(it - 1) <= startsUs.getLong(it) }) order
+      else order.sortedBy(startsUs::getLong).toIntArray()
+    }
+  }
+}
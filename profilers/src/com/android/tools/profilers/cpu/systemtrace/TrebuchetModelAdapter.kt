@@ -44,6 +44,7 @@ class TrebuchetModelAdapter(trebuchetModel: Model, private val technology: Trace
   private val possibleCorruption = trebuchetModel.realtimeTimestamp == 0L
 
   private val processById = sortedMapOf<Int, ProcessModel>()
+  private val threadScheduling: ThreadSchedulingTable
   private val cores: List<CpuCoreModel>
 
   // Power data is something only available for newer hardware
@@ -57,6 +58,7 @@ class TrebuchetModelAdapter(trebuchetModel: Model, private val technology: Trace
   override fun getProcessById(id: Int): ProcessModel? = processById[id]
   override fun getProcesses(): List<ProcessModel> = processById.values.toList()
   override fun getDanglingThread(tid: Int): ThreadModel? = null
+  override fun getThreadStates(tid: Int, startUs: Long, endUs: Long) = threadScheduling.getThreadStates(tid, startUs, endUs)
 
   override fun getCpuCores(): List<CpuCoreModel> = cores
 
@@ -81,12 +83,16 @@ class TrebuchetModelAdapter(trebuchetModel: Model, private val technology: Trace
       timeShiftFromBeginningSeconds = trebuchetModel.parentTimestamp - trebuchetModel.parentTimestampBootTime
     }
 
+    val threadSchedulingBuilder = ThreadSchedulingTable.Builder()
     for (process in trebuchetModel.processes.values) {
       val threadMap = mutableMapOf<Int, ThreadModel>()
       for (thread in process.threads) {
         val traceEvents = mapSlicesToTraceEvents(thread.slices)
-        val schedEvents = mapSchedSliceToSchedEvent(thread.schedSlices, process.id, thread.id)
-        threadMap[thread.id] = ThreadModel(thread.id, process.id, thread.name, traceEvents, schedEvents)
+        for (slice in thread.schedSlices) {
+          threadSchedulingBuilder.add(thread.id, convertSchedulingState(slice), convertToUserTimeUs(slice.startTime),
+                                      convertToUserTimeUs(slice.endTime))
+        }
+        threadMap[thread.id] = ThreadModel(thread.id, process.id, thread.name, traceEvents)
       }
 
       val counterMap = mutableMapOf<String, CounterModel>()
@@ -98,6 +104,7 @@ class TrebuchetModelAdapter(trebuchetModel: Model, private val technology: Trace
       }
       processById[process.id] = ProcessModel(process.id, process.name, threadMap, counterMap)
     }
+    threadScheduling = threadSchedulingBuilder.build()
 
     // TODO(b/162354761): implement counters for Trebuchet.
     cores = trebuchetModel.cpus
@@ -114,18 +121,6 @@ class TrebuchetModelAdapter(trebuchetModel: Model, private val technology: Trace
       mapSlicesToTraceEvents(it.children))
   }
 
-  private fun mapSchedSliceToSchedEvent(slices: List<SchedSlice>, pid: Int, tid: Int): List<SchedulingEventModel> = slices.map {
-    SchedulingEventModel(
-      convertSchedulingState(it),
-      convertToUserTimeUs(it.startTime),
-      convertToUserTimeUs(it.endTime),
-      convertSecondsToUs(it.duration),
-      convertSecondsToUs(it.cpuTime),
-      pid,
-      tid,
-      0)
-  }
-
   private fun mapCpuProcessSliceToSchedEvent(slices: List<CpuProcessSlice>, core: Int): List<SchedulingEventModel> = slices.map {
     SchedulingEventModel(
       ThreadState.RUNNING_CAPTURED,
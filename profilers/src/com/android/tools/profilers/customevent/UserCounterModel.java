@@ -20,7 +20,6 @@ import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
-import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.android.tools.profilers.StudioProfilers;
 import com.android.tools.profilers.UnifiedEventDataSeries;
 import com.google.common.annotations.VisibleForTesting;
@@ -53,8 +52,7 @@ public class UserCounterModel extends LineChartModel {
                                                       @NotNull String name,
                                                       @NotNull Range range,
                                                       int groupId, Function<List<Common.Event>, List<SeriesData<Long>>> dataExtractor) {
-    TransportServiceGrpc.TransportServiceBlockingStub client = profilers.getClient().getTransportClient();
-    UnifiedEventDataSeries<Long> series = new UnifiedEventDataSeries<>(client,
+    UnifiedEventDataSeries<Long> series = new UnifiedEventDataSeries<>(profilers.getClient(),
                                                                        profilers.getSession().getStreamId(),
                                                                        profilers.getSession().getPid(),
                                                                        Common.Event.Kind.USER_COUNTERS,
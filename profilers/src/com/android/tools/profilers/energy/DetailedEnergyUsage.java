@@ -33,21 +33,21 @@ public class DetailedEnergyUsage extends EnergyUsage {
     int pid = profilers.getSession().getPid();
     // TODO(b/133430804): investigate ways to not query database multiple times.
     DataSeries<Long> cpuDataSeries = new UnifiedEventDataSeries<>(
-      profilers.getClient().getTransportClient(),
+      profilers.getClient(),
       streamId,
       pid,
       Common.Event.Kind.ENERGY_USAGE,
       UnifiedEventDataSeries.DEFAULT_GROUP_ID,
       UnifiedEventDataSeries.fromFieldToDataExtractor(event -> (long)event.getEnergyUsage().getCpuUsage()));
     DataSeries<Long> networkDataSeries = new UnifiedEventDataSeries<>(
-      profilers.getClient().getTransportClient(),
+      profilers.getClient(),
       streamId,
       pid,
       Common.Event.Kind.ENERGY_USAGE,
       UnifiedEventDataSeries.DEFAULT_GROUP_ID,
       UnifiedEventDataSeries.fromFieldToDataExtractor(event -> (long)event.getEnergyUsage().getNetworkUsage()));
     DataSeries<Long> locationDataSeries = new UnifiedEventDataSeries<>(
-      profilers.getClient().getTransportClient(),
+      profilers.getClient(),
       streamId,
       pid,
       Common.Event.Kind.ENERGY_USAGE,
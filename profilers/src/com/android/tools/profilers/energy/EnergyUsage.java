@@ -19,7 +19,7 @@ import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Energy;
-import com.android.tools.profiler.proto.TransportServiceGrpc;
+import com.android.tools.profilers.ProfilerClient;
 import com.android.tools.profilers.StudioProfilers;
 import com.android.tools.profilers.UnifiedEventDataSeries;
 import org.jetbrains.annotations.NotNull;
@@ -33,7 +33,7 @@ public class EnergyUsage extends LineChartModel {
   public EnergyUsage(@NotNull StudioProfilers profilers) {
     super(profilers.getIdeServices().getPoolExecutor());
     myUsageRange = new Range(0, EnergyMonitor.MAX_EXPECTED_USAGE);
-    DataSeries<Long> dataSeries = buildDataSeries(profilers.getClient().getTransportClient(), profilers.getSession());
+    DataSeries<Long> dataSeries = buildDataSeries(profilers.getClient(), profilers.getSession());
     myTotalUsageDataSeries = new RangedContinuousSeries(getSeriesLabel(), profilers.getTimeline().getViewRange(), myUsageRange, dataSeries,
                                                         profilers.getTimeline().getDataRange());
     add(myTotalUsageDataSeries);
@@ -59,7 +59,7 @@ public class EnergyUsage extends LineChartModel {
   }
 
   @VisibleForTesting
-  public static DataSeries<Long> buildDataSeries(@NotNull TransportServiceGrpc.TransportServiceBlockingStub client,
+  public static DataSeries<Long> buildDataSeries(@NotNull ProfilerClient client,
                                                  @NotNull Common.Session session) {
     return new UnifiedEventDataSeries<>(
       client,
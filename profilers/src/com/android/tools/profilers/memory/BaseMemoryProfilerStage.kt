@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.memory
 
+import com.android.tools.adtui.model.updater.Updatable
 import com.android.tools.profilers.StreamingStage
 import com.android.tools.profilers.StudioProfilers
 import com.android.tools.profilers.memory.adapters.CaptureObject
@@ -38,6 +39,10 @@ abstract class BaseMemoryProfilerStage(profilers: StudioProfilers, protected val
   val isPendingCapture get() = pendingCaptureStartTime != INVALID_START_TIME
   private var hasExited = false
 
+  protected val loadingProgressUpdatable = object : Updatable {
+    override fun update(elapsedNs: Long) = captureSelection.updateLoadingProgress()
+  }
+
   companion object {
     const val INVALID_START_TIME = -1L
 
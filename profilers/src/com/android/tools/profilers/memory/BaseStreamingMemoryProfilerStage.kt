@@ -118,7 +118,7 @@ abstract class BaseStreamingMemoryProfilerStage(profilers: StudioProfilers,
   private val updatables
     get() =
       listOf(detailedMemoryUsage, memoryAxis, objectsAxis, gcStatsModel, allocationSamplingRateDurations,
-             allocationSamplingRateUpdatable, captureElapsedTimeUpdatable) +
+             allocationSamplingRateUpdatable, captureElapsedTimeUpdatable, loadingProgressUpdatable) +
       captureSeries
 
   val isLiveAllocationTrackingReady get() = MemoryProfiler.isUsingLiveAllocation(studioProfilers, sessionData)
@@ -280,7 +280,7 @@ abstract class BaseStreamingMemoryProfilerStage(profilers: StudioProfilers,
   }
 
   private fun makeGcSeries() =
-    UnifiedEventDataSeries(studioProfilers.client.transportClient,
+    UnifiedEventDataSeries(studioProfilers.client,
                            sessionData.streamId,
                            sessionData.pid,
                            Common.Event.Kind.MEMORY_GC,
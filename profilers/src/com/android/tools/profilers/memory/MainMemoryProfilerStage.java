@@ -43,6 +43,8 @@ import com.android.tools.profilers.memory.adapters.NativeAllocationSampleCapture
 import com.android.tools.profilers.perfetto.config.PerfettoTraceConfigBuilders;
 import com.android.tools.profilers.sessions.SessionAspect;
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -68,6 +70,14 @@ public class MainMemoryProfilerStage extends BaseStreamingMemoryProfilerStage {
   public static final int MEMORY_HPROF_SAFE_FACTOR =
     Math.max(1, Math.min(Integer.getInteger("profiler.memory.hprof.safeFactor", 10), 1000));
 
+  // Same as MEMORY_HPROF_SAFE_FACTOR, for dumps parsed from a memory-mapped file. Their bytes are read from the page cache, so only the
+  // indices built while parsing them are held on the Java heap
+  public static final int MEMORY_HPROF_MAPPED_SAFE_FACTOR =
+    Math.max(1, Math.min(Integer.getInteger("profiler.memory.hprof.mappedSafeFactor", MEMORY_HPROF_SAFE_FACTOR / 2), 1000));
+
+  // Disk space to leave free after spilling a heap dump to a temporary file
+  private static final long HPROF_SPILL_DISK_LEEWAY = 1024L * 1024 * 1024;
+
   /**
    * Whether the stage only contains heap dump data imported from hprof file
    */
@@ -572,11 +582,27 @@ public class MainMemoryProfilerStage extends BaseStreamingMemoryProfilerStage {
   }
 
   public static boolean canSafelyLoadHprof(long fileSize) {
+    return hasRequestableMemory(MEMORY_HPROF_SAFE_FACTOR * fileSize);
+  }
+
+  /**
+   * Same as {@link #canSafelyLoadHprof(long)}, for a dump parsed from a memory-mapped temporary file. The bytes of the dump are charged to
+   * the disk the file is written to rather than to the Java heap, which only holds the indices built while parsing it.
+   *
+   * @param bytesToSpill bytes still to be written to the temporary file, 0 if it already holds the dump.
+   */
+  public static boolean canSafelyLoadMappedHprof(long fileSize, long bytesToSpill) {
+    boolean fitsOnDisk = bytesToSpill == 0 ||
+                         new File(FileUtil.getTempDirectory()).getUsableSpace() >= bytesToSpill + HPROF_SPILL_DISK_LEEWAY;
+    return fitsOnDisk && hasRequestableMemory(MEMORY_HPROF_MAPPED_SAFE_FACTOR * fileSize);
+  }
+
+  private static boolean hasRequestableMemory(long bytes) {
     System.gc(); // To avoid overly conservative estimation of free memory
     long leeway = 300 * 1024 * 1024; // Studio needs ~300MB to run without major freezes
     long requestableMemory = Runtime.getRuntime().maxMemory() -
                              Runtime.getRuntime().totalMemory() +
                              Runtime.getRuntime().freeMemory();
-    return requestableMemory >= MEMORY_HPROF_SAFE_FACTOR * fileSize + leeway;
+    return requestableMemory >= bytes + leeway;
   }
 }
\ No newline at end of file
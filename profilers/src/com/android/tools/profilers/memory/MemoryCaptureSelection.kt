@@ -59,6 +59,11 @@ class MemoryCaptureSelection(val ideServices: IdeProfilerServices) {
   private var myCaptureEntry: CaptureEntry<*>? = null
   var selectedCapture: CaptureObject? = null
     private set
+  /**
+   * The last published [CaptureObject.getLoadingProgress] of the selected capture, see [updateLoadingProgress].
+   */
+  var loadingProgress = 0.0
+    private set
   var selectedHeapSet: HeapSet? = null
     private set(heapSet) {
       if (field !== heapSet) {
@@ -113,6 +118,7 @@ class MemoryCaptureSelection(val ideServices: IdeProfilerServices) {
     selectedCapture?.unload()
     myCaptureEntry = captureEntry
     selectedCapture = captureEntry?.captureObject
+    loadingProgress = 0.0
     classGroupingModel.update()
     classGrouping = classGroupingModel.getElementAt(0)
     aspect.changed(CaptureSelectionAspect.CURRENT_LOADING_CAPTURE)
@@ -205,6 +211,17 @@ class MemoryCaptureSelection(val ideServices: IdeProfilerServices) {
     }
   }
 
+  /**
+   * Publishes the loading progress of the selected capture if it changed since the last call. Called on every update tick of the stage.
+   */
+  fun updateLoadingProgress() {
+    val progress = selectedCapture?.takeUnless { it.isDoneLoading }?.loadingProgress ?: return
+    if (progress != loadingProgress) {
+      loadingProgress = progress
+      aspect.changed(CaptureSelectionAspect.CURRENT_LOADING_PROGRESS)
+    }
+  }
+
   /**
    * @return true if selection was committed successfully
    */
@@ -275,6 +292,7 @@ enum class CaptureSelectionAspect {
   CLASS_GROUPING,
   CURRENT_LOADING_CAPTURE,
   CURRENT_LOADED_CAPTURE,
+  CURRENT_LOADING_PROGRESS,
   CURRENT_CAPTURE_ELAPSED_TIME,
   CURRENT_HEAP,
   CURRENT_HEAP_UPDATING,
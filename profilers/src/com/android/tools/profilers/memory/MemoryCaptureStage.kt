@@ -33,10 +33,12 @@ class MemoryCaptureStage(profilers: StudioProfilers,
     logEnterStage()
     studioProfilers.ideServices.featureTracker.trackEnterStage(stageType)
     loader.start()
+    studioProfilers.updater.register(loadingProgressUpdatable)
     doSelectCaptureDuration(durationData, joiner)
   }
   override fun exit() {
     super.exit()
+    studioProfilers.updater.unregister(loadingProgressUpdatable)
     loader.stop()
   }
 
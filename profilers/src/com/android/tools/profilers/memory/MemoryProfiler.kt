@@ -210,16 +210,14 @@ class MemoryProfiler(private val profilers: StudioProfilers) : StudioProfiler {
 
     private fun saveToFile(client: ProfilerClient, session: Common.Session, startTime: Long, outputStream: OutputStream,
                            onFinished: () -> Unit, errorMsg: String) {
-      val response = client.transportClient
-        .getBytes(Transport.BytesRequest.newBuilder().setStreamId(session.streamId).setId(startTime.toString()).build())
-      if (response.contents !== ByteString.EMPTY) {
-        try {
-          response.contents.writeTo(outputStream)
-          onFinished()
-        }
-        catch (exception: IOException) {
-          logger.warn("$errorMsg:\n$exception")
-        }
+      val stream = client.openBytesStream(
+        Transport.BytesRequest.newBuilder().setStreamId(session.streamId).setId(startTime.toString()).build()) ?: return
+      try {
+        stream.use { it.copyTo(outputStream) }
+        onFinished()
+      }
+      catch (exception: IOException) {
+        logger.warn("$errorMsg:\n$exception")
       }
     }
 
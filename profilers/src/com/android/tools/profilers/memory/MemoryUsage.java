@@ -15,12 +15,12 @@
  */
 package com.android.tools.profilers.memory;
 
+import com.android.tools.adtui.model.LevelOfDetailDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
-import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.android.tools.profilers.StudioProfilers;
 import com.android.tools.profilers.UnifiedEventDataSeries;
 import java.util.List;
@@ -47,14 +47,14 @@ public class MemoryUsage extends LineChartModel {
                                                       @NotNull Range range,
                                                       int groupId,
                                                       Function<List<Common.Event>, List<SeriesData<Long>>> dataExtractor) {
-    TransportServiceGrpc.TransportServiceBlockingStub client = profilers.getClient().getTransportClient();
-    UnifiedEventDataSeries<Long> series = new UnifiedEventDataSeries<>(client,
+    UnifiedEventDataSeries<Long> series = new UnifiedEventDataSeries<>(profilers.getClient(),
                                                                        profilers.getSession().getStreamId(),
                                                                        profilers.getSession().getPid(),
                                                                        Common.Event.Kind.MEMORY_USAGE,
                                                                        groupId,
                                                                        dataExtractor);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series, profilers.getTimeline().getDataRange());
+    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, new LevelOfDetailDataSeries(series),
+                                      profilers.getTimeline().getDataRange());
   }
 
   @NotNull
@@ -188,6 +188,14 @@ public interface CaptureObject extends MemoryObject {
 
   boolean isDoneLoading();
 
+  /**
+   * @return an estimate of how much of the capture has been loaded, between 0 and 1, for captures that take long enough to load to be
+   * worth reporting progress for. Shown by the loading panel of the memory profiler while the capture loads.
+   */
+  default double getLoadingProgress() {
+    return isDoneLoading() ? 1 : 0;
+  }
+
   boolean isError();
 
   void unload();
@@ -16,9 +16,11 @@
 package com.android.tools.profilers.memory.adapters;
 
 import com.intellij.util.ArrayUtil;
-import java.util.HashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import org.jetbrains.annotations.NotNull;
@@ -31,8 +33,8 @@ public final class ClassDb {
   public static final String JAVA_LANG_STRING = "java.lang.String";
   public static final String JAVA_LANG_CLASS = "java.lang.Class";
 
-  // class id to class mapping.
-  private final Map<Long, ClassEntry> myClassEntries = new HashMap<>();
+  // class id to class mapping. Keyed by primitive ids, as captures can register classes for every allocation they see.
+  private final Long2ObjectOpenHashMap<ClassEntry> myClassEntries = new Long2ObjectOpenHashMap<>();
   private boolean myResolvedSubclasses = false;
 
   public void clear() {
@@ -102,8 +104,8 @@ public final class ClassDb {
     while (!searchStack.isEmpty()) {
       ClassEntry searchEntry = searchStack.pop();
       descendants.add(searchEntry);
-      for (long subClassId : searchEntry.getSubClassIds()) {
-        searchStack.push(getEntry(subClassId));
+      for (LongIterator it = searchEntry.getSubClassIds().iterator(); it.hasNext(); ) {
+        searchStack.push(getEntry(it.nextLong()));
       }
     }
     return descendants;
@@ -130,7 +132,7 @@ public final class ClassDb {
   }
 
   public static class ClassEntry {
-    @NotNull private final Set<Long> mySubClassIds = new HashSet<>();
+    @NotNull private final LongSet mySubClassIds = new LongOpenHashSet(0);
 
     @NotNull private final long myClassId;
     @NotNull private final long mySuperClassId;
@@ -173,7 +175,7 @@ public final class ClassDb {
     /**
      * @return Ids of the immediate children classes. Note that the set is only valid after {@link ClassDb#resolveSubClasses()} is called.
      */
-    public Set<Long> getSubClassIds() {
+    public LongSet getSubClassIds() {
       return mySubClassIds;
     }
 
@@ -18,12 +18,12 @@
 package com.android.tools.profilers.memory.adapters
 
 import com.android.tools.adtui.model.Range
-import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.perflib.heap.ClassObj
 import com.android.tools.perflib.heap.Instance
 import com.android.tools.perflib.heap.Snapshot
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor
-import com.android.tools.perflib.heap.io.InMemoryBuffer
+import com.android.tools.perflib.heap.io.HprofBuffer
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo
 import com.android.tools.profiler.proto.Transport
@@ -46,15 +46,24 @@ import com.android.tools.profilers.memory.adapters.instancefilters.CaptureObject
 import com.android.tools.profilers.memory.adapters.instancefilters.ProjectClassesInstanceFilter
 import com.android.tools.proguard.ProguardMap
 import com.google.common.annotations.VisibleForTesting
+import com.android.annotations.concurrency.GuardedBy
 import com.google.common.util.concurrent.ListenableFuture
 import com.google.common.util.concurrent.MoreExecutors
 import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.google.wireless.android.sdk.stats.AndroidProfilerEvent.Loading
+import com.intellij.openapi.util.io.FileUtil
 import gnu.trove.TObjectProcedure
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import java.io.File
+import java.io.IOException
 import java.io.OutputStream
+import java.util.IdentityHashMap
+import java.util.Locale
+import java.util.concurrent.Callable
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.stream.Collectors
 import java.util.stream.Stream
 
@@ -75,6 +84,23 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
 
   @Volatile
   private var isLoadingError = false
+
+  @Volatile
+  private var loadingProgress = 0.0
+
+  // The dump file and its mapping are shared by load() and the instances, which read their fields lazily. They are released by
+  // whichever of unload() and the last load() in progress finishes last.
+  @get:VisibleForTesting
+  @get:Synchronized
+  @GuardedBy("this")
+  var dumpFile: File? = null
+    private set
+  @GuardedBy("this")
+  private var mappedBuffer: MemoryMappedFileBuffer? = null
+  @GuardedBy("this")
+  private var loadsInProgress = 0
+  @Volatile
+  private var isUnloaded = false
   var hasNativeAllocations = false
     private set
   private val activityFragmentLeakFilter = ActivityFragmentLeakInstanceFilter(classDb)
@@ -104,61 +130,139 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   override fun getClassDatabase() = classDb
   override fun getSession() = _session
 
-  override fun load(queryRange: Range?, queryJoiner: Executor?) = doGetBytesRequest().let { response ->
-    if (response.contents === ByteString.EMPTY) false.also { isLoadingError = true }
-    else true.also {
+  override fun load(queryRange: Range?, queryJoiner: Executor?): Boolean {
+    val file: File
+    val buffer: MemoryMappedFileBuffer
+    synchronized(this) {
+      if (isUnloaded) {
+        return false
+      }
+      file = spillToFile() ?: return false.also { isLoadingError = true }
+      buffer = mappedBuffer ?: try {
+        MemoryMappedFileBuffer(file)
+      }
+      catch (e: IOException) {
+        return false.also { isLoadingError = true }
+      }
+      mappedBuffer = buffer
+      loadsInProgress++
+    }
+    try {
       ideProfilerServices.featureTracker.trackLoading(Loading.Type.HPROF,
-                                                      sizeKb = countBytes() / 1024,
+                                                      sizeKb = (file.length() / 1024).toInt(),
                                                       measure = { instanceIndex.size.toLong() }) {
-        load(InMemoryBuffer(response.contents.asReadOnlyByteBuffer()))
+        load(buffer)
       }
     }
+    finally {
+      synchronized(this) {
+        loadsInProgress--
+        if (isUnloaded && loadsInProgress == 0) {
+          releaseDumpFile()
+        }
+      }
+    }
+    return hasLoaded
   }
 
+  /**
+   * Parses the dump. Returns early, without publishing any heap set, if the capture is unloaded in the meantime.
+   */
   @VisibleForTesting
-  fun load(buffer: InMemoryBuffer) {
+  open fun load(buffer: HprofBuffer) {
     val nativeRegistryPostProcessor = NativeRegistryPostProcessor()
     val snapshot = Snapshot.createSnapshot(buffer, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
+    if (isUnloaded) {
+      return
+    }
     snapshot.computeRetainedSizes()
     hasNativeAllocations = nativeRegistryPostProcessor.hasNativeAllocations
-    hasLoaded = true
     val javaLangClassObject = snapshot.heaps.stream()
       .flatMap { h -> h.classes.stream().filter { ClassDb.JAVA_LANG_CLASS == it.className } }
       .map { createClassObjectInstance(null, it) }
       .findAny().orElse(null)
     val heapSetMappings = snapshot.heaps.associateWith { HeapSet(this, it.name, it.id) }
-    val addInstanceToRightHeap: (HeapSet, Long, InstanceObject) -> Unit =
-      AllHeapSet(this, heapSetMappings.values.toTypedArray()).let { superHeap ->
-        superHeap.clearClassifierSets() // forces sub-classifier creation
-        _heapSets[superHeap.id] = superHeap
-        { _, id, classInst -> addInstance(superHeap, id, classInst) }
-      }
-    heapSetMappings.forEach { (heap, heapSet) ->
-      heap.classes.forEach { addInstanceToRightHeap(heapSet, it.id, createClassObjectInstance(javaLangClassObject, it)) }
-      heap.forEachInstance(object : TObjectProcedure<Instance> {
-        override fun execute(instance: Instance): Boolean {
+    val superHeap = AllHeapSet(this, heapSetMappings.values.toTypedArray())
+    superHeap.clearClassifierSets() // forces sub-classifier creation
+    _heapSets[superHeap.id] = superHeap
+
+    // Instance objects are created and classified in the same order as the snapshot lists them: per heap, classes first.
+    val instanceLists = heapSetMappings.keys.map { heap ->
+      heap.classes.map { createClassObjectInstance(javaLangClassObject, it) }
+    }
+    // Class entries are registered once per class up front, so that instance objects can be created concurrently without touching
+    // the class database.
+    val classEntries = IdentityHashMap<ClassObj, ClassDb.ClassEntry>()
+    val heapInstances = heapSetMappings.keys.map { heap ->
+      ArrayList<Instance>(heap.instancesCount).also { instances ->
+        heap.forEachInstance(TObjectProcedure<Instance> { instance ->
           assert(ClassDb.JAVA_LANG_CLASS != instance.classObj!!.className)
-          val classEntry = instance.classObj!!.makeEntry()
-          addInstanceToRightHeap(heapSet, instance.id, HeapDumpInstanceObject(this@HeapDumpCaptureObject, instance, classEntry, null))
-          return true
+          classEntries.computeIfAbsent(instance.classObj!!) { it.makeEntry() }
+          instances.add(instance)
+        })
+      }
+    }
+    val totalInstanceCount = instanceLists.sumOf { it.size } + heapInstances.sumOf { it.size }
+    val classifiedInstanceCount = AtomicInteger()
+    val pool = ForkJoinPool(Runtime.getRuntime().availableProcessors())
+    try {
+      val instances = pool.submit(Callable {
+        instanceLists.zip(heapInstances).flatMap { (classObjects, heapInstanceList) ->
+          classObjects + heapInstanceList.parallelStream()
+            .map { HeapDumpInstanceObject(this, it, classEntries[it.classObj]!!, null) }
+            .collect(Collectors.toList())
         }
-      })
+      }).get()
+      // The id index and the classifier tree are independent, so the index is filled while the tree is built.
+      val indexTask = pool.submit(Runnable { instances.forEach { instanceIndex.putNew(it) } })
+      superHeap.addDeltaInstanceObjects(instances, pool) {
+        loadingProgress = classifiedInstanceCount.addAndGet(it).toDouble() / totalInstanceCount
+      }
+      indexTask.get()
+    }
+    finally {
+      pool.shutdown()
+    }
+    if (isUnloaded) {
+      return
+    }
+
+    heapSetMappings.forEach { (heap, heapSet) ->
       if ("default" != heap.name || snapshot.heaps.size == 1 || heap.instancesCount > 0) {
         _heapSets.put(heap.id, heapSet)
       }
     }
+    loadingProgress = 1.0
+    hasLoaded = true
   }
 
-  private fun addInstance(heapSet: HeapSet, id: Long, instObj: InstanceObject) {
-    assert(!instanceIndex.containsKey(id))
-    instanceIndex.put(id, instObj)
-    heapSet.addDeltaInstanceObject(instObj)
+  private fun Long2ObjectOpenHashMap<InstanceObject>.putNew(instObj: InstanceObject) {
+    val id = (instObj as HeapDumpInstanceObject).id
+    assert(!containsKey(id))
+    put(id, instObj)
   }
 
   override fun isDoneLoading() = hasLoaded || isLoadingError
   override fun isError() = isLoadingError
+  override fun getLoadingProgress() = if (isLoadingError) 1.0 else loadingProgress
   override fun unload() {
     executorService.shutdownNow()
+    synchronized(this) {
+      isUnloaded = true
+      // Instances read their fields from the buffer lazily, so it is only released once the capture is no longer displayed. A load in
+      // progress still reads it, and releases it when it is done.
+      if (loadsInProgress == 0) {
+        releaseDumpFile()
+      }
+    }
+  }
+
+  @GuardedBy("this")
+  private fun releaseDumpFile() {
+    mappedBuffer?.dispose()
+    mappedBuffer = null
+    dumpFile?.delete()
+    dumpFile = null
   }
 
   override fun getClassifierAttributes() =
@@ -228,14 +332,46 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
     return null
   }
 
-  override fun canSafelyLoad() = MainMemoryProfilerStage.canSafelyLoadHprof(countBytes().toLong())
+  /**
+   * Only measures the dump, reading it through once if it hasn't been copied yet. It is copied to the temporary file by [load], once it
+   * is known to fit. Missing dumps are reported as a loading error by [load].
+   */
+  override fun canSafelyLoad(): Boolean {
+    synchronized(this) {
+      dumpFile?.let { return MainMemoryProfilerStage.canSafelyLoadMappedHprof(it.length(), 0) }
+    }
+    val size = client.openBytesStream(bytesRequest())?.use { it.transferTo(OutputStream.nullOutputStream()) } ?: return true
+    return MainMemoryProfilerStage.canSafelyLoadMappedHprof(size, size)
+  }
 
-  private fun doGetBytesRequest() = client.transportClient.getBytes(Transport.BytesRequest.newBuilder()
-                                                                      .setStreamId(_session.streamId)
-                                                                      .setId(heapDumpInfo.startTime.toString())
-                                                                      .build())
+  /**
+   * Copies the dump from the datastore to a temporary file, a buffer at a time, the first time it is needed. The dump is then parsed from
+   * a memory mapping of the file, so its bytes are never held on the Java heap.
+   *
+   * @return the file, or null if the dump is empty or unavailable, or the capture was unloaded.
+   */
+  @Synchronized
+  private fun spillToFile(): File? {
+    dumpFile?.let { return it }
+    if (isUnloaded) {
+      return null
+    }
+    val stream = client.openBytesStream(bytesRequest()) ?: return null
+    val file = FileUtil.createTempFile(String.format(Locale.US, "heap_dump_%d", heapDumpInfo.startTime), ".hprof", true)
+    try {
+      stream.use { input -> file.outputStream().use { input.copyTo(it) } }
+    }
+    catch (e: IOException) {
+      file.delete()
+      return null
+    }
+    return file.also { dumpFile = it }
+  }
 
-  private fun countBytes() = doGetBytesRequest().serializedSize
+  private fun bytesRequest() = Transport.BytesRequest.newBuilder()
+    .setStreamId(_session.streamId)
+    .setId(heapDumpInfo.startTime.toString())
+    .build()
 
   private fun ClassObj.makeEntry(name: String = this.className) =
     if (superClassObj != null) classDb.registerClass(id, superClassObj!!.id, name, totalRetainedSize)
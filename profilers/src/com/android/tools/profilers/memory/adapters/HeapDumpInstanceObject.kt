@@ -69,6 +69,7 @@ internal class HeapDumpInstanceObject(private val captureObject: HeapDumpCapture
   }
 
   override fun getHeapId() = instance.heap!!.id
+  val id get() = instance.id
   override fun getClassEntry() = classEntry
   override fun getDepth() = instance.distanceToGcRoot
   override fun getNativeSize() = instance.nativeSize
@@ -167,6 +167,16 @@ public class JniReferenceInstanceObject implements InstanceObject {
     myDeallocThreadId = deallocThreadId;
   }
 
+  @Nullable
+  public NativeBacktrace getAllocationBacktrace() {
+    return myAllocationBacktrace;
+  }
+
+  @Nullable
+  public NativeBacktrace getDeallocationBacktrace() {
+    return myDeallocationBacktrace;
+  }
+
   public void setAllocationBacktrace(@NotNull NativeBacktrace backtrace) {
     myAllocationLocations = null;
     myAllocationBacktrace = backtrace;
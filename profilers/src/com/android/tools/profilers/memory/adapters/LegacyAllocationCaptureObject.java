@@ -25,13 +25,12 @@ import com.android.tools.profilers.ProfilerClient;
 import com.android.tools.profilers.analytics.FeatureTracker;
 import com.android.tools.profilers.memory.LegacyAllocationConverter;
 import com.android.tools.profilers.memory.adapters.classifiers.HeapSet;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
@@ -144,8 +143,8 @@ public final class LegacyAllocationCaptureObject implements CaptureObject {
     }
 
     // TODO remove this map, since we have built-in functionality in ClassDb now.
-    Map<Integer, ClassDb.ClassEntry> classEntryMap = new HashMap<>();
-    Map<Integer, Memory.AllocationStack> callStacks = new HashMap<>();
+    Int2ObjectOpenHashMap<ClassDb.ClassEntry> classEntryMap = new Int2ObjectOpenHashMap<>();
+    Int2ObjectOpenHashMap<Memory.AllocationStack> callStacks = new Int2ObjectOpenHashMap<>();
     myAllocationConverter.parseDump(response.getContents().toByteArray());
     myAllocationConverter.getAllocationStacks().forEach(stack -> callStacks.putIfAbsent(stack.getStackId(), stack));
     myAllocationConverter.getClassNames().forEach(
@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.memory.adapters
 
+import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.adtui.model.AspectObserver
 import com.android.tools.adtui.model.Range
 import com.android.tools.inspectors.common.api.stacktrace.ThreadId
@@ -38,8 +39,10 @@ import com.android.tools.profilers.memory.adapters.classifiers.HeapSet
 import com.google.common.annotations.VisibleForTesting
 import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.intellij.openapi.diagnostic.Logger
-import gnu.trove.TIntObjectHashMap
-import gnu.trove.TLongObjectHashMap
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import it.unimi.dsi.fastutil.longs.LongSet
 import org.jetbrains.org.objectweb.asm.Type
 import java.io.OutputStream
 import java.util.TreeMap
@@ -65,13 +68,15 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
                                             ThreadFactoryBuilder().setNameFormat("profiler-live-allocation").build()
                                           )
   private val classDb = ClassDb()
-  private val instanceMap = TIntObjectHashMap<LiveAllocationInstanceObject>()
-  private val callstackMap = TIntObjectHashMap<AllocationStack>()
-
-  // Mapping from unsymbolized addresses to symbolized native frames
-  private val nativeFrameMap = TLongObjectHashMap<NativeFrame>()
-  private val methodIdMap = TLongObjectHashMap<AllocationStack.StackFrame>()
-  private val threadIdMap = TIntObjectHashMap<ThreadId>()
+  private val instanceMap = Int2ObjectOpenHashMap<LiveAllocationInstanceObject>()
+  private val liveAllocations = LiveAllocationStore()
+  private val callstackMap = Int2ObjectOpenHashMap<AllocationStack>()
+
+  // Mapping from unsymbolized addresses to symbolized native frames. Filled by the load thread and read from the UI thread.
+  @GuardedBy("itself")
+  private val nativeFrameMap = Long2ObjectOpenHashMap<NativeFrame>()
+  private val methodIdMap = Long2ObjectOpenHashMap<AllocationStack.StackFrame>()
+  private val threadIdMap = Int2ObjectOpenHashMap<ThreadId>()
   private val jniMemoryRegionMap = TreeMap<Long, Memory.MemoryMap.MemoryRegion>()
   private val heapSets = mutableListOf(HeapSet(this, CaptureObject.DEFAULT_HEAP_NAME, 0),  // default
                                        HeapSet(this, CaptureObject.IMAGE_HEAP_NAME, 1),  // image
@@ -90,6 +95,8 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   private var queryRange: Range? = null
   private var currentTask: Future<*>? = null
   private var infoMessage: String? = null
+  // The number of instances in the default heap set, updated together with the heap sets.
+  private var defaultHeapInstanceCount = 0
 
   private val allocationEventAdapter = object: EventAdapter<Memory.BatchAllocationEvents, AllocationEvent> {
     override fun getTimestamp(event: AllocationEvent) = event.timestamp
@@ -127,7 +134,7 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   override fun getHeapSets() =
     // Exclude DEFAULT_HEAP since it shouldn't show up in use in devices that support live allocation tracking.
     // But handle the unexpected, just in case....
-    if (heapSets[0].instancesCount > 0) heapSets else heapSets.subList(1, heapSets.size)
+    if (defaultHeapInstanceCount > 0) heapSets else heapSets.subList(1, heapSets.size)
 
   override fun getHeapSet(heapId: Int) = heapSets[heapId]
   override fun getInstances() = heapSets.stream().flatMap { it.instancesStream }
@@ -160,8 +167,6 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   // Update myContextEndTimeNs and Callstack information
   private fun updateAllocationContexts(endTimeNs: Long) {
     if (contextEndTimeNs < endTimeNs) {
-      fun<T> TIntObjectHashMap<T>.putIfAbsent(k: Int, v: T) { if (!containsKey(k)) { put(k, v) } }
-      fun<T> TLongObjectHashMap<T>.putIfAbsent(k: Long, v: T) { if (!containsKey(k)) { put(k, v) } }
       for (contexts in getAllocationContexts(contextEndTimeNs, endTimeNs)) {
         // We don't have super class information at the moment so just assign invalid id as the super class id.
         contexts.classesList.forEach { classDb.registerClass(it.classId.toLong(), Type.getType(it.className).className) }
@@ -202,6 +207,7 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
           TimeUnit.NANOSECONDS.toMicros(newStartTimeNs), TimeUnit.NANOSECONDS.toMicros(newEndTimeNs))
         joiner.execute { stage.captureSelection.aspect.changed(CaptureSelectionAspect.CURRENT_HEAP_UPDATING) }
         updateAllocationContexts(newEndTimeNs)
+        ingestAllocationEvents(newEndTimeNs)
 
         // Snapshots data
         val snapshotList = mutableListOf<InstanceObject>()
@@ -212,8 +218,9 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
         val deltaFreeList = mutableListOf<InstanceObject>()
         val resetDeltaFreeList = mutableListOf<InstanceObject>()
 
-        fun queryDelta(start: Long, end: Long, allocs: MutableList<InstanceObject>, deallocs: MutableList<InstanceObject>, reset: Boolean) {
-          queryJavaInstanceDelta(start, end, allocs, deallocs, reset)
+        fun queryDelta(start: Long, end: Long, allocs: MutableList<InstanceObject>, deallocs: MutableList<InstanceObject>, reset: Boolean,
+                       evictFreed: Boolean = false) {
+          queryJavaInstanceDelta(start, end, allocs, deallocs, reset, evictFreed)
           queryJniReferencesDelta(start, end, allocs, deallocs, reset)
         }
 
@@ -245,7 +252,8 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
           }
           else if (newStartTimeNs > previousQueryStartTimeNs) {
             // Selection's min shifts right
-            queryDelta(previousQueryStartTimeNs, newStartTimeNs, leftAllocations, leftDeallocations, true)
+            // Instances freed before the new min aren't in the selection anymore.
+            queryDelta(previousQueryStartTimeNs, newStartTimeNs, leftAllocations, leftDeallocations, true, true)
             // Remove data within this range from the deltas
             // Allocations happen before the selection's min: add instance to snapshot
             // Deallocations before the selection's min: remove instance from snapshot
@@ -269,13 +277,19 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
             deltaFreeList.addAll(rightDeallocations)
           }
         }
+        // Symbolize the call stacks of the JNI references found by the query now, all together and off the UI thread, rather than one
+        // backtrace at a time when each of them is shown.
+        symbolizeNativeBacktraces(sequenceOf(snapshotList, deltaAllocationList, deltaFreeList).flatten())
         previousQueryStartTimeNs = newStartTimeNs
         // Samples that are within the query range may not have arrived from the daemon yet. If the query range is greater than the
         // last sample we have seen. Set the last query timestamp to the last sample's timestmap, so that next time we will requery
         // the range between (last-seen sample, newEndTimeNs).
-        previousQueryEndTimeNs = min(newEndTimeNs, lastSeenTimestampNs)
+        previousQueryEndTimeNs = minOf(newEndTimeNs, lastSeenTimestampNs, liveAllocations.ingestedUntilNs)
+        // Counted from the classes of the default heap, rather than by streaming the instances of its heap set.
+        val newDefaultHeapInstanceCount = liveAllocations.getInstanceCount(heapSets[0].id, newStartTimeNs, newEndTimeNs)
         val selection = stage.captureSelection
         joiner.execute {
+          defaultHeapInstanceCount = newDefaultHeapInstanceCount
           selection.aspect.changed(CaptureSelectionAspect.CURRENT_HEAP_UPDATED)
           if (clear ||
               deltaAllocationList.size + deltaFreeList.size + resetDeltaAllocationList.size + resetDeltaFreeList.size > 0) {
@@ -300,13 +314,31 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
     }
   }
 
-  private fun AllocationEvent.Allocation.getOrCreateInstanceObject() =
+  private fun getOrCreateInstanceObject(index: Int) = liveAllocations.getTag(index).let { tag ->
     instanceMap[tag] ?:
-    classDb.getEntry(classTag.toLong()).let { entry ->
+    classDb.getEntry(liveAllocations.getClassTag(index).toLong()).let { entry ->
+      val stackId = liveAllocations.getStackId(index)
+      val threadId = liveAllocations.getThreadId(index)
       val callstack = if (stackId != 0) callstackMap[stackId]!! else null
       val thread = if (threadId != 0) threadIdMap[threadId]!! else ThreadId.INVALID_THREAD_ID
-      LiveAllocationInstanceObject(this@LiveAllocationCaptureObject, entry, thread, callstack, size, heapId).also { instanceMap.put(tag, it) }
+      LiveAllocationInstanceObject(this@LiveAllocationCaptureObject, entry, thread, callstack,
+                                   liveAllocations.getSize(index), liveAllocations.getHeapId(index)).also { instanceMap.put(tag, it) }
+    }
+  }
+
+  /**
+   * Adds the allocation events up to |endTimeNs| to [liveAllocations]. Only the events after the latest batch seen so far are kept
+   * back, as batches still on their way may hold events that come before them.
+   */
+  private fun ingestAllocationEvents(endTimeNs: Long) {
+    if (liveAllocations.ingestedUntilNs >= endTimeNs) {
+      return
     }
+    val startTimeNs = max(liveAllocations.ingestedUntilNs, session.startTimestamp)
+    val batches = allocationEventAdapter.getBatchEvents(startTimeNs, endTimeNs)
+    val latestBatchTimeNs = batches.maxOfOrNull { it.timestamp } ?: return
+    liveAllocations.ingest(batches.flatMap { it.eventsList }, min(endTimeNs, latestBatchTimeNs + 1))
+  }
 
   private fun JNIGlobalReferenceEvent.getOrCreateJniRefObject() = instanceMap[objectTag]?.let { referencedObject ->
     referencedObject.getJniRefByValue(refValue) ?:
@@ -318,26 +350,10 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
    * Populates the input list with all instance objects that are alive at |snapshotTimeNs|.
    */
   private fun queryJavaInstanceSnapshot(snapshotTimeNs: Long, snapshotList: MutableList<InstanceObject>) =
-    querySnapshot(snapshotTimeNs, snapshotList, allocationEventAdapter) { event, liveInstanceMap ->
-      when (event.eventCase) {
-        AllocationEvent.EventCase.ALLOC_DATA -> {
-          // Allocation - create an InstanceObject. This might be removed later if there is a corresponding FREE_DATA event.
-          val allocation = event.allocData
-          val instance = allocation.getOrCreateInstanceObject()
-          instance.setAllocationTime(event.timestamp)
-          liveInstanceMap[allocation.tag] = instance
-        }
-        AllocationEvent.EventCase.FREE_DATA -> {
-          // Deallocation - there should be a matching InstanceObject.
-          val deallocation = event.freeData
-          liveInstanceMap.remove(deallocation.tag)
-          // Don't keep deallocated objects around in the cache to avoid bloating memory.
-          instanceMap.remove(deallocation.tag)
-        }
-        // ignore CLASS_DATA as they are handled via context updates.
-        AllocationEvent.EventCase.CLASS_DATA -> { }
-        else -> { }
-      }
+    liveAllocations.forEachAliveAt(snapshotTimeNs) { index ->
+      val instance = getOrCreateInstanceObject(index)
+      instance.setAllocationTime(liveAllocations.getAllocTime(index))
+      snapshotList.add(instance)
     }
 
   private fun queryJniReferencesSnapshot(snapshotTimeNs: Long, snapshotList: MutableList<InstanceObject>) {
@@ -385,34 +401,36 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
    * @param resetInstance    Whether the InstanceObject's alloc/dealloc time information should reset if a corresponding allocation or
    * deallocation event has occurred. The [ClassifierSet] rely on the presence (or absence) of these time data
    * to determine whether the InstanceObject should be added (or removed) from the ClassifierSet. Also see [                         ][ClassifierSet.removeDeltaInstanceInformation].
+   * @param evictFreed       Whether the instances deallocated within the query range are dropped from the cache of instance objects.
    */
   private fun queryJavaInstanceDelta(startTimeNs: Long,
                                      endTimeNs: Long,
                                      allocationList: MutableList<InstanceObject>,
                                      deallocationList: MutableList<InstanceObject>,
-                                     resetInstance: Boolean) =
-    queryDelta(startTimeNs, endTimeNs, allocationEventAdapter) { event ->
-      when (event.eventCase) {
-        AllocationEvent.EventCase.ALLOC_DATA -> {
-          // New allocation - create an InstanceObject.
-          val instance = event.allocData.getOrCreateInstanceObject()
-          instance.setAllocationTime(if (resetInstance) Long.MIN_VALUE else event.timestamp)
-          allocationList.add(instance)
-        }
-        AllocationEvent.EventCase.FREE_DATA -> {
-          // New deallocation - there should be a matching InstanceObject.
-          val deallocation = event.freeData
-          // FIXME(b/180630877) The tag is supposed to always be in the instance map
-          instanceMap[deallocation.tag]?.let { instance ->
-            instance.deallocTime = if (resetInstance) Long.MAX_VALUE else event.timestamp
-            deallocationList.add(instance)
-          }
-        }
-        // ignore CLASS_DATA as they are handled via context updates.
-        AllocationEvent.EventCase.CLASS_DATA -> { }
-        else -> { }
+                                     resetInstance: Boolean,
+                                     evictFreed: Boolean) {
+    // Case for point-snapshot - we don't need to further query deltas.
+    if (startTimeNs == endTimeNs) {
+      return
+    }
+    // Allocations are handled first, so that instances allocated and freed within the range exist when their free is handled.
+    liveAllocations.forEachAllocatedIn(startTimeNs, endTimeNs) { index ->
+      // New allocation - create an InstanceObject.
+      val instance = getOrCreateInstanceObject(index)
+      instance.setAllocationTime(if (resetInstance) Long.MIN_VALUE else liveAllocations.getAllocTime(index))
+      allocationList.add(instance)
+    }
+    liveAllocations.forEachFreedIn(startTimeNs, endTimeNs) { index ->
+      // New deallocation - there should be a matching InstanceObject.
+      // FIXME(b/180630877) The tag is supposed to always be in the instance map
+      val tag = liveAllocations.getTag(index)
+      // Don't keep deallocated objects around in the cache to avoid bloating memory.
+      (if (evictFreed) instanceMap.remove(tag) else instanceMap[tag])?.let { instance ->
+        instance.deallocTime = if (resetInstance) Long.MAX_VALUE else liveAllocations.getFreeTime(index)
+        deallocationList.add(instance)
       }
     }
+  }
 
   private fun queryJniReferencesDelta(startTimeNs: Long,
                                       endTimeNs: Long,
@@ -476,22 +494,47 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   fun resolveNativeBacktrace(backtrace: NativeBacktrace?): NativeCallStack = when {
     backtrace == null || backtrace.addressesCount == 0 -> NativeCallStack.getDefaultInstance()
     else -> NativeCallStack.newBuilder().let { builder ->
-      for (address in backtrace.addressesList) {
-        if (!nativeFrameMap.containsKey(address)) {
-          val (module, offset) = getRegionByAddress(address)?.let {
-            Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
-          } ?: Pair("", 0L)
-          val unsymbolizedFrame = NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
-          val symbolizedFrame = stage.studioProfilers.ideServices.nativeFrameSymbolizer
-            .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrame)
-          nativeFrameMap.put(address, symbolizedFrame)
+      symbolizeNewFrames(LongOpenHashSet(backtrace.addressesList))
+      synchronized(nativeFrameMap) {
+        for (address in backtrace.addressesList) {
+          builder.addFrames(nativeFrameMap[address])
         }
-        builder.addFrames(nativeFrameMap[address])
       }
       builder.build()
     }
   }
 
+  private fun symbolizeNativeBacktraces(instances: Sequence<InstanceObject>) {
+    val addresses = LongOpenHashSet()
+    instances.filterIsInstance<JniReferenceInstanceObject>().forEach { reference ->
+      reference.allocationBacktrace?.let { addresses.addAll(it.addressesList) }
+      reference.deallocationBacktrace?.let { addresses.addAll(it.addressesList) }
+    }
+    symbolizeNewFrames(addresses)
+  }
+
+  /**
+   * Symbolizes the addresses that weren't symbolized before in a single batch, which lets the symbolizer split them among its processes.
+   */
+  private fun symbolizeNewFrames(addresses: LongSet) {
+    val newAddresses = synchronized(nativeFrameMap) { addresses.filter { !nativeFrameMap.containsKey(it) } }
+    if (newAddresses.isEmpty()) {
+      return
+    }
+    val unsymbolizedFrames = newAddresses.map { address ->
+      val (module, offset) = getRegionByAddress(address)?.let {
+        Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
+      } ?: Pair("", 0L)
+      NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
+    }
+    // The symbolizer is called without holding the lock, as it can take a while. Frames symbolized twice meanwhile are the same.
+    val symbolizedFrames = stage.studioProfilers.ideServices.nativeFrameSymbolizer
+      .symbolizeAll(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrames)
+    synchronized(nativeFrameMap) {
+      unsymbolizedFrames.forEachIndexed { i, frame -> nativeFrameMap.put(frame.address, symbolizedFrames[i]) }
+    }
+  }
+
   private fun getRegionByAddress(address: Long) = jniMemoryRegionMap.floorEntry(address)?.let { entry ->
     val region = entry.value
     if (address in region.startAddress until region.endAddress) region else null
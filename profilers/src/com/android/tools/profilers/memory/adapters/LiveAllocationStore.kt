@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.android.tools.profiler.proto.Memory.AllocationEvent
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.longs.LongArrayList
+
+/**
+ * The Java allocations of a live allocation capture, decoded once from their event batches and indexed by time, so that the instances
+ * alive at a time, or allocated and freed within a range, are found without querying and decoding the events again.
+ *
+ * Instances are kept in allocation order, one primitive column per field, and are referred to by their index. Frees are kept in their
+ * own order, and each block of [BLOCK_SIZE] instances keeps the latest free time among them, which lets the instances alive at a time be
+ * found by skipping the blocks entirely freed before it. Each class of each heap also keeps the times of its allocations and frees, from
+ * which its counts within any range are found by binary search.
+ *
+ * Events are ingested in time order, and only once: [ingest] ignores the events before [ingestedUntilNs].
+ */
+internal class LiveAllocationStore {
+  private val tags = IntArrayList()
+  private val classTags = IntArrayList()
+  private val stackIds = IntArrayList()
+  private val threadIds = IntArrayList()
+  private val heapIds = IntArrayList()
+  private val sizes = LongArrayList()
+  private val allocTimes = LongArrayList()
+  // Long.MAX_VALUE while the instance is alive.
+  private val freeTimes = LongArrayList()
+  private val blockMaxFreeTimes = LongArrayList()
+  private val blockAliveCounts = IntArrayList()
+  // Indices of the freed instances, in free order.
+  private val freedIndices = IntArrayList()
+  private val freedTimes = LongArrayList()
+  private val aliveIndexByTag = Int2IntOpenHashMap().apply { defaultReturnValue(-1) }
+  private val classCounts = Long2ObjectOpenHashMap<ClassCounts>()
+
+  /**
+   * The end, exclusive, of the time range whose events have been ingested.
+   */
+  var ingestedUntilNs = Long.MIN_VALUE
+    private set
+
+  val size get() = tags.size
+
+  fun getTag(index: Int) = tags.getInt(index)
+  fun getClassTag(index: Int) = classTags.getInt(index)
+  fun getStackId(index: Int) = stackIds.getInt(index)
+  fun getThreadId(index: Int) = threadIds.getInt(index)
+  fun getHeapId(index: Int) = heapIds.getInt(index)
+  fun getSize(index: Int) = sizes.getLong(index)
+  fun getAllocTime(index: Int) = allocTimes.getLong(index)
+  fun getFreeTime(index: Int) = freeTimes.getLong(index)
+
+  /**
+   * Adds the events in [[ingestedUntilNs], [endTimeNs]), in any order, and moves [ingestedUntilNs] to [endTimeNs].
+   */
+  fun ingest(events: Collection<AllocationEvent>, endTimeNs: Long) {
+    if (endTimeNs <= ingestedUntilNs) {
+      return
+    }
+    events.asSequence()
+      .filter { it.timestamp in ingestedUntilNs until endTimeNs }
+      .sortedBy { it.timestamp }
+      .forEach {
+        when (it.eventCase) {
+          AllocationEvent.EventCase.ALLOC_DATA -> addAllocation(it.allocData, it.timestamp)
+          AllocationEvent.EventCase.FREE_DATA -> addFree(it.freeData.tag, it.timestamp)
+          // CLASS_DATA is handled via context updates.
+          else -> { }
+        }
+      }
+    ingestedUntilNs = endTimeNs
+  }
+
+  /**
+   * Calls [action] with the index of each instance allocated before [timeNs] and not freed before it.
+   */
+  fun forEachAliveAt(timeNs: Long, action: (Int) -> Unit) {
+    val end = lowerBound(allocTimes, timeNs)
+    for (block in 0 until (end + BLOCK_SIZE - 1) / BLOCK_SIZE) {
+      if (blockMaxFreeTimes.getLong(block) < timeNs) {
+        continue
+      }
+      for (index in block * BLOCK_SIZE until minOf((block + 1) * BLOCK_SIZE, end)) {
+        if (freeTimes.getLong(index) >= timeNs) {
+          action(index)
+        }
+      }
+    }
+  }
+
+  /**
+   * Calls [action] with the index of each instance allocated in [[startTimeNs], [endTimeNs]), in allocation order.
+   */
+  fun forEachAllocatedIn(startTimeNs: Long, endTimeNs: Long, action: (Int) -> Unit) {
+    for (index in lowerBound(allocTimes, startTimeNs) until lowerBound(allocTimes, endTimeNs)) {
+      action(index)
+    }
+  }
+
+  /**
+   * Calls [action] with the index of each instance freed in [[startTimeNs], [endTimeNs]), in free order.
+   */
+  fun forEachFreedIn(startTimeNs: Long, endTimeNs: Long, action: (Int) -> Unit) {
+    for (i in lowerBound(freedTimes, startTimeNs) until lowerBound(freedTimes, endTimeNs)) {
+      action(freedIndices.getInt(i))
+    }
+  }
+
+  /**
+   * @return the number of instances of the class in the heap allocated and freed in [[startTimeNs], [endTimeNs]).
+   */
+  fun getClassDelta(heapId: Int, classTag: Int, startTimeNs: Long, endTimeNs: Long): ClassDelta =
+    classCounts.get(classKey(heapId, classTag))?.getDelta(startTimeNs, endTimeNs) ?: ClassDelta(0, 0)
+
+  /**
+   * @return the number of instances of the class in the heap alive at [timeNs], as [forEachAliveAt] would find them.
+   */
+  fun getAliveCount(heapId: Int, classTag: Int, timeNs: Long): Int = classCounts.get(classKey(heapId, classTag))?.getAliveCount(timeNs) ?: 0
+
+  /**
+   * @return the number of instances of the heap alive at [startTimeNs] or allocated in [[startTimeNs], [endTimeNs]), i.e. the instances a
+   * capture of that range shows, summed from the counts of its classes.
+   */
+  fun getInstanceCount(heapId: Int, startTimeNs: Long, endTimeNs: Long): Int {
+    var count = 0
+    for (entry in classCounts.long2ObjectEntrySet()) {
+      if ((entry.longKey ushr 32).toInt() == heapId) {
+        count += entry.value.getAliveCount(startTimeNs) + entry.value.getDelta(startTimeNs, endTimeNs).allocationCount
+      }
+    }
+    return count
+  }
+
+  private fun addAllocation(allocation: AllocationEvent.Allocation, timestamp: Long) {
+    val index = tags.size
+    tags.add(allocation.tag)
+    classTags.add(allocation.classTag)
+    stackIds.add(allocation.stackId)
+    threadIds.add(allocation.threadId)
+    heapIds.add(allocation.heapId)
+    sizes.add(allocation.size)
+    allocTimes.add(timestamp)
+    freeTimes.add(Long.MAX_VALUE)
+    if (index % BLOCK_SIZE == 0) {
+      blockMaxFreeTimes.add(Long.MAX_VALUE)
+      blockAliveCounts.add(0)
+    }
+    val block = index / BLOCK_SIZE
+    blockMaxFreeTimes.set(block, Long.MAX_VALUE)
+    blockAliveCounts.set(block, blockAliveCounts.getInt(block) + 1)
+    aliveIndexByTag.put(allocation.tag, index)
+    val key = classKey(allocation.heapId, allocation.classTag)
+    val counts = classCounts.get(key) ?: ClassCounts().also { classCounts.put(key, it) }
+    counts.allocTimes.add(timestamp)
+  }
+
+  private fun addFree(tag: Int, timestamp: Long) {
+    // Frees of instances allocated before tracking started have nothing to update.
+    val index = aliveIndexByTag.remove(tag)
+    if (index < 0) {
+      return
+    }
+    freeTimes.set(index, timestamp)
+    freedIndices.add(index)
+    freedTimes.add(timestamp)
+    // Frees come in time order, so when the last alive instance of a block is freed, its time is the latest of the block.
+    val block = index / BLOCK_SIZE
+    val aliveCount = blockAliveCounts.getInt(block) - 1
+    blockAliveCounts.set(block, aliveCount)
+    if (aliveCount == 0) {
+      blockMaxFreeTimes.set(block, timestamp)
+    }
+    classCounts.get(classKey(heapIds.getInt(index), classTags.getInt(index))).freeTimes.add(timestamp)
+  }
+
+  data class ClassDelta(val allocationCount: Int, val deallocationCount: Int)
+
+  private class ClassCounts {
+    val allocTimes = LongArrayList()
+    val freeTimes = LongArrayList()
+
+    fun getDelta(startTimeNs: Long, endTimeNs: Long) =
+      ClassDelta(lowerBound(allocTimes, endTimeNs) - lowerBound(allocTimes, startTimeNs),
+                 lowerBound(freeTimes, endTimeNs) - lowerBound(freeTimes, startTimeNs))
+
+    fun getAliveCount(timeNs: Long) = lowerBound(allocTimes, timeNs) - lowerBound(freeTimes, timeNs)
+  }
+
+  companion object {
+    private const val BLOCK_SIZE = 256
+
+    private fun classKey(heapId: Int, classTag: Int) = (heapId.toLong() shl 32) or (classTag.toLong() and 0xffffffffL)
+
+    /**
+     * @return the index of the first time not before [timeNs] in the sorted times, or their size if there is none.
+     */
+    private fun lowerBound(times: LongArrayList, timeNs: Long): Int {
+      var low = 0
+      var high = times.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (times.getLong(mid) < timeNs) low = mid + 1 else high = mid
+      }
+      return low
+    }
+  }
+}
@@ -23,6 +23,8 @@ import com.android.tools.profilers.memory.adapters.instancefilters.CaptureObject
 import java.util.Collections
 import java.util.IdentityHashMap
 import java.util.Objects
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
 import java.util.stream.Stream
 import kotlin.math.min
 
@@ -269,32 +271,66 @@ abstract class ClassifierSet(supplyName: () -> String) : MemoryObject {
     }
 
     if (change.countsChanged) {
-      if (isAllocation) {
-        deltaAllocationCount += op.countChange * instanceObject.instanceCount
-        allocationSize += (op.countChange * instanceObject.shallowSize).toLong()
-      } else {
-        deltaDeallocationCount += op.countChange * instanceObject.instanceCount
-        deallocationSize += (op.countChange * instanceObject.shallowSize).toLong()
-      }
-      val factor = op.countChange * if (isAllocation) 1 else -1
-      val deltaNativeSize = factor * instanceObject.nativeSize.validOrZero()
-      val deltaShallowSize = factor * instanceObject.shallowSize.toLong().validOrZero()
-      val deltaRetainedSize = factor * instanceObject.retainedSize.validOrZero()
-      totalNativeSize += deltaNativeSize
-      this.deltaShallowSize += deltaShallowSize
-      totalShallowSize += deltaShallowSize
-      invalidateRetainedSizeCache()
-      if (change.instanceChanged && !instanceObject.isCallStackEmpty) {
-        instancesWithStackInfoCount += op.countChange
-        needsRefiltering = true
-      }
-      if (change.instanceChanged) {
-        instanceFilterMatchCounter.invalidate()
-      }
+      accountDeltaChange(instanceObject, isAllocation, op, change.instanceChanged)
     }
     return change
   }
 
+  private fun accountDeltaChange(instanceObject: InstanceObject, isAllocation: Boolean, op: SetOperation, instanceChanged: Boolean) {
+    if (isAllocation) {
+      deltaAllocationCount += op.countChange * instanceObject.instanceCount
+      allocationSize += (op.countChange * instanceObject.shallowSize).toLong()
+    } else {
+      deltaDeallocationCount += op.countChange * instanceObject.instanceCount
+      deallocationSize += (op.countChange * instanceObject.shallowSize).toLong()
+    }
+    val factor = op.countChange * if (isAllocation) 1 else -1
+    val deltaNativeSize = factor * instanceObject.nativeSize.validOrZero()
+    val deltaShallowSize = factor * instanceObject.shallowSize.toLong().validOrZero()
+    val deltaRetainedSize = factor * instanceObject.retainedSize.validOrZero()
+    totalNativeSize += deltaNativeSize
+    this.deltaShallowSize += deltaShallowSize
+    totalShallowSize += deltaShallowSize
+    invalidateRetainedSizeCache()
+    if (instanceChanged && !instanceObject.isCallStackEmpty) {
+      instancesWithStackInfoCount += op.countChange
+      needsRefiltering = true
+    }
+    if (instanceChanged) {
+      instanceFilterMatchCounter.invalidate()
+    }
+  }
+
+  /**
+   * Bulk version of [addDeltaInstanceObject] for distinct instances that are not in this set yet, e.g. when loading a capture.
+   * Each child set receives its instances in a separate task of `pool`, recursively, so disjoint subtrees are classified concurrently.
+   * Child sets are created in the order of their first instance and receive their instances in order, so the resulting tree is the same
+   * as when adding the instances one at a time, except that every level is partitioned eagerly.
+   *
+   * @param onInstancesAdded called from the pool's threads with the number of instances added to each leaf set.
+   */
+  fun addDeltaInstanceObjects(instances: List<InstanceObject>, pool: ForkJoinPool, onInstancesAdded: (Int) -> Unit = {}) {
+    pool.invoke(addDeltaInstanceObjectsTask(instances, onInstancesAdded))
+  }
+
+  private fun addDeltaInstanceObjectsTask(instances: List<InstanceObject>, onInstancesAdded: (Int) -> Unit): ForkJoinTask<*> =
+    ForkJoinTask.adapt(Runnable {
+      when (val s = ensurePartitioned()) {
+        is State.Coalesced -> {
+          instances.forEach { addDeltaInstanceObject(it) }
+          onInstancesAdded(instances.size)
+        }
+        is State.Partitioned -> {
+          val groups = LinkedHashMap<ClassifierSet, MutableList<InstanceObject>>()
+          instances.forEach {
+            groups.getOrPut(s.classifier.getClassifierSet(it, true)!!) { ArrayList() }.add(it)
+            accountDeltaChange(it, true, SetOperation.ADD, true)
+          }
+          ForkJoinTask.invokeAll(groups.map { (set, setInstances) -> set.addDeltaInstanceObjectsTask(setInstances, onInstancesAdded) })
+        }
+      }
+    })
+
   fun clearClassifierSets() {
     state = initState().forced()
     snapshotObjectCount = 0
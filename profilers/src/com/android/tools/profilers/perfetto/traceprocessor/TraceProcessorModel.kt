@@ -28,8 +28,10 @@ import com.android.tools.profilers.cpu.systemtrace.ProcessModel
 import com.android.tools.profilers.cpu.systemtrace.SchedulingEventModel
 import com.android.tools.profilers.cpu.systemtrace.SystemTraceModelAdapter
 import com.android.tools.profilers.cpu.systemtrace.ThreadModel
+import com.android.tools.profilers.cpu.systemtrace.ThreadSchedulingTable
 import com.android.tools.profilers.cpu.systemtrace.TraceEventModel
 import perfetto.protos.PerfettoTrace
+import java.io.ObjectInputStream
 import java.io.Serializable
 import java.util.Deque
 import java.util.LinkedList
@@ -49,6 +51,7 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
   private val batteryDrain: List<CounterModel>
   private val androidFrameLayers: List<Layer>
   private val androidFrameTimelineEvents: List<AndroidFrameTimelineEvent>
+  private var threadScheduling = builder.threadScheduling.build()
 
   private val danglingThreads = builder.danglingThreads
 
@@ -60,10 +63,7 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
     val processMapBuilder = mutableMapOf<Int, ProcessModel>()
     for (process in builder.processById.values) {
       val updatedThreadMap = process.threadById.mapValues { entry ->
-        entry.value.copy(
-          traceEvents = builder.threadToEventsMap.getOrDefault(entry.key, listOf()),
-          schedulingEvents = builder.threadToScheduling.getOrDefault(entry.key, listOf())
-        )
+        entry.value.copy(traceEvents = builder.threadToEventsMap.getOrDefault(entry.key, listOf()))
       }.toSortedMap()
 
       val counterMap = builder.processToCounters.getOrDefault(process.id, listOf())
@@ -97,6 +97,7 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
   override fun getProcessById(id: Int) = processMap[id]
   override fun getProcesses() = processMap.values.toList()
   override fun getDanglingThread(tid: Int): ThreadModel? = danglingThreads[tid]
+  override fun getThreadStates(tid: Int, startUs: Long, endUs: Long) = threadScheduling.getThreadStates(tid, startUs, endUs)
   override fun getCpuCores() = cpuCores
   override fun getPowerRails(): List<CounterModel> = powerRails
   override fun getBatteryDrain(): List<CounterModel> = batteryDrain
@@ -107,6 +108,15 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
   override fun getAndroidFrameLayers() = androidFrameLayers
   override fun getAndroidFrameTimelineEvents() = androidFrameTimelineEvents
 
+  @Suppress("SENSELESS_COMPARISON")
+  private fun readObject(ois: ObjectInputStream) {
+    ois.defaultReadObject()
+    // Models serialized before thread scheduling was stored as a table, such as the test trace models, have no thread states.
+    if (threadScheduling == null) {
+      threadScheduling = ThreadSchedulingTable.EMPTY
+    }
+  }
+
   class Builder {
     internal var startCaptureTimestamp = Long.MAX_VALUE
     internal var endCaptureTimestamp = Long.MIN_VALUE
@@ -114,7 +124,7 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
     internal val processById = mutableMapOf<Int, ProcessModel>()
     internal val danglingThreads = mutableMapOf<Int, ThreadModel>()
     internal val threadToEventsMap = mutableMapOf<Int, List<TraceEventModel>>()
-    internal val threadToScheduling = mutableMapOf<Int, List<SchedulingEventModel>>()
+    internal val threadScheduling = ThreadSchedulingTable.Builder()
     internal val coreToScheduling = mutableMapOf<Int, List<SchedulingEventModel>>()
     internal val coreToCpuCounters = mutableMapOf<Int, List<CounterModel>>()
     internal val processToCounters = mutableMapOf<Int, List<CounterModel>>()
@@ -131,13 +141,12 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
           process.threadList.associate {t -> t.id.toInt() to ThreadModel(t.id.toInt(),
                                                                          process.id.toInt(),
                                                                          t.name,
-                                                                         listOf(),
                                                                          listOf()) }.toSortedMap(),
           mapOf())
       }
 
       for (thread in processMetadataResult.danglingThreadList) {
-        danglingThreads[thread.id.toInt()] = ThreadModel(thread.id.toInt(), 0, thread.name, emptyList(), emptyList())
+        danglingThreads[thread.id.toInt()] = ThreadModel(thread.id.toInt(), 0, thread.name, emptyList())
       }
     }
 
@@ -220,7 +229,6 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
     fun addSchedulingEvents(schedEvents: TraceProcessor.SchedulingEventsResult) {
       cpuCoresCount = maxOf(cpuCoresCount, schedEvents.numCores)
 
-      val perThreadScheduling = mutableMapOf<Int, MutableList<SchedulingEventModel>>()
       val perCoreScheduling = mutableMapOf<Int, MutableList<SchedulingEventModel>>()
       schedEvents.schedEventList
         .groupBy { it.threadId }
@@ -245,33 +253,17 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
                                                   event.processId.toInt(),
                                                   event.threadId.toInt(),
                                                   event.cpu)
-            // Add a RUNNING event and an [end_state] event to thread scheduling events.
-            perThreadScheduling.getOrPut(tid.toInt()) { mutableListOf() }.apply {
-              // The RUNNING thread state event.
-              add(schedEvent)
-              if (index < events.size - 1) {
-                val nextStartTimestampUs = convertToUs(events[index + 1].timestampNanoseconds)
-                val nextDurationTimeUs = nextStartTimestampUs - endTimestampUs
-                // The [end_state] thread state event.
-                add(SchedulingEventModel(convertSchedulingState(event.endState),
-                                         endTimestampUs,
-                                         nextStartTimestampUs,
-                                         nextDurationTimeUs,
-                                         nextDurationTimeUs,
-                                         event.processId.toInt(),
-                                         event.threadId.toInt(),
-                                         event.cpu))
-              }
+            // Add a RUNNING state and an [end_state] state to the thread scheduling table.
+            threadScheduling.add(tid.toInt(), ThreadState.RUNNING_CAPTURED, startTimestampUs, endTimestampUs)
+            if (index < events.size - 1) {
+              val nextStartTimestampUs = convertToUs(events[index + 1].timestampNanoseconds)
+              threadScheduling.add(tid.toInt(), convertSchedulingState(event.endState), endTimestampUs, nextStartTimestampUs)
             }
             // Add just the RUNNING event to core scheduling events.
             perCoreScheduling.getOrPut(event.cpu) { mutableListOf() }.add(schedEvent)
           }
         }
 
-      perThreadScheduling.forEach {
-        val previousList = threadToScheduling[it.key] ?: listOf()
-        threadToScheduling[it.key] = previousList.plus(it.value).sortedBy { s -> s.startTimestampUs }
-      }
       perCoreScheduling.forEach {
         val previousList = coreToScheduling[it.key] ?: listOf()
         coreToScheduling[it.key] = previousList.plus(it.value).sortedBy { s -> s.startTimestampUs }
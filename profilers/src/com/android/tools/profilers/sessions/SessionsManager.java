@@ -141,6 +141,18 @@ public class SessionsManager extends AspectModel<SessionAspect> {
   @NotNull
   private final List<ArtifactFetcher> myArtifactsFetchers;
 
+  /**
+   * Artifacts of sessions restored from the datastore of a previous Studio run, keyed by session id. Those sessions can no longer
+   * change, so their artifacts are fetched once when first listed instead of on every {@link #update()}.
+   */
+  @NotNull private final Map<Long, List<SessionArtifact<?>>> myRestoredSessionArtifacts = new HashMap<>();
+
+  /**
+   * Whether {@link #update()} has run at least once. Completed sessions found by the first update were persisted by a previous run.
+   */
+  private boolean myHasUpdated;
+  private final long myCreationTimeEpochMs = System.currentTimeMillis();
+
   /**
    * Cache the EventStreamServers that were created for imported streams so events and bytes can be added at a later time if desired.
    */
@@ -238,6 +250,7 @@ public class SessionsManager extends AspectModel<SessionAspect> {
     GetEventGroupsRequest request = GetEventGroupsRequest.newBuilder().setKind(Event.Kind.SESSION).build();
     GetEventGroupsResponse response = myProfilers.getClient().getTransportClient().getEventGroups(request);
     updateSessionItemsByGroup(response.getGroupsList());
+    myHasUpdated = true;
   }
 
   /**
@@ -273,6 +286,12 @@ public class SessionsManager extends AspectModel<SessionAspect> {
       if (sessionItem == null) {
         sessionItem = processSessionStarted(startEvent);
         sessionStateChanged = true;
+        if (!myHasUpdated && group.getEventsCount() == 2 &&
+            startEvent.getSession().getSessionStarted().getType() == SessionData.SessionStarted.SessionType.FULL &&
+            startEvent.getSession().getSessionStarted().getStartTimestampEpochMs() < myCreationTimeEpochMs) {
+          // A full session that had already ended before this manager was created was restored from a previous run's datastore.
+          myRestoredSessionArtifacts.put(sessionItem.getSession().getSessionId(), null);
+        }
         LogUtils.log(this.getClass(), "Session started (" + sessionItem.getName() + "), support level =" +
                                       myProfilers.getSupportLevelForSession(sessionItem.getSession()));
       }
@@ -293,8 +312,7 @@ public class SessionsManager extends AspectModel<SessionAspect> {
       }
       final SessionItem item = sessionItem;
       sessionArtifacts.add(item);
-      List<SessionArtifact<?>> artifacts = new ArrayList<>();
-      myArtifactsFetchers.forEach(fetcher -> artifacts.addAll(fetcher.fetch(myProfilers, item.getSession(), item.getSessionMetaData())));
+      List<SessionArtifact<?>> artifacts = getOrFetchArtifacts(item);
       item.setChildArtifacts(artifacts);
       if (item.getSessionMetaData().getType() == Common.SessionMetaData.SessionType.FULL) {
         sessionArtifacts.addAll(artifacts);
@@ -314,6 +332,31 @@ public class SessionsManager extends AspectModel<SessionAspect> {
     }
   }
 
+  /**
+   * Returns the artifacts of the given session. The artifacts of a session restored from a previous run are fetched only once, since
+   * they can no longer change.
+   */
+  @NotNull
+  private List<SessionArtifact<?>> getOrFetchArtifacts(@NotNull SessionItem item) {
+    long sessionId = item.getSession().getSessionId();
+    if (!myRestoredSessionArtifacts.containsKey(sessionId)) {
+      return fetchArtifacts(item);
+    }
+    List<SessionArtifact<?>> artifacts = myRestoredSessionArtifacts.get(sessionId);
+    if (artifacts == null) {
+      artifacts = fetchArtifacts(item);
+      myRestoredSessionArtifacts.put(sessionId, artifacts);
+    }
+    return artifacts;
+  }
+
+  @NotNull
+  private List<SessionArtifact<?>> fetchArtifacts(@NotNull SessionItem item) {
+    List<SessionArtifact<?>> artifacts = new ArrayList<>();
+    myArtifactsFetchers.forEach(fetcher -> artifacts.addAll(fetcher.fetch(myProfilers, item.getSession(), item.getSessionMetaData())));
+    return artifacts;
+  }
+
   /**
    * Attempt to register the implicit selection of newly added
    * artifacts done by the UI. These registered selections prevent reparsing
@@ -527,6 +570,7 @@ public class SessionsManager extends AspectModel<SessionAspect> {
     // TODO b/141261422 the main update loop does not handle removing items at the moment. For now we manually remove the SessionItem and
     // force an update so any artifacts (e.g. heap dump, cpu captures) are also removed from being displayed.
     mySessionItems.remove(session.getSessionId());
+    myRestoredSessionArtifacts.remove(session.getSessionId());
     updateSessionItems(Collections.emptyList());
   }
 
@@ -639,8 +683,7 @@ public class SessionsManager extends AspectModel<SessionAspect> {
     List<SessionArtifact> sessionArtifacts = new ArrayList<>();
     for (SessionItem item : mySessionItems.values()) {
       sessionArtifacts.add(item);
-      List<SessionArtifact<?>> artifacts = new ArrayList<>();
-      myArtifactsFetchers.forEach(fetcher -> artifacts.addAll(fetcher.fetch(myProfilers, item.getSession(), item.getSessionMetaData())));
+      List<SessionArtifact<?>> artifacts = getOrFetchArtifacts(item);
       item.setChildArtifacts(artifacts);
       if (item.getSessionMetaData().getType() == Common.SessionMetaData.SessionType.FULL) {
         sessionArtifacts.addAll(artifacts);
@@ -15,8 +15,10 @@
  */
 package com.android.tools.profilers
 
+import com.android.tools.adtui.model.SeriesData
 import com.android.tools.profiler.perfetto.proto.TraceProcessor
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils
+import com.android.tools.profilers.cpu.ThreadState
 import com.android.tools.profilers.cpu.config.ProfilingConfiguration.TraceType
 import com.android.tools.profilers.cpu.systemtrace.AndroidFrameTimelineEvent
 import com.android.tools.profilers.cpu.systemtrace.CounterModel
@@ -147,6 +149,7 @@ class FakeTraceProcessorService: TraceProcessorService {
     override fun getProcesses(): List<ProcessModel> = emptyList()
     override fun getProcessById(id: Int) = getProcesses().find { it.id == id }
     override fun getDanglingThread(tid: Int): ThreadModel? = null
+    override fun getThreadStates(tid: Int, startUs: Long, endUs: Long): List<SeriesData<ThreadState>> = emptyList()
     override fun getCpuCores(): List<CpuCoreModel> = emptyList()
     override fun getSystemTraceTechnology() = TraceType.PERFETTO
     override fun getPowerRails(): List<CounterModel> = emptyList()
@@ -23,10 +23,14 @@ import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.idea.transport.faketransport.FakeGrpcChannel;
 import com.android.tools.idea.transport.faketransport.FakeTransportService;
+import com.android.tools.idea.transport.poller.TransportEventSubscriber;
 import com.android.tools.profiler.proto.Common;
 import com.google.common.truth.Truth;
 import com.intellij.util.containers.ContainerUtil;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -84,4 +88,93 @@ public class UnifiedEventDataSeriesTest {
                                                                           event -> event.getNetworkSpeed().getThroughput()));
     series1.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCachedDataIsUpdatedByPushedEvents() {
+    List<Consumer<Common.Event>> listeners = new ArrayList<>();
+    TransportEventSubscriber subscriber = createSubscriber(listeners);
+    myService.addEventToStream(STREAM_ID, ProfilersTestData.generateNetworkTxEvent(1, 10).build());
+    myService.addEventToStream(STREAM_ID, ProfilersTestData.generateNetworkTxEvent(3, 30).build());
+
+    UnifiedEventDataSeries<Long> series = new UnifiedEventDataSeries<>(new ProfilerClient(myGrpcChannel.getChannel(), subscriber),
+                                                                       STREAM_ID,
+                                                                       0,
+                                                                       Common.Event.Kind.NETWORK_SPEED,
+                                                                       NETWORK_TX_VALUE,
+                                                                       UnifiedEventDataSeries.fromFieldToDataExtractor(
+                                                                         event -> event.getNetworkSpeed().getThroughput()));
+    // The cache subscribes and backfills on the first request.
+    Truth.assertThat(listeners).isEmpty();
+    List<SeriesData<Long>> data = series.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Truth.assertThat(ContainerUtil.map(data, d -> d.x)).containsExactly(1L, 3L).inOrder();
+    Truth.assertThat(listeners).hasSize(1);
+
+    // Events pushed by the datastore show up without another query, including out of order ones, and duplicates are ignored.
+    listeners.get(0).accept(ProfilersTestData.generateNetworkTxEvent(5, 50).build());
+    listeners.get(0).accept(ProfilersTestData.generateNetworkTxEvent(2, 20).build());
+    listeners.get(0).accept(ProfilersTestData.generateNetworkTxEvent(3, 30).build());
+    data = series.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Truth.assertThat(ContainerUtil.map(data, d -> d.x)).containsExactly(1L, 2L, 3L, 5L).inOrder();
+    Truth.assertThat(ContainerUtil.map(data, d -> d.value)).containsExactly(10L, 20L, 30L, 50L).inOrder();
+
+    // Range requests include the events right outside of the range, as queries do.
+    data = series.getDataForRange(new Range(3, 3));
+    Truth.assertThat(ContainerUtil.map(data, d -> d.x)).containsExactly(2L, 3L, 5L).inOrder();
+  }
+
+  @Test
+  public void testCachedEventsAreReleasedWhenClosed() {
+    List<Consumer<Common.Event>> listeners = new ArrayList<>();
+    ProfilerClient client = new ProfilerClient(myGrpcChannel.getChannel(), createSubscriber(listeners));
+    myService.addEventToStream(STREAM_ID, ProfilersTestData.generateNetworkTxEvent(1, 10).build());
+    UnifiedEventDataSeries<Long> series = createTxSeries(client);
+    series.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Truth.assertThat(listeners).hasSize(1);
+
+    client.closeEventCaches();
+    Truth.assertThat(listeners).isEmpty();
+
+    // A closed cache that is used again is backfilled again.
+    myService.addEventToStream(STREAM_ID, ProfilersTestData.generateNetworkTxEvent(2, 20).build());
+    List<SeriesData<Long>> data = series.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Truth.assertThat(ContainerUtil.map(data, d -> d.x)).containsExactly(1L, 2L).inOrder();
+    Truth.assertThat(listeners).hasSize(1);
+  }
+
+  @Test
+  public void testCacheOnlyKeepsLatestEvents() {
+    List<Consumer<Common.Event>> listeners = new ArrayList<>();
+    myService.addEventToStream(STREAM_ID, ProfilersTestData.generateNetworkTxEvent(1, 10).build());
+    myService.addEventToStream(STREAM_ID, ProfilersTestData.generateNetworkTxEvent(3, 30).build());
+    UnifiedEventDataSeries<Long> series = createTxSeries(new ProfilerClient(myGrpcChannel.getChannel(), createSubscriber(listeners)));
+    series.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
+
+    // Pushed events that are not in the fake datastore tell which requests are answered by the cache.
+    int lastTimestamp = IncrementalEventCache.MAX_EVENTS + 3;
+    for (int timestamp = 4; timestamp <= lastTimestamp; timestamp++) {
+      listeners.get(0).accept(ProfilersTestData.generateNetworkTxEvent(timestamp, timestamp).build());
+    }
+    List<SeriesData<Long>> data = series.getDataForRange(new Range(lastTimestamp - 1, lastTimestamp));
+    Truth.assertThat(ContainerUtil.map(data, d -> d.x)).containsExactly((long)lastTimestamp - 2, (long)lastTimestamp - 1, (long)lastTimestamp)
+      .inOrder();
+
+    // The oldest events were dropped from the cache, so requests for them query the datastore.
+    data = series.getDataForRange(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Truth.assertThat(ContainerUtil.map(data, d -> d.x)).containsExactly(1L, 3L).inOrder();
+  }
+
+  @NotNull
+  private static TransportEventSubscriber createSubscriber(@NotNull List<Consumer<Common.Event>> listeners) {
+    return (filter, executor, listener) -> {
+      Consumer<Common.Event> executingListener = event -> executor.execute(() -> listener.accept(event));
+      listeners.add(executingListener);
+      return () -> listeners.remove(executingListener);
+    };
+  }
+
+  @NotNull
+  private static UnifiedEventDataSeries<Long> createTxSeries(@NotNull ProfilerClient client) {
+    return new UnifiedEventDataSeries<>(client, STREAM_ID, 0, Common.Event.Kind.NETWORK_SPEED, NETWORK_TX_VALUE,
+                                        UnifiedEventDataSeries.fromFieldToDataExtractor(event -> event.getNetworkSpeed().getThroughput()));
+  }
+}
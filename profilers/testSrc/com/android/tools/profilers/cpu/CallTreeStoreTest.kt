@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu
+
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class CallTreeStoreTest {
+  @Test
+  fun nodesAreLinkedInOrder() {
+    val store = CallTreeStore()
+    val root = store.addNode(CallTreeStore.NO_NODE, SingleNameModel("root"))
+    val children = (0 until 20).map { store.addNode(root, SingleNameModel("child$it")) }
+
+    assertThat(store.getChildCount(root)).isEqualTo(20)
+    assertThat(store.getFirstChild(root)).isEqualTo(children.first())
+    assertThat(store.getLastChild(root)).isEqualTo(children.last())
+    assertThat((0 until 20).map { store.getChildAt(root, it) }).containsExactlyElementsIn(children).inOrder()
+    assertThat(children.map(store::getParent).distinct()).containsExactly(root)
+  }
+
+  @Test
+  fun viewsKeepTheirIdentity() {
+    val store = CallTreeStore()
+    val root = store.addNode(CallTreeStore.NO_NODE, SingleNameModel("root"))
+    val child = store.addNode(root, SingleNameModel("child"))
+
+    assertThat(store.node(child)).isSameAs(store.node(child))
+    assertThat(store.node(child).parent).isSameAs(store.node(root))
+    assertThat(store.node(root).children).containsExactly(store.node(child))
+  }
+
+  @Test
+  fun moveNodeRelinksItsSubtree() {
+    val store = CallTreeStore()
+    val root = store.addNode(CallTreeStore.NO_NODE, SingleNameModel("root"))
+    val first = store.addNode(root, SingleNameModel("first"))
+    val second = store.addNode(root, SingleNameModel("second"))
+    val grandChild = store.addNode(first, SingleNameModel("grandChild"))
+
+    store.moveNode(first, second)
+
+    assertThat(store.getChildCount(root)).isEqualTo(1)
+    assertThat(store.getFirstChild(root)).isEqualTo(second)
+    assertThat(store.getParent(first)).isEqualTo(second)
+    assertThat(store.node(root).descendantsStream.map { it.data.name }.toList())
+      .containsExactly("root", "second", "first", "grandChild").inOrder()
+    assertThat(store.getParent(grandChild)).isEqualTo(first)
+  }
+
+  @Test
+  fun nodeCreatedOnItsOwnMovesToTheStoreOfItsParent() {
+    val parent = CaptureNode(SingleNameModel("parent"))
+    val child = CaptureNode(SingleNameModel("child")).apply {
+      startGlobal = 10
+      endGlobal = 20
+    }
+    val grandChild = CaptureNode(SingleNameModel("grandChild"))
+    child.addChild(grandChild)
+
+    parent.addChild(child)
+
+    assertThat(child.store).isSameAs(parent.store)
+    assertThat(grandChild.store).isSameAs(parent.store)
+    assertThat(child.startGlobal).isEqualTo(10)
+    assertThat(child.endGlobal).isEqualTo(20)
+    assertThat(grandChild.findRootNode()).isSameAs(parent)
+  }
+
+  @Test
+  fun nodeOfAnotherTreeKeepsItsStore() {
+    val tree = CaptureNode(SingleNameModel("tree"))
+    val subtree = tree.createChild(SingleNameModel("subtree"))
+    val parent = CaptureNode(SingleNameModel("parent"))
+
+    parent.addChild(subtree)
+
+    assertThat(subtree.store).isSameAs(tree.store)
+    assertThat(subtree.parent).isSameAs(parent)
+    assertThat(parent.children).containsExactly(subtree)
+    assertThat(parent.descendantsStream.toList()).containsExactly(parent, subtree).inOrder()
+  }
+}
@@ -25,6 +25,7 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import com.intellij.util.containers.ContainerUtil;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -32,6 +33,8 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import kotlin.Unit;
 import org.junit.Test;
 
 public class CaptureNodeTest {
@@ -144,10 +147,54 @@ public class CaptureNodeTest {
   public void testGetTopKNodes() {
     CaptureNode root = createFilterTestTree();
     List<CaptureNode> longestNodes = root.getTopKNodes(
-      4, node -> node.getData().getFullName().equals("otherPackage.method4"), Comparator.comparing(CaptureNode::getDuration));
+      4, data -> data.getFullName().equals("otherPackage.method4"), Comparator.comparing(CaptureNode::getDuration));
     assertThat(ContainerUtil.map(longestNodes, CaptureNode::getDuration)).containsExactly(100L, 100L, 99L, 40L);
   }
 
+  @Test
+  public void descendantsAreInPreOrder() {
+    CaptureNode root = createFilterTestTree();
+    List<String> expected = Arrays.asList("main", "method1", "method2", "method4", "method3", "method3", "method4", "method4",
+                                          "method1", "method3", "method4", "method2", "method3", "method4");
+    assertThat(ContainerUtil.map(root.getDescendantsStream().collect(Collectors.toList()), node -> node.getData().getName()))
+      .containsExactlyElementsIn(expected).inOrder();
+
+    List<CaptureNode> visited = new ArrayList<>();
+    root.forEachDescendant(node -> {
+      visited.add(node);
+      return Unit.INSTANCE;
+    });
+    assertThat(visited).containsExactlyElementsIn(root.getDescendantsStream().collect(Collectors.toList())).inOrder();
+    assertThat(root.getChildAt(0).getDescendantsStream().count()).isEqualTo(7);
+  }
+
+  @Test
+  public void traversingDeepTreesDoesNotOverflowTheStack() {
+    CaptureNode root = createNode("mainPackage.main", 0, 1000);
+    CaptureNode node = root;
+    for (int i = 0; i < 100000; i++) {
+      CaptureNode child = createNode("myPackage.method" + i, 0, 1000);
+      node.addChild(child);
+      node = child;
+    }
+    assertThat(root.getDescendantsStream().count()).isEqualTo(100001);
+    List<CaptureNode> leaves =
+      root.getTopKNodes(1, data -> data.getFullName().equals("myPackage.method99999"), Comparator.comparing(CaptureNode::getDuration));
+    assertThat(leaves).containsExactly(node);
+  }
+
+  @Test
+  public void leavesHaveNoChildren() {
+    CaptureNode root = createFilterTestTree();
+    CaptureNode leaf = root.getChildAt(0).getChildAt(0).getChildAt(0);
+    assertThat(leaf.getChildCount()).isEqualTo(0);
+    assertThat(leaf.getChildren()).isEmpty();
+
+    root.clearChildren();
+    assertThat(root.getChildCount()).isEqualTo(0);
+    assertThat(root.getDescendantsStream().collect(Collectors.toList())).containsExactly(root);
+  }
+
   @Test
   public void testFilterAspect() throws Exception {
     CaptureNode node = new CaptureNode(new SingleNameModel("Foo"));
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu
+
+import com.android.tools.adtui.model.filter.Filter
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.FakeIdeProfilerServices
+import com.android.tools.profilers.cpu.config.ProfilingConfiguration.TraceType
+import com.android.tools.profilers.cpu.systemtrace.SystemTraceCpuCapture
+import com.android.tools.profilers.perfetto.PerfettoParser
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class CpuCaptureCacheTest {
+  private val perfettoFile = CpuProfilerTestUtils.getTraceFile("perfetto.trace")
+  private val artFile = CpuProfilerTestUtils.getTraceFile("valid_trace.trace")
+
+  @Test
+  fun `captures within budget are kept in memory`() {
+    val cache = CpuCaptureCache(Long.MAX_VALUE)
+    val perfetto = parsePerfetto(1)
+    val art = CpuProfilerTestUtils.getCapture(artFile, TraceType.ART)
+    cache.put(1, perfettoFile, perfetto)
+    cache.put(2, artFile, art)
+
+    assertThat(cache.get(1, perfettoFile)).isSameAs(perfetto)
+    assertThat(cache.get(2, artFile)).isSameAs(art)
+    // The same trace id for another file is a different trace.
+    assertThat(cache.contains(1, artFile)).isFalse()
+    assertThat(cache.get(1, artFile)).isNull()
+  }
+
+  @Test
+  fun `least recently used capture is dropped past the budget`() {
+    val perfetto = parsePerfetto(1)
+    val art = CpuProfilerTestUtils.getCapture(artFile, TraceType.ART)
+    // Room for the largest of the two captures only.
+    val cache = CpuCaptureCache(maxOf(CpuCaptureCache.estimateSizeBytes(perfetto), CpuCaptureCache.estimateSizeBytes(art)))
+    cache.put(1, perfettoFile, perfetto)
+    cache.put(2, artFile, art)
+
+    assertThat(cache.contains(1, perfettoFile)).isFalse()
+    assertThat(cache.get(1, perfettoFile)).isNull()
+    assertThat(cache.get(2, artFile)).isSameAs(art)
+  }
+
+  @Test
+  fun `clear drops every capture`() {
+    val cache = CpuCaptureCache(Long.MAX_VALUE)
+    cache.put(1, perfettoFile, parsePerfetto(1))
+    cache.put(2, artFile, CpuProfilerTestUtils.getCapture(artFile, TraceType.ART))
+    assertThat(cache.contains(1, perfettoFile)).isTrue()
+
+    cache.clear()
+    assertThat(cache.contains(1, perfettoFile)).isFalse()
+    assertThat(cache.contains(2, artFile)).isFalse()
+  }
+
+  @Test
+  fun `view state left by a stage is reset for the next one`() {
+    val cache = CpuCaptureCache(Long.MAX_VALUE)
+    val art = CpuProfilerTestUtils.getCapture(artFile, TraceType.ART)
+    val dataRange = art.timeline.dataRange
+    cache.put(2, artFile, art)
+
+    // What a stage showing the capture may leave behind.
+    art.timeline.viewRange.set(dataRange.min + 10, dataRange.min + 20)
+    art.timeline.selectionRange.set(dataRange.min + 12, dataRange.min + 14)
+    art.updateClockType(ClockType.THREAD)
+    art.collapseNodesWithTags(art.tags)
+    art.captureNodes.forEach { it.applyFilter(Filter("no method is called this")) }
+
+    val reopened = cache.get(2, artFile)!!
+    assertThat(reopened.timeline.viewRange.isSameAs(dataRange)).isTrue()
+    assertThat(reopened.timeline.selectionRange.isEmpty).isTrue()
+    assertThat(reopened.collapsedTags).isEmpty()
+    reopened.captureNodes.forEach { root ->
+      root.forEachDescendant {
+        assertThat(it.clockType).isEqualTo(ClockType.GLOBAL)
+        assertThat(it.filterType).isEqualTo(CaptureNode.FilterType.MATCH)
+      }
+    }
+  }
+
+  @Test
+  fun `system trace is reopened with its initial view range`() {
+    val cache = CpuCaptureCache(Long.MAX_VALUE)
+    val perfetto = parsePerfetto(1)
+    val initialMin = perfetto.timeline.viewRange.min
+    val initialMax = perfetto.timeline.viewRange.max
+    cache.put(1, perfettoFile, perfetto)
+
+    perfetto.timeline.viewRange.set(initialMin + 10, initialMin + 20)
+
+    val reopened = cache.get(1, perfettoFile)!!
+    assertThat(reopened.timeline.viewRange.min).isEqualTo(initialMin)
+    assertThat(reopened.timeline.viewRange.max).isEqualTo(initialMax)
+  }
+
+  private fun parsePerfetto(traceId: Long) =
+    PerfettoParser(MainProcessSelector(), FakeIdeProfilerServices()).parse(perfettoFile, traceId) as SystemTraceCpuCapture
+}
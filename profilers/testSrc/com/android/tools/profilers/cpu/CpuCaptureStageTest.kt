@@ -31,6 +31,7 @@ import com.android.tools.profilers.ProfilersTestData
 import com.android.tools.profilers.StudioProfilers
 import com.android.tools.profilers.cpu.analysis.CpuAnalysisTabModel.Type
 import com.android.tools.profilers.cpu.analysis.CpuFullTraceAnalysisModel
+import com.android.tools.profilers.cpu.art.ArtTraceParser
 import com.google.common.truth.Truth.assertThat
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.testFramework.ApplicationRule
@@ -304,6 +305,51 @@ class CpuCaptureStageTest {
     assertThat(threadModelRange.max).isEqualTo(2.0)
   }
 
+  @Test
+  fun partialCaptureIsReplacedByCompleteCapture() {
+    val traceFile = CpuProfilerTestUtils.getTraceFile("art_non_streaming.trace")
+    val stage = CpuCaptureStage.create(profilers, ProfilersTestData.DEFAULT_CONFIG, traceFile, SESSION_ID)
+    val observer = AspectObserver()
+    var stateChanges = 0
+    stage.aspect.addDependency(observer).onChange(CpuCaptureStage.Aspect.STATE) { stateChanges++ }
+    val partialCapture = ArtTraceParser().parse(traceFile, SESSION_ID)
+    val completeCapture = ArtTraceParser().parse(traceFile, SESSION_ID)
+
+    stage.onPartialCaptureParsed(partialCapture)
+    assertThat(stage.state).isEqualTo(CpuCaptureStage.State.ANALYZING)
+    assertThat(stage.isCapturePartial).isTrue()
+    assertThat(stage.capture).isSameAs(partialCapture)
+    assertThat(stage.trackGroupModels).isNotEmpty()
+    assertThat(stage.pinnedAnalysisModels).hasSize(1)
+    val captureMin = stage.minimapModel.captureRange.min
+    stage.minimapModel.rangeSelectionModel.set(captureMin + 1, captureMin + 2)
+
+    stage.onCaptureParseCompleted(completeCapture)
+    assertThat(stage.state).isEqualTo(CpuCaptureStage.State.ANALYZING)
+    assertThat(stage.isCapturePartial).isFalse()
+    assertThat(stage.capture).isSameAs(completeCapture)
+    assertThat(stateChanges).isEqualTo(2)
+    // The models of the partial capture are replaced rather than added to.
+    assertThat(stage.pinnedAnalysisModels).hasSize(1)
+    assertThat(stage.pinnedAnalysisModels[0].getTabModelAt(0).dataSeries).containsExactly(completeCapture)
+    // The part of the trace the user was looking at stays selected.
+    assertThat(stage.minimapModel.rangeSelectionModel.selectionRange.min).isEqualTo(captureMin + 1)
+    assertThat(stage.minimapModel.rangeSelectionModel.selectionRange.max).isEqualTo(captureMin + 2)
+  }
+
+  @Test
+  fun parsingFailureAfterPartialCaptureLeavesStage() {
+    val traceFile = CpuProfilerTestUtils.getTraceFile("art_non_streaming.trace")
+    val stage = CpuCaptureStage.create(profilers, ProfilersTestData.DEFAULT_CONFIG, traceFile, SESSION_ID)
+    profilers.stage = stage
+    stage.onPartialCaptureParsed(ArtTraceParser().parse(traceFile, SESSION_ID))
+    assertThat(stage.isCapturePartial).isTrue()
+
+    stage.onCaptureParseCompleted(null)
+    // The partial capture is not left on screen as if it were the whole trace.
+    assertThat(profilers.stage).isNotSameAs(stage)
+  }
+
   @Test
   fun fullTraceAnalysisAddedByDefault() {
     val stage = CpuCaptureStage.create(profilers, ProfilersTestData.DEFAULT_CONFIG,
@@ -16,15 +16,19 @@
 package com.android.tools.profilers.cpu.art;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.android.tools.profilers.cpu.PartialCaptureReporter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import org.junit.Test;
@@ -97,6 +101,48 @@ public class ArtTraceHandlerTest {
     }
   }
 
+  @Test
+  public void snapshotsAreConsistentAndIndependent() throws IOException {
+    ArtTraceHandler handler = new ArtTraceHandler();
+    List<Map<CpuThreadInfo, CaptureNode>> snapshots = new ArrayList<>();
+    // Take a snapshot after every single method action.
+    handler.setPartialCaptureReporter(new PartialCaptureReporter(capture -> {}, () -> {
+      snapshots.add(handler.snapshotThreadsGraph());
+      return null;
+    }, () -> Long.MAX_VALUE, 0, 1));
+    new VmTraceParser(CpuProfilerTestUtils.getTraceFile("art_non_streaming.trace"), handler).parse();
+
+    assertFalse(snapshots.isEmpty());
+    for (Map<CpuThreadInfo, CaptureNode> snapshot : snapshots) {
+      for (CaptureNode root : snapshot.values()) {
+        root.getDescendantsStream().forEach(node -> {
+          assertTrue(node.getStartGlobal() <= node.getEndGlobal());
+          assertTrue(node.getStartThread() <= node.getEndThread());
+          CaptureNode parent = node.getParent();
+          assertEquals(parent == null ? 0 : parent.getDepth() + 1, node.getDepth());
+          if (parent != null) {
+            assertTrue(parent.getStartGlobal() <= node.getStartGlobal());
+          }
+        });
+      }
+    }
+
+    // The last snapshot has seen every action, and taking snapshots didn't change the graph built at the end.
+    CaptureNode last = snapshots.get(snapshots.size() - 1).values().iterator().next();
+    CaptureNode complete = handler.getThreadsGraph().values().iterator().next();
+    assertEquals(describe(parseCaptureNode()), describe(complete));
+    assertEquals(describe(complete).keySet(), describe(last).keySet());
+    assertTrue(snapshots.stream().flatMap(snapshot -> snapshot.values().stream()).noneMatch(root -> root == complete));
+  }
+
+  private static Map<String, String> describe(CaptureNode root) {
+    Map<String, String> descriptions = new HashMap<>();
+    root.getDescendantsStream().forEach(node -> descriptions.put(
+      node.getData().getId(),
+      String.format("global: %d-%d, thread: %d-%d", node.getStartGlobal(), node.getEndGlobal(), node.getStartThread(), node.getEndThread())));
+    return descriptions;
+  }
+
   private static CaptureNode parseCaptureNode() throws IOException {
     ArtTraceHandler handler = new ArtTraceHandler();
     VmTraceParser parser = new VmTraceParser(CpuProfilerTestUtils.getTraceFile("art_non_streaming.trace"), handler);
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class IntervalIndexTest {
+  @Test
+  fun overlapMatchesSumOfIntersections() {
+    val random = Random(42)
+    // Timestamps far from zero, like the wall clock timestamps of real captures.
+    val origin = 1_700_000_000_000_000L
+    val starts = LongArray(1000) { origin + random.nextLong(0, 10_000) }
+    val ends = LongArray(starts.size) { starts[it] + random.nextLong(-10, 500) }
+    val index = IntervalIndex(starts, ends)
+
+    repeat(1000) {
+      val min = origin + random.nextLong(-100, 10_600) + random.nextDouble()
+      val range = Range(min, min + random.nextLong(0, 5_000))
+      val expected = starts.indices.sumOf { range.getIntersectionLength(starts[it].toDouble(), ends[it].toDouble()) }
+      assertThat(index.overlapLength(range)).isWithin(1e-3).of(expected)
+      assertThat(index.overlaps(range)).isEqualTo(starts.indices.any { starts[it] < range.max && range.min < maxOf(starts[it], ends[it]) })
+    }
+  }
+
+  @Test
+  fun emptyRangesDontOverlap() {
+    val index = IntervalIndex(longArrayOf(0, 10), longArrayOf(20, 30))
+    assertThat(index.overlapLength(Range(15.0, 15.0))).isEqualTo(0.0)
+    assertThat(index.overlapLength(Range())).isEqualTo(0.0)
+  }
+
+  @Test
+  fun rangesOutsideAllIntervals() {
+    val index = IntervalIndex(longArrayOf(10, 20), longArrayOf(15, 30))
+    assertThat(index.overlapLength(Range(0.0, 10.0))).isEqualTo(0.0)
+    assertThat(index.overlapLength(Range(30.0, 40.0))).isEqualTo(0.0)
+    assertThat(index.overlaps(Range(0.0, 10.0))).isFalse()
+    assertThat(index.overlaps(Range(30.0, 40.0))).isFalse()
+    assertThat(index.overlaps(Range(14.0, 16.0))).isTrue()
+    assertThat(index.overlapLength(Range(0.0, 100.0))).isEqualTo(15.0)
+  }
+}
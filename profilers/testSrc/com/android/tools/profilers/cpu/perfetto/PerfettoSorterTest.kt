@@ -15,15 +15,16 @@
  */
 package com.android.tools.profilers.cpu.perfetto
 
-import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketDBSorter
+import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketSorter
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
+import kotlin.random.Random
 
 class PerfettoSorterTest {
 
   @Test
   fun formattedLinesAreReturnedOnNext() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -33,7 +34,7 @@ class PerfettoSorterTest {
 
   @Test
   fun hasNextCanBeCalledMultipleTimes() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some Line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -42,4 +43,50 @@ class PerfettoSorterTest {
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.next()).isEqualTo("Some Line")
   }
+
+  @Test
+  fun emptySorterHasNoLines() {
+    val sorter = PerfettoPacketSorter()
+    sorter.resetForIterator()
+    assertThat(sorter.hasNext()).isFalse()
+    sorter.close()
+  }
+
+  @Test
+  fun linesAreSortedInMemory() {
+    assertSorted(PerfettoPacketSorter(), 1000)
+  }
+
+  @Test
+  fun linesAreSortedInMemoryAfterTheRunGrows() {
+    // More lines than the initial capacity of a run, but fewer than a full run.
+    assertSorted(PerfettoPacketSorter(), 5000)
+  }
+
+  @Test
+  fun linesAreSortedAcrossRunsAfterTheRunGrows() {
+    assertSorted(PerfettoPacketSorter(3000), 10000)
+  }
+
+  @Test
+  fun linesAreSortedAcrossRuns() {
+    // Many runs, the last of which is partial.
+    assertSorted(PerfettoPacketSorter(64), 1000)
+  }
+
+  private fun assertSorted(sorter: PerfettoPacketSorter, lineCount: Int) {
+    val random = Random(1)
+    // Few distinct timestamps, so that many lines share one. Non-ASCII characters make sure lines are read back with their byte length.
+    val lines = (0 until lineCount).map { random.nextLong(100) to "line $it é" }
+    lines.forEach { (timestamp, line) -> sorter.addLine(timestamp, line) }
+    sorter.resetForIterator()
+
+    val sorted = mutableListOf<String>()
+    while (sorter.hasNext()) {
+      sorted.add(sorter.next())
+    }
+    sorter.close()
+    // Lines sharing a timestamp keep the order in which they were added, since sortedBy is stable.
+    assertThat(sorted).containsExactlyElementsIn(lines.sortedBy { it.first }.map { it.second }).inOrder()
+  }
 }
@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu.simpleperf
 import com.android.tools.adtui.model.Range
 import com.android.tools.profiler.proto.SimpleperfReport
 import com.android.tools.profilers.cpu.BaseCpuCapture
+import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils
 import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel
 import com.google.common.collect.Lists
@@ -234,6 +235,21 @@ class SimpleperfTraceParserTest {
     Truth.assertThat(capture.mainThreadId).isEqualTo(appPid)
   }
 
+  @Test
+  @Throws(IOException::class)
+  fun parallelParsingBuildsTheSameTreesAsSequentialParsing() {
+    val sequential = SimpleperfTraceParser(1).parse(myTraceFile, 0)
+    val parallel = SimpleperfTraceParser(4).parse(myTraceFile, 0)
+
+    Truth.assertThat(parallel.threads.map { it.id }).containsExactlyElementsIn(sequential.threads.map { it.id })
+    for (thread in sequential.threads) {
+      Truth.assertWithMessage("thread.id=${thread.id}")
+        .that(describe(parallel.getCaptureNode(thread.id)!!))
+        .containsExactlyElementsIn(describe(sequential.getCaptureNode(thread.id)!!)).inOrder()
+    }
+    Truth.assertThat(parallel.tags).containsExactlyElementsIn(sequential.tags).inOrder()
+  }
+
   @Test
   @Throws(IOException::class)
   fun invalidFileShouldFailDueToMagicNumberMismatch() {
@@ -329,4 +345,8 @@ class SimpleperfTraceParserTest {
 
     Truth.assertThat(sortedTags).isEqualTo(listOf("/a/b/c", "/c/d/e", "[java]", "/a/*"))
   }
+
+  private fun describe(root: CaptureNode) = root.descendantsStream.map {
+    "${it.depth} ${it.data.fullName} ${it.startGlobal}-${it.endGlobal} ${it.startThread}-${it.endThread}"
+  }.toList()
 }
@@ -29,66 +29,38 @@ class SystemTraceCpuCaptureBuilderTest {
 
   @Test
   fun `buildThreadStateData - termination state present`() {
-    val sleepingThread = ThreadModel(1, 1, "ENDS_WITH_SLEEPING_STATE_THREAD",
-                                     listOf(),
-                                     listOf(SchedulingEventModel(ThreadState.SLEEPING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1)))
-    val runningThread = ThreadModel(2, 2, "ENDS_WITH_RUNNING_STATE_THREAD",
-                                    listOf(),
-                                    listOf(SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1)))
-    val waitingThread = ThreadModel(3, 3, "ENDS_WITH_WAITING_STATE_THREAD",
-                                    listOf(),
-                                    listOf(SchedulingEventModel(ThreadState.WAITING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1)))
-    val deadThread = ThreadModel(4, 4, "ENDS_WITH_DEAD_STATE_THREAD",
-                                    listOf(),
-                                    listOf(SchedulingEventModel(ThreadState.DEAD_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1)))
-    val unknownThread = ThreadModel(5, 5, "ENDS_WITH_UNKNOWN_STATE_THREAD",
-                                 listOf(),
-                                 listOf(SchedulingEventModel(ThreadState.UNKNOWN, 0L, 5L, 5L, 5L, 1, 1, 1)))
-
-    val processes = mapOf(1 to ProcessModel(
-      1, "Process",
-      mapOf(1 to sleepingThread, 2 to runningThread, 3 to waitingThread, 4 to deadThread, 5 to unknownThread),
-      mapOf()
-    ))
-
-    val model = TestModel(processes, mapOf(), listOf(), listOf(), listOf())
+    val threads = listOf("SLEEPING", "RUNNING", "WAITING", "DEAD", "UNKNOWN").mapIndexed { i, state ->
+      i + 1 to ThreadModel(i + 1, i + 1, "ENDS_WITH_${state}_STATE_THREAD", listOf())
+    }.toMap()
+    val scheduling = threadScheduling(
+      SchedulingEventModel(ThreadState.SLEEPING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 5L, 5L, 5L, 1, 2, 1),
+      SchedulingEventModel(ThreadState.WAITING_CAPTURED, 0L, 5L, 5L, 5L, 1, 3, 1),
+      SchedulingEventModel(ThreadState.DEAD_CAPTURED, 0L, 5L, 5L, 5L, 1, 4, 1),
+      SchedulingEventModel(ThreadState.UNKNOWN, 0L, 5L, 5L, 5L, 1, 5, 1))
+
+    val processes = mapOf(1 to ProcessModel(1, "Process", threads, mapOf()))
+
+    val model = TestModel(processes, mapOf(), listOf(), listOf(), listOf(), threadScheduling = scheduling)
     val capture = SystemTraceCpuCaptureBuilder(model).build(0L, 1, Range(0.0, 5.0))
     val systemTraceData = capture.systemTraceData
 
     // Check if the fake/termination NO_ACTIVITY thread status is added successfully
     // and that it uses the original last thread status' end timestamp as its start.
-    assertThat(systemTraceData.getThreadStatesForThread(1).size).isEqualTo(2)
-    assertThat(systemTraceData.getThreadStatesForThread(1).last().value).isEqualTo(ThreadState.NO_ACTIVITY)
-    assertThat(systemTraceData.getThreadStatesForThread(1).last().x).isEqualTo(5)
-
-    assertThat(systemTraceData.getThreadStatesForThread(2).size).isEqualTo(2)
-    assertThat(systemTraceData.getThreadStatesForThread(2).last().value).isEqualTo(ThreadState.NO_ACTIVITY)
-    assertThat(systemTraceData.getThreadStatesForThread(2).last().x).isEqualTo(5)
-
-    assertThat(systemTraceData.getThreadStatesForThread(3).size).isEqualTo(2)
-    assertThat(systemTraceData.getThreadStatesForThread(3).last().value).isEqualTo(ThreadState.NO_ACTIVITY)
-    assertThat(systemTraceData.getThreadStatesForThread(3).last().x).isEqualTo(5)
-
-    assertThat(systemTraceData.getThreadStatesForThread(4).size).isEqualTo(2)
-    assertThat(systemTraceData.getThreadStatesForThread(4).last().value).isEqualTo(ThreadState.NO_ACTIVITY)
-    assertThat(systemTraceData.getThreadStatesForThread(4).last().x).isEqualTo(5)
-
-    assertThat(systemTraceData.getThreadStatesForThread(5).size).isEqualTo(2)
-    assertThat(systemTraceData.getThreadStatesForThread(5).last().value).isEqualTo(ThreadState.NO_ACTIVITY)
-    assertThat(systemTraceData.getThreadStatesForThread(5).last().x).isEqualTo(5)
+    for (threadId in 1..5) {
+      assertThat(systemTraceData.getThreadStatesForThread(threadId).size).isEqualTo(2)
+      assertThat(systemTraceData.getThreadStatesForThread(threadId).last().value).isEqualTo(ThreadState.NO_ACTIVITY)
+      assertThat(systemTraceData.getThreadStatesForThread(threadId).last().x).isEqualTo(5)
+    }
   }
 
   @Test
   fun `buildThreadStateData - termination state not present`() {
-    val noActivityThread = ThreadModel(1, 1, "ENDS_WITH_NO_ACTIVITY_STATE_THREAD",
-                                    listOf(),
-                                    listOf(
-                                      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1),
-                                      SchedulingEventModel(ThreadState.NO_ACTIVITY, 0L, 5L, 5L, 5L, 1, 1, 1),
-                                    ))
-    val emptyThread = ThreadModel(2, 2, "NO_STATE_THREAD",
-                                  listOf(),
-                                  listOf())
+    val noActivityThread = ThreadModel(1, 1, "ENDS_WITH_NO_ACTIVITY_STATE_THREAD", listOf())
+    val emptyThread = ThreadModel(2, 2, "NO_STATE_THREAD", listOf())
+    val scheduling = threadScheduling(
+      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.NO_ACTIVITY, 0L, 5L, 5L, 5L, 1, 1, 1))
 
     val processes = mapOf(1 to ProcessModel(
       1, "Process",
@@ -96,7 +68,7 @@ class SystemTraceCpuCaptureBuilderTest {
       mapOf()
     ))
 
-    val model = TestModel(processes, mapOf(), listOf(), listOf(), listOf())
+    val model = TestModel(processes, mapOf(), listOf(), listOf(), listOf(), threadScheduling = scheduling)
     val capture = SystemTraceCpuCaptureBuilder(model).build(0L, 1, Range(0.0, 5.0))
     val systemTraceData = capture.systemTraceData
 
@@ -110,17 +82,49 @@ class SystemTraceCpuCaptureBuilderTest {
     assertThat(systemTraceData.getThreadStatesForThread(2).size).isEqualTo(0)
   }
 
+  @Test
+  fun `buildThreadStateData - states are built for the range asked for`() {
+    val thread = ThreadModel(1, 1, "Thread", listOf())
+    val scheduling = threadScheduling(
+      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 10L, 10L, 10L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.SLEEPING_CAPTURED, 10L, 20L, 10L, 10L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.SLEEPING_CAPTURED, 20L, 30L, 10L, 10L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 30L, 40L, 10L, 10L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.RUNNABLE_CAPTURED, 40L, 50L, 10L, 10L, 1, 1, 1),
+      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 50L, 60L, 10L, 10L, 1, 1, 1))
+    val processes = mapOf(1 to ProcessModel(1, "Process", mapOf(1 to thread), mapOf()))
+    val model = TestModel(processes, mapOf(), listOf(), listOf(), listOf(), threadScheduling = scheduling)
+    val systemTraceData = SystemTraceCpuCaptureBuilder(model).build(0L, 1, Range(0.0, 60.0)).systemTraceData
+    val series = systemTraceData.getThreadStateDataSeries(1)
+    fun statesIn(min: Double, max: Double) = series.getDataForRange(Range(min, max)).map { it.x to it.value }
+
+    // Consecutive events in the same state make a single state.
+    assertThat(statesIn(0.0, 60.0)).containsExactly(
+      0L to ThreadState.RUNNING_CAPTURED,
+      10L to ThreadState.SLEEPING_CAPTURED,
+      30L to ThreadState.RUNNING_CAPTURED,
+      40L to ThreadState.RUNNABLE_CAPTURED,
+      50L to ThreadState.RUNNING_CAPTURED,
+      60L to ThreadState.NO_ACTIVITY).inOrder()
+    // A window has the state the thread is in when it starts, even if that state began earlier, and the first state after it ends.
+    assertThat(statesIn(25.0, 35.0)).containsExactly(
+      10L to ThreadState.SLEEPING_CAPTURED,
+      30L to ThreadState.RUNNING_CAPTURED,
+      40L to ThreadState.RUNNABLE_CAPTURED).inOrder()
+    // The termination state is only there for windows that reach the last state.
+    assertThat(statesIn(55.0, 100.0)).containsExactly(
+      50L to ThreadState.RUNNING_CAPTURED,
+      60L to ThreadState.NO_ACTIVITY).inOrder()
+    assertThat(statesIn(35.0, 20.0)).isEmpty()
+
+    // Threads outside the main process have no states.
+    assertThat(systemTraceData.getThreadStatesForThread(2)).isEmpty()
+  }
+
   @Test
   fun `buildThreadStateData - main thread name not present`() {
-    val mainThread = ThreadModel(1, 1, "",
-                                 listOf(),
-                                 listOf(
-                                   SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 5L, 5L, 5L, 1, 1, 1),
-                                   SchedulingEventModel(ThreadState.NO_ACTIVITY, 0L, 5L, 5L, 5L, 1, 1, 1),
-                                 ))
-    val nonMainThread = ThreadModel(2, 2, "NON_MAIN_THREAD",
-                                    listOf(),
-                                    listOf())
+    val mainThread = ThreadModel(1, 1, "", listOf())
+    val nonMainThread = ThreadModel(2, 2, "NON_MAIN_THREAD", listOf())
 
     val processes = mapOf(1 to ProcessModel(
       1, "Main Process",
@@ -141,11 +145,11 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf()))
 
     val danglingThreads = mapOf(
-      33 to ThreadModel(33, 0, "DanglingThread", listOf(), listOf()))
+      33 to ThreadModel(33, 0, "DanglingThread", listOf()))
 
     val cpuCores = listOf(
       CpuCoreModel(
@@ -181,7 +185,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf()))
 
     val cpuCores = listOf(
@@ -213,7 +217,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf()))
 
     val cpuCores = listOf(
@@ -254,7 +258,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf(
           // Will get these:
           "mem.rss" to CounterModel("rss", sortedMapOf(1L to 5.0, 4L to 6.0, 7L to 4.0)),
@@ -290,7 +294,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf()))
 
     // The rails 'power.rails.ddr.a' & 'power.rails.ddr.c' are used as they are known to be grouped under "Memory".
@@ -338,7 +342,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf()))
 
     // The rails 'power.rails.ddr.a' & 'power.rails.ddr.c' are used as they are known to be grouped under "Memory".
@@ -386,7 +390,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf("QueuedBuffer - ViewRootImpl[MainActivity]BLAST#0" to CounterModel("PendingBuffer - ViewRootImpl[MainActivity]BLAST#0",
                                                                                  sortedMapOf(1L to 1.0, 4L to 2.0, 7L to 3.0)))))
     val model = TestModel(processes, emptyMap(), listOf(), listOf(), listOf())
@@ -406,7 +410,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val processes = mapOf(
       1 to ProcessModel(
         1, "Process",
-        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf())),
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf())),
         mapOf()))
 
     val model = TestModel(processes, emptyMap(), listOf(), listOf(), listOf())
@@ -421,15 +425,12 @@ class SystemTraceCpuCaptureBuilderTest {
   fun `trace gives right render events for frame`() {
     val mainThread = ThreadModel(1, 1, "main",
                                  listOf(TraceEventModel("${SystemTraceCpuCapture.MAIN_THREAD_EVENT_PREFIX} 42", 0, 500, 500, listOf()),
-                                 TraceEventModel("${SystemTraceCpuCapture.MAIN_THREAD_EVENT_PREFIX} 43", 5000, 5500, 500, listOf())),
-                                 listOf())
+                                 TraceEventModel("${SystemTraceCpuCapture.MAIN_THREAD_EVENT_PREFIX} 43", 5000, 5500, 500, listOf())))
     val renderThread = ThreadModel(2, 2, CpuThreadInfo.RENDER_THREAD_NAME,
                                    listOf(TraceEventModel("${SystemTraceCpuCapture.RENDER_THREAD_EVENT_PREFIX} 42", 500, 1500, 1000, listOf()),
-                                          TraceEventModel("${SystemTraceCpuCapture.RENDER_THREAD_EVENT_PREFIX} 43", 5500, 6500, 1000, listOf())),
-                                   listOf())
+                                          TraceEventModel("${SystemTraceCpuCapture.RENDER_THREAD_EVENT_PREFIX} 43", 5500, 6500, 1000, listOf())))
     val gpuThread = ThreadModel(3, 3, CpuThreadInfo.GPU_THREAD_NAME,
-                                listOf(TraceEventModel("${SystemTraceCpuCapture.GPU_THREAD_EVENT_PREFIX} 123", 1500, 2000, 500, listOf())),
-                                listOf())
+                                listOf(TraceEventModel("${SystemTraceCpuCapture.GPU_THREAD_EVENT_PREFIX} 123", 1500, 2000, 500, listOf())))
     val processes = mapOf(1 to ProcessModel(
       1, "Process",
       mapOf(1 to mainThread, 2 to renderThread, 3 to gpuThread),
@@ -460,19 +461,25 @@ class SystemTraceCpuCaptureBuilderTest {
     }
   }
 
+  private fun threadScheduling(vararg events: SchedulingEventModel) = ThreadSchedulingTable.Builder().apply {
+    events.forEach { add(it.threadId, it.state, it.startTimestampUs, it.endTimestampUs) }
+  }.build()
+
   class TestModel(
     private val processes: Map<Int, ProcessModel>,
     private val danglingThreads: Map<Int, ThreadModel>,
     private val cpuCores: List<CpuCoreModel>,
     private val powerRails: List<CounterModel>,
     private val batteryDrain: List<CounterModel>,
-    private val timelineEvents: List<AndroidFrameTimelineEvent> = listOf()) : SystemTraceModelAdapter {
+    private val timelineEvents: List<AndroidFrameTimelineEvent> = listOf(),
+    private val threadScheduling: ThreadSchedulingTable = ThreadSchedulingTable.EMPTY) : SystemTraceModelAdapter {
 
     override fun getCaptureStartTimestampUs() = 0L
     override fun getCaptureEndTimestampUs() = 200L
     override fun getProcessById(id: Int) = processes[id]
     override fun getProcesses(): List<ProcessModel> = processes.values.sortedBy { it.id }
     override fun getDanglingThread(tid: Int): ThreadModel? = danglingThreads[tid]
+    override fun getThreadStates(tid: Int, startUs: Long, endUs: Long) = threadScheduling.getThreadStates(tid, startUs, endUs)
     override fun getCpuCores(): List<CpuCoreModel> = cpuCores
 
     override fun getSystemTraceTechnology() = TraceType.UNSPECIFIED
@@ -33,8 +33,7 @@ class SystemTraceFrameManagerTest {
                                         createEvent(15, 35, "Choreographer#doFrame"), // Bad frame
                                         createEvent(40, 60, "mainLoop#Compute"), // Not a frame event
                                         createEvent(65, 82, "Choreographer#doFrame") // Good frame
-                                      ),
-                                      listOf())
+                                      ))
     val renderThreadModel = ThreadModel(TEST_RENDER_ID, TEST_PID, CpuThreadInfo.RENDER_THREAD_NAME,
                                         listOf(
                                           createEvent(4, 7, "DrawFrame"), // Good frame
@@ -44,8 +43,7 @@ class SystemTraceFrameManagerTest {
                                           createEvent(40, 57, "queueBuffer"), // Good frame
                                           createEvent(60, 80, "waitIO"), // Not a frame event
                                           createEvent(81, 100, "queueBuffer") // Bad frame
-                                        ),
-                                        listOf())
+                                        ))
     val processModel = ProcessModel(TEST_PID, "Test",
                                     mapOf(TEST_PID to mainThreadModel, TEST_RENDER_ID to renderThreadModel),
                                     emptyMap())
@@ -93,8 +91,7 @@ class SystemTraceFrameManagerTest {
                                    createEvent(7, 11, "Choreographer#doFrame"),
                                    createEvent(20, 22, "Choreographer#doFrame"),
                                    createEvent(30, 50, "Choreographer#doFrame")
-                                 ),
-                                 listOf())
+                                 ))
     val renderThread = ThreadModel(TEST_RENDER_ID, TEST_PID, CpuThreadInfo.RENDER_THREAD_NAME,
                                    listOf(
                                      createEvent(4, 7, "DrawFrame"),
@@ -102,8 +99,7 @@ class SystemTraceFrameManagerTest {
                                      createEvent(15, 17, "queueBuffer"),
                                      createEvent(18, 20, "DrawFrame"),
                                      createEvent(40, 55, "queueBuffer")
-                                   ),
-                                   listOf())
+                                   ))
 
     val process = ProcessModel(TEST_PID, "Test",
                                mapOf(TEST_PID to mainThread, TEST_RENDER_ID to renderThread),
@@ -16,6 +16,7 @@
 package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.SeriesData
+import com.android.tools.profilers.cpu.ThreadState
 import com.android.tools.profilers.cpu.systemtrace.SurfaceflingerEvent.Type
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
@@ -29,8 +30,7 @@ class SystemTraceSurfaceflingerManagerTest {
                                                   listOf(
                                                     createEvent(3000, 5000),
                                                     createEvent(7000, 15000),
-                                                    createEvent(15000, 20000)),
-                                                  listOf())
+                                                    createEvent(15000, 20000)))
 
     private val VSYNC_COUNTER = CounterModel("VSYNC-app",
                                              sortedMapOf(
@@ -172,6 +172,8 @@ class SystemTraceSurfaceflingerManagerTest {
     override fun getCaptureEndTimestampUs() = throw UnsupportedOperationException("Not Implemented For Test")
     override fun getProcessById(id: Int) = throw UnsupportedOperationException("Not Implemented For Test")
     override fun getDanglingThread(tid: Int): ThreadModel = throw UnsupportedOperationException("Not Implemented For Test")
+    override fun getThreadStates(tid: Int, startUs: Long, endUs: Long): List<SeriesData<ThreadState>> =
+      throw UnsupportedOperationException("Not Implemented For Test")
     override fun getCpuCores(): List<CpuCoreModel> = throw UnsupportedOperationException("Not Implemented For Test")
     override fun getSystemTraceTechnology() = throw UnsupportedOperationException("Not Implemented For Test")
     override fun getPowerRails(): List<CounterModel> = throw UnsupportedOperationException("Not Implemented For Test")
@@ -48,6 +48,7 @@ public final class FakeCaptureObject implements CaptureObject {
   private final boolean myIsError;
   private final String myInfoMessage;
   private final boolean myCanSafelyLoad;
+  private double myLoadingProgress;
 
   private FakeCaptureObject(@NotNull String captureName,
                             @NotNull List<ClassifierAttribute> classifierAttributes,
@@ -173,6 +174,15 @@ public final class FakeCaptureObject implements CaptureObject {
     return myIsDoneLoading;
   }
 
+  @Override
+  public double getLoadingProgress() {
+    return myLoadingProgress;
+  }
+
+  public void setLoadingProgress(double loadingProgress) {
+    myLoadingProgress = loadingProgress;
+  }
+
   @Override
   public boolean isError() {
     return myIsError;
@@ -28,6 +28,7 @@ import com.android.tools.idea.protobuf.ByteString;
 import com.android.tools.idea.transport.faketransport.FakeGrpcChannel;
 import com.android.tools.idea.transport.faketransport.FakeTransportService;
 import com.android.tools.perflib.heap.SnapshotBuilder;
+import com.android.tools.perflib.heap.io.HprofBuffer;
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo;
 import com.android.tools.profilers.FakeIdeProfilerServices;
 import com.android.tools.profilers.ProfilerClient;
@@ -42,8 +43,10 @@ import com.android.tools.profilers.memory.adapters.classifiers.HeapSet;
 import com.android.tools.profilers.memory.adapters.instancefilters.ActivityFragmentLeakInstanceFilter;
 import com.android.tools.profilers.memory.adapters.instancefilters.CaptureObjectInstanceFilter;
 import com.google.common.truth.Truth;
+import java.io.File;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Collection;
@@ -182,6 +185,64 @@ public class HeapDumpCaptureObjectTest {
     assertNotNull(defaultHeap);
   }
 
+  @Test
+  public void testDumpIsParsedFromTemporaryFile() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA, dumpInfo,
+                                null,
+                                myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+    byte[] buffer = new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer();
+    myTransportService.addFile(Long.toString(3), ByteString.copyFrom(buffer));
+
+    // Checking whether the dump fits doesn't copy it.
+    assertTrue(capture.canSafelyLoad());
+    assertNull(capture.getDumpFile());
+
+    assertTrue(capture.load(null, null));
+    assertFalse(capture.isError());
+    File dumpFile = capture.getDumpFile();
+    assertNotNull(dumpFile);
+    Truth.assertThat(Files.readAllBytes(dumpFile.toPath())).isEqualTo(buffer);
+    // Once copied, the dump is measured from the file.
+    assertTrue(capture.canSafelyLoad());
+    assertEquals(dumpFile, capture.getDumpFile());
+
+    capture.unload();
+    assertFalse(dumpFile.exists());
+  }
+
+  @Test
+  public void testUnloadDuringLoadReleasesDumpAfterLoad() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    File[] dumpFileDuringLoad = new File[1];
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA, dumpInfo,
+                                null,
+                                myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices()) {
+        @Override
+        public void load(@NotNull HprofBuffer buffer) {
+          // The capture stops being displayed while the dump is still being parsed.
+          unload();
+          dumpFileDuringLoad[0] = getDumpFile();
+          super.load(buffer);
+        }
+      };
+    myTransportService.addFile(Long.toString(3), ByteString.copyFrom(new SnapshotBuilder(2, 0, 0).addRoot(1).getByteBuffer()));
+
+    assertFalse(capture.load(null, null));
+    // The mapping stays valid for the load in progress, and is released once it is done.
+    assertNotNull(dumpFileDuringLoad[0]);
+    assertFalse(dumpFileDuringLoad[0].exists());
+    assertNull(capture.getDumpFile());
+    assertEquals(0, capture.getHeapSets().size());
+    // An unloaded capture is not loaded again.
+    assertFalse(capture.load(null, null));
+    assertNull(capture.getDumpFile());
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
@@ -41,6 +41,7 @@ import com.android.tools.profilers.memory.adapters.classifiers.ClassifierSet;
 import com.android.tools.profilers.memory.adapters.classifiers.HeapSet;
 import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -49,6 +50,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Rule;
@@ -674,6 +676,46 @@ public class LiveAllocationCaptureObjectTest {
       verifyClassifierResult(heapSet, expected_0_to_4, 0);
     }
 
+    @Test
+    public void testNativeFramesOfQueryAreSymbolizedInOneBatch() throws Exception {
+      List<List<Memory.NativeCallStack.NativeFrame>> batches = new ArrayList<>();
+      myIdeProfilerServices.setNativeFrameSymbolizer(new NativeFrameSymbolizer() {
+        @NotNull
+        @Override
+        public Memory.NativeCallStack.NativeFrame symbolize(String abi, Memory.NativeCallStack.NativeFrame unsymbolizedFrame) {
+          return FAKE_SYMBOLIZER.symbolize(abi, unsymbolizedFrame);
+        }
+
+        @NotNull
+        @Override
+        public List<Memory.NativeCallStack.NativeFrame> symbolizeAll(String abi,
+                                                                      @NotNull List<Memory.NativeCallStack.NativeFrame> unsymbolizedFrames) {
+          batches.add(unsymbolizedFrames);
+          return NativeFrameSymbolizer.super.symbolizeAll(abi, unsymbolizedFrames);
+        }
+
+        @Override
+        public void stop() {
+        }
+      });
+      LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myProfilerClient,
+                                                                            ProfilersTestData.SESSION_DATA,
+                                                                            CAPTURE_START_TIME,
+                                                                            LOAD_SERVICE,
+                                                                            myStage);
+      HeapSet heapSet = capture.getHeapSet(JNI_HEAP_ID);
+      heapSet.setClassGrouping(ClassGrouping.ARRANGE_BY_CALLSTACK);
+
+      Range loadRange = new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(4));
+      capture.load(loadRange, LOAD_JOINER);
+
+      // The frames of every reference found by the query are symbolized together, once each, before the references are grouped.
+      assertThat(batches).hasSize(1);
+      assertThat(batches.get(0).stream().map(Memory.NativeCallStack.NativeFrame::getAddress).collect(Collectors.toList()))
+        .containsNoDuplicates();
+      assertThat(heapSet.getChildrenClassifierSets()).isNotEmpty();
+      assertThat(batches).hasSize(1);
+    }
 
     @Test
     public void testSelectionWithJaveMethodFilter() throws Exception {
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.android.tools.profiler.proto.Memory.AllocationEvent
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class LiveAllocationStoreTest {
+  @Test
+  fun `alive instances match a replay of the events`() {
+    // Enough instances for several blocks, each freed after a duration that depends on its tag, and some never freed.
+    val events = mutableListOf<AllocationEvent>()
+    for (tag in 0 until 2000) {
+      events.add(alloc(tag, tag % 7, tag * 10L))
+      if (tag % 5 != 0) {
+        events.add(free(tag, tag * 10L + (tag % 13 + 1) * 100L))
+      }
+    }
+    val store = LiveAllocationStore()
+    // Ingested in two parts, out of order within each part.
+    store.ingest(events.shuffled(), 10_000)
+    store.ingest(events.shuffled(), 30_000)
+
+    for (timeNs in listOf(0L, 5L, 1_000L, 9_999L, 10_000L, 15_005L, 20_000L, 29_999L)) {
+      val expected = events.filter { it.timestamp < timeNs }.sortedBy { it.timestamp }.fold(mutableSetOf<Int>()) { alive, event ->
+        alive.apply { if (event.hasAllocData()) add(event.allocData.tag) else remove(event.freeData.tag) }
+      }
+      val actual = mutableListOf<Int>()
+      store.forEachAliveAt(timeNs) { actual.add(store.getTag(it)) }
+      assertThat(actual).containsExactlyElementsIn(expected)
+      for (classTag in 0 until 7) {
+        assertThat(store.getAliveCount(0, classTag, timeNs)).isEqualTo(expected.count { it % 7 == classTag })
+      }
+    }
+  }
+
+  @Test
+  fun `allocations and frees within a range`() {
+    val store = LiveAllocationStore()
+    store.ingest(listOf(alloc(1, 1, 10), alloc(2, 2, 20), free(1, 30), alloc(3, 1, 40), free(3, 50), free(2, 60)), 100)
+
+    val allocated = mutableListOf<Int>()
+    val freed = mutableListOf<Int>()
+    store.forEachAllocatedIn(20, 50) { allocated.add(store.getTag(it)) }
+    store.forEachFreedIn(20, 50) { freed.add(store.getTag(it)) }
+    assertThat(allocated).containsExactly(2, 3).inOrder()
+    assertThat(freed).containsExactly(1)
+
+    assertThat(store.getClassDelta(0, 1, 0, 100)).isEqualTo(LiveAllocationStore.ClassDelta(2, 2))
+    assertThat(store.getClassDelta(0, 1, 20, 50)).isEqualTo(LiveAllocationStore.ClassDelta(1, 1))
+    assertThat(store.getClassDelta(0, 3, 0, 100)).isEqualTo(LiveAllocationStore.ClassDelta(0, 0))
+    assertThat(store.getClassDelta(1, 1, 0, 100)).isEqualTo(LiveAllocationStore.ClassDelta(0, 0))
+    // Instance 1 is alive at the start of the range, and instances 2 and 3 are allocated within it.
+    assertThat(store.getInstanceCount(0, 20, 50)).isEqualTo(3)
+    assertThat(store.getInstanceCount(1, 20, 50)).isEqualTo(0)
+  }
+
+  @Test
+  fun `events are only ingested once`() {
+    val store = LiveAllocationStore()
+    val events = listOf(alloc(1, 1, 10), alloc(2, 1, 20), free(99, 25), alloc(3, 1, 30))
+    store.ingest(events, 25)
+    assertThat(store.size).isEqualTo(2)
+    assertThat(store.ingestedUntilNs).isEqualTo(25)
+
+    // Going back doesn't add anything, and events before the ingested time are ignored.
+    store.ingest(events, 20)
+    store.ingest(events, 40)
+    assertThat(store.size).isEqualTo(3)
+    assertThat(store.getAllocTime(2)).isEqualTo(30)
+    assertThat(store.getFreeTime(2)).isEqualTo(Long.MAX_VALUE)
+  }
+
+  private fun alloc(tag: Int, classTag: Int, timestamp: Long) = AllocationEvent.newBuilder()
+    .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(tag).setClassTag(classTag))
+    .setTimestamp(timestamp)
+    .build()
+
+  private fun free(tag: Int, timestamp: Long) = AllocationEvent.newBuilder()
+    .setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(tag))
+    .setTimestamp(timestamp)
+    .build()
+}
@@ -21,6 +21,8 @@ import com.android.tools.profilers.memory.adapters.InstanceObject
 import com.android.tools.profilers.memory.adapters.MemoryObject
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
 
 class AllHeapSetTest {
   @Test
@@ -55,4 +57,25 @@ class AllHeapSetTest {
     assertHeapSumsUp({it.totalNativeSize}, {it.nativeSize.validOrZero()})
     assertHeapSumsUp({it.totalRetainedSize}, {it.retainedSize.validOrZero()})
   }
-}
\ No newline at end of file
+
+  @Test
+  fun `bulk add builds the same tree as adding one instance at a time`() {
+    val capture = FakeCaptureObject.Builder().build()
+    fun makeAllHeap() = AllHeapSet(capture, arrayOf(HeapSet(capture, "heap1", 1), HeapSet(capture, "heap2", 2)))
+      .also { it.clearClassifierSets() }
+    val insts = (1..200).map {
+      FakeInstanceObject.Builder(capture, (it % 7).toLong(), "class${it % 7}").setHeapId(1 + it % 2).setShallowSize(it).build()
+    }
+
+    val sequential = makeAllHeap().also { heap -> insts.forEach { heap.addDeltaInstanceObject(it) } }
+    val pool = ForkJoinPool(4)
+    val addedCount = AtomicInteger()
+    val bulk = makeAllHeap().also { it.addDeltaInstanceObjects(insts, pool) { count -> addedCount.addAndGet(count) } }
+    pool.shutdown()
+
+    fun ClassifierSet.describe(): List<Any> =
+      listOf(name, deltaAllocationCount, totalShallowSize, instancesStream.toList()) + childrenClassifierSets.map { it.describe() }
+    assertThat(bulk.describe()).isEqualTo(sequential.describe())
+    assertThat(addedCount.get()).isEqualTo(insts.size)
+  }
+}
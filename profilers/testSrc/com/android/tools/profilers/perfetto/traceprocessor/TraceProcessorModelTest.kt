@@ -130,21 +130,29 @@ class TraceProcessorModelTest {
     modelBuilder.addSchedulingEvents(schedProtoBuilder.build())
     val model = modelBuilder.build()
 
-    val process = model.getProcessById(1)!!
-    val thread1 = process.threadById[1] ?: error("Thread 1 should be present")
-    assertThat(thread1.schedulingEvents).containsExactly(
-      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 1, 4, 3, 3, 1, 1, 1),
-      SchedulingEventModel(ThreadState.SLEEPING_CAPTURED, 4, 7, 3, 3, 1, 1, 1),
-      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 7, 9, 2, 2, 1, 1, 1),
-      SchedulingEventModel(ThreadState.RUNNABLE_CAPTURED, 9, 11, 2, 2, 1, 1, 1),
-      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 11, 13, 2, 2, 1, 1, 2))
+    fun threadStates(tid: Int, startUs: Long, endUs: Long) = model.getThreadStates(tid, startUs, endUs).map { it.x to it.value }
+    assertThat(threadStates(1, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(
+      1L to ThreadState.RUNNING_CAPTURED,
+      4L to ThreadState.SLEEPING_CAPTURED,
+      7L to ThreadState.RUNNING_CAPTURED,
+      9L to ThreadState.RUNNABLE_CAPTURED,
+      11L to ThreadState.RUNNING_CAPTURED,
+      13L to ThreadState.NO_ACTIVITY)
       .inOrder()
-    val thread2 = process.threadById[2] ?: error("Thread 2 should be present")
-    assertThat(thread2.schedulingEvents).containsExactly(
-      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 2, 6, 4, 4, 1, 2, 2),
-      SchedulingEventModel(ThreadState.RUNNABLE_CAPTURED, 6, 10, 4, 4, 1, 2, 2),
-      SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 10, 11, 1, 1, 1, 2, 1))
+    assertThat(threadStates(2, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(
+      2L to ThreadState.RUNNING_CAPTURED,
+      6L to ThreadState.RUNNABLE_CAPTURED,
+      10L to ThreadState.RUNNING_CAPTURED,
+      11L to ThreadState.NO_ACTIVITY)
+      .inOrder()
+
+    // A window has the state the thread was in at its start and the first state after its end.
+    assertThat(threadStates(1, 5, 8)).containsExactly(
+      4L to ThreadState.SLEEPING_CAPTURED,
+      7L to ThreadState.RUNNING_CAPTURED,
+      9L to ThreadState.RUNNABLE_CAPTURED)
       .inOrder()
+    assertThat(threadStates(3, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty()
 
     val cpus = model.getCpuCores()
     assertThat(cpus).hasSize(4)
@@ -96,14 +96,14 @@ class DataSeriesPerformanceTest {
     val studioProfilers = StudioProfilers(client, FakeIdeProfilerServices(), timer)
     studioProfilers.setPreferredProcess(FAKE_DEVICE_NAME, FAKE_PROCESS_NAME, null)
     val dataSeriesToTest = mapOf(Pair("Cpu-Usage",
-                                      CpuUsage.buildDataSeries(client.transportClient, session, null)),
+                                      CpuUsage.buildDataSeries(client, session, null)),
                                  Pair("Cpu-Thread-Count",
                                       CpuThreadCountDataSeries(client.transportClient, session.streamId, session.pid)),
                                  Pair("Cpu-Thread-State",
                                       CpuThreadStateDataSeries(client.transportClient, session.streamId, session.pid, 1, null)),
                                  Pair("Event-Activities", LifecycleEventDataSeries(studioProfilers, false)),
                                  Pair("Event-Interactions", UserEventDataSeries(studioProfilers)),
-                                 Pair("Energy-Usage", EnergyUsage.buildDataSeries(client.transportClient, session)),
+                                 Pair("Energy-Usage", EnergyUsage.buildDataSeries(client, session)),
                                  Pair("Memory-Allocation",
                                       AllocStatsDataSeries(studioProfilers) { sample -> sample.javaAllocationCount.toLong() }),
                                  Pair("Memory-LiveAllocation", TestLiveAllocationSeries(studioProfilers, session))
@@ -22,6 +22,8 @@ import com.android.annotations.concurrency.GuardedBy;
 import com.android.annotations.concurrency.Slow;
 import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.rendering.api.ResourceReference;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.ide.common.resources.ResourceRepositoryUtil;
 import com.android.ide.common.resources.ResourceResolver;
@@ -33,15 +35,18 @@ import com.android.resources.ResourceType;
 import com.android.resources.ResourceUrl;
 import com.android.sdklib.IAndroidTarget;
 import com.android.tools.res.CacheableResourceRepository;
+import com.android.tools.res.ResourceChanges;
 import com.android.tools.res.ResourceRepositoryManager;
 import com.android.tools.sdk.AndroidPlatform;
 import com.android.tools.sdk.AndroidTargetData;
 import com.android.tools.sdk.CompatibilityRenderTarget;
 import com.android.utils.SparseArray;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Table;
 import com.intellij.openapi.application.ReadAction;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -79,6 +84,13 @@ public class ResourceResolverCache {
   @GuardedBy("myLock")
   public final Map<String, Map<ResourceType, ResourceValueMap>> myFrameworkResourceMap = new HashMap<>();
 
+  /**
+   * Changes of the app resources not yet applied to the configured app resources in {@link #myAppResourceMap}, keyed by the same
+   * full configuration.
+   */
+  @GuardedBy("myLock")
+  private final Map<String, ResourceChanges> myPendingAppResourceChanges = new HashMap<>();
+
   /** The generation timestamp of our most recently cached app resources, used to invalidate on edits. */
   @GuardedBy("myLock")
   private long myCachedGeneration;
@@ -110,14 +122,25 @@ public class ResourceResolverCache {
     }
     CacheableResourceRepository resources = repositoryManager.getAppResources();
     synchronized (myLock) {
-      if (myCachedGeneration != resources.getModificationCount()) {
-        myResolverMap.clear();
-        myAppResourceMap.clear();
+      long generation = resources.getModificationCount();
+      if (myCachedGeneration != generation) {
+        ResourceChanges changes = resources.getChangesSince(myCachedGeneration);
+        if (changes == null) {
+          myResolverMap.clear();
+          myAppResourceMap.clear();
+          myPendingAppResourceChanges.clear();
+        }
+        else if (!changes.isEmpty()) {
+          // The resolvers of a configuration are created again once applyPendingChanges has updated its configured app resources.
+          for (String qualifierString : myAppResourceMap.keySet()) {
+            myPendingAppResourceChanges.merge(qualifierString, changes, ResourceChanges::union);
+          }
+        }
       }
 
       // Store the modification count as soon as possible. This ensures that if there is any modification of resources while the
       // resolver is being created, it will be cleared subsequently.
-      myCachedGeneration = resources.getModificationCount();
+      myCachedGeneration = generation;
     }
 
     // When looking up the configured project and framework resources, the theme doesn't matter, so we look up only
@@ -130,6 +153,7 @@ public class ResourceResolverCache {
     // @style/MyTheme-ldltr-sw384dp-w384dp-h640dp-normal-notlong-port-notnight-xhdpi-finger-keyssoft-nokeys-navhidden-nonav-1280x768-v17
     String qualifierString = fullConfiguration.getQualifierString();
     String resolverKey = getResolverKey(themeStyle, qualifierString);
+    applyPendingChanges(resources, qualifierString, fullConfiguration);
     ResourceResolver resolver = getCachedResolver(resolverKey);
     if (resolver == null) {
       if (target == null) {
@@ -144,7 +168,9 @@ public class ResourceResolverCache {
       Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes = getCachedAppResources(qualifierString);
       if (configuredAppRes == null) {
         // Get the project resource values based on the current config.
-        configuredAppRes = ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(resources, fullConfiguration));
+        // Copied so that applyPendingChanges can publish an updated copy of it.
+        configuredAppRes = HashBasedTable.create(
+            ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(resources, fullConfiguration)));
         cacheAppResources(qualifierString, configuredAppRes);
       }
 
@@ -181,6 +207,71 @@ public class ResourceResolverCache {
     return resolver;
   }
 
+  /**
+   * Replaces the configured app resources cached for the given configuration with a copy holding the changed values, and drops the
+   * resolvers created from the previous ones. Only the changed resources are looked up in the repository, rather than all of them.
+   */
+  @Slow
+  private void applyPendingChanges(@NotNull ResourceRepository resources,
+                                   @NotNull String qualifierString,
+                                   @NotNull FolderConfiguration fullConfiguration) {
+    ResourceChanges changes;
+    Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes;
+    synchronized (myLock) {
+      changes = myPendingAppResourceChanges.get(qualifierString);
+      configuredAppRes = myAppResourceMap.get(qualifierString);
+    }
+    if (changes == null || configuredAppRes == null) {
+      return;
+    }
+
+    // Changed maps are replaced rather than modified, since other configurations with the same qualifiers may be rendering with them.
+    Table<ResourceNamespace, ResourceType, ResourceValueMap> updatedMaps = HashBasedTable.create();
+    ReadAction.run(() -> {
+      for (ResourceNamespace namespace : changes.getNamespaces()) {
+        for (ResourceType type : changes.getTypes(namespace)) {
+          ResourceValueMap values = ResourceValueMap.create();
+          Collection<String> names = changes.getNames(namespace, type);
+          if (names == null) {
+            names = resources.getResources(namespace, type).keySet();
+          }
+          else {
+            ResourceValueMap previousValues = configuredAppRes.get(namespace, type);
+            if (previousValues != null) {
+              values.putAll(previousValues);
+            }
+          }
+          for (String name : names) {
+            ResourceItem item = fullConfiguration.findMatchingConfigurable(resources.getResources(namespace, type, name));
+            ResourceValue value = item == null ? null : item.getResourceValue();
+            if (value == null) {
+              values.remove(name);
+            }
+            else {
+              values.put(name, value);
+            }
+          }
+          updatedMaps.put(namespace, type, values);
+        }
+      }
+    });
+
+    synchronized (myLock) {
+      if (myPendingAppResourceChanges.get(qualifierString) != changes || myAppResourceMap.get(qualifierString) != configuredAppRes) {
+        // Changed or cleared in the meantime, the latest changes are applied by the next call.
+        return;
+      }
+      myPendingAppResourceChanges.remove(qualifierString);
+      // Render threads read the published table without holding myLock, so it is never modified. The resolvers of this configuration are
+      // created again from a new table.
+      Table<ResourceNamespace, ResourceType, ResourceValueMap> copy = HashBasedTable.create(configuredAppRes);
+      copy.putAll(updatedMaps);
+      myAppResourceMap.put(qualifierString, copy);
+      String resolverKeySuffix = qualifierString.isEmpty() ? "" : SdkConstants.RES_QUALIFIER_SEP + qualifierString;
+      myResolverMap.keySet().removeIf(key -> key.endsWith(resolverKeySuffix));
+    }
+  }
+
   @Slow
   @NotNull
   public Map<ResourceType, ResourceValueMap> getConfiguredFrameworkResources(@NotNull IAndroidTarget target,
@@ -238,6 +329,7 @@ public class ResourceResolverCache {
     synchronized (myLock) {
       myCachedGeneration = 0;
       myAppResourceMap.clear();
+      myPendingAppResourceChanges.clear();
       myResolverMap.clear();
     }
   }
@@ -262,6 +354,7 @@ public class ResourceResolverCache {
       if (myCustomConfigurationKey != null) {
         myFrameworkResourceMap.remove(myCustomConfigurationKey);
         myAppResourceMap.remove(myCustomConfigurationKey);
+        myPendingAppResourceChanges.remove(myCustomConfigurationKey);
       }
       if (myCustomResolverKey != null) {
         myResolverMap.remove(myCustomResolverKey);
@@ -19,4 +19,10 @@ import com.android.ide.common.resources.ResourceRepository
 import com.intellij.openapi.util.ModificationTracker
 
 /** An extension of [ResourceRepository] with [ModificationTracker] that indicates when cache of this should be invalidated. */
-interface CacheableResourceRepository : ResourceRepository, ModificationTracker
\ No newline at end of file
+interface CacheableResourceRepository : ResourceRepository, ModificationTracker {
+  /**
+   * Returns the resources changed since the given [modificationCount] of this repository, or null if they aren't known, in which case any
+   * resource may have changed.
+   */
+  fun getChangesSince(modificationCount: Long): ResourceChanges? = null
+}
\ No newline at end of file
@@ -211,6 +211,15 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     myGeneration = count;
   }
 
+  /**
+   * Returns the resources changed since the given modification count. Subclasses that know which resources they changed should override.
+   */
+  @Override
+  @Nullable
+  public ResourceChanges getChangesSince(long modificationCount) {
+    return getModificationCount() <= modificationCount ? ResourceChanges.NONE : null;
+  }
+
   /**
    * Executes the given callback using the given executor after all currently pending updates have been processed.
    * The repository is not guaranteed to be completely up to date with respect to PSI and VFS because additional
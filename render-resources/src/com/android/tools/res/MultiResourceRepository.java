@@ -29,11 +29,13 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
 import com.intellij.openapi.Disposable;
@@ -48,7 +50,10 @@ import java.util.AbstractCollection;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -110,6 +115,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   private final Table<ResourceNamespace, ResourceType, Set<SingleNamespaceResourceRepository>> myUnreconciledResources =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
+  /**
+   * Immutable copies of the merged resources that can be read without holding {@code ITEM_MAP_LOCK}. Replaced, only while holding
+   * {@code ITEM_MAP_LOCK}, when resources are invalidated or merged.
+   */
+  private volatile Snapshot mySnapshot = Snapshot.EMPTY;
+
+  /** The modification count of the latest change of this repository that may have affected any of its resources. */
+  @GuardedBy("ITEM_MAP_LOCK")
+  private long myUnknownChangeModificationCount;
+
   protected MultiResourceRepository(@NotNull String displayName) {
     super(displayName);
     LowMemoryWatcher.register(this::onLowMemory, this);
@@ -122,7 +137,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       for (LocalResourceRepository child : myLocalResources) {
         child.removeParent(this);
       }
-      setModificationCount(ourModificationCounter.incrementAndGet());
+      myUnknownChangeModificationCount = ourModificationCounter.incrementAndGet();
+      setModificationCount(myUnknownChangeModificationCount);
       myLocalResources = ImmutableList.copyOf(localResources);
       int size = myLocalResources.size() + libraryResources.size() + otherResources.size();
       myChildren = ImmutableList.<ResourceRepository>builderWithExpectedSize(size)
@@ -151,6 +167,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         myModificationCounts[i++] = child.getModificationCount();
       }
       myCachedMaps.clear();
+      mySnapshot = Snapshot.EMPTY;
 
       invalidateParentCaches();
     }
@@ -240,6 +257,28 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     }
   }
 
+  /**
+   * Returns the resources changed since the given modification count, if all the local repositories know theirs.
+   */
+  @Override
+  @Nullable
+  public ResourceChanges getChangesSince(long modificationCount) {
+    synchronized (ITEM_MAP_LOCK) {
+      if (myUnknownChangeModificationCount > modificationCount) {
+        return null;
+      }
+      ResourceChanges.Builder changes = new ResourceChanges.Builder();
+      for (LocalResourceRepository child : myLocalResources) {
+        ResourceChanges childChanges = child.getChangesSince(modificationCount);
+        if (childChanges == null) {
+          return null;
+        }
+        changes.addAll(childChanges);
+      }
+      return changes.build();
+    }
+  }
+
   @Override
   @NotNull
   public Set<ResourceNamespace> getNamespaces() {
@@ -273,6 +312,97 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     return ResourceVisitor.VisitResult.CONTINUE;
   }
 
+  @Override
+  @NotNull
+  public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return getSnapshot(namespace, resourceType);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull String resourceName) {
+    return getSnapshot(namespace, resourceType).get(resourceName);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull Predicate<ResourceItem> filter) {
+    List<ResourceItem> result = null;
+    for (ResourceItem item : getSnapshot(namespace, resourceType).values()) {
+      if (filter.test(item)) {
+        if (result == null) {
+          result = new ArrayList<>();
+        }
+        result.add(item);
+      }
+    }
+    return result == null ? Collections.emptyList() : result;
+  }
+
+  @Override
+  @NotNull
+  public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return getSnapshot(namespace, resourceType).keySet();
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    return getSnapshot(namespace, resourceType).containsKey(resourceName);
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return !getSnapshot(namespace, resourceType).isEmpty();
+  }
+
+  @Override
+  @NotNull
+  public Set<ResourceType> getResourceTypes(@NotNull ResourceNamespace namespace) {
+    EnumSet<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+    for (ResourceType type : ResourceType.values()) {
+      if (!getSnapshot(namespace, type).isEmpty()) {
+        types.add(type);
+      }
+    }
+    return Sets.immutableEnumSet(types);
+  }
+
+  /**
+   * Returns an immutable copy of the merged resources of the given namespace and type. The copy is taken from the current
+   * {@link #mySnapshot} without locking, or, if the resources changed since it was taken, merged again and added to the snapshot.
+   */
+  @NotNull
+  private ImmutableListMultimap<String, ResourceItem> getSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    ImmutableListMultimap<String, ResourceItem> resources = mySnapshot.get(namespace, type);
+    if (resources != null) {
+      return resources;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      resources = mySnapshot.get(namespace, type);
+      if (resources == null) {
+        ListMultimap<String, ResourceItem> map = getMap(namespace, type);
+        if (map == null || map.isEmpty()) {
+          resources = ImmutableListMultimap.of();
+        }
+        else {
+          // Copied key by key, since PerConfigResourceMap doesn't support entries().
+          ImmutableListMultimap.Builder<String, ResourceItem> builder = ImmutableListMultimap.builder();
+          for (String name : map.keySet()) {
+            builder.putAll(name, map.get(name));
+          }
+          resources = builder.build();
+        }
+        mySnapshot = mySnapshot.with(namespace, type, resources);
+      }
+      return resources;
+    }
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @Override
   @Nullable
@@ -391,7 +521,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @GuardedBy("ITEM_MAP_LOCK")
   public void invalidateCache() {
     clearCachedData();
-    setModificationCount(ourModificationCounter.incrementAndGet());
+    myUnknownChangeModificationCount = ourModificationCounter.incrementAndGet();
+    setModificationCount(myUnknownChangeModificationCount);
 
     invalidateParentCaches();
   }
@@ -401,6 +532,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     myCachedMaps.clear();
     myResourceNames.clear();
     myUnreconciledResources.clear();
+    mySnapshot = Snapshot.EMPTY;
   }
 
   private void onLowMemory() {
@@ -423,6 +555,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     // In such a case we don't need to do anything.
     ImmutableList<SingleNamespaceResourceRepository> leafs = myLeafsByNamespace.get(namespace);
     if (leafs.contains(repository)) {
+      mySnapshot = mySnapshot.without(namespace, types);
+
       // Update myUnreconciledResources only if myCachedMaps is used for this namespace.
       if (leafs.size() != 1) {
         for (ResourceType type : types) {
@@ -488,6 +622,63 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     }
   }
 
+  /**
+   * Immutable resources of some namespaces and types. Never modified after construction, changes create new instances that share the
+   * resources of the types that didn't change.
+   */
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(ImmutableMap.of());
+
+    @NotNull private final ImmutableMap<ResourceNamespace, ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>>>
+        myResources;
+
+    private Snapshot(
+        @NotNull ImmutableMap<ResourceNamespace, ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>>> resources) {
+      myResources = resources;
+    }
+
+    @Nullable
+    ImmutableListMultimap<String, ResourceItem> get(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+      ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>> resourcesByType = myResources.get(namespace);
+      return resourcesByType == null ? null : resourcesByType.get(type);
+    }
+
+    @NotNull
+    Snapshot with(@NotNull ResourceNamespace namespace,
+                  @NotNull ResourceType type,
+                  @NotNull ImmutableListMultimap<String, ResourceItem> resources) {
+      Map<ResourceType, ImmutableListMultimap<String, ResourceItem>> resourcesByType = new EnumMap<>(ResourceType.class);
+      ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>> oldResourcesByType = myResources.get(namespace);
+      if (oldResourcesByType != null) {
+        resourcesByType.putAll(oldResourcesByType);
+      }
+      resourcesByType.put(type, resources);
+      return withNamespace(namespace, Maps.immutableEnumMap(resourcesByType));
+    }
+
+    @NotNull
+    Snapshot without(@NotNull ResourceNamespace namespace, @NotNull ResourceType... types) {
+      ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>> oldResourcesByType = myResources.get(namespace);
+      if (oldResourcesByType == null) {
+        return this;
+      }
+      Map<ResourceType, ImmutableListMultimap<String, ResourceItem>> resourcesByType = new EnumMap<>(ResourceType.class);
+      resourcesByType.putAll(oldResourcesByType);
+      for (ResourceType type : types) {
+        resourcesByType.remove(type);
+      }
+      return withNamespace(namespace, Maps.immutableEnumMap(resourcesByType));
+    }
+
+    @NotNull
+    private Snapshot withNamespace(@NotNull ResourceNamespace namespace,
+                                   @NotNull ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>> resourcesByType) {
+      Map<ResourceNamespace, ImmutableMap<ResourceType, ImmutableListMultimap<String, ResourceItem>>> resources = new HashMap<>(myResources);
+      resources.put(namespace, resourcesByType);
+      return new Snapshot(ImmutableMap.copyOf(resources));
+    }
+  }
+
   private static class ResourcePriorityComparator implements Comparator<ResourceItem> {
     private final Object2IntMap<SingleNamespaceResourceRepository> repositoryOrdering;
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.res;
+
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.resources.ResourceType;
+import java.util.ArrayDeque;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The latest changes of a resource repository, by the modification count the repository was given for each of them, which tell the
+ * resources changed since a modification count.
+ * <p>
+ * A repository using the log must record all its changes, either as the change of a single resource or of a type of resources, or as an
+ * unknown change. The resources changed before an unknown change, or before a change dropped from the log, are no longer known.
+ */
+public final class ResourceChangeLog {
+  private static final int MAX_CHANGES = 200;
+
+  @GuardedBy("this")
+  private final ArrayDeque<Change> myChanges = new ArrayDeque<>();
+  /** The modification count of the latest change that is no longer known. */
+  @GuardedBy("this")
+  private long myUnknownModificationCount;
+
+  /**
+   * Records a change of the resource with the given namespace, type and name, or of any resource of the type if the name is null.
+   */
+  public synchronized void recordChange(long modificationCount, @NotNull ResourceNamespace namespace, @NotNull ResourceType type,
+                                        @Nullable String name) {
+    if (myChanges.size() == MAX_CHANGES) {
+      myUnknownModificationCount = Math.max(myUnknownModificationCount, myChanges.removeFirst().myModificationCount);
+    }
+    myChanges.addLast(new Change(modificationCount, namespace, type, name));
+  }
+
+  /**
+   * Records a change that may have affected any resource.
+   */
+  public synchronized void recordUnknownChange(long modificationCount) {
+    myUnknownModificationCount = Math.max(myUnknownModificationCount, modificationCount);
+    // Changes are recorded in the order of their modification counts, except for concurrent ones.
+    myChanges.removeIf(change -> change.myModificationCount <= modificationCount);
+  }
+
+  /**
+   * Returns the resources changed after the given modification count, or null if they are no longer known.
+   */
+  @Nullable
+  public synchronized ResourceChanges getChangesSince(long modificationCount) {
+    if (myUnknownModificationCount > modificationCount) {
+      return null;
+    }
+    ResourceChanges.Builder changes = new ResourceChanges.Builder();
+    for (Change change : myChanges) {
+      if (change.myModificationCount > modificationCount) {
+        changes.add(change.myNamespace, change.myType, change.myName);
+      }
+    }
+    return changes.build();
+  }
+
+  private static final class Change {
+    final long myModificationCount;
+    @NotNull final ResourceNamespace myNamespace;
+    @NotNull final ResourceType myType;
+    @Nullable final String myName;
+
+    Change(long modificationCount, @NotNull ResourceNamespace namespace, @NotNull ResourceType type, @Nullable String name) {
+      myModificationCount = modificationCount;
+      myNamespace = namespace;
+      myType = type;
+      myName = name;
+    }
+  }
+}
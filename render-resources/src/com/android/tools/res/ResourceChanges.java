@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.res;
+
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.resources.ResourceType;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import java.util.HashSet;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The resources changed in a resource repository since some modification count, by namespace and type. For each type either the names
+ * of the changed resources are known, or any resource of the type may have changed.
+ *
+ * @see CacheableResourceRepository#getChangesSince(long)
+ */
+public final class ResourceChanges {
+  public static final ResourceChanges NONE = new ResourceChanges(ImmutableTable.of());
+
+  /** Names of the changed resources by namespace and type, with an empty set when any resource of the type may have changed. */
+  @NotNull private final ImmutableTable<ResourceNamespace, ResourceType, ImmutableSet<String>> myNames;
+
+  private ResourceChanges(@NotNull ImmutableTable<ResourceNamespace, ResourceType, ImmutableSet<String>> names) {
+    myNames = names;
+  }
+
+  public boolean isEmpty() {
+    return myNames.isEmpty();
+  }
+
+  @NotNull
+  public Set<ResourceNamespace> getNamespaces() {
+    return myNames.rowKeySet();
+  }
+
+  @NotNull
+  public Set<ResourceType> getTypes(@NotNull ResourceNamespace namespace) {
+    return myNames.row(namespace).keySet();
+  }
+
+  public boolean containsType(@NotNull ResourceType type) {
+    return myNames.containsColumn(type);
+  }
+
+  /**
+   * Returns the names of the changed resources of the given namespace and type, or null if any resource of the type may have changed.
+   */
+  @Nullable
+  public Set<String> getNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    ImmutableSet<String> names = myNames.get(namespace, type);
+    return names == null || !names.isEmpty() ? names : null;
+  }
+
+  /**
+   * Returns the resources changed either in this or in the given changes.
+   */
+  @NotNull
+  public ResourceChanges union(@NotNull ResourceChanges other) {
+    if (other.isEmpty()) {
+      return this;
+    }
+    if (isEmpty()) {
+      return other;
+    }
+    return new Builder().addAll(this).addAll(other).build();
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceChanges" + myNames;
+  }
+
+  public static final class Builder {
+    private final Table<ResourceNamespace, ResourceType, Set<String>> myNames = HashBasedTable.create();
+
+    /**
+     * Adds the resource with the given namespace, type and name, or any resource of the type if the name is null.
+     */
+    @NotNull
+    public Builder add(@NotNull ResourceNamespace namespace, @NotNull ResourceType type, @Nullable String name) {
+      Set<String> names = myNames.get(namespace, type);
+      if (name == null) {
+        myNames.put(namespace, type, ImmutableSet.of());
+      }
+      else if (names == null) {
+        names = new HashSet<>();
+        names.add(name);
+        myNames.put(namespace, type, names);
+      }
+      else if (!names.isEmpty()) {
+        names.add(name);
+      }
+      return this;
+    }
+
+    @NotNull
+    public Builder addAll(@NotNull ResourceChanges changes) {
+      for (Table.Cell<ResourceNamespace, ResourceType, ImmutableSet<String>> cell : changes.myNames.cellSet()) {
+        if (cell.getValue().isEmpty()) {
+          add(cell.getRowKey(), cell.getColumnKey(), null);
+        }
+        else {
+          for (String name : cell.getValue()) {
+            add(cell.getRowKey(), cell.getColumnKey(), name);
+          }
+        }
+      }
+      return this;
+    }
+
+    @NotNull
+    public ResourceChanges build() {
+      if (myNames.isEmpty()) {
+        return NONE;
+      }
+      ImmutableTable.Builder<ResourceNamespace, ResourceType, ImmutableSet<String>> names = ImmutableTable.builder();
+      for (Table.Cell<ResourceNamespace, ResourceType, Set<String>> cell : myNames.cellSet()) {
+        names.put(cell.getRowKey(), cell.getColumnKey(), ImmutableSet.copyOf(cell.getValue()));
+      }
+      return new ResourceChanges(names.build());
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.res
+
+import com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO
+import com.android.resources.ResourceType
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ResourceChangeLogTest {
+  @Test
+  fun changesSinceModificationCount() {
+    val log = ResourceChangeLog()
+    log.recordUnknownChange(10)
+    log.recordChange(11, RES_AUTO, ResourceType.STRING, "cancel")
+    log.recordChange(12, RES_AUTO, ResourceType.STRING, "ok")
+    log.recordChange(13, RES_AUTO, ResourceType.ID, null)
+    log.recordChange(14, RES_AUTO, ResourceType.ID, "button")
+
+    assertNull(log.getChangesSince(9))
+    val changes = log.getChangesSince(10)!!
+    assertEquals(setOf(ResourceType.STRING, ResourceType.ID), changes.getTypes(RES_AUTO))
+    assertEquals(setOf("cancel", "ok"), changes.getNames(RES_AUTO, ResourceType.STRING))
+    // Any ID may have changed.
+    assertNull(changes.getNames(RES_AUTO, ResourceType.ID))
+    assertEquals(setOf("ok"), log.getChangesSince(11)!!.getNames(RES_AUTO, ResourceType.STRING))
+    assertTrue(log.getChangesSince(14)!!.isEmpty)
+
+    log.recordUnknownChange(15)
+    assertNull(log.getChangesSince(14))
+    assertTrue(log.getChangesSince(15)!!.isEmpty)
+  }
+
+  @Test
+  fun droppedChangesAreUnknown() {
+    val log = ResourceChangeLog()
+    for (count in 1L..1000L) {
+      log.recordChange(count, RES_AUTO, ResourceType.STRING, "string$count")
+    }
+    assertNull(log.getChangesSince(0))
+    assertEquals(setOf("string1000"), log.getChangesSince(999)!!.getNames(RES_AUTO, ResourceType.STRING))
+  }
+}
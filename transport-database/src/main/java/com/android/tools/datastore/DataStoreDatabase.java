@@ -15,20 +15,35 @@
  */
 package com.android.tools.datastore;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class DataStoreDatabase {
   public enum Characteristic {
     // TODO handle potential db file name clashes
+    /**
+     * File-backed database in WAL mode that survives Studio restarts. See {@link DataStoreSchema} for how existing files are upgraded.
+     */
     DURABLE,
     PERFORMANT
   }
 
+  /**
+   * How often committed pages are copied from the write-ahead log back into the database file. This keeps the WAL file small during long
+   * sessions without blocking writers, since the checkpoint runs on its own connection in PASSIVE mode.
+   */
+  @VisibleForTesting static final long CHECKPOINT_PERIOD_MS = TimeUnit.SECONDS.toMillis(30);
+
   @NotNull
   private LogService.Logger getLogger() {
     return myLogService.getLogger(DataStoreDatabase.class);
@@ -38,6 +53,12 @@ public class DataStoreDatabase {
 
   private final Connection myConnection;
 
+  /**
+   * Separate autocommit connection used for WAL checkpoints, only set for {@link Characteristic#DURABLE} databases.
+   */
+  @Nullable private final Connection myCheckpointConnection;
+  @Nullable private final Timer myCheckpointTimer;
+
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
    */
@@ -53,6 +74,8 @@ public class DataStoreDatabase {
                            @NotNull Consumer<Throwable> noPiiExceptionHandler) {
     myLogService = logService;
     Connection connection = null;
+    Connection checkpointConnection = null;
+    Timer checkpointTimer = null;
     try {
       // For older versions of the JDBC we need to force load the sqlite.JDBC driver to trigger static initializer's and register
       // the JDBC driver with the java DriverMangaer.
@@ -64,28 +87,25 @@ public class DataStoreDatabase {
           break;
         case DURABLE:
           File dbFile = new File(dbPath);
-          // Due to an incompatible update in SQLite we do not support loading SQL files from previous versions of studio.
-          // As a intermediate measure we delete the file until we support loading existing databases.
-          // TODO: Investigate removing this when we add a feature to restore sessions from prior Studio runs.
-          if (dbFile.exists()) {
-            dbFile.delete();
-          }
-
           File parent = dbFile.getParentFile();
           if (parent != null) {
             if (!parent.mkdirs() && !parent.exists()) {
               getLogger().error("Unable to create parent directory");
             }
           }
-          connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", dbFile.getPath()));
+          connection = openDurableConnection(dbFile);
           break;
         default:
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization. Event writes are committed in groups by UnifiedEventsBatchWriter.
       connection.setAutoCommit(false);
+      if (characteristic == Characteristic.DURABLE) {
+        checkpointConnection = DriverManager.getConnection(connection.getMetaData().getURL());
+        checkpointTimer = new Timer("DataStoreCheckpointTimer", true);
+        checkpointTimer.schedule(new CheckpointTimerTask(), CHECKPOINT_PERIOD_MS, CHECKPOINT_PERIOD_MS);
+      }
     }
     catch (ClassNotFoundException e) {
       getLogger().error(e);
@@ -97,9 +117,80 @@ public class DataStoreDatabase {
       noPiiExceptionHandler.accept(e);
     }
     myConnection = connection;
+    myCheckpointConnection = checkpointConnection;
+    myCheckpointTimer = checkpointTimer;
+  }
+
+  /**
+   * Opens the database file, keeping the data of previous sessions if its schema can be upgraded to
+   * {@link DataStoreSchema#CURRENT_VERSION}. Files that cannot be read or upgraded are deleted and a new database is created in their
+   * place.
+   */
+  @NotNull
+  private Connection openDurableConnection(@NotNull File dbFile) throws SQLException {
+    String url = String.format("jdbc:sqlite:%s", dbFile.getPath());
+    Connection connection = DriverManager.getConnection(url);
+    try {
+      configureDurableConnection(connection);
+      return connection;
+    }
+    catch (SQLException | DataStoreSchema.IncompatibleSchemaException e) {
+      getLogger().info("Discarding incompatible profiler database: " + e.getMessage());
+      connection.close();
+    }
+    deleteDatabaseFiles(dbFile);
+    connection = DriverManager.getConnection(url);
+    try {
+      configureDurableConnection(connection);
+    }
+    catch (DataStoreSchema.IncompatibleSchemaException e) {
+      // A new database is always compatible.
+      throw new SQLException(e);
+    }
+    return connection;
+  }
+
+  private static void configureDurableConnection(@NotNull Connection connection)
+    throws SQLException, DataStoreSchema.IncompatibleSchemaException {
+    // The journal mode can only be changed outside of a transaction, so this has to happen before autocommit is turned off.
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("PRAGMA journal_mode=WAL");
+      // In WAL mode NORMAL is still safe against corruption and only syncs on checkpoints.
+      statement.execute("PRAGMA synchronous=NORMAL");
+    }
+    connection.setAutoCommit(false);
+    DataStoreSchema.upgrade(connection);
+  }
+
+  private static void deleteDatabaseFiles(@NotNull File dbFile) {
+    for (String suffix : new String[]{"", "-wal", "-shm"}) {
+      File file = new File(dbFile.getPath() + suffix);
+      if (file.exists()) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Copies committed pages from the write-ahead log into the database file without waiting on readers or writers.
+   */
+  @VisibleForTesting
+  public void checkpoint() {
+    if (myCheckpointConnection == null) {
+      return;
+    }
+    try (Statement statement = myCheckpointConnection.createStatement()) {
+      statement.execute("PRAGMA wal_checkpoint(PASSIVE)");
+    }
+    catch (SQLException e) {
+      getLogger().debug("Failed to checkpoint profiler database", e);
+    }
   }
 
   public void disconnect() {
+    if (myCheckpointTimer != null) {
+      myCheckpointTimer.cancel();
+    }
     try {
       myConnection.commit();
     }
@@ -107,6 +198,15 @@ public class DataStoreDatabase {
       getLogger().error(e);
     }
     finally {
+      if (myCheckpointConnection != null) {
+        checkpoint();
+        try {
+          myCheckpointConnection.close();
+        }
+        catch (SQLException e) {
+          getLogger().error(e);
+        }
+      }
       try {
         if (!myConnection.isClosed()) {
           myConnection.close();
@@ -121,4 +221,11 @@ public class DataStoreDatabase {
   public Connection getConnection() {
     return myConnection;
   }
+
+  private class CheckpointTimerTask extends TimerTask {
+    @Override
+    public void run() {
+      checkpoint();
+    }
+  }
 }
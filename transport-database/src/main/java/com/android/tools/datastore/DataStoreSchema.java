@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore;
+
+import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.idea.protobuf.ByteString;
+import com.android.tools.idea.protobuf.InvalidProtocolBufferException;
+import com.android.tools.profiler.proto.Transport.BytesResponse;
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the version of the tables stored in a {@link DataStoreDatabase.Characteristic#DURABLE} database so that a database written by
+ * a previous Studio run can be reopened. The version is stored in the [SchemaVersion] table, and databases written by an older version
+ * are brought up to date by running each {@link Migration} in order.
+ */
+public final class DataStoreSchema {
+  /**
+   * Bump this whenever a table changes shape, and append the matching {@link Migration} to {@link #MIGRATIONS}.
+   */
+  public static final int CURRENT_VERSION = 2;
+
+  /**
+   * Migration at index i upgrades a database from version i + 1 to version i + 2.
+   */
+  @NotNull
+  private static final List<Migration> MIGRATIONS = Collections.singletonList(DataStoreSchema::splitBytesIntoChunks);
+
+  public interface Migration {
+    void migrate(@NotNull Connection connection) throws SQLException;
+  }
+
+  /**
+   * Thrown when the existing database cannot be brought to {@link #CURRENT_VERSION}, e.g. it was written by a newer Studio or predates
+   * schema versioning altogether.
+   */
+  public static class IncompatibleSchemaException extends Exception {
+    IncompatibleSchemaException(@NotNull String message) {
+      super(message);
+    }
+  }
+
+  private DataStoreSchema() {
+  }
+
+  /**
+   * Ensures the database behind the connection is at {@link #CURRENT_VERSION}, creating the version table for new databases and running
+   * migrations for old ones. The changes are committed before returning.
+   */
+  public static void upgrade(@NotNull Connection connection) throws SQLException, IncompatibleSchemaException {
+    upgrade(connection, CURRENT_VERSION, MIGRATIONS);
+  }
+
+  @VisibleForTesting
+  public static void upgrade(@NotNull Connection connection, int currentVersion, @NotNull List<Migration> migrations)
+    throws SQLException, IncompatibleSchemaException {
+    assert migrations.size() == currentVersion - 1;
+    int version = readVersion(connection);
+    if (version == 0) {
+      if (hasTables(connection)) {
+        throw new IncompatibleSchemaException("Database predates schema versioning");
+      }
+      writeVersion(connection, currentVersion);
+    }
+    else if (version > currentVersion) {
+      throw new IncompatibleSchemaException(String.format("Database schema version %d is newer than %d", version, currentVersion));
+    }
+    else {
+      for (int v = version; v < currentVersion; v++) {
+        migrations.get(v - 1).migrate(connection);
+      }
+      writeVersion(connection, currentVersion);
+    }
+    connection.commit();
+  }
+
+  /**
+   * @return the stored schema version, or 0 if the database has no version table.
+   */
+  @VisibleForTesting
+  public static int readVersion(@NotNull Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet tables = statement.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'SchemaVersion'")) {
+      if (!tables.next()) {
+        return 0;
+      }
+    }
+    try (Statement statement = connection.createStatement();
+         ResultSet result = statement.executeQuery("SELECT MAX(Version) FROM [SchemaVersion]")) {
+      return result.next() ? result.getInt(1) : 0;
+    }
+  }
+
+  private static void writeVersion(@NotNull Connection connection, int version) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS [SchemaVersion] (Version INTEGER NOT NULL)");
+      statement.execute("DELETE FROM [SchemaVersion]");
+      statement.execute("INSERT INTO [SchemaVersion] (Version) VALUES (" + version + ")");
+    }
+  }
+
+  /**
+   * Version 2 stores payloads as rows of {@link UnifiedEventsTable#BYTES_CHUNK_SIZE} in [BytesChunksTable] instead of one serialized
+   * {@link BytesResponse} per row in [BytesTable]. Every row also stores the number of chunks of its payload, so that readers can ignore
+   * payloads whose chunks are not all inserted yet.
+   */
+  private static void splitBytesIntoChunks(@NotNull Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(
+        "CREATE TABLE IF NOT EXISTS BytesChunksTable ( StreamId INTEGER NOT NULL, Id STRING NOT NULL, ChunkIndex INTEGER NOT NULL, " +
+        "ChunkCount INTEGER NOT NULL, Data BLOB )");
+      try (ResultSet tables = statement.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'BytesTable'")) {
+        if (!tables.next()) {
+          return;
+        }
+      }
+    }
+    try (Statement select = connection.createStatement();
+         ResultSet rows = select.executeQuery("SELECT StreamId, Id, Data FROM [BytesTable]");
+         PreparedStatement insert =
+           connection.prepareStatement(
+             "INSERT OR IGNORE INTO [BytesChunksTable] (StreamId, Id, ChunkIndex, ChunkCount, Data) VALUES (?, ?, ?, ?, ?)")) {
+      while (rows.next()) {
+        ByteString contents;
+        try {
+          contents = BytesResponse.parseFrom(rows.getBytes(3)).getContents();
+        }
+        catch (InvalidProtocolBufferException ignored) {
+          // The payload was unreadable anyway, the data will be fetched again from the device if needed.
+          continue;
+        }
+        // An empty payload still gets one, empty, chunk.
+        int chunkCount = Math.max(1, (contents.size() + UnifiedEventsTable.BYTES_CHUNK_SIZE - 1) / UnifiedEventsTable.BYTES_CHUNK_SIZE);
+        int chunkIndex = 0;
+        int offset = 0;
+        do {
+          int end = Math.min(offset + UnifiedEventsTable.BYTES_CHUNK_SIZE, contents.size());
+          insert.setLong(1, rows.getLong(1));
+          insert.setString(2, rows.getString(2));
+          insert.setInt(3, chunkIndex++);
+          insert.setInt(4, chunkCount);
+          insert.setBytes(5, contents.substring(offset, end).toByteArray());
+          insert.executeUpdate();
+          offset = end;
+        }
+        while (offset < contents.size());
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE [BytesTable]");
+    }
+  }
+
+  private static boolean hasTables(@NotNull Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet tables = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table'")) {
+      return tables.next() && tables.getInt(1) > 0;
+    }
+  }
+}
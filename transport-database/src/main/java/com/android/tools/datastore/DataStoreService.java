@@ -19,10 +19,12 @@ import static com.android.tools.datastore.DataStoreDatabase.Characteristic.DURAB
 
 import com.android.tools.analytics.UsageTracker;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.UnifiedEventsCompactor;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.datastore.service.CpuService;
 import com.android.tools.datastore.service.EnergyService;
 import com.android.tools.datastore.service.EventService;
+import com.android.tools.datastore.service.EventSubscriptions;
 import com.android.tools.datastore.service.MemoryService;
 import com.android.tools.datastore.service.NetworkService;
 import com.android.tools.datastore.service.ProfilerService;
@@ -47,6 +49,7 @@ import com.google.wireless.android.sdk.stats.AndroidProfilerDbStats;
 import com.google.wireless.android.sdk.stats.AndroidStudioEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -57,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
@@ -122,7 +126,10 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   @NotNull
   private Consumer<Throwable> myNoPiiExceptionHandler;
   private TransportService myTransportService;
+  private UnifiedEventsTable myUnifiedEventsTable;
+  @Nullable private UnifiedEventsCompactor myEventsCompactor;
   private final ServerInterceptor myInterceptor;
+  @NotNull private final UnifiedEventsTable.EventStorage myEventStorage;
   /**
    * Mapping a stream id to its DataStoreClient.
    */
@@ -139,7 +146,18 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
                           @NotNull String datastoreDirectory,
                           @NotNull Consumer<Runnable> fetchExecutor,
                           @NotNull LogService logService) {
-    this(serviceName, datastoreDirectory, fetchExecutor, logService, null);
+    this(serviceName, datastoreDirectory, fetchExecutor, logService, UnifiedEventsTable.EventStorage.SQL);
+  }
+
+  /**
+   * @param eventStorage where the unified events queries are served from, see {@link UnifiedEventsTable.EventStorage}.
+   */
+  public DataStoreService(@NotNull String serviceName,
+                          @NotNull String datastoreDirectory,
+                          @NotNull Consumer<Runnable> fetchExecutor,
+                          @NotNull LogService logService,
+                          @NotNull UnifiedEventsTable.EventStorage eventStorage) {
+    this(serviceName, datastoreDirectory, fetchExecutor, logService, eventStorage, null);
   }
 
   @VisibleForTesting
@@ -148,7 +166,17 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
                           @NotNull Consumer<Runnable> fetchExecutor,
                           @NotNull LogService logService,
                           @Nullable ServerInterceptor interceptor) {
+    this(serviceName, datastoreDirectory, fetchExecutor, logService, UnifiedEventsTable.EventStorage.SQL, interceptor);
+  }
+
+  private DataStoreService(@NotNull String serviceName,
+                           @NotNull String datastoreDirectory,
+                           @NotNull Consumer<Runnable> fetchExecutor,
+                           @NotNull LogService logService,
+                           @NotNull UnifiedEventsTable.EventStorage eventStorage,
+                           @Nullable ServerInterceptor interceptor) {
     myLogService = logService;
+    myEventStorage = eventStorage;
     myFetchExecutor = fetchExecutor;
     myInterceptor = interceptor;
     myDatastoreDirectory = datastoreDirectory;
@@ -194,9 +222,12 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public void createPollers() {
     // TODO b/73538507 shared between all services to support inserting file content into generic byte cache (e.g. importing hprof)
     // We should be able to keep this inside TransportService after legacy pipeline removal.
-    UnifiedEventsTable unifiedTable = new UnifiedEventsTable();
+    UnifiedEventsTable unifiedTable = new UnifiedEventsTable(myEventStorage);
+    myUnifiedEventsTable = unifiedTable;
     myTransportService = new TransportService(this, unifiedTable, myFetchExecutor);
     registerService(myTransportService);
+    myEventsCompactor = new UnifiedEventsCompactor(unifiedTable);
+    myEventsCompactor.start();
     registerService(new ProfilerService(this, myLogService));
     registerService(new EventService(this, myFetchExecutor));
     registerService(new CpuService(this, myFetchExecutor, myLogService));
@@ -237,6 +268,24 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     }
   }
 
+  /**
+   * See {@link TransportService#subscribeToEvents(Transport.GetEventGroupsRequest, Executor, Consumer)}.
+   */
+  @NotNull
+  public EventSubscriptions.Subscription subscribeToEvents(@NotNull Transport.GetEventGroupsRequest filter,
+                                                           @NotNull Executor executor,
+                                                           @NotNull Consumer<Common.Event> listener) {
+    return myTransportService.subscribeToEvents(filter, executor, listener);
+  }
+
+  /**
+   * See {@link TransportService#openBytesStream(Transport.BytesRequest)}.
+   */
+  @Nullable
+  public InputStream openBytesStream(@NotNull Transport.BytesRequest request) {
+    return myTransportService.openBytesStream(request);
+  }
+
   /**
    * Connects the DataStoreService to a channel, associating it with the given Stream. The stream will get an STREAM_CONNECTED event created
    * once the conneciton is estebablished, and callers can query for the stream information via
@@ -264,8 +313,20 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     }
   }
 
+  /**
+   * Sets how long high frequency samples are kept at full resolution before being downsampled. See {@link UnifiedEventsCompactor}.
+   */
+  public void setEventCompactionHorizon(long horizon, @NotNull TimeUnit unit) {
+    if (myEventsCompactor != null) {
+      myEventsCompactor.setHorizonNs(unit.toNanos(horizon));
+    }
+  }
+
   public void shutdown() {
     myReportTimer.cancel();
+    if (myEventsCompactor != null) {
+      myEventsCompactor.stop();
+    }
     myServer.shutdownNow();
     for (DataStoreClient client : myConnectedClients.values()) {
       client.getChannel().shutdownNow();
@@ -275,6 +336,11 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     DataStoreTable.removeDataStoreErrorCallback(this);
   }
 
+  @VisibleForTesting
+  UnifiedEventsTable getUnifiedEventsTable() {
+    return myUnifiedEventsTable;
+  }
+
   @VisibleForTesting
   List<ServicePassThrough> getRegisteredServices() {
     return myServices;
@@ -0,0 +1,500 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.tools.profiler.proto.Common.Event;
+import com.android.tools.profiler.proto.Transport.EventGroup;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Non-SQL read path for the events of a {@link UnifiedEventsTable}. Events are kept as parsed protos in one time-sorted segment per
+ * (kind, stream, pid, group), with the timestamps, end flags and command ids stored in parallel arrays. Range queries and the +1/-1
+ * neighbour lookups described in {@link UnifiedEventsTable#queryUnifiedEventGroups} become binary searches over a segment instead of index
+ * scans followed by deserializing every row.
+ * <p>
+ * SQL stays the source of truth. A stream's columns are only built when the stream is first queried, e.g. when its session is opened,
+ * and only the events of loaded streams are added to the store afterwards. Once more than the maximum number of events are loaded, the
+ * least recently queried streams are dropped, and loaded again the next time they are queried.
+ * <p>
+ * The semantics, including the "INSERT OR IGNORE" behavior of duplicated events, match the SQL implementation.
+ */
+class ColumnarEventStore {
+  /**
+   * Default bound on the number of events kept across all loaded streams.
+   */
+  static final int DEFAULT_MAX_EVENTS = 500_000;
+
+  private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+  private static final Comparator<SegmentKey> KEY_COMPARATOR = Comparator.comparingLong((SegmentKey key) -> key.myStreamId)
+    .thenComparingInt(key -> key.myPid)
+    .thenComparingLong(key -> key.myGroupId);
+
+  private final int myMaxEvents;
+
+  @GuardedBy("myLock")
+  private final Map<Event.Kind, NavigableMap<SegmentKey, Segment>> mySegmentsByKind = new HashMap<>();
+
+  /**
+   * The streams whose events are in the store, from the least to the most recently queried. Kept in insertion order, so that it can be
+   * read under the read lock, and reordered by {@link #startLoading}.
+   */
+  @GuardedBy("myLock")
+  private final LinkedHashMap<Long, LoadedStream> myLoadedStreams = new LinkedHashMap<>();
+
+  @GuardedBy("myLock")
+  private int myEventCount;
+
+  private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+
+  ColumnarEventStore(int maxEvents) {
+    myMaxEvents = maxEvents;
+  }
+
+  /**
+   * Marks the stream as the most recently queried one, and starts loading it if it is not in the store yet. Events inserted from then on
+   * are kept, but the stream is not served until {@link #finishLoading} is called with its events from SQL. Events that are both
+   * inserted and loaded are deduplicated.
+   *
+   * @return false if the stream is already loaded or being loaded.
+   */
+  boolean startLoading(long streamId) {
+    myLock.writeLock().lock();
+    try {
+      LoadedStream stream = myLoadedStreams.remove(streamId);
+      myLoadedStreams.put(streamId, stream == null ? new LoadedStream() : stream);
+      return stream == null;
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  void finishLoading(long streamId, @NotNull List<Event> events) {
+    myLock.writeLock().lock();
+    try {
+      LoadedStream stream = myLoadedStreams.get(streamId);
+      if (stream == null) {
+        // Evicted while its events were read.
+        return;
+      }
+      for (Event event : events) {
+        insertLocked(stream, streamId, event);
+      }
+      stream.myIsComplete = true;
+      evictLocked(streamId);
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  @VisibleForTesting
+  boolean isLoaded(long streamId) {
+    myLock.readLock().lock();
+    try {
+      return isCompleteLocked(streamId);
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the events to their stream, if the stream is loaded. Events of other streams are only in SQL.
+   */
+  void insertAll(long streamId, @NotNull List<Event> events) {
+    myLock.writeLock().lock();
+    try {
+      LoadedStream stream = myLoadedStreams.get(streamId);
+      if (stream == null) {
+        return;
+      }
+      for (Event event : events) {
+        insertLocked(stream, streamId, event);
+      }
+      evictLocked(streamId);
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  @GuardedBy("myLock")
+  private void insertLocked(@NotNull LoadedStream stream, long streamId, @NotNull Event event) {
+    SegmentKey key = new SegmentKey(streamId, event.getPid(), event.getGroupId());
+    boolean inserted = mySegmentsByKind.computeIfAbsent(event.getKind(), kind -> new TreeMap<>(KEY_COMPARATOR))
+      .computeIfAbsent(key, k -> new Segment())
+      .insert(event);
+    if (inserted) {
+      stream.myEventCount++;
+      myEventCount++;
+    }
+  }
+
+  /**
+   * Drops the least recently used streams, other than the given one, until the store is within its bound.
+   */
+  @GuardedBy("myLock")
+  private void evictLocked(long keepStreamId) {
+    Iterator<Map.Entry<Long, LoadedStream>> iterator = myLoadedStreams.entrySet().iterator();
+    while (myEventCount > myMaxEvents && iterator.hasNext()) {
+      Map.Entry<Long, LoadedStream> entry = iterator.next();
+      long streamId = entry.getKey();
+      if (streamId == keepStreamId) {
+        continue;
+      }
+      iterator.remove();
+      myEventCount -= entry.getValue().myEventCount;
+      for (NavigableMap<SegmentKey, Segment> segments : mySegmentsByKind.values()) {
+        streamSegments(segments, streamId).clear();
+      }
+    }
+  }
+
+  void delete(long streamId, int pid, long groupId, @NotNull Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    myLock.writeLock().lock();
+    try {
+      NavigableMap<SegmentKey, Segment> segments = mySegmentsByKind.get(kind);
+      LoadedStream stream = myLoadedStreams.get(streamId);
+      if (segments == null || stream == null) {
+        return;
+      }
+      SegmentKey key = new SegmentKey(streamId, pid, groupId);
+      Segment segment = segments.get(key);
+      if (segment != null) {
+        int deleted = segment.delete(fromTimestamp, toTimestamp);
+        stream.myEventCount -= deleted;
+        myEventCount -= deleted;
+        if (segment.mySize == 0) {
+          segments.remove(key);
+        }
+      }
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * See {@link UnifiedEventsTable#querySeriesEvents}.
+   *
+   * @return null if the stream is not loaded.
+   */
+  @Nullable
+  List<Event> querySeriesEvents(long streamId, int pid, long groupId, @NotNull Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    myLock.readLock().lock();
+    try {
+      if (!isCompleteLocked(streamId)) {
+        return null;
+      }
+      NavigableMap<SegmentKey, Segment> segments = mySegmentsByKind.get(kind);
+      Segment segment = segments == null ? null : segments.get(new SegmentKey(streamId, pid, groupId));
+      if (segment == null) {
+        return Collections.emptyList();
+      }
+      return new ArrayList<>(Arrays.asList(segment.myEvents).subList(segment.lowerBound(fromTimestamp), segment.lowerBound(toTimestamp)));
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * See {@link UnifiedEventsTable#queryUnifiedEventGroups(GetEventGroupsRequest)}.
+   *
+   * @return null if the request is not for a single loaded stream.
+   */
+  @Nullable
+  List<EventGroup> queryGroups(@NotNull GetEventGroupsRequest request) {
+    myLock.readLock().lock();
+    try {
+      if (!isCompleteLocked(request.getStreamId())) {
+        return null;
+      }
+      Collection<Segment> segments = findSegments(request);
+      Map<Long, Segment> beforeSegments = new HashMap<>();
+      Map<Long, Integer> beforeIndices = new HashMap<>();
+      Map<Long, Segment> afterSegments = new HashMap<>();
+      Map<Long, Integer> afterIndices = new HashMap<>();
+      HashMap<Long, EventGroup.Builder> builderGroups = new HashMap<>();
+      long from = request.getFromTimestamp();
+      long to = request.getToTimestamp();
+      boolean hasFrom = from > 0;
+      boolean hasTo = to > 0 && to != Long.MAX_VALUE;
+      int commandId = request.getCommandId();
+
+      // The -1 and +1 events are picked per group id across every segment matching the filter, like the GROUP BY queries in SQL.
+      for (Segment segment : segments) {
+        long groupId = segment.myGroupId;
+        if (hasFrom) {
+          int index = segment.lastIndexBefore(from, commandId);
+          if (index >= 0) {
+            Segment best = beforeSegments.get(groupId);
+            if (best == null || segment.myTimestamps[index] >= best.myTimestamps[beforeIndices.get(groupId)]) {
+              beforeSegments.put(groupId, segment);
+              beforeIndices.put(groupId, index);
+            }
+          }
+        }
+        if (hasTo) {
+          int index = segment.firstIndexAfter(to, commandId);
+          if (index >= 0) {
+            Segment best = afterSegments.get(groupId);
+            if (best == null || segment.myTimestamps[index] < best.myTimestamps[afterIndices.get(groupId)]) {
+              afterSegments.put(groupId, segment);
+              afterIndices.put(groupId, index);
+            }
+          }
+        }
+      }
+
+      beforeSegments.forEach((groupId, segment) -> {
+        int index = beforeIndices.get(groupId);
+        if (!segment.myIsEnded[index]) {
+          builderGroups.computeIfAbsent(groupId, EventGroup.newBuilder()::setGroupId).addEvents(segment.myEvents[index]);
+        }
+      });
+
+      for (Segment segment : segments) {
+        int start = hasFrom ? segment.lowerBound(from) : 0;
+        int end = hasTo ? segment.upperBound(to) : segment.mySize;
+        for (int i = start; i < end; i++) {
+          if (commandId == 0 || segment.myCommandIds[i] == commandId) {
+            builderGroups.computeIfAbsent(segment.myGroupId, EventGroup.newBuilder()::setGroupId).addEvents(segment.myEvents[i]);
+          }
+        }
+      }
+
+      afterSegments.forEach((groupId, segment) -> {
+        EventGroup.Builder group = builderGroups.get(groupId);
+        if (group != null) {
+          group.addEvents(segment.myEvents[afterIndices.get(groupId)]);
+        }
+      });
+
+      return builderGroups.values().stream().map(EventGroup.Builder::build).collect(Collectors.toList());
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the segments of the request's stream matching its pid and group filters, in (pid, group) order.
+   */
+  @NotNull
+  private Collection<Segment> findSegments(@NotNull GetEventGroupsRequest request) {
+    NavigableMap<SegmentKey, Segment> segments = mySegmentsByKind.get(request.getKind());
+    if (segments == null) {
+      return Collections.emptyList();
+    }
+    long streamId = request.getStreamId();
+    int pid = request.getPid();
+    long groupId = request.getGroupId();
+    if (pid != 0 && groupId != 0) {
+      Segment segment = segments.get(new SegmentKey(streamId, pid, groupId));
+      return segment == null ? Collections.emptyList() : Collections.singletonList(segment);
+    }
+    List<Segment> result = new ArrayList<>();
+    for (Segment segment : streamSegments(segments, streamId).values()) {
+      if ((pid == 0 || segment.myPid == pid) && (groupId == 0 || segment.myGroupId == groupId)) {
+        result.add(segment);
+      }
+    }
+    return result;
+  }
+
+  @GuardedBy("myLock")
+  private boolean isCompleteLocked(long streamId) {
+    LoadedStream stream = myLoadedStreams.get(streamId);
+    return stream != null && stream.myIsComplete;
+  }
+
+  @NotNull
+  private static NavigableMap<SegmentKey, Segment> streamSegments(@NotNull NavigableMap<SegmentKey, Segment> segments, long streamId) {
+    return segments.subMap(new SegmentKey(streamId, Integer.MIN_VALUE, Long.MIN_VALUE), true,
+                           new SegmentKey(streamId, Integer.MAX_VALUE, Long.MAX_VALUE), true);
+  }
+
+  private static final class LoadedStream {
+    private int myEventCount;
+    private boolean myIsComplete;
+  }
+
+  private static final class SegmentKey {
+    private final long myStreamId;
+    private final int myPid;
+    private final long myGroupId;
+
+    private SegmentKey(long streamId, int pid, long groupId) {
+      myStreamId = streamId;
+      myPid = pid;
+      myGroupId = groupId;
+    }
+  }
+
+  /**
+   * Time-sorted events of a single (kind, stream, pid, group). Events with equal timestamps keep their insertion order.
+   */
+  private static final class Segment {
+    private int myPid;
+    private long myGroupId;
+    private long[] myTimestamps = new long[INITIAL_SEGMENT_CAPACITY];
+    private boolean[] myIsEnded = new boolean[INITIAL_SEGMENT_CAPACITY];
+    private int[] myCommandIds = new int[INITIAL_SEGMENT_CAPACITY];
+    private Event[] myEvents = new Event[INITIAL_SEGMENT_CAPACITY];
+    private int mySize;
+
+    /**
+     * @return false if the event is a duplicate and was dropped.
+     */
+    private boolean insert(@NotNull Event event) {
+      if (mySize == 0) {
+        myPid = event.getPid();
+        myGroupId = event.getGroupId();
+      }
+      long timestamp = event.getTimestamp();
+      // Events almost always arrive in time order, in which case this is an append.
+      int index = upperBound(timestamp);
+      for (int i = lowerBound(timestamp); i < index; i++) {
+        if (myIsEnded[i] == event.getIsEnded()) {
+          // Since no data should be updated after it has been inserted we drop any duplicated event.
+          return false;
+        }
+      }
+      if (mySize == myTimestamps.length) {
+        int capacity = mySize * 2;
+        myTimestamps = Arrays.copyOf(myTimestamps, capacity);
+        myIsEnded = Arrays.copyOf(myIsEnded, capacity);
+        myCommandIds = Arrays.copyOf(myCommandIds, capacity);
+        myEvents = Arrays.copyOf(myEvents, capacity);
+      }
+      if (index < mySize) {
+        System.arraycopy(myTimestamps, index, myTimestamps, index + 1, mySize - index);
+        System.arraycopy(myIsEnded, index, myIsEnded, index + 1, mySize - index);
+        System.arraycopy(myCommandIds, index, myCommandIds, index + 1, mySize - index);
+        System.arraycopy(myEvents, index, myEvents, index + 1, mySize - index);
+      }
+      myTimestamps[index] = timestamp;
+      myIsEnded[index] = event.getIsEnded();
+      myCommandIds[index] = event.getCommandId();
+      myEvents[index] = event;
+      mySize++;
+      return true;
+    }
+
+    /**
+     * @return the number of deleted events.
+     */
+    private int delete(long fromTimestamp, long toTimestamp) {
+      int start = lowerBound(fromTimestamp);
+      int end = upperBound(toTimestamp);
+      if (start >= end) {
+        return 0;
+      }
+      int tail = mySize - end;
+      System.arraycopy(myTimestamps, end, myTimestamps, start, tail);
+      System.arraycopy(myIsEnded, end, myIsEnded, start, tail);
+      System.arraycopy(myCommandIds, end, myCommandIds, start, tail);
+      System.arraycopy(myEvents, end, myEvents, start, tail);
+      int newSize = start + tail;
+      // Release the references to the removed events.
+      Arrays.fill(myEvents, newSize, mySize, null);
+      mySize = newSize;
+      return end - start;
+    }
+
+    /**
+     * @return the index of the first event with a timestamp >= the given one, or the size if there is none.
+     */
+    private int lowerBound(long timestamp) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimestamps[mid] < timestamp) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first event with a timestamp > the given one, or the size if there is none.
+     */
+    private int upperBound(long timestamp) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimestamps[mid] <= timestamp) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the latest event before the timestamp matching the command id (0 matches all), or -1.
+     */
+    private int lastIndexBefore(long timestamp, int commandId) {
+      for (int i = lowerBound(timestamp) - 1; i >= 0; i--) {
+        if (commandId == 0 || myCommandIds[i] == commandId) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return the index of the earliest event after the timestamp matching the command id (0 matches all), or -1.
+     */
+    private int firstIndexAfter(long timestamp, int commandId) {
+      for (int i = upperBound(timestamp); i < mySize; i++) {
+        if (commandId == 0 || myCommandIds[i] == commandId) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
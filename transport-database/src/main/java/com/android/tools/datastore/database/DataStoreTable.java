@@ -113,6 +113,16 @@ public abstract class DataStoreTable<T extends Enum> {
     executeUniqueStatement(statement, columns);
   }
 
+  /**
+   * Like {@link #createTable(String, String...)}, but keeps the table and its rows if it already exists. Used by tables whose content
+   * is restored from a {@link com.android.tools.datastore.DataStoreDatabase.Characteristic#DURABLE} database written by a previous run.
+   */
+  protected void createPersistentTable(@NotNull String table, String... columns) throws SQLException {
+    StringBuilder statement = new StringBuilder();
+    statement.append(String.format("CREATE TABLE IF NOT EXISTS %s", table));
+    executeUniqueStatement(statement, columns);
+  }
+
   protected void createUniqueIndex(@NotNull String table, String... indexList) throws SQLException {
     StringBuilder statement = new StringBuilder();
     statement.append(String.format("CREATE UNIQUE INDEX IF NOT EXISTS idx_%s_pk ON %s", table, table));
@@ -188,6 +198,22 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Commits the current transaction of the underlying connection. The connection is shared by all tables, so this commits any pending
+   * writes made through other tables as well.
+   */
+  protected void commit() {
+    if (isClosed()) {
+      return;
+    }
+    try {
+      myConnection.commit();
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+  }
+
   protected ResultSet executeQuery(@NotNull T statement, Object... params) throws SQLException {
     if (isClosed()) {
       return new EmptyResultSet();
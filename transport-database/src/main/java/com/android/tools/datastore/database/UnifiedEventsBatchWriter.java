@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Group-commit writer for the events of a single stream. Events are buffered in a bounded queue and inserted into the
+ * {@link UnifiedEventsTable} with a single JDBC batch followed by a commit, once either {@link #getMaxBatchSize()} events are pending
+ * or {@link #getMaxFlushIntervalNs()} has elapsed since the last flush.
+ * <p>
+ * While a writer is open it is registered with its table, which flushes it before any query or delete. This keeps reads consistent
+ * with everything enqueued so far, regardless of the thresholds above.
+ * <p>
+ * {@link #enqueue(Event)} is expected to be called from a single producer (the stream's poller), while {@link #flush()} may be called
+ * from any thread.
+ */
+public class UnifiedEventsBatchWriter implements AutoCloseable {
+  @VisibleForTesting static final int DEFAULT_MAX_BATCH_SIZE = 512;
+  @VisibleForTesting static final long DEFAULT_MAX_FLUSH_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(250);
+
+  private final long myStreamId;
+  @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final ArrayBlockingQueue<Event> myPendingEvents;
+  @NotNull private final LongSupplier myNanoTimeSupplier;
+  private final int myMaxBatchSize;
+  private final long myMaxFlushIntervalNs;
+  private final Object myFlushLock = new Object();
+  private volatile long myLastFlushNs;
+
+  public UnifiedEventsBatchWriter(long streamId, @NotNull UnifiedEventsTable table) {
+    this(streamId, table, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_FLUSH_INTERVAL_NS, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  UnifiedEventsBatchWriter(long streamId,
+                           @NotNull UnifiedEventsTable table,
+                           int maxBatchSize,
+                           long maxFlushIntervalNs,
+                           @NotNull LongSupplier nanoTimeSupplier) {
+    assert maxBatchSize > 0;
+    myStreamId = streamId;
+    myTable = table;
+    myMaxBatchSize = maxBatchSize;
+    myMaxFlushIntervalNs = maxFlushIntervalNs;
+    myNanoTimeSupplier = nanoTimeSupplier;
+    // Leave some headroom above the batch size so that readers flushing concurrently do not immediately block the producer.
+    myPendingEvents = new ArrayBlockingQueue<>(maxBatchSize * 2);
+    myLastFlushNs = nanoTimeSupplier.getAsLong();
+    myTable.addBatchWriter(this);
+  }
+
+  public int getMaxBatchSize() {
+    return myMaxBatchSize;
+  }
+
+  public long getMaxFlushIntervalNs() {
+    return myMaxFlushIntervalNs;
+  }
+
+  @VisibleForTesting
+  int getPendingEventCount() {
+    return myPendingEvents.size();
+  }
+
+  /**
+   * Queues an event for insertion. If the queue is full the events are written out synchronously, which applies back pressure on the
+   * producer instead of growing without bound.
+   */
+  public void enqueue(@NotNull Event event) {
+    while (!myPendingEvents.offer(event)) {
+      flush();
+    }
+    if (myPendingEvents.size() >= myMaxBatchSize || myNanoTimeSupplier.getAsLong() - myLastFlushNs >= myMaxFlushIntervalNs) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes every pending event in a single batch and commits the transaction.
+   */
+  public void flush() {
+    synchronized (myFlushLock) {
+      if (!myPendingEvents.isEmpty()) {
+        List<Event> batch = new ArrayList<>(myPendingEvents.size());
+        myPendingEvents.drainTo(batch);
+        myTable.insertUnifiedEvents(myStreamId, batch);
+        myTable.commit();
+      }
+      myLastFlushNs = myNanoTimeSupplier.getAsLong();
+    }
+  }
+
+  /**
+   * Flushes the remaining events and detaches the writer from its table.
+   */
+  @Override
+  public void close() {
+    flush();
+    myTable.removeBatchWriter(this);
+  }
+}
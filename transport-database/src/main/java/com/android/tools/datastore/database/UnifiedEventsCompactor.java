@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Background service that bounds the size of a {@link UnifiedEventsTable} during long sessions. Events of high frequency sample kinds
+ * that are older than a horizon are replaced by downsampled copies at each of {@link #RESOLUTIONS_NS}, and
+ * {@link UnifiedEventsTable#queryUnifiedEventGroups} answers requests for old data from the resolution matching the requested range.
+ * <p>
+ * Each bucket keeps a subset of the original events, so that clients parse the result exactly like raw data:
+ * <ul>
+ * <li>Gauges (memory, energy, network speed) keep the events with the minimum and maximum value, so spikes survive downsampling.</li>
+ * <li>CPU usage events hold cumulative counters, so keeping the last event of a bucket makes the usage derived from consecutive events
+ * the average over the bucket.</li>
+ * </ul>
+ * The horizon is measured against the latest event of each series rather than the host clock, since timestamps come from the device.
+ */
+public class UnifiedEventsCompactor {
+  public static final long DEFAULT_HORIZON_NS = TimeUnit.MINUTES.toNanos(5);
+  private static final long COMPACTION_PERIOD_MS = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * Bucket widths of the downsampled events, finest first. Each one must be a multiple of the previous one.
+   */
+  @VisibleForTesting
+  static final long[] RESOLUTIONS_NS = {TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(10), TimeUnit.MINUTES.toNanos(1)};
+
+  /**
+   * A range is served from the coarsest resolution that still yields at least this many buckets.
+   */
+  @VisibleForTesting
+  static final int MIN_BUCKETS_PER_QUERY = 500;
+
+  /**
+   * Compaction reads and rewrites at most this much data at once, to keep the memory used by the first pass over a restored database low.
+   */
+  private static final long MAX_CHUNK_NS = TimeUnit.MINUTES.toNanos(10);
+
+  private static final Map<Event.Kind, ToLongFunction<Event>> GAUGE_VALUES = ImmutableMap.of(
+    Event.Kind.MEMORY_USAGE, event -> event.getMemoryUsage().getTotalMem(),
+    Event.Kind.ENERGY_USAGE,
+    event -> event.getEnergyUsage().getCpuUsage() + event.getEnergyUsage().getNetworkUsage() + event.getEnergyUsage().getLocationUsage(),
+    Event.Kind.NETWORK_SPEED, event -> event.getNetworkSpeed().getThroughput());
+  private static final Event.Kind CUMULATIVE_KIND = Event.Kind.CPU_USAGE;
+
+  @NotNull private final UnifiedEventsTable myTable;
+  private volatile long myHorizonNs;
+  @Nullable private Timer myTimer;
+
+  public UnifiedEventsCompactor(@NotNull UnifiedEventsTable table) {
+    this(table, DEFAULT_HORIZON_NS);
+  }
+
+  public UnifiedEventsCompactor(@NotNull UnifiedEventsTable table, long horizonNs) {
+    myTable = table;
+    myHorizonNs = horizonNs;
+  }
+
+  public long getHorizonNs() {
+    return myHorizonNs;
+  }
+
+  /**
+   * Sets how old events need to be, relative to the latest event of their series, before they are downsampled.
+   */
+  public void setHorizonNs(long horizonNs) {
+    myHorizonNs = horizonNs;
+  }
+
+  /**
+   * Starts compacting the table periodically on a background thread.
+   */
+  public synchronized void start() {
+    if (myTimer != null) {
+      return;
+    }
+    myTimer = new Timer("DataStoreCompactionTimer", true);
+    myTimer.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        compact();
+      }
+    }, COMPACTION_PERIOD_MS, COMPACTION_PERIOD_MS);
+  }
+
+  public synchronized void stop() {
+    if (myTimer != null) {
+      myTimer.cancel();
+      myTimer = null;
+    }
+  }
+
+  /**
+   * Downsamples every event of the compacted kinds that is older than the horizon.
+   */
+  public void compact() {
+    for (Event.Kind kind : GAUGE_VALUES.keySet()) {
+      compact(kind);
+    }
+    compact(CUMULATIVE_KIND);
+  }
+
+  private void compact(@NotNull Event.Kind kind) {
+    long coarsest = RESOLUTIONS_NS[RESOLUTIONS_NS.length - 1];
+    for (UnifiedEventsTable.SeriesTimeRange series : myTable.querySeriesTimeRanges(kind)) {
+      // Only whole buckets of the coarsest resolution are compacted, so that no bucket is ever split across two passes.
+      long cutoff = Math.floorDiv(series.myMaxTimestamp - myHorizonNs, coarsest) * coarsest;
+      long from = Math.floorDiv(series.myMinTimestamp, coarsest) * coarsest;
+      while (from < cutoff) {
+        long to = Math.min(from + MAX_CHUNK_NS, cutoff);
+        List<Event> events = myTable.querySeriesEvents(series, kind, from, to);
+        if (!events.isEmpty()) {
+          Map<Long, List<Event>> rollups = new LinkedHashMap<>();
+          for (long resolution : RESOLUTIONS_NS) {
+            rollups.put(resolution, downsample(kind, events, resolution));
+          }
+          myTable.replaceWithRollups(series, kind, from, to, rollups);
+        }
+        from = to;
+      }
+    }
+  }
+
+  /**
+   * @param events time-sorted events of a single series.
+   * @return the events representing each bucket of the given width, in time order.
+   */
+  @VisibleForTesting
+  @NotNull
+  static List<Event> downsample(@NotNull Event.Kind kind, @NotNull List<Event> events, long resolution) {
+    ToLongFunction<Event> gaugeValue = GAUGE_VALUES.get(kind);
+    List<Event> result = new ArrayList<>();
+    int bucketStart = 0;
+    while (bucketStart < events.size()) {
+      long bucket = Math.floorDiv(events.get(bucketStart).getTimestamp(), resolution);
+      int bucketEnd = bucketStart + 1;
+      while (bucketEnd < events.size() && Math.floorDiv(events.get(bucketEnd).getTimestamp(), resolution) == bucket) {
+        bucketEnd++;
+      }
+      if (gaugeValue == null) {
+        result.add(events.get(bucketEnd - 1));
+      }
+      else {
+        int min = -1;
+        int max = -1;
+        for (int i = bucketStart; i < bucketEnd; i++) {
+          Event event = events.get(i);
+          if (event.getIsEnded()) {
+            // Ends are not samples, keep them as is.
+            result.add(event);
+            continue;
+          }
+          long value = gaugeValue.applyAsLong(event);
+          if (min < 0 || value < gaugeValue.applyAsLong(events.get(min))) {
+            min = i;
+          }
+          if (max < 0 || value > gaugeValue.applyAsLong(events.get(max))) {
+            max = i;
+          }
+        }
+        if (min >= 0) {
+          result.add(events.get(min));
+          if (min != max) {
+            result.add(events.get(max));
+          }
+        }
+      }
+      bucketStart = bucketEnd;
+    }
+    result.sort((first, second) -> Long.compare(first.getTimestamp(), second.getTimestamp()));
+    return result;
+  }
+
+  /**
+   * @return the resolution of the downsampled events used to answer a query over [fromTimestamp, toTimestamp]. Unbounded queries use
+   * the finest resolution.
+   */
+  static long selectResolution(long fromTimestamp, long toTimestamp) {
+    long selected = RESOLUTIONS_NS[0];
+    if (fromTimestamp <= 0 || toTimestamp <= 0 || toTimestamp == Long.MAX_VALUE) {
+      return selected;
+    }
+    for (long resolution : RESOLUTIONS_NS) {
+      if ((toTimestamp - fromTimestamp) / resolution >= MIN_BUCKETS_PER_QUERY) {
+        selected = resolution;
+      }
+    }
+    return selected;
+  }
+}
@@ -15,7 +15,9 @@
  */
 package com.android.tools.datastore.database;
 
+import com.android.tools.idea.protobuf.ByteString;
 import com.android.tools.idea.protobuf.InvalidProtocolBufferException;
+import com.android.tools.idea.protobuf.UnsafeByteOperations;
 import com.android.tools.profiler.proto.Common.Event;
 import com.android.tools.profiler.proto.Transport.BytesRequest;
 import com.android.tools.profiler.proto.Transport.BytesResponse;
@@ -23,18 +25,62 @@ import com.android.tools.profiler.proto.Transport.EventGroup;
 import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicates;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statements> {
+  /**
+   * Where the queries for events are served from.
+   */
+  public enum EventStorage {
+    /** Events are only stored in SQL and every query parses their BLOBs. */
+    SQL,
+    /**
+     * The event queries of a stream are served by a {@link ColumnarEventStore}, which loads the stream from SQL when it is first queried
+     * and evicts the least recently queried streams. Events are always written to SQL, and queries that span all streams still read
+     * from SQL.
+     */
+    COLUMNAR
+  }
+
+  /**
+   * Payloads inserted through {@link #insertBytes} are split into rows of at most this many bytes, so that neither writing nor reading
+   * them requires a contiguous copy of the whole payload.
+   */
+  public static final int BYTES_CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * Sessions restored from a previous run are deleted when they started longer than this ago, or when there are more than
+   * {@link #MAX_RESTORED_SESSIONS} newer ones, so that a durable database doesn't grow with every session ever recorded.
+   */
+  @VisibleForTesting static final long RESTORED_SESSION_RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+  @VisibleForTesting static final int MAX_RESTORED_SESSIONS = 50;
+
+  /**
+   * Every chunk row also stores how many chunks the payload has, so that readers can tell a complete payload from one whose chunks are
+   * still being inserted through the shared connection.
+   */
+  private static final String[] BYTES_CHUNKS_TABLE_COLUMNS =
+    {"StreamId INTEGER NOT NULL", "Id STRING NOT NULL", "ChunkIndex INTEGER NOT NULL", "ChunkCount INTEGER NOT NULL", "Data BLOB"};
+
   public enum Statements {
     // Since no data should be updated after it has been inserted we drop any duplicated request from the poller.
     INSERT_EVENT(
@@ -45,8 +91,33 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
       "WHERE StreamId = ? AND ProcessId = ? And GroupId = ? And Kind = ? AND Timestamp >= ? AND Timestamp <= ?"),
     // Only used for test.
     QUERY_EVENTS("SELECT Data FROM [UnifiedEventsTable]"),
-    INSERT_BYTES("INSERT OR IGNORE INTO [BytesTable] (StreamId, Id, Data) VALUES (?, ?, ?)"),
-    GET_BYTES("SELECT Data FROM [BytesTable] WHERE StreamId = ? AND Id = ?");
+    QUERY_STREAM_EVENTS("SELECT Data FROM [UnifiedEventsTable] WHERE StreamId = ?"),
+    QUERY_SERIES_TIME_RANGES(
+      "SELECT StreamId, ProcessId, GroupId, MIN(Timestamp), MAX(Timestamp) FROM [UnifiedEventsTable] WHERE Kind = ? " +
+      "GROUP BY StreamId, ProcessId, GroupId"),
+    QUERY_SERIES_EVENTS(
+      "SELECT Data FROM [UnifiedEventsTable] " +
+      "WHERE Kind = ? AND StreamId = ? AND ProcessId = ? AND GroupId = ? AND Timestamp >= ? AND Timestamp < ? ORDER BY Timestamp"),
+    INSERT_ROLLUP_EVENT(
+      "INSERT OR IGNORE INTO [UnifiedEventsRollup] (StreamId, ProcessId, GroupId, Kind, Resolution, Timestamp, IsEnded, Data) " +
+      "VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
+    DELETE_ROLLUP_EVENTS(
+      "DELETE FROM [UnifiedEventsRollup] " +
+      "WHERE StreamId = ? AND ProcessId = ? And GroupId = ? And Kind = ? AND Timestamp >= ? AND Timestamp <= ?"),
+    QUERY_ROLLUP_KINDS("SELECT DISTINCT Kind FROM [UnifiedEventsRollup]"),
+    INSERT_BYTES_CHUNK("INSERT OR IGNORE INTO [BytesChunksTable] (StreamId, Id, ChunkIndex, ChunkCount, Data) VALUES (?, ?, ?, ?, ?)"),
+    GET_BYTES("SELECT Data, ChunkCount FROM [BytesChunksTable] WHERE StreamId = ? AND Id = ? ORDER BY ChunkIndex"),
+    GET_BYTES_CHUNK("SELECT Data, ChunkCount FROM [BytesChunksTable] WHERE StreamId = ? AND Id = ? AND ChunkIndex = ?"),
+    COUNT_BYTES_CHUNKS("SELECT COUNT(*) FROM [BytesChunksTable] WHERE StreamId = ? AND Id = ?"),
+    QUERY_GROUP_STARTS("SELECT Data FROM [UnifiedEventsTable] WHERE Kind = ? AND IsEnded = 0"),
+    QUERY_GROUP_END("SELECT MAX(Timestamp) FROM [UnifiedEventsTable] WHERE Kind = ? AND GroupId = ?"),
+    DELETE_GROUP("DELETE FROM [UnifiedEventsTable] WHERE Kind = ? AND GroupId = ?"),
+    DELETE_PROCESS_EVENTS("DELETE FROM [UnifiedEventsTable] WHERE StreamId = ? AND ProcessId = ? AND Timestamp >= ? AND Timestamp <= ?"),
+    DELETE_PROCESS_ROLLUP_EVENTS(
+      "DELETE FROM [UnifiedEventsRollup] WHERE StreamId = ? AND ProcessId = ? AND Timestamp >= ? AND Timestamp <= ?"),
+    // Payloads of captures are stored with the timestamp at which the capture started as their id.
+    DELETE_BYTES_IN_RANGE(
+      "DELETE FROM [BytesChunksTable] WHERE StreamId = ? AND Id GLOB '[0-9]*' AND CAST(Id AS INTEGER) BETWEEN ? AND ?");
 
     @NotNull private final String mySqlStatement;
 
@@ -60,6 +131,50 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
   }
 
+  /**
+   * Writers that may hold events which have not been inserted into the database yet. They are flushed before any read or delete so that
+   * callers always observe their own writes.
+   */
+  private final List<UnifiedEventsBatchWriter> myBatchWriters = new CopyOnWriteArrayList<>();
+
+  @NotNull private final EventStorage myEventStorage;
+
+  /**
+   * Serves the event queries of loaded streams when the table uses {@link EventStorage#COLUMNAR}, so that they don't parse every event
+   * BLOB again. Bytes are only stored in SQL.
+   */
+  @Nullable private final ColumnarEventStore myColumnarStore;
+
+  /**
+   * Held while a stream is loaded into {@link #myColumnarStore}, so that concurrent queries for it wait for a single load.
+   */
+  private final Object myColumnarLoadLock = new Object();
+
+  /**
+   * Kinds that have events in the [UnifiedEventsRollup] table, i.e. for which queries need to merge in the output of
+   * {@link UnifiedEventsCompactor}.
+   */
+  private final Set<Event.Kind> myRolledUpKinds = ConcurrentHashMap.newKeySet();
+
+  public UnifiedEventsTable() {
+    this(EventStorage.SQL);
+  }
+
+  public UnifiedEventsTable(@NotNull EventStorage eventStorage) {
+    this(eventStorage, ColumnarEventStore.DEFAULT_MAX_EVENTS);
+  }
+
+  @VisibleForTesting
+  UnifiedEventsTable(@NotNull EventStorage eventStorage, int maxColumnarEvents) {
+    myEventStorage = eventStorage;
+    myColumnarStore = eventStorage == EventStorage.COLUMNAR ? new ColumnarEventStore(maxColumnarEvents) : null;
+  }
+
+  @NotNull
+  public EventStorage getEventStorage() {
+    return myEventStorage;
+  }
+
   @Override
   public void prepareStatements() {
     try {
@@ -76,7 +191,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
   public void initialize(@NotNull Connection connection) {
     super.initialize(connection);
     try {
-      createTable("UnifiedEventsTable",
+      createPersistentTable("UnifiedEventsTable",
                   "StreamId INTEGER NOT NULL", // Optional filter, required for all data.
                   "ProcessId INTEGER NOT NULL", // Optional filter, not required for data (eg device/process).
                   "GroupId INTEGER NOT NULL", // Optional filter, not required for data.
@@ -85,15 +200,138 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
                   "Timestamp INTEGER NOT NULL", // Optional filter, required for all data.
                   "IsEnded INTEGER NOT NULL", // Optional filter, required for all data.
                   "Data BLOB");
-      createTable("BytesTable", "StreamId INTEGER NOT NULL", "Id STRING NOT NULL", "Data BLOB");
+      createPersistentTable("BytesChunksTable", BYTES_CHUNKS_TABLE_COLUMNS);
+      // Downsampled copies of old events, one set per resolution. See UnifiedEventsCompactor.
+      createPersistentTable("UnifiedEventsRollup",
+                            "StreamId INTEGER NOT NULL",
+                            "ProcessId INTEGER NOT NULL",
+                            "GroupId INTEGER NOT NULL",
+                            "Kind INTEGER NOT NULL",
+                            "Resolution INTEGER NOT NULL", // Bucket width in nanoseconds.
+                            "Timestamp INTEGER NOT NULL",
+                            "IsEnded INTEGER NOT NULL",
+                            "Data BLOB");
       createUniqueIndex("UnifiedEventsTable", "Kind", "StreamId", "ProcessId", "GroupId", "Timestamp", "IsEnded");
-      createUniqueIndex("BytesTable", "StreamId", "Id");
+      createUniqueIndex("BytesChunksTable", "StreamId", "Id", "ChunkIndex");
+      createUniqueIndex("UnifiedEventsRollup", "Kind", "Resolution", "StreamId", "ProcessId", "GroupId", "Timestamp", "IsEnded");
+      ResultSet rolledUpKinds = executeQuery(Statements.QUERY_ROLLUP_KINDS);
+      while (rolledUpKinds.next()) {
+        Event.Kind kind = Event.Kind.forNumber(rolledUpKinds.getInt(1));
+        if (kind != null) {
+          myRolledUpKinds.add(kind);
+        }
+      }
+      endRestoredGroups(Event.Kind.STREAM);
+      endRestoredGroups(Event.Kind.SESSION);
+      pruneRestoredSessions(System.currentTimeMillis());
     }
     catch (SQLException ex) {
       onError(ex);
     }
   }
 
+  /**
+   * Events restored from a previous run may belong to streams and sessions that were never ended because Studio exited while they were
+   * alive. Such groups get an end event at the last timestamp recorded for their stream and process, so they are treated as finished
+   * sessions instead of live ones. This is a no-op for a new database.
+   */
+  private void endRestoredGroups(@NotNull Event.Kind kind) throws SQLException {
+    ResultSet groups = executeOneTimeQuery(
+      "SELECT StreamId, ProcessId, GroupId, IsEnded, MAX(Timestamp) FROM [UnifiedEventsTable] WHERE Kind = ? " +
+      "GROUP BY StreamId, ProcessId, GroupId",
+      new Object[]{kind.getNumber()});
+    List<Object[]> openGroups = new ArrayList<>();
+    while (groups.next()) {
+      if (!groups.getBoolean("IsEnded")) {
+        openGroups.add(new Object[]{groups.getLong("StreamId"), groups.getInt("ProcessId"), groups.getLong("GroupId")});
+      }
+    }
+    for (Object[] group : openGroups) {
+      long streamId = (long)group[0];
+      int pid = (int)group[1];
+      ResultSet lastTimestamp = executeOneTimeQuery(
+        "SELECT MAX(Timestamp) FROM [UnifiedEventsTable] WHERE StreamId = ? AND ProcessId = ?", new Object[]{streamId, pid});
+      if (lastTimestamp.next()) {
+        insertUnifiedEvent(streamId, Event.newBuilder()
+          .setKind(kind)
+          .setPid(pid)
+          .setGroupId((long)group[2])
+          .setIsEnded(true)
+          .setTimestamp(lastTimestamp.getLong(1))
+          .build());
+      }
+    }
+    commit();
+  }
+
+  /**
+   * Deletes the sessions restored from a previous run that are past the retention policy, see {@link #RESTORED_SESSION_RETENTION_MS}.
+   * A session takes with it the events and rollups its process recorded while it was alive, and the payloads captured in that time.
+   * Sessions are ended by {@link #endRestoredGroups} before this runs, so none of them is live.
+   */
+  @VisibleForTesting
+  void pruneRestoredSessions(long nowEpochMs) throws SQLException {
+    List<Event> sessionStarts = new ArrayList<>();
+    ResultSet starts = executeQuery(Statements.QUERY_GROUP_STARTS, Event.Kind.SESSION.getNumber());
+    while (starts.next()) {
+      try {
+        sessionStarts.add(Event.parser().parseFrom(starts.getBytes(1)));
+      }
+      catch (InvalidProtocolBufferException ex) {
+        onError(ex);
+      }
+    }
+    // Newest sessions first.
+    sessionStarts.sort(Comparator.comparingLong(
+      (Event start) -> start.getSession().getSessionStarted().getStartTimestampEpochMs()).reversed());
+    for (int i = 0; i < sessionStarts.size(); i++) {
+      Event start = sessionStarts.get(i);
+      if (i >= MAX_RESTORED_SESSIONS || isPastRetention(start, nowEpochMs)) {
+        deleteSession(start);
+      }
+    }
+    commit();
+  }
+
+  private static boolean isPastRetention(@NotNull Event sessionStart, long nowEpochMs) {
+    return nowEpochMs - sessionStart.getSession().getSessionStarted().getStartTimestampEpochMs() > RESTORED_SESSION_RETENTION_MS;
+  }
+
+  private void deleteSession(@NotNull Event sessionStart) throws SQLException {
+    ResultSet end = executeQuery(Statements.QUERY_GROUP_END, Event.Kind.SESSION.getNumber(), sessionStart.getGroupId());
+    long endTimestamp = end.next() ? end.getLong(1) : sessionStart.getTimestamp();
+    long streamId = sessionStart.getSession().getSessionStarted().getStreamId();
+    int pid = sessionStart.getSession().getSessionStarted().getPid();
+    long startTimestamp = sessionStart.getTimestamp();
+    execute(Statements.DELETE_PROCESS_EVENTS, streamId, pid, startTimestamp, endTimestamp);
+    execute(Statements.DELETE_PROCESS_ROLLUP_EVENTS, streamId, pid, startTimestamp, endTimestamp);
+    execute(Statements.DELETE_BYTES_IN_RANGE, streamId, startTimestamp, endTimestamp);
+    execute(Statements.DELETE_GROUP, Event.Kind.SESSION.getNumber(), sessionStart.getGroupId());
+  }
+
+  /**
+   * Loads the stream into {@link #myColumnarStore} if it is not loaded yet, e.g. when a session restored from a durable database is opened.
+   *
+   * @return false if the stream cannot be served from the columnar store.
+   */
+  private boolean loadColumnarStream(long streamId) {
+    if (myColumnarStore == null || streamId == 0 || isClosed()) {
+      return false;
+    }
+    synchronized (myColumnarLoadLock) {
+      if (myColumnarStore.startLoading(streamId)) {
+        // Events inserted after startLoading go to SQL first, so they are either read here or added to the store by the insert.
+        myColumnarStore.finishLoading(streamId, queryUnifiedEvents(Statements.QUERY_STREAM_EVENTS, streamId));
+      }
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  boolean isColumnarStreamLoaded(long streamId) {
+    return myColumnarStore != null && myColumnarStore.isLoaded(streamId);
+  }
+
   public void insertUnifiedEvent(long streamId, @NotNull Event event) {
     execute(Statements.INSERT_EVENT,
             streamId,
@@ -104,14 +342,50 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
             event.getTimestamp(),
             event.getIsEnded() ? 1 : 0,
             event.toByteArray());
+    if (myColumnarStore != null && !isClosed()) {
+      myColumnarStore.insertAll(streamId, Collections.singletonList(event));
+    }
+  }
+
+  /**
+   * Inserts a list of events for a single stream in one JDBC batch. See {@link UnifiedEventsBatchWriter}.
+   */
+  public void insertUnifiedEvents(long streamId, @NotNull List<Event> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    executeBatch(Statements.INSERT_EVENT, events, event -> new Object[]{
+      streamId,
+      event.getPid(),
+      event.getGroupId(),
+      event.getKind().getNumber(),
+      event.getCommandId(),
+      event.getTimestamp(),
+      event.getIsEnded() ? 1 : 0,
+      event.toByteArray()});
+    if (myColumnarStore != null && !isClosed()) {
+      myColumnarStore.insertAll(streamId, events);
+    }
   }
 
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    flushPendingWrites();
+    if (myRolledUpKinds.contains(kind)) {
+      execute(Statements.DELETE_ROLLUP_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
+    }
+    deleteRawEvents(streamId, pid, groupId, kind, fromTimestamp, toTimestamp);
+  }
+
+  private void deleteRawEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    if (myColumnarStore != null && !isClosed()) {
+      myColumnarStore.delete(streamId, pid, groupId, kind, fromTimestamp, toTimestamp);
+    }
     execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
   }
 
   @VisibleForTesting
   public List<Event> queryUnifiedEvents() {
+    flushPendingWrites();
     return queryUnifiedEvents(Statements.QUERY_EVENTS);
   }
 
@@ -150,20 +424,49 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
    * Note: Group 2 and group 3 do not get returned. Group 2 only has an end event before our from timestamp, while Group 3 only has data
    * after.
    * Note: Group 5 gets returned as it has a single event before our from timestamp that does not ended, or ends after our to timestamp.
+   * <p>
+   * With {@link EventStorage#COLUMNAR} a query for a single stream is served by {@link ColumnarEventStore} with the same semantics, after
+   * loading the stream if needed.
+   * <p>
+   * Events older than the horizon of the {@link UnifiedEventsCompactor} only exist in downsampled form. For those kinds, the rolled up
+   * events at the resolution matching the requested range are merged into the result.
    *
    * @param request
    */
   public List<EventGroup> queryUnifiedEventGroups(@NotNull GetEventGroupsRequest request) {
+    flushPendingWrites();
+    List<EventGroup> groups = loadColumnarStream(request.getStreamId()) ? myColumnarStore.queryGroups(request) : null;
+    if (groups == null) {
+      groups = queryEventGroups("UnifiedEventsTable", request, null);
+    }
+    if (!myRolledUpKinds.contains(request.getKind())) {
+      return groups;
+    }
+    long resolution = UnifiedEventsCompactor.selectResolution(request.getFromTimestamp(), request.getToTimestamp());
+    return mergeEventGroups(request, groups, queryEventGroups("UnifiedEventsRollup", request, resolution));
+  }
+
+  /**
+   * Runs the +1/-1 query described in {@link #queryUnifiedEventGroups(GetEventGroupsRequest)} against the given table.
+   *
+   * @param resolution if not null, only rows with this resolution are considered. Only valid for the [UnifiedEventsRollup] table.
+   */
+  private List<EventGroup> queryEventGroups(@NotNull String table, @NotNull GetEventGroupsRequest request, @Nullable Long resolution) {
     ArrayList<Object> baseParams = new ArrayList<>();
     List<Object> beforeRangeParams = null;
     List<Object> afterRangeParams = null;
 
     HashMap<Long, EventGroup.Builder> builderGroups = new HashMap<>();
     // The string format allows for altering the group by results for +1 and -1 queries.
-    String sql = "SELECT Data, GroupId%s From [UnifiedEventsTable] WHERE Kind = ? %s";
+    String sql = "SELECT Data, GroupId%s From [" + table + "] WHERE Kind = ? %s";
     StringBuilder filter = new StringBuilder();
     baseParams.add(request.getKind().getNumber());
 
+    if (resolution != null) {
+      filter.append(" AND Resolution = ?");
+      baseParams.add(resolution);
+    }
+
     if (request.getStreamId() != 0) {
       filter.append(" AND StreamId = ?");
       baseParams.add(request.getStreamId());
@@ -241,25 +544,117 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     return builderGroups.values().stream().map(EventGroup.Builder::build).collect(Collectors.toList());
   }
 
+  /**
+   * Merges two query results whose events may overlap in time, keeping the +1/-1 rules of
+   * {@link #queryUnifiedEventGroups(GetEventGroupsRequest)}: at most one event per group before the range and one after it.
+   */
+  @NotNull
+  private static List<EventGroup> mergeEventGroups(@NotNull GetEventGroupsRequest request,
+                                                   @NotNull List<EventGroup> groups,
+                                                   @NotNull List<EventGroup> otherGroups) {
+    if (otherGroups.isEmpty()) {
+      return groups;
+    }
+    Map<Long, List<Event>> eventsByGroup = new HashMap<>();
+    for (List<EventGroup> source : Arrays.asList(groups, otherGroups)) {
+      for (EventGroup group : source) {
+        eventsByGroup.computeIfAbsent(group.getGroupId(), id -> new ArrayList<>()).addAll(group.getEventsList());
+      }
+    }
+    long from = request.getFromTimestamp();
+    long to = request.getToTimestamp();
+    boolean hasFrom = from > 0;
+    boolean hasTo = to > 0 && to != Long.MAX_VALUE;
+    List<EventGroup> result = new ArrayList<>(eventsByGroup.size());
+    eventsByGroup.forEach((groupId, events) -> {
+      events.sort(Comparator.comparingLong(Event::getTimestamp));
+      EventGroup.Builder group = EventGroup.newBuilder().setGroupId(groupId);
+      Event previous = null;
+      for (int i = 0; i < events.size(); i++) {
+        Event event = events.get(i);
+        boolean isBefore = hasFrom && event.getTimestamp() < from;
+        boolean isAfter = hasTo && event.getTimestamp() > to;
+        if (event.equals(previous) ||
+            (isBefore && i + 1 < events.size() && events.get(i + 1).getTimestamp() < from) ||
+            (isAfter && previous != null && previous.getTimestamp() > to)) {
+          continue;
+        }
+        group.addEvents(event);
+        previous = event;
+      }
+      result.add(group.build());
+    });
+    return result;
+  }
+
+  /**
+   * Stores the contents of the response as chunks of {@link #BYTES_CHUNK_SIZE}. An empty payload is stored as a single empty chunk so
+   * that it can be told apart from a missing one. All chunks are committed together, and readers ignore the payload until all of its
+   * chunks are visible.
+   */
   public void insertBytes(long streamId, @NotNull String id, @NotNull BytesResponse response) {
-    execute(Statements.INSERT_BYTES, streamId, id, response.toByteArray());
+    ByteString contents = response.getContents();
+    int chunkCount = Math.max(1, (contents.size() + BYTES_CHUNK_SIZE - 1) / BYTES_CHUNK_SIZE);
+    for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+      int offset = chunkIndex * BYTES_CHUNK_SIZE;
+      int end = Math.min(offset + BYTES_CHUNK_SIZE, contents.size());
+      execute(Statements.INSERT_BYTES_CHUNK, streamId, id, chunkIndex, chunkCount, contents.substring(offset, end).toByteArray());
+    }
+    commit();
   }
 
+  /**
+   * @return the stored payload, or null if there is none or it is not completely inserted yet. The contents are a concatenation of the
+   * stored chunks rather than a single contiguous copy; use {@link #getBytesStream} to avoid holding all of them at once.
+   */
   @Nullable
   public BytesResponse getBytes(@NotNull BytesRequest request) {
     try {
       ResultSet results = executeQuery(Statements.GET_BYTES, request.getStreamId(), request.getId());
-      if (results.next()) {
-        return BytesResponse.parseFrom(results.getBytes(1));
+      List<ByteString> chunks = new ArrayList<>();
+      int chunkCount = 0;
+      while (results.next()) {
+        chunks.add(UnsafeByteOperations.unsafeWrap(results.getBytes(1)));
+        chunkCount = results.getInt(2);
+      }
+      if (!chunks.isEmpty() && chunks.size() == chunkCount) {
+        return BytesResponse.newBuilder().setContents(ByteString.copyFrom(chunks)).build();
       }
     }
-    catch (InvalidProtocolBufferException | SQLException ex) {
+    catch (SQLException ex) {
       onError(ex);
     }
 
     return null;
   }
 
+  /**
+   * @return a stream that reads the stored payload one chunk at a time, or null if there is no payload, it is empty or it is not
+   * completely inserted yet.
+   */
+  @Nullable
+  public InputStream getBytesStream(@NotNull BytesRequest request) {
+    try {
+      ResultSet results = executeQuery(Statements.GET_BYTES_CHUNK, request.getStreamId(), request.getId(), 0);
+      if (!results.next()) {
+        return null;
+      }
+      byte[] firstChunk = results.getBytes(1);
+      int chunkCount = results.getInt(2);
+      if (firstChunk == null || firstChunk.length == 0) {
+        return null;
+      }
+      ResultSet count = executeQuery(Statements.COUNT_BYTES_CHUNKS, request.getStreamId(), request.getId());
+      if (count.next() && count.getInt(1) == chunkCount) {
+        return new ChunkedBytesInputStream(request.getStreamId(), request.getId(), chunkCount, firstChunk);
+      }
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+    return null;
+  }
+
   /**
    * Executes the sql statement and passes each event through the filter. If the filter returns true, the event is added
    * to the hashmap. Otherwise it is ignored.
@@ -289,6 +684,85 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
   }
 
+  /**
+   * @return the time span of the events of each (stream, pid, group) of the given kind. Used by {@link UnifiedEventsCompactor}.
+   */
+  @NotNull
+  List<SeriesTimeRange> querySeriesTimeRanges(@NotNull Event.Kind kind) {
+    flushPendingWrites();
+    List<SeriesTimeRange> ranges = new ArrayList<>();
+    try {
+      ResultSet results = executeQuery(Statements.QUERY_SERIES_TIME_RANGES, kind.getNumber());
+      while (results.next()) {
+        ranges.add(new SeriesTimeRange(results.getLong(1), results.getInt(2), results.getLong(3), results.getLong(4), results.getLong(5)));
+      }
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+    return ranges;
+  }
+
+  /**
+   * @return the events of a single (stream, pid, group) within [fromTimestamp, toTimestamp), in time order. Streams that are not loaded
+   * in the columnar store are read from SQL rather than loaded, since the compactor visits every stream.
+   */
+  @NotNull
+  List<Event> querySeriesEvents(@NotNull SeriesTimeRange series, @NotNull Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    List<Event> events = myColumnarStore != null && !isClosed()
+                         ? myColumnarStore.querySeriesEvents(series.myStreamId, series.myPid, series.myGroupId, kind, fromTimestamp,
+                                                             toTimestamp)
+                         : null;
+    if (events != null) {
+      return events;
+    }
+    return queryUnifiedEvents(Statements.QUERY_SERIES_EVENTS, kind.getNumber(), series.myStreamId, series.myPid, series.myGroupId,
+                              fromTimestamp, toTimestamp);
+  }
+
+  /**
+   * Replaces the events of a single (stream, pid, group) within [fromTimestamp, toTimestamp) with their downsampled versions, in a
+   * single transaction.
+   *
+   * @param rollups the downsampled events, keyed by the resolution they were computed for.
+   */
+  void replaceWithRollups(@NotNull SeriesTimeRange series,
+                          @NotNull Event.Kind kind,
+                          long fromTimestamp,
+                          long toTimestamp,
+                          @NotNull Map<Long, List<Event>> rollups) {
+    rollups.forEach((resolution, events) -> executeBatch(Statements.INSERT_ROLLUP_EVENT, events, event -> new Object[]{
+      series.myStreamId,
+      series.myPid,
+      series.myGroupId,
+      kind.getNumber(),
+      resolution,
+      event.getTimestamp(),
+      event.getIsEnded() ? 1 : 0,
+      event.toByteArray()}));
+    myRolledUpKinds.add(kind);
+    deleteRawEvents(series.myStreamId, series.myPid, series.myGroupId, kind, fromTimestamp, toTimestamp - 1);
+    commit();
+  }
+
+  void addBatchWriter(@NotNull UnifiedEventsBatchWriter writer) {
+    myBatchWriters.add(writer);
+  }
+
+  void removeBatchWriter(@NotNull UnifiedEventsBatchWriter writer) {
+    myBatchWriters.remove(writer);
+  }
+
+  /**
+   * Acts as a write barrier: every event handed to a registered {@link UnifiedEventsBatchWriter} before this call is visible to queries
+   * made after it.
+   */
+  private void flushPendingWrites() {
+    for (UnifiedEventsBatchWriter writer : myBatchWriters) {
+      writer.flush();
+    }
+  }
+
   private List<Event> queryUnifiedEvents(Statements stmt, Object... args) {
     List<Event> records = new ArrayList<>();
     try {
@@ -302,4 +776,92 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
     return records;
   }
+
+  /**
+   * Reads a payload from [BytesChunksTable], querying each chunk only once the previous one has been consumed.
+   */
+  private final class ChunkedBytesInputStream extends InputStream {
+    private final long myStreamId;
+    @NotNull private final String myId;
+    private final int myChunkCount;
+    @Nullable private byte[] myChunk;
+    private int myChunkIndex;
+    private int myOffset;
+
+    private ChunkedBytesInputStream(long streamId, @NotNull String id, int chunkCount, @NotNull byte[] firstChunk) {
+      myStreamId = streamId;
+      myId = id;
+      myChunkCount = chunkCount;
+      myChunk = firstChunk;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@NotNull byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (myChunk != null && myOffset == myChunk.length) {
+        nextChunk();
+      }
+      if (myChunk == null) {
+        return -1;
+      }
+      int count = Math.min(length, myChunk.length - myOffset);
+      System.arraycopy(myChunk, myOffset, buffer, offset, count);
+      myOffset += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return myChunk == null ? 0 : myChunk.length - myOffset;
+    }
+
+    private void nextChunk() throws IOException {
+      myChunkIndex++;
+      myOffset = 0;
+      myChunk = null;
+      if (myChunkIndex >= myChunkCount) {
+        return;
+      }
+      if (isClosed()) {
+        throw new IOException("Database closed while reading bytes " + myId);
+      }
+      try {
+        ResultSet results = executeQuery(Statements.GET_BYTES_CHUNK, myStreamId, myId, myChunkIndex);
+        if (!results.next()) {
+          throw new IOException(String.format("Chunk %d of bytes %s is missing", myChunkIndex, myId));
+        }
+        myChunk = results.getBytes(1);
+      }
+      catch (SQLException ex) {
+        throw new IOException(ex);
+      }
+    }
+  }
+
+  /**
+   * Identifies the events of a single (stream, pid, group) of a kind and the time they span.
+   */
+  static final class SeriesTimeRange {
+    final long myStreamId;
+    final int myPid;
+    final long myGroupId;
+    final long myMinTimestamp;
+    final long myMaxTimestamp;
+
+    SeriesTimeRange(long streamId, int pid, long groupId, long minTimestamp, long maxTimestamp) {
+      myStreamId = streamId;
+      myPid = pid;
+      myGroupId = groupId;
+      myMinTimestamp = minTimestamp;
+      myMaxTimestamp = maxTimestamp;
+    }
+  }
 }
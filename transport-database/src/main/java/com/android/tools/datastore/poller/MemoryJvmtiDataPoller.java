@@ -17,9 +17,6 @@ package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.database.MemoryLiveAllocationTable;
 import com.android.tools.profiler.proto.Common;
-import com.android.tools.profiler.proto.Memory;
-import com.android.tools.profiler.proto.Memory.BatchAllocationContexts;
-import com.android.tools.profiler.proto.Memory.BatchAllocationEvents;
 import com.android.tools.profiler.proto.MemoryProfiler;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryData;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryRequest;
@@ -47,15 +44,10 @@ public class MemoryJvmtiDataPoller extends PollRunner {
       .newBuilder().setSession(mySession).setStartTime(myDataRequestStartTimestampNs).setEndTime(Long.MAX_VALUE);
     MemoryData response = myPollingService.getJvmtiData(dataRequestBuilder.build());
 
-    for (BatchAllocationContexts sample : response.getBatchAllocationContextsList()) {
-      myLiveAllocationTable.insertAllocationContexts(mySession, sample);
-    }
-    for (BatchAllocationEvents sample : response.getBatchAllocationEventsList()) {
-      myLiveAllocationTable.insertAllocationEvents(mySession, sample);
-    }
-    for (Memory.BatchJNIGlobalRefEvent batchJniEvent : response.getJniReferenceEventBatchesList()) {
-      myLiveAllocationTable.insertJniReferenceData(mySession, batchJniEvent);
-    }
+    // Each poll can return many batches, which are inserted together rather than one statement at a time.
+    myLiveAllocationTable.insertAllocationContexts(mySession, response.getBatchAllocationContextsList());
+    myLiveAllocationTable.insertAllocationEvents(mySession, response.getBatchAllocationEventsList());
+    myLiveAllocationTable.insertJniReferenceData(mySession, response.getJniReferenceEventBatchesList());
     for (MemoryProfiler.AllocationSamplingRateEvent event : response.getAllocSamplingRateEventsList()) {
       myLiveAllocationTable.insertOrReplaceAllocationSamplingRateEvent(mySession, event);
     }
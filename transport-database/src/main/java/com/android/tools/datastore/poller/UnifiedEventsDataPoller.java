@@ -17,7 +17,9 @@ package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.UnifiedEventsBatchWriter;
 import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.service.EventSubscriptions;
 import com.android.tools.idea.io.grpc.StatusRuntimeException;
 import com.android.tools.profiler.proto.Common.Event;
 import com.android.tools.profiler.proto.Transport.GetEventsRequest;
@@ -26,6 +28,7 @@ import java.util.Iterator;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This is a thread safe class to poll events from a grpc service. This class cannot be restarted once
@@ -36,6 +39,7 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
   @NotNull private final UnifiedEventsTable myTable;
   @NotNull private final TransportServiceGrpc.TransportServiceBlockingStub myEventPollingService;
   @NotNull private final DataStoreService myDataStoreService;
+  @Nullable private final EventSubscriptions mySubscriptions;
   @NotNull private final CountDownLatch myRunningLatch;
   @NotNull private final AtomicBoolean myIsRunning = new AtomicBoolean(false);
 
@@ -43,7 +47,19 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
                                  @NotNull UnifiedEventsTable unifiedEventsTable,
                                  @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
                                  @NotNull DataStoreService dataStoreService) {
+    this(streamId, unifiedEventsTable, pollingService, dataStoreService, null);
+  }
+
+  /**
+   * @param subscriptions if not null, every event received is also pushed to the matching subscriptions.
+   */
+  public UnifiedEventsDataPoller(long streamId,
+                                 @NotNull UnifiedEventsTable unifiedEventsTable,
+                                 @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
+                                 @NotNull DataStoreService dataStoreService,
+                                 @Nullable EventSubscriptions subscriptions) {
     myEventPollingService = pollingService;
+    mySubscriptions = subscriptions;
     myDataStoreService = dataStoreService;
     myStreamId = streamId;
     myTable = unifiedEventsTable;
@@ -69,19 +85,27 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
   @Override
   public void run() {
     myIsRunning.set(true);
+    // Events are group-committed instead of being inserted one row at a time; the table flushes the writer before serving any query.
+    UnifiedEventsBatchWriter writer = new UnifiedEventsBatchWriter(myStreamId, myTable);
     try {
       // The iterator returned will block on next calls, only returning when data is received or the server disconnects.
       Iterator<Event> events = myEventPollingService.getEvents(GetEventsRequest.getDefaultInstance());
       while (events.hasNext()) {
         Event event = events.next();
         if (event != null) {
-          myTable.insertUnifiedEvent(myStreamId, event);
+          writer.enqueue(event);
+          if (mySubscriptions != null) {
+            mySubscriptions.publish(myStreamId, event);
+          }
         }
       }
     }
     catch (StatusRuntimeException exception) {
       // device disconnect logic handle via TransportDeviceManager
     }
+    finally {
+      writer.close();
+    }
     // Signal end of run.
     myRunningLatch.countDown();
   }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.service;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Registry of in-process listeners that are pushed every event received by the datastore, so that clients only need to process
+ * deltas instead of re-querying {@link TransportService#getEventGroups} on a timer.
+ * <p>
+ * A subscription filters on the kind, stream id, pid and group id of its {@link GetEventGroupsRequest}. As with queries, a stream id,
+ * pid or group id of 0 matches everything. Timestamp and command id filters are ignored.
+ */
+public class EventSubscriptions {
+  private final List<Subscription> mySubscriptions = new CopyOnWriteArrayList<>();
+
+  public final class Subscription implements AutoCloseable {
+    @NotNull private final GetEventGroupsRequest myFilter;
+    @NotNull private final Executor myExecutor;
+    @NotNull private final Consumer<Event> myListener;
+
+    private Subscription(@NotNull GetEventGroupsRequest filter, @NotNull Executor executor, @NotNull Consumer<Event> listener) {
+      myFilter = filter;
+      myExecutor = executor;
+      myListener = listener;
+    }
+
+    private boolean matches(long streamId, @NotNull Event event) {
+      return event.getKind() == myFilter.getKind() &&
+             (myFilter.getStreamId() == 0 || myFilter.getStreamId() == streamId) &&
+             (myFilter.getPid() == 0 || myFilter.getPid() == event.getPid()) &&
+             (myFilter.getGroupId() == 0 || myFilter.getGroupId() == event.getGroupId());
+    }
+
+    /**
+     * Stops pushing events to the listener. Events already handed to the executor may still be delivered.
+     */
+    @Override
+    public void close() {
+      mySubscriptions.remove(this);
+    }
+  }
+
+  @NotNull
+  public Subscription subscribe(@NotNull GetEventGroupsRequest filter, @NotNull Executor executor, @NotNull Consumer<Event> listener) {
+    Subscription subscription = new Subscription(filter, executor, listener);
+    mySubscriptions.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * Notifies every matching subscription of an event received for the given stream.
+   */
+  public void publish(long streamId, @NotNull Event event) {
+    for (Subscription subscription : mySubscriptions) {
+      if (subscription.matches(streamId, event)) {
+        subscription.myExecutor.execute(() -> subscription.myListener.accept(event));
+      }
+    }
+  }
+
+  public int getSubscriptionCount() {
+    return mySubscriptions.size();
+  }
+}
@@ -48,15 +48,18 @@ import com.android.tools.profiler.proto.Transport.VersionRequest;
 import com.android.tools.profiler.proto.Transport.VersionResponse;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.google.common.annotations.VisibleForTesting;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Datastore layer of the unified event rpc pipeline, responsible for forwarding commands to the device and handling generic event
@@ -80,6 +83,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
    */
   private final Map<Channel, Stream> myChannelToStream = new HashMap<>();
   @VisibleForTesting final AtomicInteger myNextCommandId = new AtomicInteger();
+  @NotNull private final EventSubscriptions myEventSubscriptions = new EventSubscriptions();
 
   public TransportService(@NotNull DataStoreService service,
                           @NotNull UnifiedEventsTable unifiedTable,
@@ -111,7 +115,8 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     TransportServiceGrpc.TransportServiceBlockingStub stub = myService.getTransportClient(streamId);
     assert (stub != null);
     streamConnected(stream);
-    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myTable, stub, myService);
+    UnifiedEventsDataPoller unifiedPoller =
+      new UnifiedEventsDataPoller(stream.getStreamId(), myTable, stub, myService, myEventSubscriptions);
     myUnifiedEventsPollers.put(channel, unifiedPoller);
     myChannelToStream.put(channel, stream);
     DataStoreTable.addDataStoreErrorCallback(unifiedPoller);
@@ -131,24 +136,42 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     }
   }
 
+  /**
+   * Registers a listener that is pushed every new event matching the kind, stream id, pid and group id of the filter. This lets in-process
+   * clients keep an incremental view of the data instead of polling {@link #getEventGroups}.
+   *
+   * @return the subscription, which must be closed once the listener is no longer needed.
+   */
+  @NotNull
+  public EventSubscriptions.Subscription subscribeToEvents(@NotNull GetEventGroupsRequest filter,
+                                                           @NotNull Executor executor,
+                                                           @NotNull Consumer<Event> listener) {
+    return myEventSubscriptions.subscribe(filter, executor, listener);
+  }
+
   private void streamConnected(Stream stream) {
-    myTable.insertUnifiedEvent(DataStoreService.DATASTORE_RESERVED_STREAM_ID, Event.newBuilder()
-      .setKind(Event.Kind.STREAM)
-      .setGroupId(stream.getStreamId())
-      .setTimestamp(System.nanoTime())
-      .setStream(StreamData.newBuilder()
-                   .setStreamConnected(StreamData.StreamConnected.newBuilder()
-                                         .setStream(stream)))
-      .build());
+    insertDatastoreEvent(Event.newBuilder()
+                           .setKind(Event.Kind.STREAM)
+                           .setGroupId(stream.getStreamId())
+                           .setTimestamp(System.nanoTime())
+                           .setStream(StreamData.newBuilder()
+                                        .setStreamConnected(StreamData.StreamConnected.newBuilder()
+                                                              .setStream(stream)))
+                           .build());
   }
 
   private void streamDisconnected(Stream stream) {
-    myTable.insertUnifiedEvent(DataStoreService.DATASTORE_RESERVED_STREAM_ID, Event.newBuilder()
-      .setKind(Event.Kind.STREAM)
-      .setGroupId(stream.getStreamId())
-      .setIsEnded(true)
-      .setTimestamp(System.nanoTime())
-      .build());
+    insertDatastoreEvent(Event.newBuilder()
+                           .setKind(Event.Kind.STREAM)
+                           .setGroupId(stream.getStreamId())
+                           .setIsEnded(true)
+                           .setTimestamp(System.nanoTime())
+                           .build());
+  }
+
+  private void insertDatastoreEvent(@NotNull Event event) {
+    myTable.insertUnifiedEvent(DataStoreService.DATASTORE_RESERVED_STREAM_ID, event);
+    myEventSubscriptions.publish(DataStoreService.DATASTORE_RESERVED_STREAM_ID, event);
   }
 
   @Override
@@ -197,6 +220,28 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
 
   @Override
   public void getBytes(BytesRequest request, StreamObserver<BytesResponse> responseObserver) {
+    responseObserver.onNext(fetchBytes(request));
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * In-process alternative to {@link #getBytes(BytesRequest, StreamObserver)} that does not need to hold the whole payload in memory once
+   * it has been cached: cached payloads are read from the database one chunk at a time.
+   *
+   * @return a stream of the payload, or null if it is empty or unavailable.
+   */
+  @Nullable
+  public InputStream openBytesStream(@NotNull BytesRequest request) {
+    InputStream stream = myTable.getBytesStream(request);
+    if (stream != null) {
+      return stream;
+    }
+    BytesResponse response = fetchBytes(request);
+    return response.getContents().isEmpty() ? null : response.getContents().newInput();
+  }
+
+  @NotNull
+  private BytesResponse fetchBytes(@NotNull BytesRequest request) {
     // TODO: Currently the cache is on demand, we want to look into caching all available files.
     BytesResponse response = myTable.getBytes(request);
     long streamId = request.getStreamId();
@@ -211,9 +256,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     else if (response == null) {
       response = BytesResponse.getDefaultInstance();
     }
-
-    responseObserver.onNext(response);
-    responseObserver.onCompleted();
+    return response;
   }
 
   @Override
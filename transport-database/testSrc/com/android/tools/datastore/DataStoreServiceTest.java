@@ -38,6 +38,7 @@ import com.android.tools.idea.io.grpc.StatusRuntimeException;
 import com.android.tools.idea.io.grpc.inprocess.InProcessChannelBuilder;
 import com.android.tools.idea.io.grpc.inprocess.InProcessServerBuilder;
 import com.android.tools.idea.io.grpc.stub.StreamObserver;
+import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Common.AgentData;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
 import com.android.tools.profiler.proto.EventServiceGrpc;
@@ -45,6 +46,7 @@ import com.android.tools.profiler.proto.MemoryServiceGrpc;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
 import com.android.tools.profiler.proto.ProfilerServiceGrpc;
 import com.android.tools.profiler.proto.Transport.AgentStatusRequest;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
 import com.android.tools.profiler.proto.Transport.GetDevicesRequest;
 import com.android.tools.profiler.proto.Transport.GetDevicesResponse;
 import com.android.tools.profiler.proto.Transport.GetProcessesRequest;
@@ -187,6 +189,28 @@ public class DataStoreServiceTest extends DataStorePollerTest {
     dataStoreService.shutdown();
   }
 
+  @Test
+  public void testColumnarEventStorageOnDurableDatabase() {
+    myDataStore.shutdown();
+    myDataStore = new DataStoreService(SERVICE_NAME, myServicePath, getPollTicker()::run, new FakeLogService(),
+                                       UnifiedEventsTable.EventStorage.COLUMNAR);
+    UnifiedEventsTable table = myDataStore.getUnifiedEventsTable();
+    assertThat(table.getEventStorage()).isEqualTo(UnifiedEventsTable.EventStorage.COLUMNAR);
+    assertThat(myDataStore.getDatabases().keySet()).contains(BackingNamespace.DEFAULT_SHARED_NAMESPACE);
+
+    Common.Event event = Common.Event.newBuilder().setKind(Common.Event.Kind.PROCESS).setPid(1).setGroupId(1).setTimestamp(10).build();
+    table.insertUnifiedEvent(STREAM.getStreamId(), event);
+    GetEventGroupsRequest request = GetEventGroupsRequest.newBuilder()
+      .setStreamId(STREAM.getStreamId()).setKind(Common.Event.Kind.PROCESS).setPid(1).build();
+    assertThat(table.queryUnifiedEventGroups(request).get(0).getEventsList()).containsExactly(event);
+
+    // The events are also written to the durable database, and loaded into the columnar store of the next run when queried.
+    myDataStore.shutdown();
+    myDataStore = new DataStoreService(SERVICE_NAME, myServicePath, getPollTicker()::run, new FakeLogService(),
+                                       UnifiedEventsTable.EventStorage.COLUMNAR);
+    assertThat(myDataStore.getUnifiedEventsTable().queryUnifiedEventGroups(request).get(0).getEventsList()).containsExactly(event);
+  }
+
   private static class MemoryServiceStub extends MemoryServiceGrpc.MemoryServiceImplBase {
   }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+
+/**
+ * Validates that a [UnifiedEventsTable] that serves its events from a [ColumnarEventStore] answers queries exactly like the SQL
+ * implementation.
+ */
+class ColumnarEventStoreTest {
+  private lateinit var dbFile: File
+  private lateinit var sqlDatabase: DataStoreDatabase
+  private lateinit var memoryDatabase: DataStoreDatabase
+  private lateinit var sqlTable: UnifiedEventsTable
+  private lateinit var columnarTable: UnifiedEventsTable
+
+  // Same layout as UnifiedEventsTableTest, plus an out of order insert and a second stream.
+  private val events = listOf(event(Common.Event.Kind.SESSION, false, 1, 1, 4, 1),
+                              event(Common.Event.Kind.SESSION, false, 1, 1, 4, 3),
+                              event(Common.Event.Kind.SESSION, false, 1, 1, 4, 2),
+                              event(Common.Event.Kind.SESSION, false, 1, 1, 4, 4),
+                              event(Common.Event.Kind.SESSION, false, 2, 1, 5, 5),
+                              event(Common.Event.Kind.SESSION, true, 2, 1, 5, 6),
+                              event(Common.Event.Kind.PROCESS, true, 2, 1, -1, 10),
+                              event(Common.Event.Kind.SESSION, false, 1, 2, 6, 7),
+                              event(Common.Event.Kind.SESSION, false, 2, 2, 7, 8),
+                              event(Common.Event.Kind.SESSION, true, 2, 2, 7, 9),
+                              event(Common.Event.Kind.SESSION, false, 3, 3, -1, 1),
+                              event(Common.Event.Kind.SESSION, true, 3, 3, -1, 3))
+
+  @Before
+  fun setUp() {
+    dbFile = File.createTempFile("ColumnarEventStoreTest", "sql")
+    dbFile.deleteOnExit()
+    sqlDatabase = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    memoryDatabase = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.PERFORMANT, FakeLogService())
+    sqlTable = UnifiedEventsTable().apply { initialize(sqlDatabase.connection) }
+    columnarTable = UnifiedEventsTable(UnifiedEventsTable.EventStorage.COLUMNAR).apply { initialize(memoryDatabase.connection) }
+    for (table in listOf(sqlTable, columnarTable)) {
+      events.forEach { table.insertUnifiedEvent(1, it) }
+      table.insertUnifiedEvent(2, event(Common.Event.Kind.SESSION, false, 1, 1, 4, 5))
+    }
+  }
+
+  @After
+  fun tearDown() {
+    sqlDatabase.disconnect()
+    memoryDatabase.disconnect()
+  }
+
+  @Test
+  fun queriesMatchSqlImplementation() {
+    val requests = mutableListOf<GetEventGroupsRequest>()
+    for (kind in listOf(Common.Event.Kind.SESSION, Common.Event.Kind.PROCESS, Common.Event.Kind.NONE)) {
+      for (streamId in listOf(0L, 1L, 2L)) {
+        for (pid in 0..2) {
+          for (groupId in 0L..2L) {
+            for ((from, to) in listOf(0L to 0L, 4L to 0L, 0L to 3L, 3L to 6L, 3L to 3L, 2L to Long.MAX_VALUE)) {
+              requests.add(GetEventGroupsRequest.newBuilder().setKind(kind).setStreamId(streamId).setPid(pid).setGroupId(groupId)
+                             .setFromTimestamp(from).setToTimestamp(to).build())
+            }
+          }
+        }
+      }
+      requests.add(GetEventGroupsRequest.newBuilder().setKind(kind).setCommandId(4).setFromTimestamp(2).setToTimestamp(3).build())
+    }
+
+    for (request in requests) {
+      val expected = sqlTable.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+      val actual = columnarTable.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+      assertWithMessage(request.toString()).that(actual).isEqualTo(expected)
+    }
+  }
+
+  @Test
+  fun duplicatedEventsAreIgnored() {
+    val duplicate = events[0].toBuilder().setSession(Common.SessionData.getDefaultInstance()).setCommandId(100).build()
+    columnarTable.insertUnifiedEvent(1, duplicate)
+    assertThat(columnarTable.queryUnifiedEvents()).doesNotContain(duplicate)
+    assertThat(columnarTable.queryUnifiedEvents()).hasSize(events.size + 1)
+  }
+
+  @Test
+  fun deleteEvents() {
+    columnarTable.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 2, 3)
+    sqlTable.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 2, 3)
+    assertThat(columnarTable.queryUnifiedEvents()).containsExactlyElementsIn(sqlTable.queryUnifiedEvents())
+  }
+
+  @Test
+  fun eventsAreReturnedInTimeOrder() {
+    val result = columnarTable.queryUnifiedEventGroups(
+      GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setPid(1).setGroupId(1).build())
+    assertThat(result).hasSize(1)
+    assertThat(result[0].eventsList.map { it.timestamp }).containsExactly(1L, 2L, 3L, 4L).inOrder()
+  }
+
+  @Test
+  fun streamsAreLoadedWhenQueriedAndEvictedWhenOverTheBound() {
+    val boundedFile = File.createTempFile("ColumnarEventStoreTest", "sql").apply { deleteOnExit() }
+    val boundedDatabase = DataStoreDatabase(boundedFile.absolutePath, DataStoreDatabase.Characteristic.PERFORMANT, FakeLogService())
+    try {
+      val table = UnifiedEventsTable(UnifiedEventsTable.EventStorage.COLUMNAR, events.size).apply { initialize(boundedDatabase.connection) }
+      events.forEach { table.insertUnifiedEvent(1, it) }
+      table.insertUnifiedEvent(2, event(Common.Event.Kind.SESSION, false, 1, 1, 4, 5))
+      // Inserting does not load a stream.
+      assertThat(table.isColumnarStreamLoaded(1)).isFalse()
+      assertThat(table.isColumnarStreamLoaded(2)).isFalse()
+
+      val stream1 = GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).build()
+      val stream2 = GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(2).build()
+      fun groups(request: GetEventGroupsRequest, table: UnifiedEventsTable) =
+        table.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+
+      assertThat(groups(stream1, table)).isEqualTo(groups(stream1, sqlTable))
+      assertThat(table.isColumnarStreamLoaded(1)).isTrue()
+
+      // Loading the second stream goes over the bound, which evicts the least recently queried stream.
+      assertThat(groups(stream2, table)).isEqualTo(groups(stream2, sqlTable))
+      assertThat(table.isColumnarStreamLoaded(1)).isFalse()
+      assertThat(table.isColumnarStreamLoaded(2)).isTrue()
+
+      // Events inserted into a loaded stream are served without reloading it.
+      assertThat(groups(stream1, table)).isEqualTo(groups(stream1, sqlTable))
+      val late = event(Common.Event.Kind.SESSION, false, 1, 1, 4, 20)
+      table.insertUnifiedEvent(1, late)
+      assertThat(table.isColumnarStreamLoaded(1)).isTrue()
+      assertThat(groups(stream1, table)[1L]).contains(late)
+    }
+    finally {
+      boundedDatabase.disconnect()
+    }
+  }
+
+  private fun event(kind: Common.Event.Kind, isEnded: Boolean, pid: Int, groupId: Long, commandId: Int, timestamp: Long) =
+    Common.Event.newBuilder()
+      .setKind(kind)
+      .setIsEnded(isEnded)
+      .setPid(pid)
+      .setGroupId(groupId)
+      .setCommandId(commandId)
+      .setTimestamp(timestamp)
+      .build()
+}
@@ -14,12 +14,17 @@
 package com.android.tools.datastore.database
 
 import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.DataStoreSchema
 import com.android.tools.datastore.FakeLogService
+import com.android.tools.idea.protobuf.ByteString
+import com.android.tools.profiler.proto.Transport.BytesRequest
+import com.android.tools.profiler.proto.Transport.BytesResponse
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
 import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.sql.DriverManager
 
 class DataStoreDatabaseTest {
 
@@ -34,17 +39,101 @@ class DataStoreDatabaseTest {
   }
 
   @Test
-  fun testDatabaseDeletesExisitingFileOnLoad() {
+  fun testDatabaseReplacesUnreadableFileOnLoad() {
     val outputStream = BufferedOutputStream(FileOutputStream(myDatabaseFile))
     outputStream.write(ByteArray(1024))
     outputStream.close()
     assertThat(myDatabaseFile.length()).isEqualTo(1024)
     val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
-    assertThat(myDatabaseFile.length()).isEqualTo(0)
+    assertThat(db.connection.isClosed).isFalse()
+    assertThat(DataStoreSchema.readVersion(db.connection)).isEqualTo(DataStoreSchema.CURRENT_VERSION)
     db.disconnect()
     assertThat(myDatabaseFile.exists()).isTrue()
   }
 
+  @Test
+  fun testDatabaseDiscardsUnversionedFileOnLoad() {
+    myDatabaseFile.delete()
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use {
+      it.createStatement().execute("CREATE TABLE LegacyTable (Data BLOB)")
+    }
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    db.connection.createStatement().executeQuery("SELECT name FROM sqlite_master WHERE name = 'LegacyTable'").use {
+      assertThat(it.next()).isFalse()
+    }
+    db.disconnect()
+  }
+
+  @Test
+  fun testDurableDatabaseKeepsDataAcrossRestarts() {
+    myDatabaseFile.delete()
+    var db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    db.connection.createStatement().use {
+      assertThat(it.executeQuery("PRAGMA journal_mode").getString(1)).isEqualTo("wal")
+      it.execute("CREATE TABLE IF NOT EXISTS SessionData (Value INTEGER)")
+      it.execute("INSERT INTO SessionData (Value) VALUES (42)")
+    }
+    db.connection.commit()
+    db.checkpoint()
+    db.disconnect()
+
+    db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    db.connection.createStatement().executeQuery("SELECT Value FROM SessionData").use {
+      assertThat(it.next()).isTrue()
+      assertThat(it.getInt(1)).isEqualTo(42)
+    }
+    db.disconnect()
+  }
+
+  @Test
+  fun testSchemaMigrationsRunInOrder() {
+    myDatabaseFile.delete()
+    val applied = mutableListOf<Int>()
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      connection.autoCommit = false
+      DataStoreSchema.upgrade(connection, 1, emptyList())
+      DataStoreSchema.upgrade(connection, 3, listOf(DataStoreSchema.Migration { applied.add(2) },
+                                                    DataStoreSchema.Migration { applied.add(3) }))
+      assertThat(applied).containsExactly(2, 3).inOrder()
+      assertThat(DataStoreSchema.readVersion(connection)).isEqualTo(3)
+    }
+  }
+
+  @Test
+  fun testVersion1BytesAreSplitIntoChunks() {
+    myDatabaseFile.delete()
+    val contents = ByteString.copyFrom(ByteArray(UnifiedEventsTable.BYTES_CHUNK_SIZE * 2 + 10) { it.toByte() })
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      connection.autoCommit = false
+      DataStoreSchema.upgrade(connection, 1, emptyList())
+      connection.createStatement().execute("CREATE TABLE BytesTable (StreamId INTEGER NOT NULL, Id STRING NOT NULL, Data BLOB)")
+      connection.prepareStatement("INSERT INTO BytesTable (StreamId, Id, Data) VALUES (1, 'id', ?)").use {
+        it.setBytes(1, BytesResponse.newBuilder().setContents(contents).build().toByteArray())
+        it.execute()
+      }
+      connection.commit()
+    }
+
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    assertThat(DataStoreSchema.readVersion(db.connection)).isEqualTo(DataStoreSchema.CURRENT_VERSION)
+    db.connection.createStatement().executeQuery("SELECT name FROM sqlite_master WHERE name = 'BytesTable'").use {
+      assertThat(it.next()).isFalse()
+    }
+    val table = UnifiedEventsTable().apply { initialize(db.connection) }
+    assertThat(table.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("id").build())!!.contents).isEqualTo(contents)
+    db.disconnect()
+  }
+
+  @Test(expected = DataStoreSchema.IncompatibleSchemaException::class)
+  fun testNewerSchemaIsIncompatible() {
+    myDatabaseFile.delete()
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      connection.autoCommit = false
+      DataStoreSchema.upgrade(connection, 2, listOf(DataStoreSchema.Migration { }))
+      DataStoreSchema.upgrade(connection, 1, emptyList())
+    }
+  }
+
   @Test
   fun testConnectionIsOpen() {
     // Verify persistent database
@@ -25,6 +25,7 @@ import org.junit.Ignore
 import org.junit.Test
 import java.io.File
 import java.lang.reflect.Modifier
+import java.sql.Connection
 import java.sql.SQLException
 import java.util.*
 import java.util.function.Consumer
@@ -40,6 +41,8 @@ abstract class DatabaseTest<T : DataStoreTable<*>> {
   protected lateinit var table: T
   private lateinit var dbFile: File
   private lateinit var database: DataStoreDatabase
+  protected val connection: Connection
+    get() = database.connection
 
   @Before
   @Throws(Exception::class)
@@ -125,6 +125,28 @@ public class MemoryLiveAllocationTableTest extends DatabaseTest<MemoryLiveAlloca
     assertThat(querySample.get(0)).isEqualTo(sample1);
   }
 
+  @Test
+  public void testBatchInsertAllocationEvents() {
+    AllocationEvent alloc1 = AllocationEvent
+      .newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS1_INSTANCE1_TAG).setClassTag(CLASS1))
+      .setTimestamp(0)
+      .build();
+    AllocationEvent alloc2 = AllocationEvent
+      .newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS2_INSTANCE1_TAG).setClassTag(CLASS2))
+      .setTimestamp(4)
+      .build();
+
+    BatchAllocationEvents sample1 = BatchAllocationEvents.newBuilder().setTimestamp(1).addEvents(alloc1).build();
+    BatchAllocationEvents sample2 = BatchAllocationEvents.newBuilder().setTimestamp(5).addEvents(alloc2).build();
+    BatchAllocationEvents dupSample1 = BatchAllocationEvents.newBuilder().setTimestamp(1).addEvents(alloc2).build();
+    getTable().insertAllocationEvents(VALID_SESSION, Arrays.asList(sample1, sample2, dupSample1));
+
+    // Duplicates within a batch are ignored like duplicates inserted one at a time.
+    assertThat(getTable().getAllocationEvents(VALID_SESSION, 0, Long.MAX_VALUE)).containsExactly(sample1, sample2).inOrder();
+  }
+
   NativeBacktrace createBacktrace(long... addresses) {
     NativeBacktrace.Builder result = NativeBacktrace.newBuilder();
     for (long address : addresses) {
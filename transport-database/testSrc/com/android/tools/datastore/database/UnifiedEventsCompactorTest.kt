@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Cpu
+import com.android.tools.profiler.proto.Memory
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+@RunWith(Parameterized::class)
+class UnifiedEventsCompactorTest(private val eventStorage: UnifiedEventsTable.EventStorage) {
+  companion object {
+    private const val STREAM_ID = 1L
+    private const val PID = 2
+    private val SAMPLE_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100)
+    private val SESSION_LENGTH_NS = TimeUnit.MINUTES.toNanos(20)
+    private val HORIZON_NS = TimeUnit.MINUTES.toNanos(5)
+
+    @JvmStatic
+    @Parameterized.Parameters(name = "{0}")
+    fun eventStorages() = UnifiedEventsTable.EventStorage.values().toList()
+  }
+
+  private lateinit var dbFile: File
+  private lateinit var database: DataStoreDatabase
+  private lateinit var table: UnifiedEventsTable
+  private lateinit var compactor: UnifiedEventsCompactor
+
+  @Before
+  fun setUp() {
+    dbFile = File.createTempFile("UnifiedEventsCompactorTest", "sql")
+    dbFile.deleteOnExit()
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    table = UnifiedEventsTable(eventStorage).apply { initialize(database.connection) }
+    compactor = UnifiedEventsCompactor(table, HORIZON_NS)
+  }
+
+  @After
+  fun tearDown() {
+    database.disconnect()
+  }
+
+  @Test
+  fun oldGaugeSamplesAreReducedToMinAndMax() {
+    val events = (0 until SESSION_LENGTH_NS / SAMPLE_INTERVAL_NS).map { i ->
+      // A saw tooth with a period of one second: every bucket has its minimum at the start and its maximum at the end.
+      memoryEvent(i * SAMPLE_INTERVAL_NS, i % 10)
+    }
+    table.insertUnifiedEvents(STREAM_ID, events)
+    compactor.compact()
+
+    val cutoff = SESSION_LENGTH_NS - SAMPLE_INTERVAL_NS - HORIZON_NS
+    val remaining = table.queryUnifiedEvents()
+    assertThat(remaining.size).isLessThan(events.size)
+    // Recent events are kept as is.
+    assertThat(remaining.filter { it.timestamp >= cutoff }).containsExactlyElementsIn(events.filter { it.timestamp >= cutoff })
+
+    // A narrow range of old data is served from the finest resolution: one min and one max per second.
+    val oldRange = query(TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(20) - 1)
+    assertThat(oldRange.filter { it.timestamp in TimeUnit.SECONDS.toNanos(10) until TimeUnit.SECONDS.toNanos(20) }).hasSize(20)
+    assertThat(oldRange.map { it.memoryUsage.totalMem }.toSet()).containsExactly(0, 9)
+    assertThat(oldRange.map { it.timestamp }).isInOrder()
+
+    // A wide range is served from the coarsest resolution, and spans the compacted and the raw events seamlessly.
+    val fullRange = query(1, TimeUnit.HOURS.toNanos(10))
+    val firstRawTimestamp = remaining.minOf { it.timestamp }
+    val compactedMinutes = TimeUnit.NANOSECONDS.toMinutes(firstRawTimestamp)
+    assertThat(fullRange.filter { it.timestamp < firstRawTimestamp }).hasSize(compactedMinutes.toInt() * 2)
+    assertThat(fullRange.map { it.timestamp }).isInOrder()
+    assertThat(fullRange.first().timestamp).isEqualTo(0)
+    assertThat(fullRange.last()).isEqualTo(events.last())
+
+    // Compacting again is a no-op.
+    compactor.compact()
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(remaining)
+  }
+
+  @Test
+  fun cumulativeSamplesKeepTheLastEventOfEachBucket() {
+    val events = (0 until TimeUnit.MINUTES.toNanos(10) / SAMPLE_INTERVAL_NS).map { i -> cpuEvent(i * SAMPLE_INTERVAL_NS) }
+    val downsampled = UnifiedEventsCompactor.downsample(Common.Event.Kind.CPU_USAGE, events, TimeUnit.SECONDS.toNanos(1))
+    assertThat(downsampled).hasSize(events.size / 10)
+    assertThat(downsampled.map { it.timestamp % TimeUnit.SECONDS.toNanos(1) }.toSet())
+      .containsExactly(TimeUnit.MILLISECONDS.toNanos(900))
+  }
+
+  @Test
+  fun deleteEventsRemovesRollups() {
+    val events = (0 until SESSION_LENGTH_NS / SAMPLE_INTERVAL_NS).map { i -> memoryEvent(i * SAMPLE_INTERVAL_NS, i % 10) }
+    table.insertUnifiedEvents(STREAM_ID, events)
+    compactor.compact()
+    table.deleteEvents(STREAM_ID, PID, 0, Common.Event.Kind.MEMORY_USAGE, 0, Long.MAX_VALUE)
+    assertThat(query(1, SESSION_LENGTH_NS)).isEmpty()
+  }
+
+  @Test
+  fun resolutionDependsOnRange() {
+    val finest = UnifiedEventsCompactor.RESOLUTIONS_NS.first()
+    val coarsest = UnifiedEventsCompactor.RESOLUTIONS_NS.last()
+    assertThat(UnifiedEventsCompactor.selectResolution(0, 0)).isEqualTo(finest)
+    assertThat(UnifiedEventsCompactor.selectResolution(1, TimeUnit.MINUTES.toNanos(1))).isEqualTo(finest)
+    assertThat(UnifiedEventsCompactor.selectResolution(1, TimeUnit.HOURS.toNanos(24))).isEqualTo(coarsest)
+  }
+
+  private fun query(from: Long, to: Long): List<Common.Event> {
+    val groups = table.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder()
+                                                 .setKind(Common.Event.Kind.MEMORY_USAGE)
+                                                 .setStreamId(STREAM_ID)
+                                                 .setPid(PID)
+                                                 .setFromTimestamp(from)
+                                                 .setToTimestamp(to)
+                                                 .build())
+    assertThat(groups.size).isAtMost(1)
+    return groups.firstOrNull()?.eventsList ?: emptyList()
+  }
+
+  private fun memoryEvent(timestamp: Long, totalMem: Long) = Common.Event.newBuilder()
+    .setKind(Common.Event.Kind.MEMORY_USAGE)
+    .setPid(PID)
+    .setTimestamp(timestamp)
+    .setMemoryUsage(Memory.MemoryUsageData.newBuilder().setTotalMem(totalMem.toInt()))
+    .build()
+
+  private fun cpuEvent(timestamp: Long) = Common.Event.newBuilder()
+    .setKind(Common.Event.Kind.CPU_USAGE)
+    .setPid(PID)
+    .setGroupId(PID.toLong())
+    .setTimestamp(timestamp)
+    .setCpuUsage(Cpu.CpuUsageData.newBuilder().setEndTimestamp(timestamp).setElapsedTimeInMillisec(timestamp / 1000000))
+    .build()
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore.database
 
+import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Transport.BytesRequest
 import com.android.tools.profiler.proto.Transport.BytesResponse
@@ -61,6 +62,7 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
     val events = mutableListOf(Common.Event.newBuilder().build())
     return mutableListOf(
       (Consumer { it.insertUnifiedEvent(1, events[0]) }),
+      (Consumer { it.insertUnifiedEvents(1, events) }),
       (Consumer { it.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 1, 1) }),
       (Consumer {
         it.queryUnifiedEventGroups(
@@ -69,6 +71,7 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
       }),
       (Consumer { it.queryUnifiedEvents() }),
       (Consumer { assertThat(it.getBytes(BytesRequest.getDefaultInstance())).isEqualTo(null) }),
+      (Consumer { assertThat(it.getBytesStream(BytesRequest.getDefaultInstance())).isNull() }),
       (Consumer { it.insertBytes(0, "id", BytesResponse.getDefaultInstance()) }))
   }
 
@@ -123,6 +126,140 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
     }
   }
 
+  @Test
+  fun batchWriterFlushesOnSize() {
+    val writer = UnifiedEventsBatchWriter(1, table, 3, Long.MAX_VALUE) { 0L }
+    val events = (1L..3L).map { eventBuilder(Common.Event.Kind.SESSION, false, 1, it, 1, it) }
+    writer.enqueue(events[0])
+    writer.enqueue(events[1])
+    assertThat(writer.pendingEventCount).isEqualTo(2)
+    writer.enqueue(events[2])
+    assertThat(writer.pendingEventCount).isEqualTo(0)
+    writer.close()
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+  }
+
+  @Test
+  fun batchWriterFlushesOnTime() {
+    var time = 0L
+    val writer = UnifiedEventsBatchWriter(1, table, 100, 10) { time }
+    writer.enqueue(eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 1, 1))
+    assertThat(writer.pendingEventCount).isEqualTo(1)
+    time = 10
+    writer.enqueue(eventBuilder(Common.Event.Kind.SESSION, false, 1, 2, 1, 2))
+    assertThat(writer.pendingEventCount).isEqualTo(0)
+    writer.close()
+  }
+
+  @Test
+  fun queriesSeePendingBatchWrites() {
+    val writer = UnifiedEventsBatchWriter(1, table, 100, Long.MAX_VALUE) { 0L }
+    val event = eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 1, 1)
+    writer.enqueue(event)
+    assertThat(writer.pendingEventCount).isEqualTo(1)
+    val result = table.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())
+    assertThat(result).hasSize(1)
+    assertThat(result[0].eventsList).containsExactly(event)
+    assertThat(writer.pendingEventCount).isEqualTo(0)
+    writer.close()
+  }
+
+  @Test
+  fun restoredSessionsAreEnded() {
+    val sessionStart = eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 1, 5)
+    val ongoingSample = eventBuilder(Common.Event.Kind.PROCESS, false, 1, 2, 1, 20)
+    val endedSessionStart = eventBuilder(Common.Event.Kind.SESSION, false, 1, 3, 1, 1)
+    val endedSessionEnd = eventBuilder(Common.Event.Kind.SESSION, true, 1, 3, 1, 2)
+    listOf(sessionStart, ongoingSample, endedSessionStart, endedSessionEnd).forEach { table.insertUnifiedEvent(1, it) }
+
+    // Initializing a table over an existing database simulates reopening the datastore of a previous run.
+    val restoredTable = createTable()
+    restoredTable.initialize(connection)
+    val result = restoredTable.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())
+      .associateBy { it.groupId }
+    assertThat(result[1L]!!.eventsList).containsExactly(sessionStart, eventBuilder(Common.Event.Kind.SESSION, true, 1, 1, 0, 20)).inOrder()
+    assertThat(result[3L]!!.eventsList).containsExactly(endedSessionStart, endedSessionEnd).inOrder()
+  }
+
+  @Test
+  fun restoredSessionsPastRetentionArePruned() {
+    val now = UnifiedEventsTable.RESTORED_SESSION_RETENTION_MS * 2
+    fun session(sessionId: Long, pid: Int, start: Long, end: Long, startEpochMs: Long) = listOf(
+      eventBuilder(Common.Event.Kind.SESSION, false, pid, sessionId, 0, start).toBuilder()
+        .setSession(Common.SessionData.newBuilder().setSessionStarted(
+          Common.SessionData.SessionStarted.newBuilder().setSessionId(sessionId).setStreamId(1).setPid(pid)
+            .setStartTimestampEpochMs(startEpochMs)))
+        .build(),
+      eventBuilder(Common.Event.Kind.SESSION, true, pid, sessionId, 0, end))
+    val oldSession = session(1, 1, 10, 20, now - UnifiedEventsTable.RESTORED_SESSION_RETENTION_MS - 1)
+    val recentSession = session(2, 1, 30, 40, now - 1)
+    val oldSample = eventBuilder(Common.Event.Kind.PROCESS, false, 1, 1, 0, 15)
+    val recentSample = eventBuilder(Common.Event.Kind.PROCESS, false, 1, 1, 0, 35)
+    (oldSession + recentSession + oldSample + recentSample).forEach { table.insertUnifiedEvent(1, it) }
+    table.insertBytes(1, "15", BytesResponse.newBuilder().setContents(ByteString.copyFromUtf8("old")).build())
+    table.insertBytes(1, "35", BytesResponse.newBuilder().setContents(ByteString.copyFromUtf8("recent")).build())
+
+    table.pruneRestoredSessions(now)
+
+    val sessions = table.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())
+    assertThat(sessions.map { it.groupId }).containsExactly(2L)
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(recentSession + recentSample)
+    assertThat(table.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("15").build())).isNull()
+    assertThat(table.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("35").build())!!.contents.toStringUtf8()).isEqualTo("recent")
+  }
+
+  @Test
+  fun restoredSessionsPastTheLimitArePruned() {
+    val sessionCount = UnifiedEventsTable.MAX_RESTORED_SESSIONS + 2
+    for (sessionId in 1L..sessionCount) {
+      table.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, false, 1, sessionId, 0, sessionId * 10).toBuilder()
+        .setSession(Common.SessionData.newBuilder().setSessionStarted(
+          Common.SessionData.SessionStarted.newBuilder().setSessionId(sessionId).setStreamId(1).setPid(1)
+            .setStartTimestampEpochMs(sessionId)))
+        .build())
+      table.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, true, 1, sessionId, 0, sessionId * 10 + 5))
+    }
+
+    table.pruneRestoredSessions(sessionCount.toLong())
+
+    val sessions = table.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())
+    // The oldest sessions go first.
+    assertThat(sessions.map { it.groupId }).containsExactlyElementsIn(3L..sessionCount)
+  }
+
+  @Test
+  fun bytesAreStoredInChunks() {
+    val contents = ByteString.copyFrom(ByteArray(UnifiedEventsTable.BYTES_CHUNK_SIZE * 2 + 10) { it.toByte() })
+    table.insertBytes(1, "large", BytesResponse.newBuilder().setContents(contents).build())
+    table.insertBytes(1, "empty", BytesResponse.getDefaultInstance())
+    val largeRequest = BytesRequest.newBuilder().setStreamId(1).setId("large").build()
+    val emptyRequest = BytesRequest.newBuilder().setStreamId(1).setId("empty").build()
+
+    connection.createStatement().executeQuery("SELECT COUNT(*) FROM BytesChunksTable WHERE Id = 'large'").use {
+      assertThat(it.getInt(1)).isEqualTo(3)
+    }
+    assertThat(table.getBytes(largeRequest)!!.contents).isEqualTo(contents)
+    assertThat(table.getBytesStream(largeRequest)!!.use { it.readBytes() }).isEqualTo(contents.toByteArray())
+
+    // An empty payload is still cached, but there is nothing to stream.
+    assertThat(table.getBytes(emptyRequest)).isEqualTo(BytesResponse.getDefaultInstance())
+    assertThat(table.getBytesStream(emptyRequest)).isNull()
+    assertThat(table.getBytes(BytesRequest.newBuilder().setStreamId(1).setId("missing").build())).isNull()
+  }
+
+  @Test
+  fun partiallyInsertedBytesAreIgnored() {
+    // Simulates a reader that runs while the chunks of a payload are being inserted: only the first of its two chunks is visible.
+    connection.prepareStatement("INSERT INTO BytesChunksTable (StreamId, Id, ChunkIndex, ChunkCount, Data) VALUES (1, 'partial', 0, 2, ?)")
+      .use {
+        it.setBytes(1, ByteArray(10) { index -> index.toByte() })
+        it.execute()
+      }
+    val request = BytesRequest.newBuilder().setStreamId(1).setId("partial").build()
+    assertThat(table.getBytes(request)).isNull()
+    assertThat(table.getBytesStream(request)).isNull()
+  }
+
   @Test
   fun queryEvents() {
     val events = insertData(2, true)
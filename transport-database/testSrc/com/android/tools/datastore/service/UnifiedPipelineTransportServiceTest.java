@@ -42,6 +42,9 @@ import com.android.tools.profiler.proto.Transport.TimeResponse;
 import com.android.tools.profiler.proto.Transport.VersionRequest;
 import com.android.tools.profiler.proto.Transport.VersionResponse;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -165,6 +168,36 @@ public class UnifiedPipelineTransportServiceTest extends DataStorePollerTest {
     assertThat(expectedCommand).isEqualTo(myFakeService.getLastCommandReceived());
   }
 
+  @Test
+  public void subscribersArePushedMatchingEvents() {
+    List<Event> processEvents = new ArrayList<>();
+    List<Event> otherPidEvents = new ArrayList<>();
+    List<Event> streamEvents = new ArrayList<>();
+    EventSubscriptions.Subscription processSubscription = myTransportService.subscribeToEvents(
+      GetEventGroupsRequest.newBuilder().setKind(Event.Kind.PROCESS).setStreamId(TEST_DEVICE_ID).build(),
+      MoreExecutors.directExecutor(), processEvents::add);
+    myTransportService.subscribeToEvents(
+      GetEventGroupsRequest.newBuilder().setKind(Event.Kind.PROCESS).setStreamId(TEST_DEVICE_ID).setPid(2).build(),
+      MoreExecutors.directExecutor(), otherPidEvents::add);
+    myTransportService.subscribeToEvents(
+      GetEventGroupsRequest.newBuilder().setKind(Event.Kind.STREAM).setStreamId(DataStoreService.DATASTORE_RESERVED_STREAM_ID).build(),
+      MoreExecutors.directExecutor(), streamEvents::add);
+
+    // Poll the fake service again now that the listeners are registered.
+    getPollTicker().run();
+    assertThat(processEvents).containsExactly(Event.newBuilder().setKind(Event.Kind.PROCESS).setTimestamp(100).setPid(1).build());
+    assertThat(otherPidEvents).isEmpty();
+
+    processSubscription.close();
+    getPollTicker().run();
+    assertThat(processEvents).hasSize(1);
+
+    myTransportService.disconnectFromChannel(myChannel);
+    assertThat(streamEvents).hasSize(1);
+    assertThat(streamEvents.get(0).getIsEnded()).isTrue();
+    assertThat(streamEvents.get(0).getGroupId()).isEqualTo(TEST_DEVICE_ID);
+  }
+
   private void validateEventNoTimestamp(Event expected, Event actual) {
     actual = actual.toBuilder().setTimestamp(expected.getTimestamp()).build();
     assertThat(expected).isEqualTo(actual);